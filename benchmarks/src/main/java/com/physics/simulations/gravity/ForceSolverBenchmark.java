@@ -0,0 +1,61 @@
+package com.physics.simulations.gravity;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ForceSolverBenchmark - one force pass over a random disc of bodies.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ForceSolverBenchmark {
+
+    @Param({"10", "100", "1000", "10000", "100000"})
+    int bodyCount;
+
+    @Param({"direct", "barnes-hut", "fast-multipole", "particle-mesh", "p3m"})
+    String solver;
+
+    /** Expansion order of the fast multipole solver */
+    @Param({"4"})
+    int order;
+
+    /** Mesh points per side of the particle mesh solvers */
+    @Param({"256"})
+    int meshSize;
+
+    private BodyStore bodies;
+    private ForceSolver forceSolver;
+
+    @Setup
+    public void setup() {
+        bodies = SolverAccuracy.randomBodies(bodyCount, 42L);
+        switch (solver) {
+            case "direct": forceSolver = new DirectSumSolver(); break;
+            case "barnes-hut": forceSolver = new BarnesHutSolver(0.5); break;
+            case "particle-mesh": forceSolver = new ParticleMeshSolver(meshSize, false); break;
+            case "p3m": forceSolver = new ParticleMeshSolver(meshSize, true); break;
+            default: forceSolver = new FastMultipoleSolver(0.5, order); break;
+        }
+    }
+
+    @Benchmark
+    public double computeAccelerations() {
+        forceSolver.computeAccelerations(bodies, 6000.0);
+        return bodies.ax[bodyCount - 1];
+    }
+}
@@ -0,0 +1,58 @@
+package com.physics.simulations.gravity;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * PlanetForceBenchmark - all pairs through Planet.gravitationalForceFrom.
+ *
+ * This is the per-planet path the simulation used before the force solvers;
+ * it allocates a result array per pair, so compare it with
+ * ForceSolverBenchmark's direct sum at the same body count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlanetForceBenchmark {
+
+    @Param({"10", "100", "1000", "10000", "100000"})
+    int bodyCount;
+
+    private Planet[] planets;
+
+    @Setup
+    public void setup() {
+        GravityEngine engine = new GravityEngine();
+        Scenarios.randomDisc(engine, bodyCount, 42L);
+        BodyStore bodies = engine.getBodies();
+        planets = new Planet[bodies.size()];
+        for (int i = 0; i < planets.length; i++) {
+            planets[i] = bodies.view(i);
+        }
+    }
+
+    @Benchmark
+    public void gravitationalForceFrom(Blackhole blackhole) {
+        for (Planet planet : planets) {
+            for (Planet other : planets) {
+                if (planet != other) {
+                    blackhole.consume(planet.gravitationalForceFrom(other, 6000.0));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.physics.simulations.gravity;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * RenderBenchmark - draws a frame of planets into an offscreen BufferedImage
+ * the size of the default window, the same way DrawingPanel paints them.
+ *
+ * Textured planets start at random rotation angles; spriteRotations = 0 draws
+ * them the exact way (clip and rotate), otherwise from the SpriteAtlas.
+ *
+ * Textures are read from resources/textures, looked up from the working
+ * directory and its parent, so run it from the repository root or from
+ * benchmarks/.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RenderBenchmark {
+
+    private static final String[] TEXTURES = {"Earth", "Mars", "Jupiter", "Moon", "Sun", "Venus"};
+
+    @Param({"10", "100", "1000", "10000"})
+    int bodyCount;
+
+    @Param({"false", "true"})
+    boolean textured;
+
+    @Param({"0", "64"})
+    int spriteRotations;
+
+    private BufferedImage frame;
+    private Graphics2D g2d;
+    private Planet[] planets;
+
+    @Setup
+    public void setup() {
+        frame = new BufferedImage(1000, 800, BufferedImage.TYPE_INT_ARGB);
+        g2d = frame.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        SpriteAtlas.shared().setRotations(spriteRotations);
+
+        File textureDir = findTextureDirectory();
+        if (textured && textureDir == null) {
+            throw new IllegalStateException("resources/textures not found - run from the repository root");
+        }
+
+        Random random = new Random(42L);
+        planets = new Planet[bodyCount];
+        for (int i = 0; i < bodyCount; i++) {
+            String texturePath = textured
+                ? new File(textureDir, TEXTURES[i % TEXTURES.length] + ".jpg").getPath()
+                : null;
+            planets[i] = new Planet(1.0, 5.0 + 15.0 * random.nextDouble(),
+                                    1000.0 * random.nextDouble(), 800.0 * random.nextDouble(),
+                                    0.0, 0.0, 0.05, Color.BLUE, texturePath, "Body #" + i);
+            planets[i].store.angle[planets[i].index] = 2 * Math.PI * random.nextDouble();
+        }
+        // Textures load in the background; measure drawing with them in place
+        for (Planet planet : planets) {
+            planet.awaitTexture();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        g2d.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage drawPlanets() {
+        g2d.setColor(Color.BLACK);
+        g2d.fillRect(0, 0, frame.getWidth(), frame.getHeight());
+        for (Planet planet : planets) {
+            planet.draw(g2d);
+        }
+        return frame;
+    }
+
+    private static File findTextureDirectory() {
+        for (String candidate : new String[] {"resources/textures", "../resources/textures"}) {
+            File dir = new File(candidate);
+            if (dir.isDirectory()) return dir;
+        }
+        return null;
+    }
+}
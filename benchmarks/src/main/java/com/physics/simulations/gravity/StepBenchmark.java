@@ -0,0 +1,66 @@
+package com.physics.simulations.gravity;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * StepBenchmark - one full simulation step (collisions, forces, integration),
+ * which is what GravitySimulation.update runs on the physics thread.
+ *
+ * The scene is rebuilt for every iteration so merges in one iteration do not
+ * shrink the body count of the next.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StepBenchmark {
+
+    @Param({"10", "100", "1000", "10000", "100000"})
+    int bodyCount;
+
+    @Param({"Semi-implicit Euler", "Velocity Verlet", "Yoshida 4", "RK4", "Adaptive Verlet"})
+    String integrator;
+
+    @Param({"merge", "bounce"})
+    String collisions;
+
+    @Param({"Barnes-Hut"})
+    String solver;
+
+    private GravityEngine engine;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        engine = new GravityEngine();
+        engine.setIntegrator(integrator);
+        engine.setForceSolver(solver);
+        engine.setBounce(collisions.equals("bounce"));
+        Scenarios.randomDisc(engine, bodyCount, 42L);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Benchmark
+    public double step() {
+        engine.step(1.0 / 240.0);
+        return engine.getSimulationTime();
+    }
+}
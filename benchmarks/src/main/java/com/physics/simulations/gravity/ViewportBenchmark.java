@@ -0,0 +1,114 @@
+package com.physics.simulations.gravity;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ViewportBenchmark - draws a frame of a large world through a 1000x800
+ * viewport, with PlanetRenderer (culling and level of detail) and with
+ * every planet drawn in full as DrawingPanel used to.
+ *
+ * The bodies are spread over a world 20 times wider and taller than the
+ * window, so at zoom 1 only about one in 400 is on screen, while at zoom
+ * 0.05 all of them are, each smaller than a pixel. pointCloud picks how
+ * PlanetRenderer batches the small ones.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ViewportBenchmark {
+
+    private static final int WIDTH = 1000;
+    private static final int HEIGHT = 800;
+
+    @Param({"10000", "50000", "100000"})
+    int bodyCount;
+
+    @Param({"1", "0.05"})
+    double zoom;
+
+    @Param({"Off", "Color", "Density"})
+    String pointCloud;
+
+    private BufferedImage frame;
+    private Graphics2D g2d;
+    private GravityEngine engine;
+    private StateSnapshot snapshot;
+    private PlanetRenderer renderer;
+    private double panX, panY;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        frame = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        g2d = frame.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        engine = new GravityEngine();
+        Random random = new Random(42L);
+        double worldWidth = 20.0 * WIDTH, worldHeight = 20.0 * HEIGHT;
+        for (int i = 0; i < bodyCount; i++) {
+            engine.add(new Planet(1.0, 2.0 + 8.0 * random.nextDouble(),
+                                  worldWidth * (random.nextDouble() - 0.5), worldHeight * (random.nextDouble() - 0.5),
+                                  0.0, 0.0, 0.0, Color.WHITE, null, "Body #" + i));
+        }
+        snapshot = new StateSnapshot();
+        snapshot.copyFrom(engine.getBodies(), 0L, 0.0);
+        renderer = new PlanetRenderer();
+        renderer.setPointCloudMode(PointCloudRenderer.Mode.fromDisplayName(pointCloud));
+
+        // Centre the view on the world origin
+        panX = WIDTH / 2.0;
+        panY = HEIGHT / 2.0;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        g2d.dispose();
+        engine.shutdown();
+    }
+
+    @Benchmark
+    public BufferedImage drawVisible() {
+        g2d.setColor(Color.BLACK);
+        g2d.fillRect(0, 0, WIDTH, HEIGHT);
+        renderer.draw(g2d, snapshot, zoom, panX, panY, WIDTH, HEIGHT);
+        return frame;
+    }
+
+    @Benchmark
+    public BufferedImage drawAll() {
+        g2d.setColor(Color.BLACK);
+        g2d.fillRect(0, 0, WIDTH, HEIGHT);
+        AffineTransform screen = g2d.getTransform();
+        g2d.translate(WIDTH / 2, HEIGHT / 2);
+        g2d.scale(zoom, zoom);
+        g2d.translate(-WIDTH / 2, -HEIGHT / 2);
+        g2d.translate(panX, panY);
+        for (int i = 0; i < snapshot.count; i++) {
+            snapshot.views[i].draw(g2d, snapshot.x[i], snapshot.y[i], snapshot.radius[i], snapshot.angle[i]);
+        }
+        g2d.setTransform(screen);
+        return frame;
+    }
+}
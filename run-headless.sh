@@ -0,0 +1,15 @@
+#!/bin/bash
+
+# Compiles the project and runs the gravity simulation without a window
+# Usage: ./run-headless.sh [HeadlessMain options]   (--help for the list)
+
+mkdir -p out
+
+javac -d out -sourcepath src src/com/physics/simulations/gravity/HeadlessMain.java
+
+if [ $? -eq 0 ]; then
+    java -Djava.awt.headless=true -cp out com.physics.simulations.gravity.HeadlessMain "$@"
+else
+    echo "Compilation failed. Please check for errors above."
+    exit 1
+fi
@@ -0,0 +1,308 @@
+package com.physics.simulations.gravity;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * BarnesHutSolver - O(n log n) gravity using a Barnes-Hut quadtree.
+ *
+ * The bodies are sorted into a quadtree whose nodes store their total mass and
+ * center of mass. When a node is small compared to its distance from a body
+ * (size / distance < theta), the whole node is treated as a single mass instead
+ * of visiting each body inside it.
+ *
+ * theta = 0 reproduces the direct sum exactly; 0.5 is the usual trade-off;
+ * values above 1 are fast but visibly inaccurate.
+ *
+ * The tree is stored in flat arrays that are reused between steps, so building
+ * it does not allocate once the arrays are large enough. The tree is built on
+ * one thread; the walks are read-only and are split across the WorkerPool.
+ */
+public class BarnesHutSolver implements ForceSolver {
+
+    /** Past this depth coincident bodies share a leaf instead of splitting forever */
+    private static final int MAX_DEPTH = 48;
+
+    private static final int EMPTY = -1;
+
+    /** A walk pops one node and pushes four per level, so this never overflows */
+    private static final int STACK_SIZE = 3 * (MAX_DEPTH + 2) + 4;
+
+    /** Opening angle */
+    private double theta;
+
+    // Node arrays - node 0 is the root, the 4 children of a node are stored consecutively
+    private double[] nodeMinX = new double[0];
+    private double[] nodeMinY = new double[0];
+    private double[] nodeSize = new double[0];
+    private double[] nodeMass = new double[0];
+    private double[] nodeComX = new double[0];
+    private double[] nodeComY = new double[0];
+    private int[] firstChild = new int[0];   // EMPTY for leaves
+    private int[] leafHead = new int[0];     // first body in a leaf, EMPTY if none
+    private int nodeCount;
+
+    /** Linked list of bodies sharing a leaf */
+    private int[] nextInLeaf = new int[0];
+
+    // Body arrays of the store being evaluated
+    private double[] bx, by, bm;
+
+    private final WorkerPool workers;
+
+    /** Leaf bodies plus approximated nodes visited by the last evaluation */
+    private final AtomicLong interactionCount = new AtomicLong();
+
+    /**
+     * Creates a single-threaded solver.
+     */
+    public BarnesHutSolver(double theta) {
+        this(theta, new WorkerPool(1));
+    }
+
+    public BarnesHutSolver(double theta, WorkerPool workers) {
+        setTheta(theta);
+        this.workers = workers;
+    }
+
+    public double getTheta() {
+        return theta;
+    }
+
+    public void setTheta(double theta) {
+        if (theta < 0) {
+            throw new IllegalArgumentException("theta must be >= 0, got " + theta);
+        }
+        this.theta = theta;
+    }
+
+    @Override
+    public void computeAccelerations(BodyStore bodies, double gravitationalConstant) {
+        interactionCount.set(0);
+        int n = bodies.count;
+        if (n == 0) return;
+
+        buildTree(bodies);
+
+        double thetaSquared = theta * theta;
+        workers.forEachRange(n, (from, to) -> {
+            int[] stack = new int[STACK_SIZE];
+            long interactions = 0;
+            for (int i = from; i < to; i++) {
+                interactions += accelerationAt(i, thetaSquared, gravitationalConstant, bodies.ax, bodies.ay, stack);
+            }
+            interactionCount.addAndGet(interactions);
+        });
+    }
+
+    @Override
+    public void computeAccelerations(BodyStore bodies, double gravitationalConstant, int[] targets, int targetCount) {
+        interactionCount.set(0);
+        if (bodies.count == 0 || targetCount == 0) return;
+
+        buildTree(bodies);
+
+        double thetaSquared = theta * theta;
+        workers.forEachRange(targetCount, (from, to) -> {
+            int[] stack = new int[STACK_SIZE];
+            long interactions = 0;
+            for (int k = from; k < to; k++) {
+                interactions += accelerationAt(targets[k], thetaSquared, gravitationalConstant, bodies.ax, bodies.ay, stack);
+            }
+            interactionCount.addAndGet(interactions);
+        });
+    }
+
+    /**
+     * Walks the tree for body i and stores its acceleration in ax[i], ay[i].
+     *
+     * @return Number of bodies and nodes body i interacted with
+     */
+    private int accelerationAt(int i, double thetaSquared, double gravitationalConstant,
+                                double[] ax, double[] ay, int[] stack) {
+        double xi = bx[i];
+        double yi = by[i];
+        double sumX = 0.0;
+        double sumY = 0.0;
+        int interactions = 0;
+
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            if (nodeMass[node] == 0.0) continue;
+
+            if (firstChild[node] == EMPTY) {
+                // Leaf - exact interaction with every body stored in it
+                for (int j = leafHead[node]; j != EMPTY; j = nextInLeaf[j]) {
+                    if (j == i) continue;
+                    double dx = bx[j] - xi;
+                    double dy = by[j] - yi;
+                    double distSquared = dx * dx + dy * dy;
+                    if (distSquared == 0.0) continue;
+                    double inv = bm[j] / (distSquared * Math.sqrt(distSquared));
+                    sumX += dx * inv;
+                    sumY += dy * inv;
+                    interactions++;
+                }
+                continue;
+            }
+
+            double dx = nodeComX[node] - xi;
+            double dy = nodeComY[node] - yi;
+            double distSquared = dx * dx + dy * dy;
+            double size = nodeSize[node];
+
+            // Never approximate a cell that contains the body itself
+            boolean inside = xi >= nodeMinX[node] && xi < nodeMinX[node] + size
+                          && yi >= nodeMinY[node] && yi < nodeMinY[node] + size;
+
+            if (!inside && size * size < thetaSquared * distSquared) {
+                double inv = nodeMass[node] / (distSquared * Math.sqrt(distSquared));
+                sumX += dx * inv;
+                sumY += dy * inv;
+                interactions++;
+            } else {
+                int child = firstChild[node];
+                stack[top++] = child;
+                stack[top++] = child + 1;
+                stack[top++] = child + 2;
+                stack[top++] = child + 3;
+            }
+        }
+        ax[i] = gravitationalConstant * sumX;
+        ay[i] = gravitationalConstant * sumY;
+        return interactions;
+    }
+
+    /**
+     * Inserts every body into a fresh quadtree and computes node masses.
+     */
+    private void buildTree(BodyStore bodies) {
+        int n = bodies.count;
+        bx = bodies.x;
+        by = bodies.y;
+        bm = bodies.mass;
+        if (nextInLeaf.length < n) {
+            nextInLeaf = new int[Math.max(n, nextInLeaf.length * 2)];
+        }
+
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            minX = Math.min(minX, bx[i]);
+            minY = Math.min(minY, by[i]);
+            maxX = Math.max(maxX, bx[i]);
+            maxY = Math.max(maxY, by[i]);
+        }
+
+        // Square root node, padded slightly so the max edge is inside
+        double size = Math.max(maxX - minX, maxY - minY);
+        size = size > 0 ? size * 1.0001 : 1.0;
+
+        nodeCount = 0;
+        int root = allocateNode(minX, minY, size);
+
+        for (int i = 0; i < n; i++) {
+            insert(root, i);
+        }
+
+        // Children are always allocated after their parent, so a reverse
+        // sweep sees every child before the node that owns it
+        for (int node = nodeCount - 1; node >= 0; node--) {
+            double mass = 0.0, mx = 0.0, my = 0.0;
+            if (firstChild[node] == EMPTY) {
+                for (int j = leafHead[node]; j != EMPTY; j = nextInLeaf[j]) {
+                    mass += bm[j];
+                    mx += bm[j] * bx[j];
+                    my += bm[j] * by[j];
+                }
+            } else {
+                for (int c = firstChild[node]; c < firstChild[node] + 4; c++) {
+                    mass += nodeMass[c];
+                    mx += nodeMass[c] * nodeComX[c];
+                    my += nodeMass[c] * nodeComY[c];
+                }
+            }
+            nodeMass[node] = mass;
+            nodeComX[node] = mass > 0 ? mx / mass : 0.0;
+            nodeComY[node] = mass > 0 ? my / mass : 0.0;
+        }
+    }
+
+    private void insert(int root, int body) {
+        int node = root;
+        int depth = 0;
+        while (true) {
+            if (firstChild[node] != EMPTY) {
+                node = childFor(node, bx[body], by[body]);
+                depth++;
+                continue;
+            }
+            if (leafHead[node] == EMPTY || depth >= MAX_DEPTH) {
+                nextInLeaf[body] = leafHead[node];
+                leafHead[node] = body;
+                return;
+            }
+
+            // Occupied leaf - split it and push the resident body down one level
+            int resident = leafHead[node];
+            leafHead[node] = EMPTY;
+            double half = nodeSize[node] * 0.5;
+            double x0 = nodeMinX[node];
+            double y0 = nodeMinY[node];
+            int child = allocateNode(x0, y0, half);
+            allocateNode(x0 + half, y0, half);
+            allocateNode(x0, y0 + half, half);
+            allocateNode(x0 + half, y0 + half, half);
+            firstChild[node] = child;
+
+            int target = childFor(node, bx[resident], by[resident]);
+            nextInLeaf[resident] = EMPTY;
+            leafHead[target] = resident;
+        }
+    }
+
+    private int childFor(int node, double x, double y) {
+        double half = nodeSize[node] * 0.5;
+        int index = 0;
+        if (x >= nodeMinX[node] + half) index += 1;
+        if (y >= nodeMinY[node] + half) index += 2;
+        return firstChild[node] + index;
+    }
+
+    private int allocateNode(double minX, double minY, double size) {
+        if (nodeCount == nodeMass.length) {
+            growNodes(Math.max(64, nodeCount * 2));
+        }
+        int node = nodeCount++;
+        nodeMinX[node] = minX;
+        nodeMinY[node] = minY;
+        nodeSize[node] = size;
+        nodeMass[node] = 0.0;
+        firstChild[node] = EMPTY;
+        leafHead[node] = EMPTY;
+        return node;
+    }
+
+    private void growNodes(int capacity) {
+        nodeMinX = Arrays.copyOf(nodeMinX, capacity);
+        nodeMinY = Arrays.copyOf(nodeMinY, capacity);
+        nodeSize = Arrays.copyOf(nodeSize, capacity);
+        nodeMass = Arrays.copyOf(nodeMass, capacity);
+        nodeComX = Arrays.copyOf(nodeComX, capacity);
+        nodeComY = Arrays.copyOf(nodeComY, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        leafHead = Arrays.copyOf(leafHead, capacity);
+    }
+
+    @Override
+    public long getInteractionCount() {
+        return interactionCount.get();
+    }
+
+    @Override
+    public String getName() {
+        return "Barnes-Hut";
+    }
+}
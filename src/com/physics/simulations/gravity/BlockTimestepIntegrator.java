@@ -0,0 +1,223 @@
+package com.physics.simulations.gravity;
+
+/**
+ * BlockTimestepIntegrator - velocity Verlet with a separate step per body.
+ *
+ * Each body gets a level L and advances with dt / 2^L, so bodies in tight
+ * orbits or close encounters are substepped while the rest take one step.
+ * Steps are powers of two of the base step, which keeps every body's substeps
+ * aligned: whenever some bodies finish a substep, all bodies are drifted to
+ * that moment and only the ones that finished are re-evaluated and kicked.
+ * At the end of the base step every body is back in sync.
+ *
+ * The level comes from an acceleration/jerk criterion:
+ *
+ *   step = ETA * |a| / |da/dt|
+ *
+ * i.e. a fraction of the time over which the body's acceleration changes
+ * noticeably. da/dt is taken from the evaluations at the start and end of
+ * the body's last substep. Bodies only move to a coarser level at a time
+ * where the coarser step lines up.
+ *
+ * Accelerations from the end of one step are reused at the start of the next,
+ * so a quiet system costs one force evaluation per step, like plain Verlet.
+ * After a reset (bodies added or merged, G or solver changed) one extra
+ * evaluation measures da/dt before the levels are chosen.
+ */
+public class BlockTimestepIntegrator implements Integrator {
+
+    /** Deepest level - the finest substep is dt / 2^MAX_LEVEL */
+    static final int MAX_LEVEL = 12;
+
+    /** Safety factor of the step criterion */
+    private static final double ETA = 0.1;
+
+    /** Length of the base step in ticks of the finest substep */
+    private static final long BASE_TICKS = 1L << MAX_LEVEL;
+
+    private int[] level = new int[0];
+    private long[] stepEnd = new long[0];
+    private double[] startAx = new double[0], startAy = new double[0];
+    private double[] savedX = new double[0], savedY = new double[0];
+    private int[] active = new int[0];
+
+    /** False until accelerations and levels are known for the bodies in the store */
+    private boolean primed;
+    private int primedCount;
+
+    /** Substep evaluations and bodies evaluated in them during the last step */
+    private int lastSubsteps;
+    private long lastEvaluatedBodies;
+
+    @Override
+    public void step(BodyStore bodies, double dt, Accelerations accelerations) {
+        int n = bodies.count;
+        ensureCapacity(n);
+        double[] vx = bodies.vx, vy = bodies.vy;
+        double[] ax = bodies.ax, ay = bodies.ay;
+        boolean[] fixed = bodies.fixed;
+        double tick = dt / BASE_TICKS;
+        lastSubsteps = 0;
+        lastEvaluatedBodies = 0;
+
+        if (!primed || primedCount != n) {
+            if (dt <= 0.0) return;
+            prime(bodies, dt, accelerations);
+        }
+
+        // Opening half kick for everybody - all bodies start a substep now
+        for (int i = 0; i < n; i++) {
+            if (fixed[i]) continue;
+            long span = BASE_TICKS >> level[i];
+            double h = span * tick;
+            vx[i] += 0.5 * h * ax[i];
+            vy[i] += 0.5 * h * ay[i];
+            stepEnd[i] = span;
+        }
+
+        long now = 0;
+        while (now < BASE_TICKS) {
+            // Next moment some body finishes its substep
+            long next = BASE_TICKS;
+            for (int i = 0; i < n; i++) {
+                if (!fixed[i] && stepEnd[i] < next) next = stepEnd[i];
+            }
+
+            LeapfrogIntegrator.drift(bodies, (next - now) * tick);
+            now = next;
+
+            int activeCount = 0;
+            for (int i = 0; i < n; i++) {
+                if (!fixed[i] && stepEnd[i] == now) {
+                    active[activeCount++] = i;
+                    startAx[i] = ax[i];
+                    startAy[i] = ay[i];
+                }
+            }
+            if (activeCount == 0) continue;
+
+            accelerations.compute(bodies, active, activeCount);
+            lastSubsteps++;
+            lastEvaluatedBodies += activeCount;
+
+            for (int k = 0; k < activeCount; k++) {
+                int i = active[k];
+                double h = (BASE_TICKS >> level[i]) * tick;
+
+                // Closing half kick of the substep that just ended
+                vx[i] += 0.5 * h * ax[i];
+                vy[i] += 0.5 * h * ay[i];
+
+                double jerkX = (ax[i] - startAx[i]) / h;
+                double jerkY = (ay[i] - startAy[i]) / h;
+                int wanted = levelFor(ax[i], ay[i], jerkX, jerkY, dt);
+                // Coarser only where the coarser grid lines up with now
+                while (wanted < level[i] && now % (BASE_TICKS >> wanted) != 0) {
+                    wanted++;
+                }
+                level[i] = wanted;
+
+                if (now < BASE_TICKS) {
+                    // Opening half kick of the next substep
+                    long span = BASE_TICKS >> wanted;
+                    double nextH = span * tick;
+                    vx[i] += 0.5 * nextH * ax[i];
+                    vy[i] += 0.5 * nextH * ay[i];
+                    stepEnd[i] = now + span;
+                }
+            }
+        }
+    }
+
+    /**
+     * Evaluates the accelerations, and again after drifting everybody for one
+     * finest substep, to get da/dt and so a level for every body. Leaves the
+     * positions as they were and the accelerations at those positions.
+     */
+    private void prime(BodyStore bodies, double dt, Accelerations accelerations) {
+        int n = bodies.count;
+        double delta = dt / BASE_TICKS;
+        System.arraycopy(bodies.x, 0, savedX, 0, n);
+        System.arraycopy(bodies.y, 0, savedY, 0, n);
+
+        accelerations.compute(bodies);
+        System.arraycopy(bodies.ax, 0, startAx, 0, n);
+        System.arraycopy(bodies.ay, 0, startAy, 0, n);
+        LeapfrogIntegrator.drift(bodies, delta);
+        accelerations.compute(bodies);
+        lastSubsteps += 2;
+        lastEvaluatedBodies += 2L * n;
+
+        for (int i = 0; i < n; i++) {
+            if (bodies.fixed[i]) continue;
+            double jerkX = (bodies.ax[i] - startAx[i]) / delta;
+            double jerkY = (bodies.ay[i] - startAy[i]) / delta;
+            bodies.ax[i] = startAx[i];
+            bodies.ay[i] = startAy[i];
+            level[i] = levelFor(bodies.ax[i], bodies.ay[i], jerkX, jerkY, dt);
+        }
+        System.arraycopy(savedX, 0, bodies.x, 0, n);
+        System.arraycopy(savedY, 0, bodies.y, 0, n);
+
+        primed = true;
+        primedCount = n;
+    }
+
+    /**
+     * Level whose substep satisfies the criterion for a body with the given
+     * acceleration and jerk.
+     */
+    private static int levelFor(double ax, double ay, double jerkX, double jerkY, double dt) {
+        double acceleration = Math.sqrt(ax * ax + ay * ay);
+        double jerk = Math.sqrt(jerkX * jerkX + jerkY * jerkY);
+        if (acceleration == 0.0 || jerk == 0.0) return 0;
+
+        double wanted = ETA * acceleration / jerk;
+        if (!(wanted < dt)) return 0;
+        int levelNeeded = (int) Math.ceil(Math.log(dt / wanted) / Math.log(2.0));
+        return Math.min(Math.max(levelNeeded, 0), MAX_LEVEL);
+    }
+
+    @Override
+    public void reset() {
+        primed = false;
+    }
+
+    /**
+     * @return Force evaluations run during the last step, including partial ones
+     */
+    public int getLastSubsteps() {
+        return lastSubsteps;
+    }
+
+    /**
+     * @return Bodies whose acceleration was evaluated during the last step, summed over substeps
+     */
+    public long getLastEvaluatedBodies() {
+        return lastEvaluatedBodies;
+    }
+
+    private void ensureCapacity(int n) {
+        if (level.length >= n) return;
+        int capacity = Math.max(n, level.length * 2);
+        level = new int[capacity];
+        stepEnd = new long[capacity];
+        startAx = new double[capacity];
+        startAy = new double[capacity];
+        savedX = new double[capacity];
+        savedY = new double[capacity];
+        active = new int[capacity];
+        // Levels of the old arrays are lost, so start over
+        primed = false;
+    }
+
+    @Override
+    public int getForceEvaluations() {
+        return 1;
+    }
+
+    @Override
+    public String getName() {
+        return "Adaptive Verlet";
+    }
+}
@@ -0,0 +1,234 @@
+package com.physics.simulations.gravity;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * BodyStore - structure-of-arrays storage for every body in the simulation.
+ *
+ * Each property lives in its own primitive array, indexed by body, so the
+ * physics loops walk contiguous memory and never allocate. Planet objects are
+ * views onto one index of a store: they keep the rendering attributes (color,
+ * texture, name) and read their position, velocity, mass and radius from here.
+ *
+ * Removing bodies compacts the arrays in order and renumbers the views, so an
+ * index is only stable until the next removal.
+ */
+public class BodyStore {
+
+    /** Number of bodies currently stored */
+    int count;
+
+    // Physical state
+    double[] x, y;
+    double[] vx, vy;
+    double[] mass;
+    double[] radius;
+    boolean[] fixed;        // true for PointMass - never moves
+
+    // Rotation, used for drawing textures
+    double[] spin;          // angular velocity
+    double[] angle;         // rotation angle in [0, 2π)
+
+    /** Accelerations written by the last ForceSolver evaluation */
+    double[] ax, ay;
+
+    /** Planet view for each body */
+    Planet[] views;
+
+    public BodyStore() {
+        this(16);
+    }
+
+    public BodyStore(int initialCapacity) {
+        allocate(Math.max(1, initialCapacity));
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public Planet view(int index) {
+        return views[index];
+    }
+
+    /**
+     * Adds a planet to this store. Its current state is copied in and the
+     * planet becomes a view of the new index.
+     *
+     * @return Index of the new body
+     */
+    public int add(Planet planet) {
+        BodyStore source = planet.store;
+        int from = planet.index;
+        int i = append(source.x[from], source.y[from], source.vx[from], source.vy[from],
+                       source.mass[from], source.radius[from], source.fixed[from]);
+        spin[i] = source.spin[from];
+        angle[i] = source.angle[from];
+        views[i] = planet;
+        planet.store = this;
+        planet.index = i;
+        return i;
+    }
+
+    /**
+     * Appends a body with no view and returns its index.
+     */
+    int append(double x, double y, double vx, double vy, double mass, double radius, boolean fixed) {
+        if (count == this.x.length) {
+            grow(count * 2);
+        }
+        int i = count++;
+        this.x[i] = x;
+        this.y[i] = y;
+        this.vx[i] = vx;
+        this.vy[i] = vy;
+        this.mass[i] = mass;
+        this.radius[i] = radius;
+        this.fixed[i] = fixed;
+        spin[i] = 0.0;
+        angle[i] = 0.0;
+        ax[i] = 0.0;
+        ay[i] = 0.0;
+        views[i] = null;
+        return i;
+    }
+
+    /**
+     * Removes the bodies behind the given views, keeping the remaining bodies
+     * in order. Removed views are detached so they keep their last state.
+     */
+    public void removeAll(Collection<Planet> removed) {
+        if (removed.isEmpty()) return;
+        for (Planet planet : removed) {
+            if (planet.store == this) {
+                detach(planet);
+            }
+        }
+        // Detached views no longer point here; compact everything else down
+        int write = 0;
+        for (int read = 0; read < count; read++) {
+            Planet view = views[read];
+            if (view != null && view.store != this) continue;
+            if (write != read) {
+                move(read, write);
+            }
+            write++;
+        }
+        for (int i = write; i < count; i++) {
+            views[i] = null;
+        }
+        count = write;
+    }
+
+    /**
+     * Removes the bodies whose indices are set in dead, keeping the remaining
+     * bodies in order, in a single pass. Views of removed bodies are detached
+     * so they keep their last state.
+     */
+    void removeDead(BitSet dead) {
+        int write = dead.nextSetBit(0);
+        if (write < 0 || write >= count) return;
+        for (int read = write; read < count; read++) {
+            if (dead.get(read)) {
+                if (views[read] != null) {
+                    detach(views[read]);
+                }
+                continue;
+            }
+            move(read, write++);
+        }
+        Arrays.fill(views, write, count, null);
+        count = write;
+    }
+
+    /**
+     * Removes every body. Views are detached so they keep their last state.
+     */
+    public void clear() {
+        for (int i = 0; i < count; i++) {
+            if (views[i] != null) {
+                detach(views[i]);
+            }
+            views[i] = null;
+        }
+        count = 0;
+    }
+
+    /**
+     * Removes every body without detaching the views, which is much cheaper
+     * for large stores. The old views must not be used afterwards - use it
+     * when the whole state is being replaced.
+     */
+    void discardAll() {
+        Arrays.fill(views, 0, count, null);
+        count = 0;
+    }
+
+    /**
+     * Gives a view its own single-body store holding a copy of its state.
+     */
+    private void detach(Planet planet) {
+        BodyStore own = new BodyStore(1);
+        own.add(planet);
+    }
+
+    private void move(int from, int to) {
+        x[to] = x[from];
+        y[to] = y[from];
+        vx[to] = vx[from];
+        vy[to] = vy[from];
+        mass[to] = mass[from];
+        radius[to] = radius[from];
+        fixed[to] = fixed[from];
+        spin[to] = spin[from];
+        angle[to] = angle[from];
+        ax[to] = ax[from];
+        ay[to] = ay[from];
+        views[to] = views[from];
+        if (views[to] != null) {
+            views[to].index = to;
+        }
+    }
+
+    /**
+     * Makes room for at least capacity bodies, so they can be written into
+     * the arrays directly (e.g. when loading a saved state).
+     */
+    void ensureCapacity(int capacity) {
+        if (capacity > x.length) {
+            grow(capacity);
+        }
+    }
+
+    private void allocate(int capacity) {
+        x = new double[capacity];
+        y = new double[capacity];
+        vx = new double[capacity];
+        vy = new double[capacity];
+        mass = new double[capacity];
+        radius = new double[capacity];
+        fixed = new boolean[capacity];
+        spin = new double[capacity];
+        angle = new double[capacity];
+        ax = new double[capacity];
+        ay = new double[capacity];
+        views = new Planet[capacity];
+    }
+
+    private void grow(int capacity) {
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        vx = Arrays.copyOf(vx, capacity);
+        vy = Arrays.copyOf(vy, capacity);
+        mass = Arrays.copyOf(mass, capacity);
+        radius = Arrays.copyOf(radius, capacity);
+        fixed = Arrays.copyOf(fixed, capacity);
+        spin = Arrays.copyOf(spin, capacity);
+        angle = Arrays.copyOf(angle, capacity);
+        ax = Arrays.copyOf(ax, capacity);
+        ay = Arrays.copyOf(ay, capacity);
+        views = Arrays.copyOf(views, capacity);
+    }
+}
@@ -0,0 +1,160 @@
+package com.physics.simulations.gravity;
+
+import java.util.Arrays;
+
+/**
+ * CollisionDetector - finds every pair of touching bodies with a spatial hash grid.
+ *
+ * The grid cells are as wide as the largest diameter, so two bodies can only
+ * touch if they sit in the same or neighbouring cells. Bodies are hashed into
+ * their cell once and counting-sorted by hash bucket, so the bodies of a cell
+ * are contiguous in memory. Each body is then tested only against the bodies
+ * in its own and neighbouring cells, comparing squared distances (no sqrt).
+ *
+ * The result is a list of contacts (a, b) with a < b, sorted by a and then
+ * b, so the collision response always sees the same pairs in the same order
+ * regardless of how the hash buckets happen to be laid out. Two fixed bodies
+ * (point masses) never collide with each other.
+ *
+ * All arrays are reused between calls.
+ */
+public class CollisionDetector {
+
+    /** Offsets of the own cell and the neighbours searched from it */
+    private static final int[] NEIGHBOURS_X = {0, 1, 1, 1, 0};
+    private static final int[] NEIGHBOURS_Y = {0, -1, 0, 1, 1};
+
+    /** Contacts of the last detect() call: first[k] < second[k] */
+    int[] first = new int[0];
+    int[] second = new int[0];
+    int contactCount;
+
+    private long[] packed = new long[0];
+
+    // Bodies grouped by hash bucket: bucket b holds sorted positions
+    // bucketStart[b] .. bucketStart[b + 1] - 1
+    private int[] bucketStart = new int[0];
+    private int[] bucketOf = new int[0];
+    private int[] order = new int[0];
+    private long[] sortedCellX = new long[0], sortedCellY = new long[0];
+    private double[] sortedX = new double[0], sortedY = new double[0], sortedRadius = new double[0];
+
+    /**
+     * Finds all touching pairs in the store.
+     *
+     * @return Number of contacts, also available as contactCount
+     */
+    public int detect(BodyStore bodies) {
+        contactCount = 0;
+        int n = bodies.count;
+        double[] x = bodies.x, y = bodies.y, radius = bodies.radius;
+        boolean[] fixed = bodies.fixed;
+
+        double maxRadius = 0.0;
+        for (int i = 0; i < n; i++) {
+            maxRadius = Math.max(maxRadius, radius[i]);
+        }
+        if (n < 2 || maxRadius <= 0.0) return 0;
+
+        ensureCapacity(n);
+        double cellSize = 2.0 * maxRadius;
+        int buckets = bucketStart.length - 1;
+        int mask = buckets - 1;
+
+        // Counting sort by bucket, so each bucket's bodies sit next to each other
+        Arrays.fill(bucketStart, 0);
+        for (int i = 0; i < n; i++) {
+            long cx = (long) Math.floor(x[i] / cellSize);
+            long cy = (long) Math.floor(y[i] / cellSize);
+            int bucket = hash(cx, cy) & mask;
+            bucketOf[i] = bucket;
+            bucketStart[bucket + 1]++;
+        }
+        for (int b = 0; b < buckets; b++) {
+            bucketStart[b + 1] += bucketStart[b];
+        }
+        for (int i = 0; i < n; i++) {
+            // Fill from the back of the bucket so it ends up in ascending index order
+            int position = --bucketStart[bucketOf[i] + 1];
+            order[position] = i;
+        }
+        // The decrements moved every start one bucket back; restore bucketStart[b + 1]
+        System.arraycopy(bucketStart, 1, bucketStart, 0, buckets);
+        bucketStart[buckets] = n;
+        for (int position = 0; position < n; position++) {
+            int i = order[position];
+            sortedX[position] = x[i];
+            sortedY[position] = y[i];
+            sortedRadius[position] = radius[i];
+            sortedCellX[position] = (long) Math.floor(x[i] / cellSize);
+            sortedCellY[position] = (long) Math.floor(y[i] / cellSize);
+        }
+
+        for (int position = 0; position < n; position++) {
+            int i = order[position];
+            double xi = sortedX[position], yi = sortedY[position], ri = sortedRadius[position];
+            long cellXi = sortedCellX[position], cellYi = sortedCellY[position];
+            // Own cell plus the four neighbours "ahead" of it, so every pair of
+            // neighbouring cells is visited from exactly one side
+            for (int c = 0; c < NEIGHBOURS_X.length; c++) {
+                long cx = cellXi + NEIGHBOURS_X[c];
+                long cy = cellYi + NEIGHBOURS_Y[c];
+                int bucket = hash(cx, cy) & mask;
+                int from = c == 0 ? position + 1 : bucketStart[bucket];
+                int to = bucketStart[bucket + 1];
+                for (int other = from; other < to; other++) {
+                    // Skip other cells sharing the bucket
+                    if (sortedCellX[other] != cx || sortedCellY[other] != cy) continue;
+                    double dx = sortedX[other] - xi;
+                    double dy = sortedY[other] - yi;
+                    double reach = ri + sortedRadius[other];
+                    if (dx * dx + dy * dy < reach * reach) {
+                        int j = order[other];
+                        if (fixed[i] && fixed[j]) continue;
+                        addContact(Math.min(i, j), Math.max(i, j));
+                    }
+                }
+            }
+        }
+
+        // Pairs come out in cell and bucket order
+        Arrays.sort(packed, 0, contactCount);
+        for (int k = 0; k < contactCount; k++) {
+            first[k] = (int) (packed[k] >>> 32);
+            second[k] = (int) packed[k];
+        }
+        return contactCount;
+    }
+
+    private void addContact(int a, int b) {
+        if (contactCount == packed.length) {
+            int capacity = Math.max(16, packed.length * 2);
+            packed = Arrays.copyOf(packed, capacity);
+            first = new int[capacity];
+            second = new int[capacity];
+        }
+        packed[contactCount++] = ((long) a << 32) | b;
+    }
+
+    private static int hash(long cx, long cy) {
+        long h = cx * 0x9E3779B97F4A7C15L + cy * 0xC2B2AE3D27D4EB4FL;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private void ensureCapacity(int n) {
+        if (order.length < n) {
+            int capacity = Math.max(n, order.length * 2);
+            bucketOf = new int[capacity];
+            order = new int[capacity];
+            sortedCellX = new long[capacity];
+            sortedCellY = new long[capacity];
+            sortedX = new double[capacity];
+            sortedY = new double[capacity];
+            sortedRadius = new double[capacity];
+        }
+        int buckets = Integer.highestOneBit(Math.max(n, 2) - 1) << 2;
+        if (bucketStart.length != buckets + 1) {
+            bucketStart = new int[buckets + 1];
+        }
+    }
+}
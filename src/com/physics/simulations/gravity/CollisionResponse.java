@@ -0,0 +1,279 @@
+package com.physics.simulations.gravity;
+
+import java.awt.Color;
+import java.util.BitSet;
+
+/**
+ * CollisionResponse - bounces or merges the contacts found by a CollisionDetector.
+ *
+ * Merging works on groups rather than pairs: every body touching another
+ * body, directly or through a chain of contacts, ends up in one cluster
+ * (union-find over the contact list), and each cluster becomes a single body
+ * in one go. So three or more bodies touching in the same step merge into one,
+ * and the result does not depend on the order the contacts were found in.
+ *
+ * The merged body is written into the slot of one member (the survivor), the
+ * others are flagged in a bitset of dead indices, and the store is compacted
+ * once at the end. No Planet objects are created.
+ *
+ * Survivor rules:
+ * - a point mass always wins: the lowest-index fixed body survives and stays
+ *   put, keeping its name if it has one
+ * - otherwise the body with the largest radius survives (lowest index on a
+ *   tie) and keeps its texture and name; position and velocity become the
+ *   mass-weighted averages
+ * - mass adds up, the radius is the largest member's, colors are averaged and
+ *   the spin conserves the members' spin angular momentum
+ *
+ * Bouncing stays pairwise: contacts are handled in order, and each body
+ * bounces at most once per step (a point mass can deflect any number).
+ *
+ * All scratch arrays are reused between steps.
+ */
+public class CollisionResponse {
+
+    private static final int NONE = -1;
+
+    private final BitSet dead = new BitSet();
+    private final BitSet collided = new BitSet();
+
+    // Union-find over body indices; the root of a cluster is its lowest index
+    private int[] parent = new int[0];
+
+    // Per-cluster sums, indexed by the root
+    private int[] largest = new int[0];
+    private int[] firstFixed = new int[0];
+    private double[] sumMass = new double[0];
+    private double[] sumX = new double[0], sumY = new double[0];
+    private double[] sumVx = new double[0], sumVy = new double[0];
+    private double[] sumSpin = new double[0];
+    private int[] sumRed = new int[0], sumGreen = new int[0], sumBlue = new int[0];
+    private int[] colors = new int[0];
+    private int[] nameSource = new int[0];
+
+    /**
+     * Bounces or merges every contact of the detector's last detect() call.
+     *
+     * @return true if bodies were merged (so indices changed)
+     */
+    public boolean resolve(BodyStore bodies, CollisionDetector contacts,
+                           boolean bounce, double coefficientOfRestitution) {
+        if (contacts.contactCount == 0) return false;
+        if (bounce) {
+            bounceAll(bodies, contacts, coefficientOfRestitution);
+            return false;
+        }
+        mergeAll(bodies, contacts);
+        return true;
+    }
+
+    private void bounceAll(BodyStore bodies, CollisionDetector contacts, double coefficientOfRestitution) {
+        collided.clear();
+        for (int k = 0; k < contacts.contactCount; k++) {
+            int a = contacts.first[k];
+            int b = contacts.second[k];
+            if (collided.get(a) || collided.get(b)) continue;
+
+            // Point masses never start a collision, planets bounce off them
+            if (bodies.fixed[a]) {
+                bodies.vx[b] *= -coefficientOfRestitution;
+                bodies.vy[b] *= -coefficientOfRestitution;
+                collided.set(b);
+            } else if (bodies.fixed[b]) {
+                bodies.vx[a] *= -coefficientOfRestitution;
+                bodies.vy[a] *= -coefficientOfRestitution;
+                collided.set(a);
+            } else {
+                bouncePair(bodies, a, b, coefficientOfRestitution);
+                collided.set(a);
+                collided.set(b);
+            }
+        }
+    }
+
+    /**
+     * Exchanges momentum along the line between the two centres, as a 1D
+     * collision with restitution e. Bodies that are already separating are
+     * left alone; a planet hitting a point mass is turned back in bounceAll.
+     */
+    private static void bouncePair(BodyStore bodies, int a, int b, double e) {
+        double deltaX = bodies.x[b] - bodies.x[a];
+        double deltaY = bodies.y[b] - bodies.y[a];
+        double distance = Math.sqrt(deltaX * deltaX + deltaY * deltaY);
+        if (distance == 0.0) return;
+        double nx = deltaX / distance;
+        double ny = deltaY / distance;
+
+        double u1 = bodies.vx[a] * nx + bodies.vy[a] * ny;
+        double u2 = bodies.vx[b] * nx + bodies.vy[b] * ny;
+        if (u1 - u2 <= 0) return; // they are separating, no bounce
+
+        double m1 = bodies.mass[a];
+        double m2 = bodies.mass[b];
+        double u1p = ((m1 - e * m2) * u1 + (1 + e) * m2 * u2) / (m1 + m2);
+        double u2p = ((m2 - e * m1) * u2 + (1 + e) * m1 * u1) / (m1 + m2);
+
+        bodies.vx[a] += (u1p - u1) * nx;
+        bodies.vy[a] += (u1p - u1) * ny;
+        bodies.vx[b] += (u2p - u2) * nx;
+        bodies.vy[b] += (u2p - u2) * ny;
+    }
+
+    private void mergeAll(BodyStore bodies, CollisionDetector contacts) {
+        int n = bodies.count;
+        ensureCapacity(n);
+        int contactCount = contacts.contactCount;
+        int[] first = contacts.first, second = contacts.second;
+
+        // Only bodies that touch something take part; give each its own cluster
+        for (int k = 0; k < contactCount; k++) {
+            parent[first[k]] = first[k];
+            parent[second[k]] = second[k];
+        }
+        for (int k = 0; k < contactCount; k++) {
+            union(first[k], second[k]);
+        }
+
+        // The touching bodies in index order, so every sum runs in the same order
+        collided.clear();
+        for (int k = 0; k < contactCount; k++) {
+            collided.set(first[k]);
+            collided.set(second[k]);
+        }
+        for (int i = collided.nextSetBit(0); i >= 0; i = collided.nextSetBit(i + 1)) {
+            if (find(i) == i) startCluster(i);
+        }
+        for (int i = collided.nextSetBit(0); i >= 0; i = collided.nextSetBit(i + 1)) {
+            addToCluster(bodies, find(i), i);
+        }
+
+        dead.clear();
+        for (int i = collided.nextSetBit(0); i >= 0; i = collided.nextSetBit(i + 1)) {
+            int root = find(i);
+            int survivor = firstFixed[root] != NONE ? firstFixed[root] : largest[root];
+            if (i != survivor) {
+                dead.set(i);
+            }
+            if (i == root) {
+                writeSurvivor(bodies, root, survivor);
+            }
+        }
+        bodies.removeDead(dead);
+    }
+
+    private void startCluster(int root) {
+        largest[root] = NONE;
+        firstFixed[root] = NONE;
+        sumMass[root] = 0.0;
+        sumX[root] = 0.0;
+        sumY[root] = 0.0;
+        sumVx[root] = 0.0;
+        sumVy[root] = 0.0;
+        sumSpin[root] = 0.0;
+        sumRed[root] = 0;
+        sumGreen[root] = 0;
+        sumBlue[root] = 0;
+        colors[root] = 0;
+        nameSource[root] = NONE;
+    }
+
+    private void addToCluster(BodyStore bodies, int root, int i) {
+        double mass = bodies.mass[i];
+        double radius = bodies.radius[i];
+        if (largest[root] == NONE || radius > bodies.radius[largest[root]]) {
+            largest[root] = i;
+        }
+        if (bodies.fixed[i] && firstFixed[root] == NONE) {
+            firstFixed[root] = i;
+        }
+        sumMass[root] += mass;
+        sumX[root] += bodies.x[i] * mass;
+        sumY[root] += bodies.y[i] * mass;
+        sumVx[root] += bodies.vx[i] * mass;
+        sumVy[root] += bodies.vy[i] * mass;
+        sumSpin[root] += radius * radius * mass * bodies.spin[i];
+
+        Planet view = bodies.views[i];
+        if (view != null) {
+            if (view.color != null) {
+                sumRed[root] += view.color.getRed();
+                sumGreen[root] += view.color.getGreen();
+                sumBlue[root] += view.color.getBlue();
+                colors[root]++;
+            }
+            if (nameSource[root] == NONE && view.name != null && !view.name.trim().isEmpty()) {
+                nameSource[root] = i;
+            }
+        }
+    }
+
+    /**
+     * Writes the merged cluster into the survivor's slot.
+     */
+    private void writeSurvivor(BodyStore bodies, int root, int survivor) {
+        double mass = sumMass[root];
+        double radius = bodies.radius[largest[root]];
+        boolean fixed = firstFixed[root] != NONE;
+
+        if (!fixed) {
+            bodies.x[survivor] = sumX[root] / mass;
+            bodies.y[survivor] = sumY[root] / mass;
+            bodies.vx[survivor] = sumVx[root] / mass;
+            bodies.vy[survivor] = sumVy[root] / mass;
+            // Spin angular momentum (0.4 m r² ω) is conserved
+            bodies.spin[survivor] = sumSpin[root] / (radius * radius * mass);
+        }
+        bodies.mass[survivor] = mass;
+        bodies.radius[survivor] = radius;
+
+        Planet view = bodies.views[survivor];
+        if (view != null) {
+            if (colors[root] > 0) {
+                int count = colors[root];
+                view.color = new Color(sumRed[root] / count, sumGreen[root] / count, sumBlue[root] / count);
+            }
+            // A point mass keeps its own name if it has one, else takes the first one found
+            boolean named = view.name != null && !view.name.trim().isEmpty();
+            if (fixed && !named && nameSource[root] != NONE) {
+                view.name = bodies.views[nameSource[root]].name;
+            }
+        }
+    }
+
+    private int find(int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private void union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA < rootB) {
+            parent[rootB] = rootA;
+        } else if (rootB < rootA) {
+            parent[rootA] = rootB;
+        }
+    }
+
+    private void ensureCapacity(int n) {
+        if (parent.length >= n) return;
+        int capacity = Math.max(n, parent.length * 2);
+        parent = new int[capacity];
+        largest = new int[capacity];
+        firstFixed = new int[capacity];
+        sumMass = new double[capacity];
+        sumX = new double[capacity];
+        sumY = new double[capacity];
+        sumVx = new double[capacity];
+        sumVy = new double[capacity];
+        sumSpin = new double[capacity];
+        sumRed = new int[capacity];
+        sumGreen = new int[capacity];
+        sumBlue = new int[capacity];
+        colors = new int[capacity];
+        nameSource = new int[capacity];
+    }
+}
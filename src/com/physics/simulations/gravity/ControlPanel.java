@@ -12,16 +12,38 @@ public class ControlPanel extends JPanel {
     // Input fields
     private JTextField massField, radiusField, vxField, vyField, periodField, nameField;
     private JComboBox<String> textureCombo;
-    private JSlider gravitySlider, timeFactorSlider;
+    private JSlider gravitySlider, timeFactorSlider, thetaSlider, orderSlider, meshSlider, workersSlider, physicsRateSlider, frameRateSlider;
+    private JComboBox<String> solverCombo, integratorCombo, spriteCombo, pointCloudCombo;
     private JPanel advancedPanel;
     private boolean advancedExpanded = false;
-    private JCheckBox fixedLocationCheckBox;
+    private boolean showingLoadedSettings = false;  // Mutes the callbacks while sliders follow a loaded state
+    private JCheckBox fixedLocationCheckBox, interpolationCheckBox;
+    private JButton recordButton;
+    private boolean recording = false;
+    private static final String RECORD_LABEL = "Record Trajectory";
+    private static final String STOP_RECORDING_LABEL = "Stop Recording";
     
     // Callbacks
     private Runnable onAddPlanet;
     private Runnable onClearSimulation;
+    private Runnable onSaveState;
+    private Runnable onLoadState;
+    private java.util.function.Consumer<Boolean> onRecordingChanged;
+    private Runnable onOpenReplay;
+    private Runnable onLoadScenario;
     private java.util.function.Consumer<Double> onGravityChanged;
     private java.util.function.Consumer<Double> onTimeFactorChanged;
+    private java.util.function.Consumer<String> onForceSolverChanged;
+    private java.util.function.Consumer<Double> onThetaChanged;
+    private java.util.function.Consumer<Integer> onExpansionOrderChanged;
+    private java.util.function.Consumer<Integer> onMeshSizeChanged;
+    private java.util.function.Consumer<Integer> onWorkersChanged;
+    private java.util.function.Consumer<Integer> onPhysicsRateChanged;
+    private java.util.function.Consumer<String> onIntegratorChanged;
+    private java.util.function.Consumer<Integer> onSpriteRotationsChanged;
+    private java.util.function.Consumer<Integer> onFrameRateChanged;
+    private java.util.function.Consumer<Boolean> onInterpolationChanged;
+    private java.util.function.Consumer<String> onPointCloudChanged;
     
     /**
      * Creates a new control panel with the specified callbacks.
@@ -30,14 +52,62 @@ public class ControlPanel extends JPanel {
      * @param onClearSimulation Called when "Clear Simulation" button is clicked
      * @param onGravityChanged Called when gravity slider changes
      * @param onTimeFactorChanged Called when time factor slider changes
+     * @param onForceSolverChanged Called with the solver name when the force solver changes
+     * @param onThetaChanged Called when the tree solvers' opening angle slider changes
+     * @param onExpansionOrderChanged Called with the order p when the fast multipole order slider changes
+     * @param onMeshSizeChanged Called with the mesh points per side when the particle mesh slider changes
+     * @param onWorkersChanged Called when the worker thread slider changes
+     * @param onPhysicsRateChanged Called with steps per second when the physics rate slider changes
+     * @param onIntegratorChanged Called with the integrator name when the integrator changes
+     * @param onSpriteRotationsChanged Called with the number of sprite rotations (0 = off) when the sprite quality changes
+     * @param onFrameRateChanged Called with frames per second when the frame rate slider changes
+     * @param onInterpolationChanged Called when interpolation between physics states is turned on or off
+     * @param onPointCloudChanged Called with the point cloud mode name when it changes
+     * @param onSaveState Called when "Save State" is clicked
+     * @param onLoadState Called when "Load State" is clicked
+     * @param onRecordingChanged Called with true when "Record Trajectory" is clicked, false when recording is stopped
+     * @param onOpenReplay Called when "Replay Recording" is clicked
+     * @param onLoadScenario Called when "Load Scenario" is clicked
      */
     public ControlPanel(Runnable onAddPlanet, Runnable onClearSimulation, 
                        java.util.function.Consumer<Double> onGravityChanged,
-                       java.util.function.Consumer<Double> onTimeFactorChanged) {
+                       java.util.function.Consumer<Double> onTimeFactorChanged,
+                       java.util.function.Consumer<String> onForceSolverChanged,
+                       java.util.function.Consumer<Double> onThetaChanged,
+                       java.util.function.Consumer<Integer> onExpansionOrderChanged,
+                       java.util.function.Consumer<Integer> onMeshSizeChanged,
+                       java.util.function.Consumer<Integer> onWorkersChanged,
+                       java.util.function.Consumer<Integer> onPhysicsRateChanged,
+                       java.util.function.Consumer<String> onIntegratorChanged,
+                       java.util.function.Consumer<Integer> onSpriteRotationsChanged,
+                       java.util.function.Consumer<Integer> onFrameRateChanged,
+                       java.util.function.Consumer<Boolean> onInterpolationChanged,
+                       java.util.function.Consumer<String> onPointCloudChanged,
+                       Runnable onSaveState,
+                       Runnable onLoadState,
+                       java.util.function.Consumer<Boolean> onRecordingChanged,
+                       Runnable onOpenReplay,
+                       Runnable onLoadScenario) {
         this.onAddPlanet = onAddPlanet;
         this.onClearSimulation = onClearSimulation;
         this.onGravityChanged = onGravityChanged;
         this.onTimeFactorChanged = onTimeFactorChanged;
+        this.onForceSolverChanged = onForceSolverChanged;
+        this.onThetaChanged = onThetaChanged;
+        this.onExpansionOrderChanged = onExpansionOrderChanged;
+        this.onMeshSizeChanged = onMeshSizeChanged;
+        this.onWorkersChanged = onWorkersChanged;
+        this.onPhysicsRateChanged = onPhysicsRateChanged;
+        this.onIntegratorChanged = onIntegratorChanged;
+        this.onSpriteRotationsChanged = onSpriteRotationsChanged;
+        this.onFrameRateChanged = onFrameRateChanged;
+        this.onInterpolationChanged = onInterpolationChanged;
+        this.onPointCloudChanged = onPointCloudChanged;
+        this.onSaveState = onSaveState;
+        this.onLoadState = onLoadState;
+        this.onRecordingChanged = onRecordingChanged;
+        this.onOpenReplay = onOpenReplay;
+        this.onLoadScenario = onLoadScenario;
         
         setupPanel();
     }
@@ -73,6 +143,67 @@ public class ControlPanel extends JPanel {
         bottomPanel.setBackground(new Color(50, 50, 50));
         bottomPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
         
+        // Start over from a scenario file - generated clusters, galaxies and belts
+        JButton loadScenarioButton = new JButton("Load Scenario");
+        loadScenarioButton.setMaximumSize(new Dimension(Integer.MAX_VALUE, loadScenarioButton.getPreferredSize().height));
+        loadScenarioButton.addActionListener(e -> {
+            if (onLoadScenario != null) {
+                onLoadScenario.run();
+            }
+        });
+        removeSpacebarActivation(loadScenarioButton);
+        bottomPanel.add(loadScenarioButton);
+        bottomPanel.add(Box.createVerticalStrut(5));
+        
+        // Save and load the whole simulation
+        JPanel stateButtons = new JPanel(new GridLayout(1, 2, 5, 0));
+        stateButtons.setBackground(new Color(50, 50, 50));
+        stateButtons.setMaximumSize(new Dimension(Integer.MAX_VALUE, 30));
+        JButton saveStateButton = new JButton("Save State");
+        saveStateButton.addActionListener(e -> {
+            if (onSaveState != null) {
+                onSaveState.run();
+            }
+        });
+        removeSpacebarActivation(saveStateButton);
+        stateButtons.add(saveStateButton);
+        JButton loadStateButton = new JButton("Load State");
+        loadStateButton.addActionListener(e -> {
+            if (onLoadState != null) {
+                onLoadState.run();
+            }
+        });
+        removeSpacebarActivation(loadStateButton);
+        stateButtons.add(loadStateButton);
+        bottomPanel.add(stateButtons);
+        bottomPanel.add(Box.createVerticalStrut(5));
+        
+        // Record the trajectories to a file while the simulation runs
+        recordButton = new JButton(RECORD_LABEL);
+        recordButton.setMaximumSize(new Dimension(Integer.MAX_VALUE, recordButton.getPreferredSize().height));
+        recordButton.addActionListener(e -> {
+            boolean record = !recording;
+            showRecording(record);
+            if (onRecordingChanged != null) {
+                onRecordingChanged.accept(record);
+            }
+        });
+        removeSpacebarActivation(recordButton);
+        bottomPanel.add(recordButton);
+        bottomPanel.add(Box.createVerticalStrut(5));
+        
+        // Play a recording back, with a time slider to jump anywhere in it
+        JButton replayButton = new JButton("Replay Recording");
+        replayButton.setMaximumSize(new Dimension(Integer.MAX_VALUE, replayButton.getPreferredSize().height));
+        replayButton.addActionListener(e -> {
+            if (onOpenReplay != null) {
+                onOpenReplay.run();
+            }
+        });
+        removeSpacebarActivation(replayButton);
+        bottomPanel.add(replayButton);
+        bottomPanel.add(Box.createVerticalStrut(5));
+        
         JButton clearSimulationButton = new JButton("Clear Simulation");
         clearSimulationButton.setMaximumSize(new Dimension(Integer.MAX_VALUE, clearSimulationButton.getPreferredSize().height));
         clearSimulationButton.setForeground(Color.RED);
@@ -285,7 +416,7 @@ public class ControlPanel extends JPanel {
         gravitySlider.setBackground(new Color(50, 50, 50));
         gravitySlider.setForeground(Color.WHITE);
         gravitySlider.addChangeListener(e -> {
-            if (onGravityChanged != null) {
+            if (onGravityChanged != null && !showingLoadedSettings) {
                 onGravityChanged.accept((double) gravitySlider.getValue());
             }
         });
@@ -311,7 +442,7 @@ public class ControlPanel extends JPanel {
         timeFactorSlider.setBackground(new Color(50, 50, 50));
         timeFactorSlider.setForeground(Color.WHITE);
         timeFactorSlider.addChangeListener(e -> {
-            if (onTimeFactorChanged != null) {
+            if (onTimeFactorChanged != null && !showingLoadedSettings) {
                 double timeFactor = timeFactorSlider.getValue() / 10.0;
                 onTimeFactorChanged.accept(timeFactor);
             }
@@ -327,12 +458,304 @@ public class ControlPanel extends JPanel {
         });
         panel.add(timeFactorValueLabel);
         
+        panel.add(Box.createVerticalStrut(15));
+        
+        // Physics rate slider
+        JLabel physicsRateLabel = new JLabel("Physics Rate:");
+        physicsRateLabel.setForeground(Color.WHITE);
+        panel.add(physicsRateLabel);
+        
+        physicsRateSlider = new JSlider(60, 1000, 240);
+        physicsRateSlider.setMaximumSize(new Dimension(Integer.MAX_VALUE, physicsRateSlider.getPreferredSize().height));
+        physicsRateSlider.setBackground(new Color(50, 50, 50));
+        physicsRateSlider.setForeground(Color.WHITE);
+        physicsRateSlider.setToolTipText("Physics steps per second - independent of the frame rate");
+        physicsRateSlider.addChangeListener(e -> {
+            if (onPhysicsRateChanged != null) {
+                onPhysicsRateChanged.accept(physicsRateSlider.getValue());
+            }
+        });
+        panel.add(physicsRateSlider);
+        
+        JLabel physicsRateValueLabel = new JLabel("240 steps/s");
+        physicsRateValueLabel.setForeground(Color.LIGHT_GRAY);
+        physicsRateValueLabel.setFont(new Font("Sans-serif", Font.PLAIN, 11));
+        physicsRateSlider.addChangeListener(e -> {
+            physicsRateValueLabel.setText(physicsRateSlider.getValue() + " steps/s");
+        });
+        panel.add(physicsRateValueLabel);
+        
+        panel.add(Box.createVerticalStrut(15));
+        
+        // Frame rate slider
+        JLabel frameRateLabel = new JLabel("Frame Rate:");
+        frameRateLabel.setForeground(Color.WHITE);
+        panel.add(frameRateLabel);
+        
+        frameRateSlider = new JSlider(30, 240, FramePacer.DEFAULT_FPS);
+        frameRateSlider.setMaximumSize(new Dimension(Integer.MAX_VALUE, frameRateSlider.getPreferredSize().height));
+        frameRateSlider.setBackground(new Color(50, 50, 50));
+        frameRateSlider.setForeground(Color.WHITE);
+        frameRateSlider.setToolTipText("Target frames per second - independent of the physics rate");
+        frameRateSlider.addChangeListener(e -> {
+            if (onFrameRateChanged != null) {
+                onFrameRateChanged.accept(frameRateSlider.getValue());
+            }
+        });
+        panel.add(frameRateSlider);
+        
+        JLabel frameRateValueLabel = new JLabel(FramePacer.DEFAULT_FPS + " FPS");
+        frameRateValueLabel.setForeground(Color.LIGHT_GRAY);
+        frameRateValueLabel.setFont(new Font("Sans-serif", Font.PLAIN, 11));
+        frameRateSlider.addChangeListener(e -> {
+            frameRateValueLabel.setText(frameRateSlider.getValue() + " FPS");
+        });
+        panel.add(frameRateValueLabel);
+        
+        interpolationCheckBox = new JCheckBox("Smooth Motion (interpolate)", true);
+        interpolationCheckBox.setForeground(Color.WHITE);
+        interpolationCheckBox.setBackground(new Color(50, 50, 50));
+        interpolationCheckBox.setToolTipText("Draw positions between the last two physics steps - smoother, one step behind");
+        interpolationCheckBox.addActionListener(e -> {
+            if (onInterpolationChanged != null) {
+                onInterpolationChanged.accept(interpolationCheckBox.isSelected());
+            }
+        });
+        removeSpacebarActivation(interpolationCheckBox);
+        panel.add(interpolationCheckBox);
+        
+        panel.add(Box.createVerticalStrut(15));
+        
+        // Integrator
+        JLabel integratorLabel = new JLabel("Integrator:");
+        integratorLabel.setForeground(Color.WHITE);
+        panel.add(integratorLabel);
+        
+        integratorCombo = new JComboBox<>(new String[]{"Semi-implicit Euler", "Velocity Verlet", "Yoshida 4", "RK4", "Adaptive Verlet"});
+        integratorCombo.setSelectedItem("Velocity Verlet");
+        integratorCombo.setMaximumSize(new Dimension(Integer.MAX_VALUE, integratorCombo.getPreferredSize().height));
+        integratorCombo.setAlignmentX(Component.LEFT_ALIGNMENT);
+        integratorCombo.setToolTipText("Higher order is more accurate per step but evaluates the forces more often");
+        integratorCombo.addActionListener(e -> {
+            if (onIntegratorChanged != null) {
+                onIntegratorChanged.accept((String) integratorCombo.getSelectedItem());
+            }
+        });
+        panel.add(integratorCombo);
+        
+        panel.add(Box.createVerticalStrut(15));
+        
+        // Force solver
+        JLabel solverLabel = new JLabel("Force Solver:");
+        solverLabel.setForeground(Color.WHITE);
+        panel.add(solverLabel);
+        
+        solverCombo = new JComboBox<>(new String[]{"Direct Sum", "Barnes-Hut", "Fast Multipole", "Particle Mesh", "P3M"});
+        solverCombo.setMaximumSize(new Dimension(Integer.MAX_VALUE, solverCombo.getPreferredSize().height));
+        solverCombo.setAlignmentX(Component.LEFT_ALIGNMENT);
+        panel.add(solverCombo);
+        panel.add(Box.createVerticalStrut(5));
+        
+        // Opening angle slider for the tree solvers
+        JLabel thetaLabel = new JLabel("Opening Angle (θ):");
+        thetaLabel.setForeground(Color.WHITE);
+        panel.add(thetaLabel);
+        
+        thetaSlider = new JSlider(0, 150, 50); // 0.0 to 1.5 (scaled by 100)
+        thetaSlider.setMaximumSize(new Dimension(Integer.MAX_VALUE, thetaSlider.getPreferredSize().height));
+        thetaSlider.setBackground(new Color(50, 50, 50));
+        thetaSlider.setForeground(Color.WHITE);
+        thetaSlider.setEnabled(false);
+        thetaSlider.setToolTipText("Smaller is more accurate, larger is faster");
+        thetaSlider.addChangeListener(e -> {
+            if (onThetaChanged != null) {
+                onThetaChanged.accept(thetaSlider.getValue() / 100.0);
+            }
+        });
+        panel.add(thetaSlider);
+        
+        JLabel thetaValueLabel = new JLabel("θ = 0.50");
+        thetaValueLabel.setForeground(Color.LIGHT_GRAY);
+        thetaValueLabel.setFont(new Font("Sans-serif", Font.PLAIN, 11));
+        thetaSlider.addChangeListener(e -> {
+            thetaValueLabel.setText(String.format("θ = %.2f", thetaSlider.getValue() / 100.0));
+        });
+        panel.add(thetaValueLabel);
+        panel.add(Box.createVerticalStrut(5));
+        
+        // Fast multipole expansion order slider
+        JLabel orderLabel = new JLabel("Expansion Order (p):");
+        orderLabel.setForeground(Color.WHITE);
+        panel.add(orderLabel);
+        
+        orderSlider = new JSlider(FastMultipoleSolver.MIN_ORDER, FastMultipoleSolver.MAX_ORDER,
+                                  GravityEngine.DEFAULT_EXPANSION_ORDER);
+        orderSlider.setMaximumSize(new Dimension(Integer.MAX_VALUE, orderSlider.getPreferredSize().height));
+        orderSlider.setBackground(new Color(50, 50, 50));
+        orderSlider.setForeground(Color.WHITE);
+        orderSlider.setEnabled(false);
+        orderSlider.setToolTipText("Higher is more accurate, lower is faster");
+        orderSlider.addChangeListener(e -> {
+            if (onExpansionOrderChanged != null && !orderSlider.getValueIsAdjusting()) {
+                onExpansionOrderChanged.accept(orderSlider.getValue());
+            }
+        });
+        panel.add(orderSlider);
+        
+        JLabel orderValueLabel = new JLabel("p = " + GravityEngine.DEFAULT_EXPANSION_ORDER);
+        orderValueLabel.setForeground(Color.LIGHT_GRAY);
+        orderValueLabel.setFont(new Font("Sans-serif", Font.PLAIN, 11));
+        orderSlider.addChangeListener(e -> {
+            orderValueLabel.setText("p = " + orderSlider.getValue());
+        });
+        panel.add(orderValueLabel);
+        panel.add(Box.createVerticalStrut(5));
+        
+        // Particle mesh size slider, in powers of two
+        JLabel meshLabel = new JLabel("Mesh Size:");
+        meshLabel.setForeground(Color.WHITE);
+        panel.add(meshLabel);
+        
+        meshSlider = new JSlider(Integer.numberOfTrailingZeros(ParticleMeshSolver.MIN_MESH_SIZE),
+                                 Integer.numberOfTrailingZeros(ParticleMeshSolver.MAX_MESH_SIZE),
+                                 Integer.numberOfTrailingZeros(GravityEngine.DEFAULT_MESH_SIZE));
+        meshSlider.setMaximumSize(new Dimension(Integer.MAX_VALUE, meshSlider.getPreferredSize().height));
+        meshSlider.setBackground(new Color(50, 50, 50));
+        meshSlider.setForeground(Color.WHITE);
+        meshSlider.setEnabled(false);
+        meshSlider.setToolTipText("Finer meshes resolve smaller structures but take longer");
+        meshSlider.addChangeListener(e -> {
+            if (onMeshSizeChanged != null && !meshSlider.getValueIsAdjusting()) {
+                onMeshSizeChanged.accept(1 << meshSlider.getValue());
+            }
+        });
+        panel.add(meshSlider);
+        
+        JLabel meshValueLabel = new JLabel(GravityEngine.DEFAULT_MESH_SIZE + " × " + GravityEngine.DEFAULT_MESH_SIZE);
+        meshValueLabel.setForeground(Color.LIGHT_GRAY);
+        meshValueLabel.setFont(new Font("Sans-serif", Font.PLAIN, 11));
+        meshSlider.addChangeListener(e -> {
+            int meshSize = 1 << meshSlider.getValue();
+            meshValueLabel.setText(meshSize + " × " + meshSize);
+        });
+        panel.add(meshValueLabel);
+        
+        panel.add(Box.createVerticalStrut(15));
+        
+        // Worker threads slider
+        JLabel workersLabel = new JLabel("Worker Threads:");
+        workersLabel.setForeground(Color.WHITE);
+        panel.add(workersLabel);
+        
+        int cores = Runtime.getRuntime().availableProcessors();
+        workersSlider = new JSlider(1, Math.max(2, cores), 1);
+        workersSlider.setMaximumSize(new Dimension(Integer.MAX_VALUE, workersSlider.getPreferredSize().height));
+        workersSlider.setBackground(new Color(50, 50, 50));
+        workersSlider.setForeground(Color.WHITE);
+        workersSlider.setToolTipText("Threads used to compute gravity - results are identical for any count");
+        workersSlider.addChangeListener(e -> {
+            if (onWorkersChanged != null && !workersSlider.getValueIsAdjusting()) {
+                onWorkersChanged.accept(workersSlider.getValue());
+            }
+        });
+        panel.add(workersSlider);
+        
+        JLabel workersValueLabel = new JLabel("1 of " + cores + " cores");
+        workersValueLabel.setForeground(Color.LIGHT_GRAY);
+        workersValueLabel.setFont(new Font("Sans-serif", Font.PLAIN, 11));
+        workersSlider.addChangeListener(e -> {
+            workersValueLabel.setText(workersSlider.getValue() + " of " + cores + " cores");
+        });
+        panel.add(workersValueLabel);
+        
+        solverCombo.addActionListener(e -> {
+            String selected = (String) solverCombo.getSelectedItem();
+            thetaSlider.setEnabled("Barnes-Hut".equals(selected) || "Fast Multipole".equals(selected));
+            orderSlider.setEnabled("Fast Multipole".equals(selected));
+            meshSlider.setEnabled("Particle Mesh".equals(selected) || "P3M".equals(selected));
+            if (onForceSolverChanged != null) {
+                onForceSolverChanged.accept(selected);
+            }
+        });
+        
+        panel.add(Box.createVerticalStrut(15));
+        
+        // Sprite quality - rotation frames per texture
+        JLabel spriteLabel = new JLabel("Planet Sprites:");
+        spriteLabel.setForeground(Color.WHITE);
+        panel.add(spriteLabel);
+        
+        int[] rotationChoices = SpriteAtlas.ROTATION_CHOICES;
+        String[] spriteItems = new String[rotationChoices.length];
+        for (int i = 0; i < rotationChoices.length; i++) {
+            spriteItems[i] = rotationChoices[i] == 0 ? "Off (exact)" : rotationChoices[i] + " angles";
+        }
+        spriteCombo = new JComboBox<>(spriteItems);
+        spriteCombo.setSelectedItem(SpriteAtlas.DEFAULT_ROTATIONS + " angles");
+        spriteCombo.setMaximumSize(new Dimension(Integer.MAX_VALUE, spriteCombo.getPreferredSize().height));
+        spriteCombo.setAlignmentX(Component.LEFT_ALIGNMENT);
+        spriteCombo.setToolTipText("Pre-rendered rotations per texture - more angles turn more smoothly but use more memory");
+        spriteCombo.addActionListener(e -> {
+            if (onSpriteRotationsChanged != null) {
+                onSpriteRotationsChanged.accept(rotationChoices[spriteCombo.getSelectedIndex()]);
+            }
+        });
+        panel.add(spriteCombo);
+        
+        panel.add(Box.createVerticalStrut(15));
+        
+        // Point cloud - small bodies drawn in one batch
+        JLabel pointCloudLabel = new JLabel("Point Cloud:");
+        pointCloudLabel.setForeground(Color.WHITE);
+        panel.add(pointCloudLabel);
+        
+        PointCloudRenderer.Mode[] cloudModes = PointCloudRenderer.Mode.values();
+        String[] cloudItems = new String[cloudModes.length];
+        for (int i = 0; i < cloudModes.length; i++) {
+            cloudItems[i] = cloudModes[i].getDisplayName();
+        }
+        pointCloudCombo = new JComboBox<>(cloudItems);
+        pointCloudCombo.setSelectedItem(PointCloudRenderer.Mode.COLOR.getDisplayName());
+        pointCloudCombo.setMaximumSize(new Dimension(Integer.MAX_VALUE, pointCloudCombo.getPreferredSize().height));
+        pointCloudCombo.setAlignmentX(Component.LEFT_ALIGNMENT);
+        pointCloudCombo.setToolTipText("Draws small bodies straight into one image - Density and Mass color them by how crowded they are");
+        pointCloudCombo.addActionListener(e -> {
+            if (onPointCloudChanged != null) {
+                onPointCloudChanged.accept((String) pointCloudCombo.getSelectedItem());
+            }
+        });
+        panel.add(pointCloudCombo);
+        
         panel.add(Box.createVerticalGlue());
         
         return panel;
     }
     
     
+    /**
+     * Moves the gravity and time factor sliders to the values of a loaded
+     * state, without sending them back to the simulation (the sliders round).
+     */
+    public void showLoadedSettings(double gravity, double timeFactor) {
+        showingLoadedSettings = true;
+        try {
+            gravitySlider.setValue((int) Math.round(gravity));
+            timeFactorSlider.setValue((int) Math.round(timeFactor * 10));
+        } finally {
+            showingLoadedSettings = false;
+        }
+    }
+
+    /**
+     * Shows whether a trajectory is being recorded, without starting or
+     * stopping anything (e.g. when the file dialog was cancelled).
+     */
+    public void showRecording(boolean recording) {
+        this.recording = recording;
+        recordButton.setText(recording ? STOP_RECORDING_LABEL : RECORD_LABEL);
+        recordButton.setForeground(recording ? Color.RED : null);
+    }
+
     /**
      * Gets planet data from the control fields.
      * 
@@ -393,11 +816,11 @@ public class ControlPanel extends JPanel {
     }
     
     /**
-     * Removes spacebar activation from a button.
+     * Removes spacebar activation from a button or checkbox.
      * This prevents the button from being activated when spacebar is pressed,
      * ensuring spacebar is reserved for pause/resume in the simulation.
      */
-    private void removeSpacebarActivation(JButton button) {
+    private void removeSpacebarActivation(AbstractButton button) {
         // Remove spacebar from button's input map
         InputMap inputMap = button.getInputMap(JComponent.WHEN_FOCUSED);
         KeyStroke spaceKey = KeyStroke.getKeyStroke(KeyEvent.VK_SPACE, 0);
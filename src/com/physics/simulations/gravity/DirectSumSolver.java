@@ -0,0 +1,86 @@
+package com.physics.simulations.gravity;
+
+/**
+ * DirectSumSolver - the exact O(n²) pairwise sum.
+ *
+ * Every body feels every other body. This is the reference the approximate
+ * solvers are measured against.
+ *
+ * The inner loop only touches primitive arrays and has no data-dependent
+ * branches, so it runs without allocating and the JIT is free to unroll it.
+ * Bodies are split across the WorkerPool; each body's sum is computed by a
+ * single task, so the result does not depend on the number of workers.
+ */
+public class DirectSumSolver implements ForceSolver {
+
+    private final WorkerPool workers;
+    private long interactionCount;
+
+    /**
+     * Creates a single-threaded solver.
+     */
+    public DirectSumSolver() {
+        this(new WorkerPool(1));
+    }
+
+    public DirectSumSolver(WorkerPool workers) {
+        this.workers = workers;
+    }
+
+    @Override
+    public void computeAccelerations(BodyStore bodies, double gravitationalConstant) {
+        int n = bodies.count;
+        workers.forEachRange(n, (from, to) -> accelerate(bodies, gravitationalConstant, null, from, to));
+        interactionCount = (long) n * (n - 1);
+    }
+
+    @Override
+    public void computeAccelerations(BodyStore bodies, double gravitationalConstant, int[] targets, int targetCount) {
+        workers.forEachRange(targetCount, (from, to) -> accelerate(bodies, gravitationalConstant, targets, from, to));
+        interactionCount = (long) targetCount * Math.max(bodies.count - 1, 0);
+    }
+
+    /**
+     * Computes the accelerations of bodies [from, to) from all bodies, or of
+     * targets[from..to) when a target list is given.
+     */
+    private static void accelerate(BodyStore bodies, double gravitationalConstant, int[] targets, int from, int to) {
+        int n = bodies.count;
+        double[] x = bodies.x;
+        double[] y = bodies.y;
+        double[] mass = bodies.mass;
+        double[] ax = bodies.ax;
+        double[] ay = bodies.ay;
+
+        for (int k = from; k < to; k++) {
+            int i = targets == null ? k : targets[k];
+            double xi = x[i];
+            double yi = y[i];
+            double sumX = 0.0;
+            double sumY = 0.0;
+
+            for (int j = 0; j < n; j++) {
+                double dx = x[j] - xi;
+                double dy = y[j] - yi;
+                double distSquared = dx * dx + dy * dy;
+                // Zero for the body itself and for exactly coincident bodies
+                double inv = distSquared > 0.0 ? mass[j] / (distSquared * Math.sqrt(distSquared)) : 0.0;
+                sumX += dx * inv;
+                sumY += dy * inv;
+            }
+
+            ax[i] = gravitationalConstant * sumX;
+            ay[i] = gravitationalConstant * sumY;
+        }
+    }
+
+    @Override
+    public long getInteractionCount() {
+        return interactionCount;
+    }
+
+    @Override
+    public String getName() {
+        return "Direct Sum";
+    }
+}
@@ -0,0 +1,807 @@
+package com.physics.simulations.gravity;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * FastMultipoleSolver - O(n) gravity using the fast multipole method.
+ *
+ * Like Barnes-Hut, the bodies are sorted into a quadtree, but a pair of cells
+ * that are far enough apart interacts as a whole: the source cell's multipole
+ * expansion is turned into a local expansion of the field around the target
+ * cell (M2L), which is then passed down the target's subtree and evaluated at
+ * each of its bodies. Each body only ever visits its own leaf, so the cost
+ * grows linearly with the number of bodies.
+ *
+ * The force between bodies falls off as 1/r² (potential 1/r) even though they
+ * move in a plane, so the classic complex-variable 2D method (which assumes a
+ * logarithmic potential) does not apply. The expansions are Cartesian Taylor
+ * series of 1/r in x and y instead, kept up to total order p in multipole and
+ * local terms together (as in Dehnen's method). Higher orders are more
+ * accurate and more expensive; the error falls roughly as theta^p.
+ *
+ * Two cells are far enough apart when the sum of their radii is less than
+ * theta times the distance between their centres of mass. The series only
+ * converge for separated cells, so theta is capped at MAX_THETA; theta = 0
+ * reduces to the exact direct sum. Nearby leaves interact body by body.
+ *
+ * Node and body arrays are reused between steps. The upper levels of the
+ * tree are walked on one thread, which hands the rest of the work to
+ * "task cells" - subtrees whose bodies, expansions and accelerations no other
+ * task touches - split across the WorkerPool. Each task runs the same
+ * operations in the same order however many threads there are, so the
+ * results do not depend on the worker count.
+ */
+public class FastMultipoleSolver implements ForceSolver {
+
+    public static final int MIN_ORDER = 1;
+    public static final int MAX_ORDER = 12;
+
+    /** Largest opening angle used - the expansions diverge for touching cells */
+    static final double MAX_THETA = 0.9;
+
+    /** Bodies per leaf at most */
+    private static final int LEAF_SIZE = 32;
+
+    /** Past this depth coincident bodies share a leaf instead of splitting forever */
+    private static final int MAX_DEPTH = 48;
+
+    /** Roughly how many task cells the work is split into */
+    private static final int TASK_CELLS = 2048;
+
+    /** Body-body interactions that cost about as much as one M2L term */
+    private static final double PAIRS_PER_M2L_TERM = 1.0;
+
+    private static final int EMPTY = -1;
+
+    // Node roles in the parallel walk
+    private static final byte ABOVE_TASKS = 0;
+    private static final byte TASK = 1;
+    private static final byte INSIDE_TASK = 2;
+
+    private double theta;
+    private int order;
+
+    // Expansion tables for the current order - terms are indexed by total
+    // order n, then by the power of y: index(a, b) = n(n+1)/2 + b with n = a + b
+    private int terms;
+    private int[] termA, termB;
+    private int[] shiftBig, shiftSmall, shiftDelta;      // M2M and L2L
+    private double[] shiftCoefficient;
+    private int[] m2lLocal, m2lMultipole, m2lDerivative;
+    private double[] m2lCoefficient;
+    private int[] gradXLocal, gradXPower, gradYLocal, gradYPower;
+    private double[] gradXCoefficient, gradYCoefficient;
+    private int p2pLimit;
+    private double[] upwardPowers;
+
+    // Bodies in tree order
+    private int[] sorted = new int[0];   // tree position -> body index
+    private int[] rank = new int[0];     // body index -> tree position
+    private double[] px = new double[0], py = new double[0], pm = new double[0];
+    private double[] accX = new double[0], accY = new double[0];
+
+    // Nodes - the children of a node are stored consecutively, after it
+    private int[] nodeStart = new int[0], nodeEnd = new int[0];
+    private int[] firstChild = new int[0], childCount = new int[0];
+    private double[] nodeMinX = new double[0], nodeMinY = new double[0], nodeSize = new double[0];
+    private double[] centerX = new double[0], centerY = new double[0], nodeRadius = new double[0];
+    private byte[] role = new byte[0];
+    private double[] multipoles = new double[0], locals = new double[0];
+    private int nodeCount;
+
+    private int[] leaves = new int[0];
+    private int leafCount;
+    private int[] tasks = new int[0];
+    private int taskCount;
+
+    // Cell pairs left for the task phase, as a linked list per task cell
+    private int[] pairHead = new int[0];
+    private int[] pairNext = new int[0], pairSource = new int[0];
+    private int pairCount;
+
+    private final WorkerPool workers;
+
+    /** Body pairs plus cell pairs (M2L) evaluated by the last call */
+    private final AtomicLong interactionCount = new AtomicLong();
+
+    /**
+     * Creates a single-threaded solver.
+     */
+    public FastMultipoleSolver(double theta, int order) {
+        this(theta, order, new WorkerPool(1));
+    }
+
+    public FastMultipoleSolver(double theta, int order, WorkerPool workers) {
+        setTheta(theta);
+        setOrder(order);
+        this.workers = workers;
+    }
+
+    public double getTheta() {
+        return theta;
+    }
+
+    /**
+     * Sets the opening angle. Values above MAX_THETA are used as MAX_THETA.
+     */
+    public void setTheta(double theta) {
+        if (theta < 0) {
+            throw new IllegalArgumentException("theta must be >= 0, got " + theta);
+        }
+        this.theta = theta;
+    }
+
+    public int getOrder() {
+        return order;
+    }
+
+    /**
+     * Sets the expansion order p, from MIN_ORDER to MAX_ORDER.
+     */
+    public void setOrder(int order) {
+        if (order < MIN_ORDER || order > MAX_ORDER) {
+            throw new IllegalArgumentException("order must be between " + MIN_ORDER + " and " + MAX_ORDER
+                                               + ", got " + order);
+        }
+        if (order == this.order) return;
+        this.order = order;
+        buildTables();
+    }
+
+    @Override
+    public void computeAccelerations(BodyStore bodies, double gravitationalConstant) {
+        evaluate(bodies);
+        double[] ax = bodies.ax, ay = bodies.ay;
+        workers.forEachRange(bodies.count, (from, to) -> {
+            for (int k = from; k < to; k++) {
+                ax[sorted[k]] = gravitationalConstant * accX[k];
+                ay[sorted[k]] = gravitationalConstant * accY[k];
+            }
+        });
+    }
+
+    /**
+     * Evaluates the whole field, since the expansions serve every body at
+     * once, and writes only the listed bodies.
+     */
+    @Override
+    public void computeAccelerations(BodyStore bodies, double gravitationalConstant, int[] targets, int targetCount) {
+        if (targetCount == 0) {
+            interactionCount.set(0);
+            return;
+        }
+        evaluate(bodies);
+        for (int k = 0; k < targetCount; k++) {
+            int i = targets[k];
+            bodies.ax[i] = gravitationalConstant * accX[rank[i]];
+            bodies.ay[i] = gravitationalConstant * accY[rank[i]];
+        }
+    }
+
+    /**
+     * Fills accX/accY (in tree order, without G) for every body.
+     */
+    private void evaluate(BodyStore bodies) {
+        interactionCount.set(0);
+        int n = bodies.count;
+        if (n == 0) return;
+
+        buildTree(bodies);
+        workers.forEachRange(leafCount, (from, to) -> {
+            double[] powers = new double[terms];
+            for (int l = from; l < to; l++) {
+                leafMultipole(leaves[l], powers);
+            }
+        });
+        for (int node = nodeCount - 1; node >= 0; node--) {
+            if (childCount[node] > 0) {
+                combineChildren(node);
+            }
+        }
+
+        Arrays.fill(locals, 0, nodeCount * terms, 0.0);
+        Arrays.fill(accX, 0, n, 0.0);
+        Arrays.fill(accY, 0, n, 0.0);
+        markTasks(n);
+
+        // Upper levels on this thread, deferring everything below the task cells
+        Scratch scratch = new Scratch(terms);
+        pairCount = 0;
+        interactAbove(0, 0, scratch);
+        for (int node = 0; node < nodeCount; node++) {
+            if (role[node] == ABOVE_TASKS) {
+                for (int c = firstChild[node]; c < firstChild[node] + childCount[node]; c++) {
+                    shiftLocal(node, c, scratch);
+                }
+            }
+        }
+        interactionCount.addAndGet(scratch.interactions);
+
+        workers.forEachRange(taskCount, (from, to) -> {
+            Scratch taskScratch = new Scratch(terms);
+            for (int t = from; t < to; t++) {
+                int task = tasks[t];
+                for (int pair = pairHead[task]; pair != EMPTY; pair = pairNext[pair]) {
+                    interact(task, pairSource[pair], taskScratch);
+                }
+                passDown(task, taskScratch);
+            }
+            interactionCount.addAndGet(taskScratch.interactions);
+        });
+    }
+
+    /**
+     * Walks target/source cell pairs above the task cells. Only targets are
+     * split here, so whatever reaches a task cell can be handed to its task.
+     */
+    private void interactAbove(int target, int source, Scratch scratch) {
+        if (role[target] == TASK) {
+            if (pairCount == pairSource.length) {
+                int capacity = Math.max(64, pairCount * 2);
+                pairSource = Arrays.copyOf(pairSource, capacity);
+                pairNext = Arrays.copyOf(pairNext, capacity);
+            }
+            pairSource[pairCount] = source;
+            pairNext[pairCount] = pairHead[target];
+            pairHead[target] = pairCount++;
+            return;
+        }
+        if (target != source && separated(target, source)) {
+            multipoleToLocal(source, target, scratch);
+            return;
+        }
+        for (int c = firstChild[target]; c < firstChild[target] + childCount[target]; c++) {
+            interactAbove(c, source, scratch);
+        }
+    }
+
+    /**
+     * Adds the field of source's bodies to target's local expansions and
+     * bodies, splitting the larger of the two cells until they are far
+     * enough apart or small enough to sum directly.
+     */
+    private void interact(int target, int source, Scratch scratch) {
+        long pairs = (long) (nodeEnd[target] - nodeStart[target]) * (nodeEnd[source] - nodeStart[source]);
+        if (target == source) {
+            if (childCount[target] == 0 || pairs <= p2pLimit) {
+                direct(target, source, scratch);
+                return;
+            }
+            int first = firstChild[target], end = first + childCount[target];
+            for (int a = first; a < end; a++) {
+                for (int b = first; b < end; b++) {
+                    interact(a, b, scratch);
+                }
+            }
+            return;
+        }
+        if (pairs <= p2pLimit) {
+            direct(target, source, scratch);
+            return;
+        }
+        if (separated(target, source)) {
+            multipoleToLocal(source, target, scratch);
+            return;
+        }
+        boolean targetLeaf = childCount[target] == 0;
+        boolean sourceLeaf = childCount[source] == 0;
+        if (targetLeaf && sourceLeaf) {
+            direct(target, source, scratch);
+        } else if (!targetLeaf && (sourceLeaf || nodeRadius[target] >= nodeRadius[source])) {
+            for (int c = firstChild[target]; c < firstChild[target] + childCount[target]; c++) {
+                interact(c, source, scratch);
+            }
+        } else {
+            for (int c = firstChild[source]; c < firstChild[source] + childCount[source]; c++) {
+                interact(target, c, scratch);
+            }
+        }
+    }
+
+    private boolean separated(int a, int b) {
+        double dx = centerX[a] - centerX[b];
+        double dy = centerY[a] - centerY[b];
+        double reach = nodeRadius[a] + nodeRadius[b];
+        double limit = Math.min(theta, MAX_THETA);
+        return reach * reach < limit * limit * (dx * dx + dy * dy);
+    }
+
+    /**
+     * Exact pairwise sum of source's bodies acting on target's bodies.
+     */
+    private void direct(int target, int source, Scratch scratch) {
+        int sourceStart = nodeStart[source], sourceEnd = nodeEnd[source];
+        for (int i = nodeStart[target]; i < nodeEnd[target]; i++) {
+            double xi = px[i];
+            double yi = py[i];
+            double sumX = 0.0;
+            double sumY = 0.0;
+            for (int j = sourceStart; j < sourceEnd; j++) {
+                double dx = px[j] - xi;
+                double dy = py[j] - yi;
+                double distSquared = dx * dx + dy * dy;
+                // Zero for the body itself and for exactly coincident bodies
+                double inv = distSquared > 0.0 ? pm[j] / (distSquared * Math.sqrt(distSquared)) : 0.0;
+                sumX += dx * inv;
+                sumY += dy * inv;
+            }
+            accX[i] += sumX;
+            accY[i] += sumY;
+        }
+        scratch.interactions += (long) (nodeEnd[target] - nodeStart[target]) * (sourceEnd - sourceStart);
+    }
+
+    /**
+     * M2L: adds the field of source's multipole expansion to target's local expansion.
+     */
+    private void multipoleToLocal(int source, int target, Scratch scratch) {
+        double[] t = scratch.derivatives;
+        derivatives(centerX[target] - centerX[source], centerY[target] - centerY[source], t);
+        int m = source * terms;
+        int l = target * terms;
+        for (int e = 0; e < m2lCoefficient.length; e++) {
+            locals[l + m2lLocal[e]] += m2lCoefficient[e] * multipoles[m + m2lMultipole[e]] * t[m2lDerivative[e]];
+        }
+        scratch.interactions++;
+    }
+
+    /**
+     * Taylor coefficients of 1/|r| at r = (x, y): t[index(a, b)] is the
+     * (a, b)-th partial derivative divided by a! b!. They follow from the
+     * recurrence n r² t_k = -(2n - 1) Σ r_i t_(k - e_i) - (n - 1) Σ t_(k - 2e_i),
+     * where n is the total order of k.
+     */
+    private void derivatives(double x, double y, double[] t) {
+        double distSquared = x * x + y * y;
+        t[0] = 1.0 / Math.sqrt(distSquared);
+        double inverseSquared = 1.0 / distSquared;
+        for (int n = 1; n <= order; n++) {
+            int base = n * (n + 1) / 2;
+            int previous = (n - 1) * n / 2;
+            int before = (n - 2) * (n - 1) / 2;
+            double first = -(2 * n - 1) * inverseSquared / n;
+            double second = -(n - 1) * inverseSquared / n;
+            for (int b = 0; b <= n; b++) {
+                int a = n - b;
+                double sum = 0.0;
+                if (a > 0) sum += first * x * t[previous + b];
+                if (b > 0) sum += first * y * t[previous + b - 1];
+                if (n >= 2) {
+                    if (a > 1) sum += second * t[before + b];
+                    if (b > 1) sum += second * t[before + b - 2];
+                }
+                t[base + b] = sum;
+            }
+        }
+    }
+
+    /**
+     * L2L and L2P: hands a task cell's local expansion down its subtree and
+     * evaluates it at the bodies of its leaves.
+     */
+    private void passDown(int node, Scratch scratch) {
+        int first = firstChild[node];
+        if (childCount[node] == 0) {
+            evaluateLocal(node, scratch);
+            return;
+        }
+        for (int c = first; c < first + childCount[node]; c++) {
+            shiftLocal(node, c, scratch);
+            passDown(c, scratch);
+        }
+    }
+
+    /**
+     * L2L: re-centres parent's local expansion on child and adds it there.
+     */
+    private void shiftLocal(int parent, int child, Scratch scratch) {
+        double[] powers = scratch.powers;
+        monomials(centerX[child] - centerX[parent], centerY[child] - centerY[parent], order, powers);
+        int from = parent * terms;
+        int to = child * terms;
+        for (int e = 0; e < shiftCoefficient.length; e++) {
+            locals[to + shiftSmall[e]] += shiftCoefficient[e] * locals[from + shiftBig[e]] * powers[shiftDelta[e]];
+        }
+    }
+
+    /**
+     * L2P: adds the gradient of leaf's local expansion to each of its bodies.
+     */
+    private void evaluateLocal(int leaf, Scratch scratch) {
+        double[] powers = scratch.powers;
+        int l = leaf * terms;
+        for (int i = nodeStart[leaf]; i < nodeEnd[leaf]; i++) {
+            monomials(px[i] - centerX[leaf], py[i] - centerY[leaf], order - 1, powers);
+            double gx = 0.0, gy = 0.0;
+            for (int e = 0; e < gradXCoefficient.length; e++) {
+                gx += gradXCoefficient[e] * locals[l + gradXLocal[e]] * powers[gradXPower[e]];
+            }
+            for (int e = 0; e < gradYCoefficient.length; e++) {
+                gy += gradYCoefficient[e] * locals[l + gradYLocal[e]] * powers[gradYPower[e]];
+            }
+            accX[i] += gx;
+            accY[i] += gy;
+        }
+    }
+
+    /**
+     * x^a y^b for every term up to maxOrder, in term order.
+     */
+    private static void monomials(double x, double y, int maxOrder, double[] powers) {
+        powers[0] = 1.0;
+        for (int n = 1; n <= maxOrder; n++) {
+            int base = n * (n + 1) / 2;
+            int previous = (n - 1) * n / 2;
+            // x^n, then every other term is the one below it times y
+            powers[base] = powers[previous] * x;
+            for (int b = 1; b <= n; b++) {
+                powers[base + b] = powers[previous + b - 1] * y;
+            }
+        }
+    }
+
+    /**
+     * P2M: the centre of mass, radius and multipole moments of a leaf.
+     */
+    private void leafMultipole(int leaf, double[] powers) {
+        int start = nodeStart[leaf], end = nodeEnd[leaf];
+        double mass = 0.0, mx = 0.0, my = 0.0;
+        for (int i = start; i < end; i++) {
+            mass += pm[i];
+            mx += pm[i] * px[i];
+            my += pm[i] * py[i];
+        }
+        double cx = mass > 0 ? mx / mass : nodeMinX[leaf] + 0.5 * nodeSize[leaf];
+        double cy = mass > 0 ? my / mass : nodeMinY[leaf] + 0.5 * nodeSize[leaf];
+        centerX[leaf] = cx;
+        centerY[leaf] = cy;
+
+        int m = leaf * terms;
+        Arrays.fill(multipoles, m, m + terms, 0.0);
+        double radiusSquared = 0.0;
+        for (int i = start; i < end; i++) {
+            double dx = px[i] - cx;
+            double dy = py[i] - cy;
+            radiusSquared = Math.max(radiusSquared, dx * dx + dy * dy);
+            monomials(dx, dy, order, powers);
+            for (int k = 0; k < terms; k++) {
+                multipoles[m + k] += pm[i] * powers[k];
+            }
+        }
+        nodeRadius[leaf] = Math.sqrt(radiusSquared);
+    }
+
+    /**
+     * M2M: the centre of mass, radius and multipole moments of an inner node,
+     * from its children's.
+     */
+    private void combineChildren(int node) {
+        int first = firstChild[node], end = first + childCount[node];
+        double mass = 0.0, mx = 0.0, my = 0.0;
+        for (int c = first; c < end; c++) {
+            double childMass = multipoles[c * terms];
+            mass += childMass;
+            mx += childMass * centerX[c];
+            my += childMass * centerY[c];
+        }
+        double cx = mass > 0 ? mx / mass : nodeMinX[node] + 0.5 * nodeSize[node];
+        double cy = mass > 0 ? my / mass : nodeMinY[node] + 0.5 * nodeSize[node];
+        centerX[node] = cx;
+        centerY[node] = cy;
+
+        // Every body is inside the node's box, so its farthest corner bounds the radius too
+        double cornerX = Math.max(cx - nodeMinX[node], nodeMinX[node] + nodeSize[node] - cx);
+        double cornerY = Math.max(cy - nodeMinY[node], nodeMinY[node] + nodeSize[node] - cy);
+        double radius = Math.sqrt(cornerX * cornerX + cornerY * cornerY);
+        double childReach = 0.0;
+
+        int m = node * terms;
+        Arrays.fill(multipoles, m, m + terms, 0.0);
+        double[] powers = upwardPowers;
+        for (int c = first; c < end; c++) {
+            double sx = centerX[c] - cx;
+            double sy = centerY[c] - cy;
+            childReach = Math.max(childReach, Math.sqrt(sx * sx + sy * sy) + nodeRadius[c]);
+            monomials(sx, sy, order, powers);
+            int from = c * terms;
+            for (int e = 0; e < shiftCoefficient.length; e++) {
+                multipoles[m + shiftBig[e]] += shiftCoefficient[e] * multipoles[from + shiftSmall[e]] * powers[shiftDelta[e]];
+            }
+        }
+        nodeRadius[node] = Math.min(radius, childReach);
+    }
+
+    /**
+     * Sorts the bodies into the tree and copies them into tree order.
+     */
+    private void buildTree(BodyStore bodies) {
+        int n = bodies.count;
+        if (sorted.length < n) {
+            int capacity = Math.max(n, sorted.length * 2);
+            sorted = new int[capacity];
+            rank = new int[capacity];
+            px = new double[capacity];
+            py = new double[capacity];
+            pm = new double[capacity];
+            accX = new double[capacity];
+            accY = new double[capacity];
+        }
+        double[] x = bodies.x, y = bodies.y;
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            sorted[i] = i;
+            minX = Math.min(minX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxX = Math.max(maxX, x[i]);
+            maxY = Math.max(maxY, y[i]);
+        }
+        // Square root node, padded slightly so the max edge is inside
+        double size = Math.max(maxX - minX, maxY - minY);
+        size = size > 0 ? size * 1.0001 : 1.0;
+
+        nodeCount = 0;
+        leafCount = 0;
+        allocateNode(0, n, minX, minY, size);
+        split(0, 0, x, y);
+
+        double[] mass = bodies.mass;
+        for (int k = 0; k < n; k++) {
+            int i = sorted[k];
+            rank[i] = k;
+            px[k] = x[i];
+            py[k] = y[i];
+            pm[k] = mass[i];
+        }
+    }
+
+    /**
+     * Splits a node into its non-empty quadrants, recursively, reordering
+     * sorted[] so each node's bodies are contiguous.
+     */
+    private void split(int node, int depth, double[] x, double[] y) {
+        int start = nodeStart[node], end = nodeEnd[node];
+        if (end - start <= LEAF_SIZE || depth >= MAX_DEPTH) {
+            addLeaf(node);
+            return;
+        }
+        double half = nodeSize[node] * 0.5;
+        double midX = nodeMinX[node] + half;
+        double midY = nodeMinY[node] + half;
+        int middle = partition(start, end, y, midY);
+        int lowerMiddle = partition(start, middle, x, midX);
+        int upperMiddle = partition(middle, end, x, midX);
+        int[] bounds = {start, lowerMiddle, middle, upperMiddle, end};
+
+        int first = nodeCount;
+        for (int q = 0; q < 4; q++) {
+            if (bounds[q + 1] > bounds[q]) {
+                allocateNode(bounds[q], bounds[q + 1], nodeMinX[node] + ((q & 1) != 0 ? half : 0.0),
+                             nodeMinY[node] + ((q & 2) != 0 ? half : 0.0), half);
+            }
+        }
+        firstChild[node] = first;
+        childCount[node] = nodeCount - first;
+        for (int c = first; c < first + childCount[node]; c++) {
+            split(c, depth + 1, x, y);
+        }
+    }
+
+    /**
+     * Moves the bodies of sorted[start, end) with coordinate below mid to the
+     * front and returns where the rest begin.
+     */
+    private int partition(int start, int end, double[] coordinate, double mid) {
+        int low = start, high = end - 1;
+        while (low <= high) {
+            if (coordinate[sorted[low]] < mid) {
+                low++;
+            } else {
+                int swap = sorted[low];
+                sorted[low] = sorted[high];
+                sorted[high--] = swap;
+            }
+        }
+        return low;
+    }
+
+    private void addLeaf(int node) {
+        if (leafCount == leaves.length) {
+            leaves = Arrays.copyOf(leaves, Math.max(64, leafCount * 2));
+        }
+        leaves[leafCount++] = node;
+    }
+
+    /**
+     * Picks the task cells: the largest nodes holding at most n / TASK_CELLS
+     * bodies (and at least a few leaves' worth), or leaves above that.
+     */
+    private void markTasks(int n) {
+        int taskSize = Math.max(4 * LEAF_SIZE, n / TASK_CELLS);
+        taskCount = 0;
+        Arrays.fill(pairHead, 0, nodeCount, EMPTY);
+        for (int node = 0; node < nodeCount; node++) {
+            role[node] = INSIDE_TASK;
+        }
+        markTasks(0, taskSize);
+    }
+
+    private void markTasks(int node, int taskSize) {
+        if (childCount[node] == 0 || nodeEnd[node] - nodeStart[node] <= taskSize) {
+            role[node] = TASK;
+            if (taskCount == tasks.length) {
+                tasks = Arrays.copyOf(tasks, Math.max(64, taskCount * 2));
+            }
+            tasks[taskCount++] = node;
+            return;
+        }
+        role[node] = ABOVE_TASKS;
+        for (int c = firstChild[node]; c < firstChild[node] + childCount[node]; c++) {
+            markTasks(c, taskSize);
+        }
+    }
+
+    private int allocateNode(int start, int end, double minX, double minY, double size) {
+        if (nodeCount == nodeStart.length) {
+            growNodes(Math.max(64, nodeCount * 2));
+        }
+        int node = nodeCount++;
+        nodeStart[node] = start;
+        nodeEnd[node] = end;
+        nodeMinX[node] = minX;
+        nodeMinY[node] = minY;
+        nodeSize[node] = size;
+        firstChild[node] = EMPTY;
+        childCount[node] = 0;
+        return node;
+    }
+
+    private void growNodes(int capacity) {
+        nodeStart = Arrays.copyOf(nodeStart, capacity);
+        nodeEnd = Arrays.copyOf(nodeEnd, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        childCount = Arrays.copyOf(childCount, capacity);
+        nodeMinX = Arrays.copyOf(nodeMinX, capacity);
+        nodeMinY = Arrays.copyOf(nodeMinY, capacity);
+        nodeSize = Arrays.copyOf(nodeSize, capacity);
+        centerX = Arrays.copyOf(centerX, capacity);
+        centerY = Arrays.copyOf(centerY, capacity);
+        nodeRadius = Arrays.copyOf(nodeRadius, capacity);
+        role = Arrays.copyOf(role, capacity);
+        pairHead = Arrays.copyOf(pairHead, capacity);
+        multipoles = Arrays.copyOf(multipoles, capacity * terms);
+        locals = Arrays.copyOf(locals, capacity * terms);
+    }
+
+    /**
+     * Precomputes which terms combine with which, and with what factor, in
+     * the shift (M2M, L2L), M2L and gradient (L2P) sums for the current order.
+     */
+    private void buildTables() {
+        int p = order;
+        terms = (p + 1) * (p + 2) / 2;
+        termA = new int[terms];
+        termB = new int[terms];
+        for (int n = 0; n <= p; n++) {
+            for (int b = 0; b <= n; b++) {
+                termA[index(n - b, b)] = n - b;
+                termB[index(n - b, b)] = b;
+            }
+        }
+        double[][] binomial = new double[2 * p + 1][2 * p + 1];
+        for (int n = 0; n <= 2 * p; n++) {
+            binomial[n][0] = 1.0;
+            for (int k = 1; k <= n; k++) {
+                binomial[n][k] = binomial[n - 1][k - 1] + (k <= n - 1 ? binomial[n - 1][k] : 0.0);
+            }
+        }
+
+        // Shifts: a term (big) gets C(big, small) times (shift)^(big - small) of every term at or below it
+        int shifts = 0;
+        for (int big = 0; big < terms; big++) {
+            shifts += (termA[big] + 1) * (termB[big] + 1);
+        }
+        shiftBig = new int[shifts];
+        shiftSmall = new int[shifts];
+        shiftDelta = new int[shifts];
+        shiftCoefficient = new double[shifts];
+        int e = 0;
+        for (int big = 0; big < terms; big++) {
+            for (int a = 0; a <= termA[big]; a++) {
+                for (int b = 0; b <= termB[big]; b++) {
+                    shiftBig[e] = big;
+                    shiftSmall[e] = index(a, b);
+                    shiftDelta[e] = index(termA[big] - a, termB[big] - b);
+                    shiftCoefficient[e] = binomial[termA[big]][a] * binomial[termB[big]][b];
+                    e++;
+                }
+            }
+        }
+
+        // M2L: local term β gets (-1)^|α| C(α + β, α) M_α T_(α + β) for |α| + |β| <= p
+        int m2l = 0;
+        for (int local = 0; local < terms; local++) {
+            int remaining = p - termA[local] - termB[local];
+            m2l += (remaining + 1) * (remaining + 2) / 2;
+        }
+        m2lLocal = new int[m2l];
+        m2lMultipole = new int[m2l];
+        m2lDerivative = new int[m2l];
+        m2lCoefficient = new double[m2l];
+        e = 0;
+        for (int local = 0; local < terms; local++) {
+            int la = termA[local], lb = termB[local];
+            for (int multipole = 0; multipole < terms; multipole++) {
+                int ma = termA[multipole], mb = termB[multipole];
+                if (la + lb + ma + mb > p) continue;
+                m2lLocal[e] = local;
+                m2lMultipole[e] = multipole;
+                m2lDerivative[e] = index(la + ma, lb + mb);
+                m2lCoefficient[e] = ((ma + mb) % 2 == 0 ? 1.0 : -1.0)
+                                    * binomial[la + ma][ma] * binomial[lb + mb][mb];
+                e++;
+            }
+        }
+
+        // L2P: d/dx of L_(a,b) x^a y^b is a L_(a,b) x^(a-1) y^b
+        int xCount = 0, yCount = 0;
+        for (int k = 0; k < terms; k++) {
+            if (termA[k] > 0) xCount++;
+            if (termB[k] > 0) yCount++;
+        }
+        gradXLocal = new int[xCount];
+        gradXPower = new int[xCount];
+        gradXCoefficient = new double[xCount];
+        gradYLocal = new int[yCount];
+        gradYPower = new int[yCount];
+        gradYCoefficient = new double[yCount];
+        int ex = 0, ey = 0;
+        for (int k = 0; k < terms; k++) {
+            if (termA[k] > 0) {
+                gradXLocal[ex] = k;
+                gradXPower[ex] = index(termA[k] - 1, termB[k]);
+                gradXCoefficient[ex++] = termA[k];
+            }
+            if (termB[k] > 0) {
+                gradYLocal[ey] = k;
+                gradYPower[ey] = index(termA[k], termB[k] - 1);
+                gradYCoefficient[ey++] = termB[k];
+            }
+        }
+
+        upwardPowers = new double[terms];
+        p2pLimit = (int) Math.max(LEAF_SIZE, PAIRS_PER_M2L_TERM * m2l);
+        multipoles = new double[nodeStart.length * terms];
+        locals = new double[nodeStart.length * terms];
+    }
+
+    private static int index(int a, int b) {
+        int n = a + b;
+        return n * (n + 1) / 2 + b;
+    }
+
+    /**
+     * Per-thread working arrays.
+     */
+    private static final class Scratch {
+        final double[] derivatives;
+        final double[] powers;
+        long interactions;
+
+        Scratch(int terms) {
+            derivatives = new double[terms];
+            powers = new double[terms];
+        }
+    }
+
+    @Override
+    public long getInteractionCount() {
+        return interactionCount.get();
+    }
+
+    @Override
+    public String getName() {
+        return "Fast Multipole";
+    }
+}
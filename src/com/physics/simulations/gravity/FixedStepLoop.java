@@ -0,0 +1,149 @@
+package com.physics.simulations.gravity;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleConsumer;
+
+/**
+ * FixedStepLoop - runs the physics on its own thread with a fixed time step.
+ *
+ * Real time is collected in an accumulator and spent in whole steps of
+ * 1 / stepRate seconds, so the physics always sees the same dt no matter how
+ * fast the screen repaints. After each batch of steps the loop publishes a
+ * snapshot for the renderer, then sleeps until the next step is due.
+ *
+ * If the steps take longer than real time (a very heavy scene), the backlog is
+ * capped so the loop slows the simulation down instead of falling further and
+ * further behind. A batch also stops once stepping has taken longer than
+ * MAX_BATCH_NANOS or one step's worth of real time, dropping the rest of the
+ * backlog, so the renderer still gets new snapshots and pausing or changing
+ * settings takes effect between steps rather than after seconds of catching up.
+ */
+public class FixedStepLoop implements Runnable {
+
+    /** Most real time carried into one wake-up - anything beyond is dropped */
+    private static final long MAX_BACKLOG_NANOS = 250_000_000L;
+
+    /** Real time one batch may spend stepping before it publishes - about a frame */
+    private static final long MAX_BATCH_NANOS = 16_000_000L;
+
+    private final BooleanSupplier beforeSteps;
+    private final DoubleConsumer step;
+    private final Runnable publish;
+    private final BooleanSupplier paused;
+
+    private volatile int stepRate;
+    private volatile boolean running;
+    private volatile double measuredStepRate;
+    private Thread thread;
+
+    /**
+     * @param beforeSteps Runs pending changes; returns true if anything changed
+     * @param step Advances the simulation by the given number of seconds
+     * @param publish Publishes the current state for the renderer
+     * @param paused Returns true while the simulation should not advance
+     * @param stepRate Physics steps per second
+     */
+    public FixedStepLoop(BooleanSupplier beforeSteps, DoubleConsumer step, Runnable publish,
+                         BooleanSupplier paused, int stepRate) {
+        this.beforeSteps = beforeSteps;
+        this.step = step;
+        this.publish = publish;
+        this.paused = paused;
+        setStepRate(stepRate);
+    }
+
+    public int getStepRate() {
+        return stepRate;
+    }
+
+    public void setStepRate(int stepRate) {
+        if (stepRate < 1) {
+            throw new IllegalArgumentException("stepRate must be >= 1, got " + stepRate);
+        }
+        this.stepRate = stepRate;
+    }
+
+    /**
+     * @return Steps actually run per second, measured over the last second
+     */
+    public double getMeasuredStepRate() {
+        return measuredStepRate;
+    }
+
+    public synchronized void start() {
+        if (thread != null) return;
+        running = true;
+        thread = new Thread(this, "gravity-simulation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the loop and waits for the current step to finish.
+     */
+    public synchronized void stop() {
+        if (thread == null) return;
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+
+    @Override
+    public void run() {
+        long previous = System.nanoTime();
+        long accumulator = 0;
+        long rateWindowStart = previous;
+        int stepsInWindow = 0;
+
+        while (running) {
+            long stepNanos = 1_000_000_000L / stepRate;
+            long now = System.nanoTime();
+            long elapsed = now - previous;
+            previous = now;
+
+            boolean changed = beforeSteps.getAsBoolean();
+
+            if (paused.getAsBoolean()) {
+                accumulator = 0;
+            } else {
+                accumulator += Math.min(elapsed, MAX_BACKLOG_NANOS);
+                double dt = stepNanos / 1e9;
+                long batchLimit = Math.max(MAX_BATCH_NANOS, stepNanos);
+                long batchStart = System.nanoTime();
+                while (accumulator >= stepNanos && running) {
+                    step.accept(dt);
+                    accumulator -= stepNanos;
+                    stepsInWindow++;
+                    changed = true;
+                    if (paused.getAsBoolean()) {
+                        accumulator = 0;
+                    } else if (System.nanoTime() - batchStart >= batchLimit) {
+                        // Behind real time - slow the simulation down rather than catch up
+                        accumulator = Math.min(accumulator, stepNanos - 1);
+                    }
+                }
+            }
+
+            if (changed) {
+                publish.run();
+            }
+
+            if (now - rateWindowStart >= 1_000_000_000L) {
+                measuredStepRate = stepsInWindow * 1e9 / (now - rateWindowStart);
+                rateWindowStart = now;
+                stepsInWindow = 0;
+            }
+
+            long wait = stepNanos - accumulator;
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.physics.simulations.gravity;
+
+/**
+ * ForceSolver - computes the gravitational acceleration acting on every body.
+ *
+ * The integrator asks the active solver for accelerations once or more per
+ * step, so the pairwise loop can be swapped for an approximate method
+ * (Barnes-Hut) without touching the integration or collision code.
+ */
+public interface ForceSolver {
+
+    /**
+     * Computes the acceleration of each body caused by all the other bodies
+     * and writes it into bodies.ax and bodies.ay. Fixed bodies (PointMass)
+     * act as attractors like any other body; the caller simply ignores the
+     * acceleration computed for them.
+     *
+     * @param bodies All planets and point masses in the simulation
+     * @param gravitationalConstant The gravitational constant G
+     */
+    void computeAccelerations(BodyStore bodies, double gravitationalConstant);
+
+    /**
+     * Computes the accelerations of only the listed bodies, still caused by
+     * all bodies. Entries of ax/ay for bodies that are not listed are left
+     * as they were. Used by block timestepping, where only the bodies whose
+     * substep ends are evaluated.
+     *
+     * @param targets Indices of the bodies to evaluate
+     * @param targetCount Number of entries of targets to use
+     */
+    void computeAccelerations(BodyStore bodies, double gravitationalConstant, int[] targets, int targetCount);
+
+    /**
+     * @return Body-body (or body-node) interactions evaluated by the last call
+     */
+    long getInteractionCount();
+
+    /**
+     * @return Display name of the solver
+     */
+    String getName();
+}
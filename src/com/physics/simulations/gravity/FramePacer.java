@@ -0,0 +1,112 @@
+package com.physics.simulations.gravity;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * FramePacer - spaces rendered frames evenly at a target frame rate.
+ *
+ * Frames are due on a fixed schedule of 1 / targetFps seconds. The render
+ * thread sleeps until the last millisecond before a frame is due and spins
+ * the rest of the way, since sleeping alone is only accurate to about a
+ * millisecond. If a frame is late by more than a whole period, the missed
+ * frames are counted as dropped and the schedule restarts from now rather
+ * than rendering a burst of frames to catch up.
+ *
+ * The pacer also measures the frame rate actually reached, for the HUD.
+ */
+public class FramePacer {
+
+    public static final int DEFAULT_FPS = 60;
+
+    /** How long before the deadline to stop sleeping and start spinning */
+    private static final long SPIN_NANOS = 1_000_000L;
+
+    private volatile int targetFps;
+
+    private long nextFrame;
+    private volatile long droppedFrames;
+
+    // Frame rate measurement, over windows of about a second
+    private long windowStart;
+    private int framesInWindow;
+    private volatile double measuredFps;
+
+    public FramePacer(int targetFps) {
+        setTargetFps(targetFps);
+    }
+
+    public int getTargetFps() {
+        return targetFps;
+    }
+
+    public void setTargetFps(int targetFps) {
+        if (targetFps < 1) {
+            throw new IllegalArgumentException("targetFps must be >= 1, got " + targetFps);
+        }
+        this.targetFps = targetFps;
+    }
+
+    /**
+     * @return Nanoseconds between frames at the target frame rate
+     */
+    public long getFramePeriodNanos() {
+        return 1_000_000_000L / targetFps;
+    }
+
+    /**
+     * Waits until the next frame is due. Render thread only.
+     */
+    public void awaitNextFrame() {
+        long period = getFramePeriodNanos();
+        long now = System.nanoTime();
+        if (nextFrame == 0 || nextFrame - now > period) {
+            // First frame, or the target frame rate was raised
+            nextFrame = now;
+        }
+
+        long late = now - nextFrame;
+        if (late > period) {
+            droppedFrames += late / period;
+            nextFrame = now;
+        }
+
+        long wait;
+        while ((wait = nextFrame - System.nanoTime()) > SPIN_NANOS) {
+            LockSupport.parkNanos(wait - SPIN_NANOS);
+        }
+        while (nextFrame - System.nanoTime() > 0) {
+            Thread.onSpinWait();
+        }
+        nextFrame += period;
+    }
+
+    /**
+     * Counts a rendered frame towards the measured frame rate.
+     */
+    public void frameRendered() {
+        long now = System.nanoTime();
+        if (windowStart == 0) {
+            windowStart = now;
+        }
+        framesInWindow++;
+        if (now - windowStart >= 1_000_000_000L) {
+            measuredFps = framesInWindow * 1e9 / (now - windowStart);
+            windowStart = now;
+            framesInWindow = 0;
+        }
+    }
+
+    /**
+     * @return Frames rendered per second, measured over the last second
+     */
+    public double getMeasuredFps() {
+        return measuredFps;
+    }
+
+    /**
+     * @return Frames skipped so far because rendering fell behind
+     */
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+}
@@ -0,0 +1,345 @@
+package com.physics.simulations.gravity;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generators - procedural initial conditions for large numbers of bodies.
+ *
+ * Bodies are written straight into the engine's BodyStore, which is grown
+ * once up front; each gets only its lightweight Planet view. Nothing is
+ * built through the public Planet constructor, which gives every planet a
+ * single-body store of its own that engine.add() then copies and throws
+ * away - so a million bodies generate in a second or two.
+ *
+ * Generated bodies share one Color object and have no name (the HUD shows
+ * them as "Unnamed"), which keeps a view to a few dozen bytes. Every
+ * generator places its system around (x, y) moving with (vx, vy), so
+ * systems can be combined, and uses the engine's current G for the
+ * velocities - set G before generating.
+ *
+ * A position that would overlap a body already in the store is drawn
+ * again (up to MAX_DRAWS times), so a generated system does not lose a few
+ * percent of its bodies to merges on the first step. Near dense centres
+ * this thins the density a little below the model's.
+ */
+public final class Generators {
+
+    /** Plummer radii are cut off at this many scale radii (0.1% of the mass lies beyond) */
+    private static final double PLUMMER_CUTOFF = 30.0;
+
+    /** Exponential disks are cut off at this many scale lengths */
+    private static final double DISK_CUTOFF = 10.0;
+
+    /** Draws of a position before a body is placed even though it overlaps another */
+    private static final int MAX_DRAWS = 64;
+
+    private Generators() {}
+
+    /**
+     * A Plummer sphere: a star cluster whose density falls off as
+     * (1 + r²/a²)^(-5/2). Radii and speeds are drawn from the Plummer model
+     * (the method of Aarseth, Hénon and Wielen), so the cluster starts close
+     * to equilibrium; positions and velocities get random directions in the
+     * plane.
+     *
+     * @param totalMass Mass of the whole cluster, shared equally
+     * @param scaleRadius Plummer radius a - half the mass lies within 1.3 a
+     */
+    public static void plummer(GravityEngine engine, Random random, int count, double totalMass,
+                               double scaleRadius, double bodyRadius, Color color,
+                               double x, double y, double vx, double vy) {
+        BodyStore bodies = begin(engine, count);
+        Placement placement = new Placement(bodies, bodyRadius, count);
+        double mass = totalMass / Math.max(count, 1);
+        double gm = engine.getGravitationalConstant() * totalMass;
+        for (int i = 0; i < count; i++) {
+            double r, angle;
+            int draws = 0;
+            do {
+                do {
+                    r = scaleRadius / Math.sqrt(Math.pow(1.0 - random.nextDouble(), -2.0 / 3.0) - 1.0);
+                } while (!(r <= PLUMMER_CUTOFF * scaleRadius));
+                angle = 2.0 * Math.PI * random.nextDouble();
+            } while (++draws < MAX_DRAWS
+                     && !placement.isFree(x + r * Math.cos(angle), y + r * Math.sin(angle), bodyRadius));
+
+            // Speed as a fraction q of the local escape speed, by rejection from q²(1 - q²)^3.5
+            double q, g;
+            do {
+                q = random.nextDouble();
+                g = 0.1 * random.nextDouble();
+            } while (g > q * q * Math.pow(1.0 - q * q, 3.5));
+            double speed = q * Math.sqrt(2.0 * gm) * Math.pow(r * r + scaleRadius * scaleRadius, -0.25);
+
+            double direction = 2.0 * Math.PI * random.nextDouble();
+            placement.add(add(bodies, x + r * Math.cos(angle), y + r * Math.sin(angle),
+                              vx + speed * Math.cos(direction), vy + speed * Math.sin(direction),
+                              mass, bodyRadius, color));
+        }
+        engine.bodiesChanged();
+    }
+
+    /**
+     * An exponential disk galaxy: surface density falling off as exp(-R/Rd)
+     * around a central core, each body on a nearly circular orbit. Orbital
+     * speeds count the core and the disk mass inside the body's radius.
+     *
+     * @param diskMass Mass of the disk, shared equally between the bodies
+     * @param scaleLength Rd - the density drops by e every Rd
+     * @param coreMass Mass of the core (a moving body at the centre), 0 for none
+     * @param dispersion Random spread of the orbital speeds, as a fraction (e.g. 0.05)
+     * @param clockwise Direction of rotation on screen
+     */
+    public static void exponentialDisk(GravityEngine engine, Random random, int count, double diskMass,
+                                       double scaleLength, double coreMass, double dispersion,
+                                       boolean clockwise, double bodyRadius, Color color, String coreName,
+                                       double x, double y, double vx, double vy) {
+        BodyStore bodies = begin(engine, count + 1);
+        double g = engine.getGravitationalConstant();
+        if (coreMass > 0) {
+            int core = bodies.append(x, y, vx, vy, coreMass, coreRadius(bodyRadius, coreMass, diskMass, count), false);
+            new Planet(bodies, core, Color.YELLOW, null, coreName);
+        }
+        Placement placement = new Placement(bodies, bodyRadius, count);
+        double mass = diskMass / Math.max(count, 1);
+        // Share of the disk inside the cut-off, to normalize the enclosed mass
+        double inside = 1.0 - (1.0 + DISK_CUTOFF) * Math.exp(-DISK_CUTOFF);
+        double minRadius = Math.max(bodyRadius, 1e-3 * scaleLength);
+        double sign = clockwise ? -1.0 : 1.0;
+        for (int i = 0; i < count; i++) {
+            // The sum of two exponential draws has density R exp(-R/Rd), as a disk needs
+            double r, cos, sin;
+            int draws = 0;
+            do {
+                do {
+                    r = -scaleLength * Math.log((1.0 - random.nextDouble()) * (1.0 - random.nextDouble()));
+                } while (r > DISK_CUTOFF * scaleLength);
+                r = Math.max(r, minRadius);
+                double angle = 2.0 * Math.PI * random.nextDouble();
+                cos = Math.cos(angle);
+                sin = Math.sin(angle);
+            } while (++draws < MAX_DRAWS && !placement.isFree(x + r * cos, y + r * sin, bodyRadius));
+            double s = r / scaleLength;
+            double enclosed = coreMass + diskMass * (1.0 - (1.0 + s) * Math.exp(-s)) / inside;
+            double speed = Math.sqrt(g * enclosed / r) * (1.0 + dispersion * random.nextGaussian());
+
+            placement.add(add(bodies, x + r * cos, y + r * sin,
+                              vx - sign * speed * sin, vy + sign * speed * cos, mass, bodyRadius, color));
+        }
+        engine.bodiesChanged();
+    }
+
+    /**
+     * A Keplerian ring or asteroid belt: bodies spread evenly over an annulus
+     * on circular orbits around a central mass, with a little random
+     * eccentricity.
+     *
+     * @param centralMass Mass the ring orbits
+     * @param fixedCenter true to add the central mass as a point mass that
+     *                    never moves, false for a moving body, or null to not
+     *                    add it (the ring orbits bodies added separately)
+     * @param ringMass Mass of the ring, shared equally between the bodies
+     * @param eccentricity Random spread of the orbital speeds, as a fraction (e.g. 0.02)
+     */
+    public static void ring(GravityEngine engine, Random random, int count, double centralMass,
+                            Boolean fixedCenter, double innerRadius, double outerRadius, double ringMass,
+                            double eccentricity, double bodyRadius, Color color,
+                            double x, double y, double vx, double vy) {
+        BodyStore bodies = begin(engine, count + 1);
+        if (fixedCenter != null && centralMass > 0) {
+            double radius = coreRadius(bodyRadius, centralMass, ringMass, count);
+            int center = bodies.append(x, y, vx, vy, centralMass, radius, fixedCenter);
+            if (fixedCenter) {
+                new PointMass(bodies, center, Color.YELLOW, "Star");
+            } else {
+                new Planet(bodies, center, Color.YELLOW, null, "Star");
+            }
+        }
+        Placement placement = new Placement(bodies, bodyRadius, count);
+        double mass = ringMass / Math.max(count, 1);
+        double gm = engine.getGravitationalConstant() * centralMass;
+        double inner2 = innerRadius * innerRadius;
+        double span2 = outerRadius * outerRadius - inner2;
+        for (int i = 0; i < count; i++) {
+            // Uniform over the annulus's area
+            double r, cos, sin;
+            int draws = 0;
+            do {
+                r = Math.sqrt(inner2 + span2 * random.nextDouble());
+                double angle = 2.0 * Math.PI * random.nextDouble();
+                cos = Math.cos(angle);
+                sin = Math.sin(angle);
+            } while (++draws < MAX_DRAWS && !placement.isFree(x + r * cos, y + r * sin, bodyRadius));
+            double speed = Math.sqrt(gm / r) * (1.0 + eccentricity * random.nextGaussian());
+            placement.add(add(bodies, x + r * cos, y + r * sin, vx - speed * sin, vy + speed * cos,
+                              mass, bodyRadius, color));
+        }
+        engine.bodiesChanged();
+    }
+
+    /**
+     * Two exponential disk galaxies on a collision course: half the bodies
+     * each, starting separation apart along x and offset by impactParameter
+     * along y, approaching each other at approachSpeed.
+     *
+     * @param retrograde true if the second galaxy rotates the other way
+     */
+    public static void galaxyCollision(GravityEngine engine, Random random, int count, double diskMass,
+                                       double scaleLength, double coreMass, double separation,
+                                       double impactParameter, double approachSpeed, boolean retrograde,
+                                       double bodyRadius, Color first, Color second,
+                                       double x, double y, double vx, double vy) {
+        int firstCount = count / 2;
+        begin(engine, count + 2);
+        exponentialDisk(engine, random, firstCount, diskMass, scaleLength, coreMass, 0.05, false,
+                        bodyRadius, first, "Core A",
+                        x - separation / 2, y - impactParameter / 2, vx + approachSpeed / 2, vy);
+        exponentialDisk(engine, random, count - firstCount, diskMass, scaleLength, coreMass, 0.05, retrograde,
+                        bodyRadius, second, "Core B",
+                        x + separation / 2, y + impactParameter / 2, vx - approachSpeed / 2, vy);
+    }
+
+    /** Makes room for count more bodies */
+    private static BodyStore begin(GravityEngine engine, int count) {
+        BodyStore bodies = engine.getBodies();
+        bodies.ensureCapacity(bodies.count + count);
+        return bodies;
+    }
+
+    /** @return Index of the new body */
+    private static int add(BodyStore bodies, double x, double y, double vx, double vy,
+                           double mass, double radius, Color color) {
+        int i = bodies.append(x, y, vx, vy, mass, radius, false);
+        new Planet(bodies, i, color, null, null);
+        return i;
+    }
+
+    /** A central body as much larger than the others as its mass makes it, within reason */
+    private static double coreRadius(double bodyRadius, double coreMass, double systemMass, int count) {
+        double bodyMass = systemMass / Math.max(count, 1);
+        double ratio = bodyMass > 0 ? coreMass / bodyMass : 1000.0;
+        return bodyRadius * Math.max(1.0, Math.min(20.0, Math.cbrt(ratio)));
+    }
+
+    /**
+     * The bodies placed so far, in a hash grid with cells one generated body
+     * across, for checking new positions for overlaps. A body is entered in
+     * every cell its disk reaches, so a new body only has to be checked
+     * against its own cell and the eight around it. Bodies reaching more
+     * than LARGE_CELLS cells (a big core, say) are kept in a list and
+     * checked every time instead.
+     */
+    private static final class Placement {
+
+        private static final int LARGE_CELLS = 256;
+
+        private final BodyStore bodies;
+        private final double cellSize;
+
+        // Hash buckets of entries, chained through next; an entry is one body in one cell
+        private int[] heads;
+        private int[] next, body;
+        private long[] cellX, cellY;
+        private int entries;
+
+        private int[] large = new int[4];
+        private int largeCount;
+
+        /** Enters the bodies already in the store; expected is how many are about to be added */
+        Placement(BodyStore bodies, double bodyRadius, int expected) {
+            this.bodies = bodies;
+            this.cellSize = 2.0 * bodyRadius;
+            if (!(cellSize > 0)) return;
+            int capacity = Integer.highestOneBit(Math.max(bodies.count + expected, 8) - 1) << 1;
+            heads = new int[capacity];
+            Arrays.fill(heads, -1);
+            next = new int[capacity];
+            body = new int[capacity];
+            cellX = new long[capacity];
+            cellY = new long[capacity];
+            for (int i = 0; i < bodies.count; i++) {
+                add(i);
+            }
+        }
+
+        /** @return false if a body of the given radius at (x, y) would touch one placed before */
+        boolean isFree(double x, double y, double radius) {
+            if (!(cellSize > 0)) return true;
+            long cx = (long) Math.floor(x / cellSize);
+            long cy = (long) Math.floor(y / cellSize);
+            int mask = heads.length - 1;
+            for (long ny = cy - 1; ny <= cy + 1; ny++) {
+                for (long nx = cx - 1; nx <= cx + 1; nx++) {
+                    for (int e = heads[hash(nx, ny) & mask]; e >= 0; e = next[e]) {
+                        if (cellX[e] == nx && cellY[e] == ny && touches(body[e], x, y, radius)) return false;
+                    }
+                }
+            }
+            for (int k = 0; k < largeCount; k++) {
+                if (touches(large[k], x, y, radius)) return false;
+            }
+            return true;
+        }
+
+        /** Enters body i of the store */
+        void add(int i) {
+            if (!(cellSize > 0)) return;
+            double r = bodies.radius[i];
+            long fromX = (long) Math.floor((bodies.x[i] - r) / cellSize);
+            long toX = (long) Math.floor((bodies.x[i] + r) / cellSize);
+            long fromY = (long) Math.floor((bodies.y[i] - r) / cellSize);
+            long toY = (long) Math.floor((bodies.y[i] + r) / cellSize);
+            if ((toX - fromX + 1) * (toY - fromY + 1) > LARGE_CELLS) {
+                if (largeCount == large.length) {
+                    large = Arrays.copyOf(large, largeCount * 2);
+                }
+                large[largeCount++] = i;
+                return;
+            }
+            for (long cy = fromY; cy <= toY; cy++) {
+                for (long cx = fromX; cx <= toX; cx++) {
+                    if (entries == next.length) {
+                        grow();
+                    }
+                    int e = entries++;
+                    body[e] = i;
+                    cellX[e] = cx;
+                    cellY[e] = cy;
+                    int bucket = hash(cx, cy) & (heads.length - 1);
+                    next[e] = heads[bucket];
+                    heads[bucket] = e;
+                }
+            }
+        }
+
+        private boolean touches(int i, double x, double y, double radius) {
+            double dx = bodies.x[i] - x;
+            double dy = bodies.y[i] - y;
+            double reach = bodies.radius[i] + radius;
+            return dx * dx + dy * dy < reach * reach;
+        }
+
+        /** Doubles the table and rehashes the entries */
+        private void grow() {
+            int capacity = next.length * 2;
+            next = Arrays.copyOf(next, capacity);
+            body = Arrays.copyOf(body, capacity);
+            cellX = Arrays.copyOf(cellX, capacity);
+            cellY = Arrays.copyOf(cellY, capacity);
+            heads = new int[capacity];
+            Arrays.fill(heads, -1);
+            for (int e = 0; e < entries; e++) {
+                int bucket = hash(cellX[e], cellY[e]) & (capacity - 1);
+                next[e] = heads[bucket];
+                heads[bucket] = e;
+            }
+        }
+
+        private static int hash(long cx, long cy) {
+            long h = cx * 0x9E3779B97F4A7C15L + cy * 0xC2B2AE3D27D4EB4FL;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package com.physics.simulations.gravity;
+
+/**
+ * GravityEngine - the physics of the gravity simulation, without any UI.
+ *
+ * Owns the bodies, the force solvers and the global settings, and advances
+ * them one step at a time. GravitySimulation drives it from its physics
+ * thread; HeadlessMain drives it directly, so it also runs on machines with
+ * no display.
+ *
+ * step() and the methods that change bodies or solvers must all be called
+ * from the same thread. The plain settings (G, bounce, time factor) are
+ * volatile and can be changed from anywhere.
+ */
+public class GravityEngine {
+
+    /** Frame length the texture spin rates were tuned for (in seconds) */
+    static final double DELTA_TIME = 1.0 / 60.0; // 60 FPS
+
+    /** State of all planets/point masses; Planet objects are views onto it */
+    private final BodyStore bodies = new BodyStore();
+
+    /** GLOBAL VARAIBLES OF SIMULATION */
+    private volatile double gravitationalConstant = 6000.0;
+    private volatile boolean bounce = false;
+    private volatile double coefficientOfRestitution = 1.0;
+    private volatile double timeFactor = 1.0;
+
+    /** Simulated seconds since the start, advanced by step() */
+    private double simulationTime = 0.0;
+
+    /** Threads shared by the force solvers - 1 keeps the force pass on the calling thread */
+    private final WorkerPool workerPool = new WorkerPool(1);
+
+    /** Expansion order the fast multipole solver starts with */
+    static final int DEFAULT_EXPANSION_ORDER = 4;
+
+    /** Mesh points per side the particle mesh solvers start with */
+    static final int DEFAULT_MESH_SIZE = 256;
+
+    /**
+     * Force solvers - direct sum is exact, Barnes-Hut and the fast multipole
+     * method scale to many more bodies, and the particle mesh solvers to
+     * dense clouds of millions
+     */
+    private final DirectSumSolver directSumSolver = new DirectSumSolver(workerPool);
+    private final BarnesHutSolver barnesHutSolver = new BarnesHutSolver(0.5, workerPool);
+    private final FastMultipoleSolver fastMultipoleSolver =
+        new FastMultipoleSolver(0.5, DEFAULT_EXPANSION_ORDER, workerPool);
+    private final ParticleMeshSolver particleMeshSolver = new ParticleMeshSolver(DEFAULT_MESH_SIZE, false, workerPool);
+    private final ParticleMeshSolver p3mSolver = new ParticleMeshSolver(DEFAULT_MESH_SIZE, true, workerPool);
+    private ForceSolver forceSolver = directSumSolver;
+
+    /** Integrators - all advance every body together; leapfrog is the default */
+    private final Integrator[] integrators = {
+        new SemiImplicitEuler(), new LeapfrogIntegrator(), new YoshidaIntegrator(), new RK4Integrator(),
+        new BlockTimestepIntegrator()
+    };
+    private Integrator integrator = integrators[1];
+
+    /** Force evaluation handed to the integrator; counts interactions as it goes */
+    private final Integrator.Accelerations accelerations = new Integrator.Accelerations() {
+        @Override
+        public void compute(BodyStore store) {
+            forceSolver.computeAccelerations(store, gravitationalConstant);
+            stepInteractions += forceSolver.getInteractionCount();
+        }
+
+        @Override
+        public void compute(BodyStore store, int[] targets, int targetCount) {
+            forceSolver.computeAccelerations(store, gravitationalConstant, targets, targetCount);
+            stepInteractions += forceSolver.getInteractionCount();
+        }
+    };
+    private long stepInteractions;
+
+    /** Broad phase finds the touching pairs, the response bounces or merges them */
+    private final CollisionDetector collisionDetector = new CollisionDetector();
+    private final CollisionResponse collisionResponse = new CollisionResponse();
+
+    /** Set when bodies or forces changed, so the integrator must not reuse old accelerations */
+    private volatile boolean forcesChanged = true;
+
+    /**
+     * Advances the simulation by one step.
+     *
+     * @param deltaTime Length of the step (in seconds), before the time factor
+     */
+    public void step(double deltaTime) {
+        resolveCollisions();
+        if (forcesChanged) {
+            forcesChanged = false;
+            integrator.reset();
+        }
+
+        // Fixed bodies (PointMass) are never moved, so they stay put as attractors
+        double dt = deltaTime * timeFactor;
+        stepInteractions = 0;
+        integrator.step(bodies, dt, accelerations);
+
+        // Spin textures, keeping the angle in [0, 2π). Spin rates are per 60 Hz
+        // frame, so scale by the step length to keep the same look at any rate.
+        int n = bodies.count;
+        double[] angle = bodies.angle, spin = bodies.spin;
+        double spinScale = timeFactor * deltaTime / DELTA_TIME;
+        double fullTurn = Math.PI * 2;
+        for (int i = 0; i < n; i++) {
+            double rotationAngle = (angle[i] + spin[i] * spinScale) % fullTurn;
+            angle[i] = rotationAngle < 0 ? rotationAngle + fullTurn : rotationAngle;
+        }
+
+        simulationTime += dt;
+    }
+
+    /**
+     * Bounces or merges every pair of touching bodies.
+     */
+    private void resolveCollisions() {
+        collisionDetector.detect(bodies);
+        if (collisionResponse.resolve(bodies, collisionDetector, bounce, coefficientOfRestitution)) {
+            forcesChanged = true;
+        }
+    }
+
+    /**
+     * @return The bodies being simulated - only touch them from the stepping thread
+     */
+    public BodyStore getBodies() {
+        return bodies;
+    }
+
+    public void add(Planet planet) {
+        bodies.add(planet);
+        forcesChanged = true;
+    }
+
+    public void clear() {
+        bodies.clear();
+        forcesChanged = true;
+    }
+
+    public double getSimulationTime() {
+        return simulationTime;
+    }
+
+    void setSimulationTime(double simulationTime) {
+        this.simulationTime = simulationTime;
+    }
+
+    /**
+     * Call after writing bodies into the store directly, so the integrator
+     * does not reuse old accelerations.
+     */
+    void bodiesChanged() {
+        forcesChanged = true;
+    }
+
+    public double getGravitationalConstant() {
+        return gravitationalConstant;
+    }
+
+    public void setGravitationalConstant(double gravitationalConstant) {
+        this.gravitationalConstant = gravitationalConstant;
+        forcesChanged = true;
+    }
+
+    public boolean isBounce() {
+        return bounce;
+    }
+
+    /**
+     * @param bounce true to bounce colliding bodies apart, false to merge them
+     */
+    public void setBounce(boolean bounce) {
+        this.bounce = bounce;
+    }
+
+    public double getCoefficientOfRestitution() {
+        return coefficientOfRestitution;
+    }
+
+    public void setCoefficientOfRestitution(double coefficientOfRestitution) {
+        this.coefficientOfRestitution = coefficientOfRestitution;
+    }
+
+    public double getTimeFactor() {
+        return timeFactor;
+    }
+
+    public void setTimeFactor(double timeFactor) {
+        this.timeFactor = timeFactor;
+    }
+
+    public ForceSolver getForceSolver() {
+        return forceSolver;
+    }
+
+    /**
+     * @return All solvers the engine can switch between
+     */
+    public ForceSolver[] getForceSolvers() {
+        return new ForceSolver[] {directSumSolver, barnesHutSolver, fastMultipoleSolver, particleMeshSolver, p3mSolver};
+    }
+
+    /**
+     * Switches the force solver by its display name. Unknown names select the direct sum.
+     */
+    public void setForceSolver(String solverName) {
+        if (barnesHutSolver.getName().equals(solverName)) {
+            forceSolver = barnesHutSolver;
+        } else if (fastMultipoleSolver.getName().equals(solverName)) {
+            forceSolver = fastMultipoleSolver;
+        } else if (particleMeshSolver.getName().equals(solverName)) {
+            forceSolver = particleMeshSolver;
+        } else if (p3mSolver.getName().equals(solverName)) {
+            forceSolver = p3mSolver;
+        } else {
+            forceSolver = directSumSolver;
+        }
+        forcesChanged = true;
+    }
+
+    /**
+     * @return Body interactions evaluated by the last step, over all its force evaluations
+     */
+    public long getStepInteractions() {
+        return stepInteractions;
+    }
+
+    public Integrator getIntegrator() {
+        return integrator;
+    }
+
+    /**
+     * @return All integrators the engine can switch between
+     */
+    public Integrator[] getIntegrators() {
+        return integrators.clone();
+    }
+
+    /**
+     * Switches the integrator by its display name
+     */
+    public void setIntegrator(String integratorName) {
+        for (Integrator candidate : integrators) {
+            if (candidate.getName().equals(integratorName)) {
+                integrator = candidate;
+                forcesChanged = true;
+                return;
+            }
+        }
+        throw new IllegalArgumentException("Unknown integrator: " + integratorName);
+    }
+
+    /**
+     * Sets the opening angle of the tree solvers (Barnes-Hut and fast multipole)
+     */
+    public void setTheta(double theta) {
+        barnesHutSolver.setTheta(theta);
+        fastMultipoleSolver.setTheta(theta);
+        forcesChanged = true;
+    }
+
+    public double getTheta() {
+        return barnesHutSolver.getTheta();
+    }
+
+    /**
+     * Sets the expansion order p of the fast multipole solver
+     */
+    public void setExpansionOrder(int order) {
+        fastMultipoleSolver.setOrder(order);
+        forcesChanged = true;
+    }
+
+    public int getExpansionOrder() {
+        return fastMultipoleSolver.getOrder();
+    }
+
+    /**
+     * Sets the mesh points per side of the particle mesh solvers, a power of two
+     */
+    public void setMeshSize(int meshSize) {
+        particleMeshSolver.setMeshSize(meshSize);
+        p3mSolver.setMeshSize(meshSize);
+        forcesChanged = true;
+    }
+
+    public int getMeshSize() {
+        return particleMeshSolver.getMeshSize();
+    }
+
+    /**
+     * Sets how many threads the force pass is split across
+     */
+    public void setWorkers(int workers) {
+        workerPool.setWorkers(workers);
+    }
+
+    public int getWorkers() {
+        return workerPool.getWorkers();
+    }
+
+    /**
+     * Stops the worker threads
+     */
+    public void shutdown() {
+        workerPool.shutdown();
+    }
+}
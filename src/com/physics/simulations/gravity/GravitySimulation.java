@@ -7,40 +7,112 @@ import java.awt.event.ActionEvent;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
+import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.awt.geom.AffineTransform;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.awt.image.BufferStrategy;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.awt.BasicStroke;
 
 /**
  * Gravity Simulation - Multiple planets interacting through gravitational forces
  */
 public class GravitySimulation extends BaseSimulation {
-    /** List of all planets/point masses in the simulation */
-    private List<Planet> planets = new ArrayList<>();
+    /**
+     * Physics of the simulation - bodies, solvers and settings.
+     * Owned by the simulation thread once it is running - other threads go through runOnSimulationThread.
+     */
+    private final GravityEngine engine = new GravityEngine();
+    
+    /** Physics loop - calls update() on its own thread at a fixed rate */
+    private FixedStepLoop simulationLoop;
+    
+    /** Changes requested by the UI, applied by the simulation thread between steps */
+    private final ConcurrentLinkedQueue<Runnable> pendingChanges = new ConcurrentLinkedQueue<>();
+    
+    /** Trajectory being recorded, or null. Simulation thread only */
+    private TrajectoryRecorder recorder;
+    
+    /** Trajectory frames recorded per second while the simulation runs at full speed */
+    private static final int RECORD_RATE = 30;
+    
+    /** Recording being replayed instead of the live simulation, or null. Simulation thread only */
+    private TrajectoryReader replay;
+    
+    /** Simulated time the replay has played up to; the frame shown is the last one before it */
+    private double replayClock;
+    
+    /** Simulated time of the replayed frame on screen, for the replay bar */
+    private volatile double replayFrameTime;
+    
+    /** Replay controls under the view, shown while replaying */
+    private ReplayBar replayBar;
+    
+    /** File being replayed, or null. EDT only */
+    private Path replayPath;
+    
+    /** Snapshots handed from the simulation thread to paintComponent */
+    private final SnapshotExchange snapshots = new SnapshotExchange();
     
-    /** GLOBAL VARAIBLES OF SIMULATION */
-    private double gravitationalConstant = 6000.0;
-    private boolean bounce = false;
-    private double coefficientOfRestitution = 1.0;
-    private double timeFactor = 1.0;
+    /** Repaint timer - redraws the latest snapshot when falling back to Swing repaints */
+    private Timer renderTimer;
     
-    /** Animation timer - calls update() repeatedly */
-    private Timer animationTimer;
+    /** System property choosing the rendering mode: "active" (default) or "swing" */
+    private static final String RENDERING_PROPERTY = "gravity.rendering";
     
-    /** Time step for physics calculations (in seconds) */
-    private static final double DELTA_TIME = 1.0 / 60.0; // 60 FPS
+    /** True to draw on renderCanvas from the render thread, false to use Swing repaints */
+    private boolean activeRendering = !"swing".equalsIgnoreCase(System.getProperty(RENDERING_PROPERTY));
+    
+    /** Active rendering - a page-flipped canvas drawn by its own thread */
+    private Canvas renderCanvas;
+    private Thread renderThread;
+    private volatile boolean rendering;
+    
+    /** Spaces out frames in active rendering, and measures the frame rate in both modes */
+    private final FramePacer framePacer = new FramePacer(FramePacer.DEFAULT_FPS);
+    
+    /** Draw positions between the last two physics states instead of jumping to the latest */
+    private volatile boolean interpolate = true;
+    
+    /** Snapshots further apart than this (paused, or a very slow step) are not interpolated */
+    private static final long MAX_INTERPOLATION_NANOS = 250_000_000L;
+    
+    /** The state being drawn - the last two snapshots interpolated. Locked while it is filled, so the EDT can pick from it */
+    private final StateSnapshot frame = new StateSnapshot();
+    
+    /** Culls off-screen planets and simplifies small ones */
+    private final PlanetRenderer planetRenderer = new PlanetRenderer();
+    
+    /** Cached background grid */
+    private final GridLayer gridLayer = new GridLayer();
+
+    /** Counters and selected planet info, with cached text */
+    private final HudOverlay hudOverlay = new HudOverlay();
+
+    private static final BasicStroke MARKER_STROKE = new BasicStroke(2.0f);
+    
+    /** Physics steps per second (independent from the frame rate) */
+    private static final int DEFAULT_PHYSICS_RATE = 240;
     
     /** Drawing panel - custom component for rendering */
     private DrawingPanel drawingPanel;
+    
+    /** The component drawn on and listened to - renderCanvas or drawingPanel */
+    private Component view;
 
-    /** Pan offsets (in screen coordinates) */
-    private double panLevelX = 0.0;
-    private double panLevelY = 0.0;
+    /** Pan offsets (in screen coordinates) - volatile as the render thread reads them */
+    private volatile double panLevelX = 0.0;
+    private volatile double panLevelY = 0.0;
     
     /** Zoom level (1.0 = normal, 2.0 = 2x zoom, 0.5 = zoomed out) */
-    private double zoomLevel = 1.0;
+    private volatile double zoomLevel = 1.0;
 
     /** Mouse drag tracking */
     private int lastMouseX = 0;
@@ -51,13 +123,35 @@ public class GravitySimulation extends BaseSimulation {
     private int mousePressY = 0;
     
     /** Pause state */
-    private boolean isPaused = false;
+    private volatile boolean isPaused = false;
     
     /** Control panel for adding objects */
     private ControlPanel controlPanel;
-    private double clickedWorldX, clickedWorldY;
+    private volatile double clickedWorldX, clickedWorldY;
 
-    private Planet clickedPlanet = null;
+    private volatile Planet clickedPlanet = null;
+
+    /** Finds planets under the mouse without scanning them all; guarded by frame */
+    private final PickingIndex pickingIndex = new PickingIndex();
+
+    /** How far (screen pixels) planets may move before the picking index is rebuilt */
+    private static final double PICK_DRIFT_PIXELS = 16.0;
+
+    /** Planet under the mouse and its index in the frame, ringed while hovered */
+    private volatile Planet hoveredPlanet = null;
+    private volatile int hoveredIndex = -1;
+
+    /** Planets selected by dragging a box with Shift held */
+    private final ArrayList<Planet> boxSelection = new ArrayList<>();
+    private volatile int boxSelectionCount = 0;
+
+    /** Selection box in screen coordinates, while it is being dragged */
+    private volatile boolean isBoxSelecting = false;
+    private volatile int boxStartX, boxStartY, boxEndX, boxEndY;
+
+    private static final Color HOVER_COLOR = new Color(150, 200, 255);
+    private static final Color SELECTION_FILL = new Color(255, 255, 0, 40);
+    private static final BasicStroke HOVER_STROKE = new BasicStroke(1.5f);
 
     private double maxMass = 100000;
     private double maxRadius = 100;
@@ -76,16 +170,34 @@ public class GravitySimulation extends BaseSimulation {
         setLocationRelativeTo(null); // Center window on screen
         setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
         
-        // Initialize the list of planets
-        planets = new ArrayList<>();
+        // Decode the built-in textures in the background while the window opens
+        TextureCache.shared().preload(TextureCache.BUILT_IN);
         
         // Create control panel
         controlPanel = new ControlPanel(
             this::addPlanetFromFields,
             this::clearSimulation,
             this::updateGravity,
-            this::updateTimeFactor
+            this::updateTimeFactor,
+            this::updateForceSolver,
+            this::updateTheta,
+            this::updateExpansionOrder,
+            this::updateMeshSize,
+            this::updateWorkers,
+            this::updatePhysicsRate,
+            this::updateIntegrator,
+            this::updateSpriteRotations,
+            this::updateFrameRate,
+            this::updateInterpolation,
+            this::updatePointCloud,
+            this::saveState,
+            this::loadState,
+            this::updateRecording,
+            this::openReplay,
+            this::loadScenario
         );
+        replayBar = new ReplayBar(this::toggleReplayPlayback, this::seekReplay, this::exitReplay,
+                                  () -> replayFrameTime, () -> !isPaused);
         
         // Initialize clicked position to center
         clickedWorldX = 500.0;
@@ -94,68 +206,57 @@ public class GravitySimulation extends BaseSimulation {
         // Create a custom drawing panel to handle rendering
         // We'll override its paintComponent() method to draw our planets
         drawingPanel = new DrawingPanel();
+        
+        // Active rendering draws on a canvas instead, from a thread of its own
+        if (activeRendering) {
+            renderCanvas = new Canvas();
+            renderCanvas.setIgnoreRepaint(true);
+            renderCanvas.setBackground(Color.BLACK);
+            view = renderCanvas;
+        } else {
+            view = drawingPanel;
+        }
         setupMouseListeners();
         
         // Add components to main window
         setLayout(new BorderLayout());
         add(controlPanel, BorderLayout.EAST);
-        add(drawingPanel, BorderLayout.CENTER);
+        add(view, BorderLayout.CENTER);
         
         // Set up spacebar key binding at root pane level to prevent buttons from intercepting it
         setupKeyBindings();
         
         // Make sure the panel can receive focus for keyboard events
-        drawingPanel.setFocusable(true);
-        drawingPanel.requestFocus();
+        view.setFocusable(true);
+        view.requestFocus();
         
         // Create initial planets
-        setupPlanets();
-        setupMasses();
-    }
-    
-    /**
-     * Creates large mass at the center of the screen and a smaller mass orbiting it.
-     */
-    private void setupPlanets() {
-        Planet sun = new Planet(
-            1000.0,                   
-            20.0,                      
-            500.0, 400.0,        
-            0.0, 0.0, 0.02,             
-            Color.YELLOW, 
-            "resources/textures/Sun.jpg",
-            "Sun"
-        );
-
-
-        Planet planet1 = new Planet(
-            50.0,                     
-            10.0,                 
-            700.0, 400.0,
-            0.0, -80.0, 0.06,
-            Color.BLUE,
-            "resources/textures/Earth.jpg",
-            "Earth"
-        );
+        Scenarios.defaultSystem(engine);
+        snapshots.publish(engine.getBodies(), engine.getSimulationTime());
         
-        planets.add(sun);
-        planets.add(planet1);
-    }
-
-    private void setupMasses() {
-        PointMass mass = new PointMass(500, 500, 500);
-        planets.add(mass);
+        // Stop the physics thread when the window is closed
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                stopLoops();
+            }
+        });
     }
     
     /**
-     * Sets up mouse listeners for pan
+     * Sets up mouse listeners for pan, picking, hover and box selection
      */
     private void setupMouseListeners() {
         // Mouse listeners for drag-to-pan
-        drawingPanel.addMouseListener(new MouseListener() {
+        view.addMouseListener(new MouseListener() {
             @Override
             public void mousePressed(MouseEvent e) {
-                if (e.getButton() == MouseEvent.BUTTON1) { // Left mouse button
+                if (e.getButton() == MouseEvent.BUTTON1 && e.isShiftDown()) {
+                    // Shift + drag selects everything inside a box
+                    isBoxSelecting = true;
+                    boxStartX = boxEndX = e.getX();
+                    boxStartY = boxEndY = e.getY();
+                } else if (e.getButton() == MouseEvent.BUTTON1) { // Left mouse button
                     isDragging = true;
                     hasDragged = false;
                     lastMouseX = e.getX();
@@ -167,7 +268,11 @@ public class GravitySimulation extends BaseSimulation {
             
             @Override
             public void mouseReleased(MouseEvent e) {
-                if (e.getButton() == MouseEvent.BUTTON1) {
+                if (e.getButton() == MouseEvent.BUTTON1 && isBoxSelecting) {
+                    isBoxSelecting = false;
+                    selectBox(boxStartX, boxStartY, e.getX(), e.getY());
+                    requestRepaint();
+                } else if (e.getButton() == MouseEvent.BUTTON1) {
                     isDragging = false;
                     
                     // If mouse didn't move much (or at all), treat it as a click
@@ -184,20 +289,21 @@ public class GravitySimulation extends BaseSimulation {
                         clickedWorldX = worldCoords[0];
                         clickedWorldY = worldCoords[1];
                         
-                        // Check if the clicked position is on a planet
-                        for (Planet planet : planets) {
-                            if (planet.containsPoint(clickedWorldX, clickedWorldY)) {
-                                if (clickedPlanet != null) {
-                                    clickedPlanet.clicked();
-                                }
-                                clickedPlanet = planet;
-                                planet.clicked();
-                                break;
+                        // Check if the clicked position is on a planet (as currently drawn)
+                        Planet planet = planetAt(clickedWorldX, clickedWorldY);
+                        if (planet != null) {
+                            if (clickedPlanet != null) {
+                                clickedPlanet.clicked();
                             }
+                            clickedPlanet = planet;
+                            planet.clicked();
+                        } else {
+                            // A click on empty space drops the box selection
+                            clearBoxSelection();
                         }
                         
                         // Repaint to show the red X marker
-                        drawingPanel.repaint();
+                        requestRepaint();
                     }
                 }
             }
@@ -215,10 +321,14 @@ public class GravitySimulation extends BaseSimulation {
         });
         
         // Mouse motion listener for drag
-        drawingPanel.addMouseMotionListener(new MouseMotionListener() {
+        view.addMouseMotionListener(new MouseMotionListener() {
             @Override
             public void mouseDragged(MouseEvent e) {
-                if (isDragging) {
+                if (isBoxSelecting) {
+                    boxEndX = e.getX();
+                    boxEndY = e.getY();
+                    requestRepaint();
+                } else if (isDragging) {
                     hasDragged = true; // Mark that dragging occurred
                     int currentX = e.getX();
                     int currentY = e.getY();
@@ -240,9 +350,70 @@ public class GravitySimulation extends BaseSimulation {
             }
             
             @Override
-            public void mouseMoved(MouseEvent e) {}
+            public void mouseMoved(MouseEvent e) {
+                updateHover(e.getX(), e.getY());
+            }
         });
     }
+
+    /**
+     * @return The planet drawn at the world position, or null
+     */
+    private Planet planetAt(double worldX, double worldY) {
+        synchronized (frame) {
+            int index = pickingIndex.pick(frame, worldX, worldY, PICK_DRIFT_PIXELS / zoomLevel);
+            return index >= 0 ? frame.views[index] : null;
+        }
+    }
+
+    /**
+     * Finds the planet under the mouse and repaints if it changed.
+     */
+    private void updateHover(int screenX, int screenY) {
+        double[] world = screenToWorld(screenX, screenY);
+        Planet planet;
+        int index;
+        synchronized (frame) {
+            index = pickingIndex.pick(frame, world[0], world[1], PICK_DRIFT_PIXELS / zoomLevel);
+            planet = index >= 0 ? frame.views[index] : null;
+        }
+        if (planet != hoveredPlanet) {
+            hoveredIndex = index;
+            hoveredPlanet = planet;
+            requestRepaint();
+        }
+    }
+
+    /**
+     * Replaces the box selection with the planets whose centres lie inside
+     * the screen rectangle between the two corners.
+     */
+    private void selectBox(int x1, int y1, int x2, int y2) {
+        clearBoxSelection();
+        double[] corner1 = screenToWorld(x1, y1);
+        double[] corner2 = screenToWorld(x2, y2);
+        synchronized (frame) {
+            int count = pickingIndex.select(frame,
+                Math.min(corner1[0], corner2[0]), Math.min(corner1[1], corner2[1]),
+                Math.max(corner1[0], corner2[0]), Math.max(corner1[1], corner2[1]),
+                PICK_DRIFT_PIXELS / zoomLevel);
+            boxSelection.ensureCapacity(count);
+            for (int k = 0; k < count; k++) {
+                Planet planet = frame.views[pickingIndex.selected[k]];
+                planet.selected = true;
+                boxSelection.add(planet);
+            }
+        }
+        boxSelectionCount = boxSelection.size();
+    }
+
+    private void clearBoxSelection() {
+        for (Planet planet : boxSelection) {
+            planet.selected = false;
+        }
+        boxSelection.clear();
+        boxSelectionCount = 0;
+    }
     
     /**
      * Adds a planet using values from the control panel
@@ -294,30 +465,441 @@ public class GravitySimulation extends BaseSimulation {
                                   data.vx, data.vy, angularVelocity, data.color, data.texturePath, planetName);
         }
         
-        planets.add(newObject);
-        drawingPanel.repaint();
+        runOnSimulationThread(() -> engine.add(newObject));
     }
     
     /**
      * Updates the gravitational constant from the slider
      */
     private void updateGravity(Double newGravity) {
-        gravitationalConstant = newGravity;
+        engine.setGravitationalConstant(newGravity);
     }
     
     private void updateTimeFactor(Double newTimeFactor) {
-        timeFactor = newTimeFactor;
+        engine.setTimeFactor(newTimeFactor);
+    }
+    
+    /**
+     * Switches the force solver by its display name
+     */
+    private void updateForceSolver(String solverName) {
+        runOnSimulationThread(() -> engine.setForceSolver(solverName));
+    }
+    
+    /**
+     * Updates the tree solvers' opening angle from the slider
+     */
+    private void updateTheta(Double newTheta) {
+        runOnSimulationThread(() -> engine.setTheta(newTheta));
+    }
+    
+    /**
+     * Updates the fast multipole expansion order from the slider
+     */
+    private void updateExpansionOrder(Integer order) {
+        runOnSimulationThread(() -> engine.setExpansionOrder(order));
+    }
+    
+    /**
+     * Updates the particle mesh size from the slider
+     */
+    private void updateMeshSize(Integer meshSize) {
+        runOnSimulationThread(() -> engine.setMeshSize(meshSize));
+    }
+    
+    /**
+     * Sets how many threads the force pass is split across
+     */
+    private void updateWorkers(Integer workers) {
+        runOnSimulationThread(() -> engine.setWorkers(workers));
+    }
+    
+    /**
+     * Switches the integrator by its display name
+     */
+    private void updateIntegrator(String integratorName) {
+        runOnSimulationThread(() -> engine.setIntegrator(integratorName));
+    }
+    
+    /**
+     * Sets how many pre-rendered rotations textured planets are drawn from (0 = exact drawing).
+     * The physics never reads it, so this doesn't go through the simulation thread.
+     * It is called on the EDT while the render thread may be drawing; that is safe
+     * because SpriteAtlas.setRotations and frame are synchronized.
+     */
+    private void updateSpriteRotations(Integer rotations) {
+        SpriteAtlas.shared().setRotations(rotations);
+        requestRepaint();
+    }
+    
+    /**
+     * Sets the target frame rate of either rendering mode
+     */
+    private void updateFrameRate(Integer framesPerSecond) {
+        framePacer.setTargetFps(framesPerSecond);
+        if (renderTimer != null) {
+            renderTimer.setDelay(1000 / framesPerSecond);
+        }
+    }
+    
+    /**
+     * Switches how small bodies are batched, by the mode's display name
+     */
+    private void updatePointCloud(String modeName) {
+        planetRenderer.setPointCloudMode(PointCloudRenderer.Mode.fromDisplayName(modeName));
+        requestRepaint();
+    }
+    
+    /**
+     * Turns interpolation between physics states on or off
+     */
+    private void updateInterpolation(Boolean enabled) {
+        interpolate = enabled;
+    }
+    
+    /**
+     * Sets how many physics steps run per second
+     */
+    private void updatePhysicsRate(Integer stepsPerSecond) {
+        if (simulationLoop != null) {
+            simulationLoop.setStepRate(stepsPerSecond);
+        }
+    }
+    
+    /**
+     * Queues a change to the bodies or solvers. It runs on the simulation
+     * thread between two steps, so it never sees a half-finished step.
+     */
+    private void runOnSimulationThread(Runnable change) {
+        pendingChanges.add(change);
+    }
+    
+    /**
+     * Applies the queued changes. Simulation thread only.
+     * 
+     * @return true if anything was applied
+     */
+    private boolean applyPendingChanges() {
+        boolean changed = false;
+        Runnable change;
+        while ((change = pendingChanges.poll()) != null) {
+            change.run();
+            changed = true;
+        }
+        return changed;
     }
     
     /**
      * Clears all planets and point masses from the simulation
      */
     private void clearSimulation() {
-        planets.clear();
+        runOnSimulationThread(() -> engine.clear());
         planetCounter = 1;  // Reset counter when simulation is cleared
-        drawingPanel.repaint();
+        clearBoxSelection();
+        hoveredPlanet = null;
     }
     
+    /**
+     * Saves the whole simulation, with the current view, to a file the user picks
+     */
+    private void saveState() {
+        JFileChooser chooser = createStateChooser();
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        Path chosen = chooser.getSelectedFile().toPath();
+        Path path = chosen.getFileName().toString().contains(".")
+            ? chosen : chosen.resolveSibling(chosen.getFileName() + "." + StateFile.EXTENSION);
+        StateFile.View view = new StateFile.View(panLevelX, panLevelY, zoomLevel);
+        // Saved between steps, so the file holds one consistent state
+        runOnSimulationThread(() -> {
+            try {
+                StateFile.save(path, engine, view);
+            } catch (IOException e) {
+                showStateError("Could not save " + path.getFileName() + ": " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Replaces the simulation with one saved earlier
+     */
+    private void loadState() {
+        JFileChooser chooser = createStateChooser();
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        Path path = chooser.getSelectedFile().toPath();
+        runOnSimulationThread(() -> {
+            try {
+                StateFile.View view = StateFile.load(path, engine);
+                double gravity = engine.getGravitationalConstant();
+                double timeFactor = engine.getTimeFactor();
+                SwingUtilities.invokeLater(() -> {
+                    // The old planets are gone - forget anything that pointed at them
+                    forgetShownPlanets();
+                    panLevelX = view.panX;
+                    panLevelY = view.panY;
+                    zoomLevel = view.zoom;
+                    controlPanel.showLoadedSettings(gravity, timeFactor);
+                    requestRepaint();
+                });
+            } catch (IOException e) {
+                showStateError("Could not load " + path.getFileName() + ": " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Replaces the simulation with a scenario file the user picks. The file
+     * is checked before anything changes, so a mistake leaves the simulation
+     * as it was.
+     */
+    private void loadScenario() {
+        JFileChooser chooser = createScenarioChooser();
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        Path path = chooser.getSelectedFile().toPath();
+        ScenarioFile scenario;
+        try {
+            scenario = ScenarioFile.read(path);
+        } catch (IOException e) {
+            showStateError("Could not load " + path.getFileName() + ": " + e.getMessage());
+            return;
+        }
+        runOnSimulationThread(() -> {
+            ScenarioFile.View fit = scenario.apply(engine);
+            double gravity = engine.getGravitationalConstant();
+            double timeFactor = engine.getTimeFactor();
+            SwingUtilities.invokeLater(() -> {
+                // The old planets are gone - forget anything that pointed at them
+                forgetShownPlanets();
+                planetCounter = 1;
+                // Put the scenario's centre in the middle of the window
+                zoomLevel = fit.zoomFor(view.getWidth(), view.getHeight());
+                panLevelX = view.getWidth() / 2.0 - fit.centerX;
+                panLevelY = view.getHeight() / 2.0 - fit.centerY;
+                controlPanel.showLoadedSettings(gravity, timeFactor);
+                requestRepaint();
+            });
+        });
+    }
+
+    /**
+     * Starts recording the trajectories to a file the user picks, or stops
+     */
+    private void updateRecording(Boolean record) {
+        if (!record) {
+            runOnSimulationThread(() -> {
+                TrajectoryRecorder stopped = recorder;
+                recorder = null;
+                if (stopped != null) {
+                    SwingUtilities.invokeLater(() -> finishRecording(stopped));
+                }
+            });
+            return;
+        }
+        JFileChooser chooser = createRecordingChooser();
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            controlPanel.showRecording(false);
+            return;
+        }
+        Path chosen = chooser.getSelectedFile().toPath();
+        Path path = chosen.getFileName().toString().contains(".")
+            ? chosen : chosen.resolveSibling(chosen.getFileName() + "." + TrajectoryRecorder.EXTENSION);
+        // Recording replaces the file - never the one being played back
+        if (replayPath != null && replayPath.equals(path.toAbsolutePath().normalize())) {
+            controlPanel.showRecording(false);
+            showStateError(path.getFileName() + " is being replayed - record to another file");
+            return;
+        }
+        // About RECORD_RATE frames per second of wall time at the current physics rate
+        int stepRate = simulationLoop != null ? simulationLoop.getStepRate() : DEFAULT_PHYSICS_RATE;
+        int stepInterval = Math.max(1, Math.round((float) stepRate / RECORD_RATE));
+        TrajectoryRecorder started;
+        try {
+            started = new TrajectoryRecorder(path, stepInterval);
+        } catch (IOException e) {
+            controlPanel.showRecording(false);
+            showStateError("Could not record to " + path.getFileName() + ": " + e.getMessage());
+            return;
+        }
+        runOnSimulationThread(() -> recorder = started);
+    }
+
+    /**
+     * Closes a recording the simulation thread no longer writes to
+     */
+    private void finishRecording(TrajectoryRecorder stopped) {
+        try {
+            stopped.close();
+            if (stopped.getFramesDropped() > 0) {
+                System.err.println("Trajectory recording dropped " + stopped.getFramesDropped() + " of "
+                                   + (stopped.getFramesRecorded() + stopped.getFramesDropped()) + " frames");
+            }
+        } catch (IOException e) {
+            showStateError("Recording failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Replaces the view of the live simulation with a recording the user
+     * picks. The live simulation waits, unchanged, until the replay is left.
+     */
+    private void openReplay() {
+        JFileChooser chooser = createRecordingChooser();
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        Path path = chooser.getSelectedFile().toPath().toAbsolutePath().normalize();
+        TrajectoryReader opened;
+        try {
+            opened = new TrajectoryReader(path);
+        } catch (IOException e) {
+            showStateError("Could not open " + path.getFileName() + ": " + e.getMessage());
+            return;
+        }
+        replayPath = path;
+        replayFrameTime = opened.getFrameTime();
+        runOnSimulationThread(() -> {
+            closeReplay();
+            replay = opened;
+            replayClock = opened.getFrameTime();
+        });
+        forgetShownPlanets();
+        replayBar.open(path.getFileName().toString(), opened.getStartTime(), opened.getEndTime());
+        add(replayBar, BorderLayout.SOUTH);
+        revalidate();
+        isPaused = false;
+        requestRepaint();
+    }
+
+    /**
+     * Moves the replay on by one step's worth of simulated time. Stops at the
+     * end of the recording.
+     */
+    private void advanceReplay(double deltaTime) {
+        replayClock += deltaTime * engine.getTimeFactor();
+        if (replayClock >= replay.getEndTime()) {
+            replayClock = replay.getEndTime();
+            isPaused = true;
+        }
+        showReplayFrame();
+    }
+
+    /**
+     * Jumps the replay to a simulated time, e.g. from the replay bar's slider
+     */
+    private void seekReplay(double time) {
+        runOnSimulationThread(() -> {
+            if (replay != null) {
+                replayClock = time;
+                showReplayFrame();
+            }
+        });
+    }
+
+    /**
+     * Plays or pauses the replay; playing from the end starts over
+     */
+    private void toggleReplayPlayback() {
+        if (isPaused) {
+            runOnSimulationThread(() -> {
+                if (replay != null && replayClock >= replay.getEndTime()) {
+                    replayClock = replay.getStartTime();
+                    showReplayFrame();
+                }
+            });
+        }
+        isPaused = !isPaused;
+    }
+
+    /**
+     * Decodes the frame at the replay clock. Simulation thread only.
+     */
+    private void showReplayFrame() {
+        try {
+            replayFrameTime = replay.seek(replayClock);
+        } catch (IOException e) {
+            closeReplay();
+            showStateError("Could not replay the recording: " + e.getMessage());
+            SwingUtilities.invokeLater(this::hideReplayBar);
+        }
+    }
+
+    /**
+     * Goes back to the live simulation
+     */
+    private void exitReplay() {
+        runOnSimulationThread(this::closeReplay);
+        hideReplayBar();
+    }
+
+    private void hideReplayBar() {
+        replayPath = null;
+        replayBar.close();
+        remove(replayBar);
+        revalidate();
+        forgetShownPlanets();
+        requestRepaint();
+    }
+
+    /**
+     * Closes the replayed recording, if any. Simulation thread only, or once it has stopped.
+     */
+    private void closeReplay() {
+        if (replay == null) return;
+        try {
+            replay.close();
+        } catch (IOException e) {
+            // Only read from - nothing is lost
+        }
+        replay = null;
+    }
+
+    /**
+     * Forgets the clicked, hovered and box-selected planets when the planets
+     * on screen are replaced by others
+     */
+    private void forgetShownPlanets() {
+        clickedPlanet = null;
+        hoveredPlanet = null;
+        clearBoxSelection();
+    }
+
+    /**
+     * Publishes the bodies to draw - the replayed frame while replaying,
+     * otherwise the live simulation. Simulation thread only.
+     */
+    private void publishSnapshot() {
+        if (replay != null) {
+            snapshots.publish(replay.getBodies(), replay.getFrameTime());
+        } else {
+            snapshots.publish(engine.getBodies(), engine.getSimulationTime());
+        }
+    }
+
+    private JFileChooser createRecordingChooser() {
+        JFileChooser chooser = new JFileChooser(new File("."));
+        chooser.setFileFilter(new FileNameExtensionFilter("Trajectory recording (*." + TrajectoryRecorder.EXTENSION + ")",
+                                                          TrajectoryRecorder.EXTENSION));
+        return chooser;
+    }
+
+    private JFileChooser createScenarioChooser() {
+        // Start in the bundled examples when running from the project directory
+        File examples = new File("resources/scenarios");
+        JFileChooser chooser = new JFileChooser(examples.isDirectory() ? examples : new File("."));
+        chooser.setFileFilter(new FileNameExtensionFilter("Scenario (*." + ScenarioFile.EXTENSION + ")",
+                                                          ScenarioFile.EXTENSION));
+        return chooser;
+    }
+
+    private JFileChooser createStateChooser() {
+        JFileChooser chooser = new JFileChooser(new File("."));
+        chooser.setFileFilter(new FileNameExtensionFilter("Simulation state (*." + StateFile.EXTENSION + ")",
+                                                          StateFile.EXTENSION));
+        return chooser;
+    }
+
+    private void showStateError(String message) {
+        SwingUtilities.invokeLater(() ->
+            JOptionPane.showMessageDialog(this, message, "Error", JOptionPane.ERROR_MESSAGE));
+    }
+
     /**
      * Converts screen coordinates to world coordinates.
      * Uses AffineTransform to exactly reverse the drawing transformation.
@@ -328,8 +910,8 @@ public class GravitySimulation extends BaseSimulation {
      */
     private double[] screenToWorld(int screenX, int screenY) {
         // Use the same center calculation as drawing code
-        int centerX = drawingPanel.getWidth() / 2;
-        int centerY = drawingPanel.getHeight() / 2;
+        int centerX = view.getWidth() / 2;
+        int centerY = view.getHeight() / 2;
         
         // Build the forward transformation (same as drawing code)
         AffineTransform transform = new AffineTransform();
@@ -383,7 +965,7 @@ public class GravitySimulation extends BaseSimulation {
             @Override
             public void actionPerformed(ActionEvent e) {
                 zoomLevel *= 2.0;
-                drawingPanel.repaint();
+                requestRepaint();
             }
         };
         
@@ -392,7 +974,7 @@ public class GravitySimulation extends BaseSimulation {
             @Override
             public void actionPerformed(ActionEvent e) {
                 zoomLevel /= 2.0;
-                drawingPanel.repaint();
+                requestRepaint();
             }
         };
         
@@ -407,6 +989,21 @@ public class GravitySimulation extends BaseSimulation {
         
         actionMap.put("zoomIn", zoomInAction);
         actionMap.put("zoomOut", zoomOutAction);
+        
+        // The canvas isn't a Swing component, so key bindings never see its key
+        // presses - forward them to the same actions
+        if (renderCanvas != null) {
+            renderCanvas.addKeyListener(new KeyAdapter() {
+                @Override
+                public void keyPressed(KeyEvent e) {
+                    Object name = inputMap.get(KeyStroke.getKeyStrokeForEvent(e));
+                    Action action = name != null ? actionMap.get(name) : null;
+                    if (action != null) {
+                        action.actionPerformed(new ActionEvent(renderCanvas, ActionEvent.ACTION_PERFORMED, name.toString()));
+                    }
+                }
+            });
+        }
     }
     
     
@@ -425,273 +1022,288 @@ public class GravitySimulation extends BaseSimulation {
             return;
         }
         
-        List<Planet> toAdd = new ArrayList<>();
-        List<Planet> toRemove = new ArrayList<>();
-
-        for (Planet planet : planets) {
-            if (toRemove.contains(planet)) continue;
-            
-            // Skip PointMass objects - they don't move or need force calculations
-            if (planet instanceof PointMass) continue;
-            
-            // Initialize total force components
-            double totalForceX = 0.0;
-            double totalForceY = 0.0;
-
-            for (Planet other : planets) {
-                if (planet == other) continue;
-                if (toRemove.contains(other)) continue;
-
-                // Check for collisions
-                if (planet.collidesWith(other)) {
-                    if (bounce) {
-                        if (other instanceof PointMass) {
-                            planet.bouncePointMass(coefficientOfRestitution);
-                        } else {
-                            planet.bouncePlanet(coefficientOfRestitution, other);
-                        }
-                    } else {
-                        // Handle merge - PointMass always wins
-                        if (other instanceof PointMass) {
-                            PointMass merged = ((PointMass) other).merge(planet);
-                            toAdd.add(merged);
-                            toRemove.add(planet);
-                            toRemove.add(other);
-                        } else {
-                            Planet merged = planet.merge(other);
-                            toAdd.add(merged);
-                            toRemove.add(planet);
-                            toRemove.add(other);
-                        }
-                    }
-                    break; // stop computing further for this planet
-                }
-
-                // Compute gravitational force
-                double[] force = planet.gravitationalForceFrom(other, gravitationalConstant);
-                totalForceX += force[0];
-                totalForceY += force[1];
-            }
-
-            // Skip velocity update if planet is set to be removed
-            if (toRemove.contains(planet)) continue;
-
-            // Newton's second law: F = ma → a = F/m
-            double accelerationX = totalForceX / planet.mass;
-            double accelerationY = totalForceY / planet.mass;
-
-            planet.updateVelocity(accelerationX, accelerationY, deltaTime * timeFactor);
+        if (replay != null) {
+            advanceReplay(deltaTime);
+            return;
         }
-
-        // Apply removals and additions safely after iteration
-        planets.removeAll(toRemove);
-        planets.addAll(toAdd);
         
-        // Update positions based on velocities (after all velocities are updated)
-        for (Planet planet : planets) {
-            planet.updatePosition(deltaTime, timeFactor);
+        engine.step(deltaTime);
+        if (recorder != null) {
+            recorder.stepCompleted(engine.getBodies(), engine.getSimulationTime());
         }
     }
     
     
     @Override
     public void render() {
-        repaint();
+        drawingPanel.repaint();
+    }
+    
+    /**
+     * Redraws soon. Only needed with Swing repaints - active rendering draws every frame anyway.
+     */
+    private void requestRepaint() {
+        if (!activeRendering) {
+            drawingPanel.repaint();
+        }
     }
     
     
     @Override
     public void start() {
         initialize();
-    
-        // 1000ms / 60 FPS ≈ 16.67ms per frame
-        animationTimer = new Timer(16, new AbstractAction() {
-            @Override
-            public void actionPerformed(ActionEvent e) {
-                update(DELTA_TIME);
-                render();
-            }
-        });
         
+        // Physics runs on its own thread and publishes a snapshot after each batch of steps
+        simulationLoop = new FixedStepLoop(
+            this::applyPendingChanges,
+            this::update,
+            this::publishSnapshot,
+            () -> isPaused,
+            DEFAULT_PHYSICS_RATE
+        );
+    
         setVisible(true);
         
-        // Start the animation timer
-        animationTimer.start();
+        // The buffer strategy needs the canvas on screen; without one, fall back to Swing repaints
+        if (activeRendering && !createBufferStrategy()) {
+            useSwingRendering();
+        }
+        
+        simulationLoop.start();
+        if (activeRendering) {
+            rendering = true;
+            renderThread = new Thread(this::runRenderLoop, "gravity-render");
+            renderThread.setDaemon(true);
+            renderThread.start();
+        } else {
+            // 1000ms / 60 FPS ≈ 16.67ms per frame - only repaints, never steps the physics
+            renderTimer = new Timer(1000 / framePacer.getTargetFps(), new AbstractAction() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    render();
+                }
+            });
+            renderTimer.start();
+        }
+    }
+    
+    /**
+     * Sets up double-buffered page flipping on the canvas (a blitting back
+     * buffer where flipping isn't available).
+     * 
+     * @return false if the canvas can't have a buffer strategy
+     */
+    private boolean createBufferStrategy() {
+        try {
+            renderCanvas.createBufferStrategy(2);
+            return renderCanvas.getBufferStrategy() != null;
+        } catch (RuntimeException e) {
+            System.err.println("Active rendering unavailable (" + e + ") - using Swing repaints");
+            return false;
+        }
+    }
+    
+    /**
+     * Replaces the canvas with the Swing drawing panel.
+     */
+    private void useSwingRendering() {
+        activeRendering = false;
+        remove(renderCanvas);
+        renderCanvas = null;
+        view = drawingPanel;
+        setupMouseListeners();
+        add(view, BorderLayout.CENTER);
+        view.setFocusable(true);
+        view.requestFocus();
+        revalidate();
+    }
+    
+    /**
+     * Active rendering: draws a frame into the back buffer and flips it, at
+     * the pace of the frame pacer. Render thread only.
+     */
+    private void runRenderLoop() {
+        while (rendering) {
+            framePacer.awaitNextFrame();
+            BufferStrategy strategy = renderCanvas.getBufferStrategy();
+            int width = renderCanvas.getWidth();
+            int height = renderCanvas.getHeight();
+            if (strategy == null || width <= 0 || height <= 0) {
+                continue;
+            }
+            try {
+                // Redraw if the back buffer's contents were lost (e.g. a display mode change)
+                do {
+                    do {
+                        Graphics2D g2d = (Graphics2D) strategy.getDrawGraphics();
+                        try {
+                            renderFrame(g2d, width, height);
+                        } finally {
+                            g2d.dispose();
+                        }
+                    } while (strategy.contentsRestored());
+                    strategy.show();
+                } while (strategy.contentsLost());
+            } catch (IllegalStateException e) {
+                // The canvas went away while the window was closing
+                continue;
+            }
+            Toolkit.getDefaultToolkit().sync();
+        }
     }
     
     @Override
     public void stop() {
-        if (animationTimer != null) {
-            animationTimer.stop();
-        }
+        stopLoops();
         dispose();
     }
     
+    /**
+     * Stops the repaint timer or render thread, and the physics thread
+     */
+    private void stopLoops() {
+        if (renderTimer != null) {
+            renderTimer.stop();
+        }
+        if (renderThread != null) {
+            rendering = false;
+            try {
+                renderThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            renderThread = null;
+        }
+        if (simulationLoop != null) {
+            simulationLoop.stop();
+        }
+        if (recorder != null) {
+            finishRecording(recorder);
+            recorder = null;
+        }
+        closeReplay();
+        engine.shutdown();
+    }
+    
     
 
-    private class DrawingPanel extends JPanel {
-        @Override
-        protected void paintComponent(Graphics g) {
-            super.paintComponent(g); // Important! Clears previous frame
-            
-            // Cast Graphics to Graphics2D for better drawing capabilities
-            Graphics2D g2d = (Graphics2D) g;
-            
-            // Enable anti-aliasing - makes edges smoother (less pixelated)
-            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, 
-                                 RenderingHints.VALUE_ANTIALIAS_ON);
-            
-            // Draw dark space background
-            g2d.setColor(Color.BLACK);
-            g2d.fillRect(0, 0, getWidth(), getHeight());
+    /**
+     * Draws one frame: background, planets, click marker and HUD.
+     * Runs on the EDT with Swing repaints, or on the render thread.
+     */
+    private void renderFrame(Graphics2D g2d, int width, int height) {
+        // Enable anti-aliasing - makes edges smoother (less pixelated)
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, 
+                             RenderingHints.VALUE_ANTIALIAS_ON);
+        
+        // Dark space background with the reference grid - redrawn only after a pan or zoom
+        gridLayer.draw(g2d, zoomLevel, panLevelX, panLevelY, width, height);
+        
+        // Draw the visible planets from the latest snapshots - the store itself
+        // belongs to the simulation thread
+        StateSnapshot snapshot = interpolatedFrame();
+        planetRenderer.draw(g2d, snapshot, zoomLevel, panLevelX, panLevelY, width, height);
+        
+        // Hover ring and selection box, in screen coordinates
+        drawSelectionMarkers(g2d, snapshot, width, height);
 
-            // Save the original transform for text drawing
-            AffineTransform originalTransform = g2d.getTransform();
-            
-            // Apply zoom centered on screen center
-            int screenCenterX = getWidth() / 2;
-            int screenCenterY = getHeight() / 2;
-            g2d.translate(screenCenterX, screenCenterY);
-            g2d.scale(zoomLevel, zoomLevel);
-            g2d.translate(-screenCenterX, -screenCenterY);
-            
-            // Apply pan
-            g2d.translate(panLevelX, panLevelY);
-            
-            // Draw grid background for position reference
-            drawGrid(g2d);
-            
-            // Draw all planets
-            if (planets != null) {
-                for (Planet planet : planets) {
-                    planet.draw(g2d);
-                }
-            }
-            
-            // Draw red X marker at last click position (in world coordinates)
-            // Restore original transform for text and click marker (so they're not zoomed/panned)
-            g2d.setTransform(originalTransform);
-            
-            // Draw click marker in screen coordinates so it stays the same size
-            drawClickMarker(g2d);
-
-            if (clickedPlanet != null) {
-                Planet selectedPlanet = clickedPlanet;
-
-                // Draw info box
-                int infoX = 10;
-                int infoY = 70;
-                int boxWidth = 250;
-                int boxHeight = 190;  // Increased height for name field
-
-                g2d.setColor(new Color(0, 0, 0, 200));
-                g2d.fillRect(infoX, infoY, boxWidth, boxHeight);
-                
-                // Border
-                g2d.setColor(Color.YELLOW);
-                g2d.drawRect(infoX, infoY, boxWidth, boxHeight);
-                
-                // Planet info text
-                g2d.setColor(Color.WHITE);
-                int textY = infoY + 20;
-                g2d.drawString("=== SELECTED PLANET ===", infoX + 10, textY);
-                textY += 20;
-                g2d.drawString(String.format("Name: %s", selectedPlanet.name != null ? selectedPlanet.name : "Unnamed"), infoX + 10, textY);
-                textY += 20;
-                g2d.drawString(String.format("Mass: %.2f", selectedPlanet.mass), infoX + 10, textY);
-                textY += 20;
-                g2d.drawString(String.format("Radius: %.2f", selectedPlanet.radius), infoX + 10, textY);
-                textY += 20;
-                g2d.drawString(String.format("Position: (%.1f, %.1f)", selectedPlanet.x, selectedPlanet.y), 
-                            infoX + 10, textY);
-                textY += 20;
-                g2d.drawString(String.format("Velocity: (%.2f, %.2f)", selectedPlanet.vx, selectedPlanet.vy), 
-                            infoX + 10, textY);
-                textY += 20;
-                
-                // Speed calculation
-                double speed = Math.sqrt(selectedPlanet.vx * selectedPlanet.vx + 
-                                        selectedPlanet.vy * selectedPlanet.vy);
-                g2d.drawString(String.format("Speed: %.2f", speed), infoX + 10, textY);
-                textY += 20;
-                
-                // Period of Rotation
-                double period = selectedPlanet.getPeriodOfRotation();
-                if (period > 0) {
-                    g2d.drawString(String.format("Period (T): %.2f s", period), infoX + 10, textY);
-                } else {
-                    g2d.drawString("Period (T): Not rotating", infoX + 10, textY);
-                }
-            }
-            
-            // Draw info text (always at same screen position, not affected by zoom/pan)
-            g2d.setColor(Color.WHITE);
-            g2d.drawString("Planets: " + (planets != null ? planets.size() : 0), 10, 20);
-            g2d.drawString("G = " + gravitationalConstant, 10, 35);
-            if (isPaused) {
-                g2d.setColor(Color.YELLOW);
-                g2d.drawString("PAUSED - Press SPACE to resume", 10, 50);
-            }
-            g2d.setColor(Color.WHITE);
-            g2d.drawString("Controls: Click to set position, then use panel on right. Drag = pan, SPACE = pause/resume", 10, getHeight() - 10);
+        // Draw click marker in screen coordinates so it stays the same size
+        drawClickMarker(g2d, width, height);
+
+        // Counters, selected planet info and controls - text is cached and
+        // only redrawn when a displayed value changes
+        hudOverlay.draw(g2d, height, snapshot, clickedPlanet, isPaused, planetRenderer.getVisibleCount(),
+                        boxSelectionCount,
+                        engine.getGravitationalConstant(),
+                        simulationLoop != null ? simulationLoop.getMeasuredStepRate() : 0.0,
+                        framePacer.getMeasuredFps());
+
+        framePacer.frameRendered();
+    }
+    
+    /**
+     * Interpolates between the last two snapshots by how far real time has
+     * moved on since the latest one, so motion stays smooth when the
+     * physics and frame rates differ. Drawn positions lag the physics by
+     * one snapshot interval.
+     */
+    private StateSnapshot interpolatedFrame() {
+        StateSnapshot current = snapshots.latest();
+        StateSnapshot previous = snapshots.previous();
+        double alpha = 1.0;
+        long interval = current.publishedNanos - previous.publishedNanos;
+        if (interpolate && previous.count > 0 && interval > 0 && interval <= MAX_INTERPOLATION_NANOS) {
+            alpha = Math.min(1.0, (System.nanoTime() - current.publishedNanos) / (double) interval);
         }
+        synchronized (frame) {
+            frame.interpolate(previous, current, alpha);
+        }
+        return frame;
+    }
 
-        /**
-         * Draws a grid background to provide visual position reference.
-         * The grid pans with the view.
-         */
-        private void drawGrid(Graphics2D g2d) {
-            // Grid spacing (in world coordinates)
-            int gridSpacing = 100;
-            
-            // Draw a large grid covering a wide area
-            // Java will automatically clip lines outside the visible area
-            int gridSize = 10000; // Large area covered by grid
-            int startX = -gridSize;
-            int endX = gridSize;
-            int startY = -gridSize;
-            int endY = gridSize;
-            
-            // Set grid color and stroke
-            g2d.setColor(new Color(40, 40, 40)); // Dark gray
-            g2d.setStroke(new BasicStroke(1.0f));
-            
-            // Draw vertical lines
-            for (int x = startX; x <= endX; x += gridSpacing) {
-                g2d.drawLine(x, startY, x, endY);
-            }
-            
-            // Draw horizontal lines
-            for (int y = startY; y <= endY; y += gridSpacing) {
-                g2d.drawLine(startX, y, endX, y);
-            }
+    /**
+     * Rings the planet under the mouse and draws the selection box being dragged
+     */
+    private void drawSelectionMarkers(Graphics2D g2d, StateSnapshot snapshot, int width, int height) {
+        Planet hovered = hoveredPlanet;
+        int index = hoveredIndex;
+        // The index comes from the frame the mouse last moved over; skip it if the planet has moved on
+        if (hovered != null && index < snapshot.count && snapshot.views[index] == hovered) {
+            int centerX = width / 2;
+            int centerY = height / 2;
+            double screenX = zoomLevel * (snapshot.x[index] + panLevelX - centerX) + centerX;
+            double screenY = zoomLevel * (snapshot.y[index] + panLevelY - centerY) + centerY;
+            double ring = Math.max(zoomLevel * snapshot.radius[index] + 4, 6);
+            g2d.setColor(HOVER_COLOR);
+            g2d.setStroke(HOVER_STROKE);
+            g2d.drawOval((int) (screenX - ring), (int) (screenY - ring), (int) (2 * ring), (int) (2 * ring));
+        }
+
+        if (isBoxSelecting) {
+            int x = Math.min(boxStartX, boxEndX);
+            int y = Math.min(boxStartY, boxEndY);
+            int w = Math.abs(boxEndX - boxStartX);
+            int h = Math.abs(boxEndY - boxStartY);
+            g2d.setColor(SELECTION_FILL);
+            g2d.fillRect(x, y, w, h);
+            g2d.setColor(Color.YELLOW);
+            g2d.drawRect(x, y, w, h);
         }
+    }
+
+    /**
+     * Draws a red X marker at the last click position
+     */
+    private void drawClickMarker(Graphics2D g2d, int width, int height) {
+        // Convert world coordinates to screen coordinates for drawing
+        int centerX = width / 2;
+        int centerY = height / 2;
+        double screenX = zoomLevel * (clickedWorldX + centerX) - centerX + panLevelX;
+        double screenY = zoomLevel * (clickedWorldY + centerY) - centerY + panLevelY;
         
-        /**
-         * Draws a red X marker at the last click position
-         */
-        private void drawClickMarker(Graphics2D g2d) {
-            // Convert world coordinates to screen coordinates for drawing
-            int centerX = getWidth() / 2;
-            int centerY = getHeight() / 2;
-            double screenX = zoomLevel * (clickedWorldX + centerX) - centerX + panLevelX;
-            double screenY = zoomLevel * (clickedWorldY + centerY) - centerY + panLevelY;
-            
-            // Size of the X marker (in screen pixels, stays constant)
-            int markerSize = 15;
-            int halfSize = markerSize / 2;
-            
-            // Set color and stroke for the X
-            g2d.setColor(Color.RED);
-            g2d.setStroke(new BasicStroke(2.0f));
-            
-            // Draw the X: two diagonal lines at screen coordinates
-            int x = (int) screenX;
-            int y = (int) screenY;
-            
-            // Draw diagonal lines forming an X
-            g2d.drawLine(x - halfSize, y - halfSize, x + halfSize, y + halfSize);
-            g2d.drawLine(x - halfSize, y + halfSize, x + halfSize, y - halfSize);
+        // Size of the X marker (in screen pixels, stays constant)
+        int markerSize = 15;
+        int halfSize = markerSize / 2;
+        
+        // Set color and stroke for the X
+        g2d.setColor(Color.RED);
+        g2d.setStroke(MARKER_STROKE);
+        
+        // Draw the X: two diagonal lines at screen coordinates
+        int x = (int) screenX;
+        int y = (int) screenY;
+        
+        // Draw diagonal lines forming an X
+        g2d.drawLine(x - halfSize, y - halfSize, x + halfSize, y + halfSize);
+        g2d.drawLine(x - halfSize, y + halfSize, x + halfSize, y - halfSize);
+    }
+    
+
+    private class DrawingPanel extends JPanel {
+        @Override
+        protected void paintComponent(Graphics g) {
+            super.paintComponent(g); // Important! Clears previous frame
+            renderFrame((Graphics2D) g, getWidth(), getHeight());
         }
     }
 }
@@ -0,0 +1,103 @@
+package com.physics.simulations.gravity;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+
+/**
+ * GridLayer - the black background with its reference grid, cached in an
+ * offscreen image.
+ *
+ * Only the grid lines that cross the viewport are drawn, in screen
+ * coordinates and one pixel wide. The spacing starts at 100 world units and
+ * doubles or halves with the zoom so that lines stay 64 to 128 pixels apart
+ * on screen. The image is redrawn only when the pan, zoom or panel size
+ * changes; every other frame the background is a single blit.
+ */
+public class GridLayer {
+
+    private static final Color BACKGROUND = Color.BLACK;
+    private static final Color LINE = new Color(40, 40, 40);
+
+    /** Grid spacing (world units) at zoom 1 */
+    static final double BASE_SPACING = 100.0;
+
+    private static final double MIN_SCREEN_SPACING = 64.0;
+    private static final double MAX_SCREEN_SPACING = 128.0;
+
+    private BufferedImage image;
+    private double cachedZoom = Double.NaN, cachedPanX, cachedPanY;
+
+    /**
+     * Draws the background and grid covering the panel.
+     *
+     * @param g2d Graphics in screen coordinates
+     * @param zoom Zoom level, centred on the middle of the panel
+     * @param panX Pan offset in world units (applied before the zoom)
+     * @param panY Pan offset in world units
+     */
+    public void draw(Graphics2D g2d, double zoom, double panX, double panY, int width, int height) {
+        if (width <= 0 || height <= 0) return;
+        if (image == null || image.getWidth() != width || image.getHeight() != height) {
+            image = createImage(width, height);
+            cachedZoom = Double.NaN;
+        }
+        if (zoom != cachedZoom || panX != cachedPanX || panY != cachedPanY) {
+            render(zoom, panX, panY, width, height);
+            cachedZoom = zoom;
+            cachedPanX = panX;
+            cachedPanY = panY;
+        }
+        g2d.drawImage(image, 0, 0, null);
+    }
+
+    /**
+     * @return Spacing between grid lines in world units at the given zoom
+     */
+    static double spacingFor(double zoom) {
+        double spacing = BASE_SPACING;
+        while (spacing * zoom < MIN_SCREEN_SPACING) spacing *= 2;
+        while (spacing * zoom >= MAX_SCREEN_SPACING) spacing /= 2;
+        return spacing;
+    }
+
+    private void render(double zoom, double panX, double panY, int width, int height) {
+        Graphics2D g = image.createGraphics();
+        g.setColor(BACKGROUND);
+        g.fillRect(0, 0, width, height);
+        g.setColor(LINE);
+
+        int centerX = width / 2;
+        int centerY = height / 2;
+        double spacing = spacingFor(zoom);
+
+        // screen = zoom * (world + pan - center) + center, so the viewport
+        // spans these world coordinates
+        double minX = centerX - centerX / zoom - panX;
+        double maxX = centerX + (width - centerX) / zoom - panX;
+        double minY = centerY - centerY / zoom - panY;
+        double maxY = centerY + (height - centerY) / zoom - panY;
+
+        for (double x = Math.ceil(minX / spacing) * spacing; x <= maxX; x += spacing) {
+            int screenX = (int) Math.floor(zoom * (x + panX - centerX) + centerX);
+            g.drawLine(screenX, 0, screenX, height - 1);
+        }
+        for (double y = Math.ceil(minY / spacing) * spacing; y <= maxY; y += spacing) {
+            int screenY = (int) Math.floor(zoom * (y + panY - centerY) + centerY);
+            g.drawLine(0, screenY, width - 1, screenY);
+        }
+        g.dispose();
+    }
+
+    private static BufferedImage createImage(int width, int height) {
+        if (GraphicsEnvironment.isHeadless()) {
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        }
+        return GraphicsEnvironment.getLocalGraphicsEnvironment()
+            .getDefaultScreenDevice()
+            .getDefaultConfiguration()
+            .createCompatibleImage(width, height, Transparency.OPAQUE);
+    }
+}
@@ -0,0 +1,232 @@
+package com.physics.simulations.gravity;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+/**
+ * HeadlessMain - runs the gravity simulation without a window.
+ *
+ * Loads a scenario, advances it a fixed number of steps as fast as possible,
+ * prints timing figures and writes the final state as CSV. Meant for batch
+ * runs and parameter sweeps on machines with no display:
+ *
+ *   java -cp out com.physics.simulations.gravity.HeadlessMain --scenario disc --bodies 5000 --steps 500 --solver barnes-hut
+ *
+ * Run with --help for all options.
+ */
+public class HeadlessMain {
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+        "Usage: HeadlessMain [options]",
+        "  --scenario NAME   default | disc | plummer | galaxy | belt | collision (default: disc),",
+        "                    or a ." + ScenarioFile.EXTENSION + " file (its settings win)",
+        "  --bodies N        bodies in the generated scenarios (default: 1000)",
+        "  --seed N          random seed (default: 42)",
+        "  --steps N         steps to run (default: 1000)",
+        "  --dt SECONDS      step length (default: 1/240)",
+        "  --integrator NAME euler | verlet | yoshida | rk4 | adaptive (default: verlet)",
+        "  --solver NAME     direct | barnes-hut | fast-multipole (or fmm) | particle-mesh (or pm) | p3m",
+        "                    (default: direct)",
+        "  --theta VALUE     Barnes-Hut and fast multipole opening angle (default: 0.5)",
+        "  --order P         fast multipole expansion order, " + FastMultipoleSolver.MIN_ORDER + " to "
+            + FastMultipoleSolver.MAX_ORDER + " (default: " + GravityEngine.DEFAULT_EXPANSION_ORDER + ")",
+        "  --mesh N          particle mesh points per side, a power of two from " + ParticleMeshSolver.MIN_MESH_SIZE,
+        "                    to " + ParticleMeshSolver.MAX_MESH_SIZE + " (default: " + GravityEngine.DEFAULT_MESH_SIZE + ")",
+        "  --workers N       force threads (default: 1)",
+        "  --gravity VALUE   gravitational constant (default: 6000)",
+        "  --bounce          bounce colliding bodies instead of merging them",
+        "  --out FILE        final state CSV (default: final_state.csv)",
+        "  --load FILE       start from a saved state instead of a scenario (its G and bounce win)",
+        "  --save FILE       also save the final state, to open in the window or continue later",
+        "  --record FILE     record the trajectories while running",
+        "  --record-every N  record every N-th step (default: 8)");
+
+    public static void main(String[] args) throws IOException {
+        // No window is ever opened - keep AWT from looking for a display
+        System.setProperty("java.awt.headless", "true");
+
+        String scenario = "disc";
+        int bodyCount = 1000;
+        long seed = 42L;
+        int steps = 1000;
+        double dt = 1.0 / 240.0;
+        String integrator = "verlet";
+        String solver = "direct";
+        double theta = 0.5;
+        int order = GravityEngine.DEFAULT_EXPANSION_ORDER;
+        int meshSize = GravityEngine.DEFAULT_MESH_SIZE;
+        int workers = 1;
+        double gravity = 6000.0;
+        boolean bounce = false;
+        String out = "final_state.csv";
+        String load = null;
+        String save = null;
+        String record = null;
+        int recordEvery = 8;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                if (option.equals("--help") || option.equals("-h")) {
+                    System.out.println(USAGE);
+                    return;
+                }
+                if (option.equals("--bounce")) {
+                    bounce = true;
+                    continue;
+                }
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + option);
+                }
+                String value = args[++i];
+                switch (option) {
+                    case "--scenario": scenario = value; break;
+                    case "--bodies": bodyCount = Integer.parseInt(value); break;
+                    case "--seed": seed = Long.parseLong(value); break;
+                    case "--steps": steps = Integer.parseInt(value); break;
+                    case "--dt": dt = Double.parseDouble(value); break;
+                    case "--integrator": integrator = value; break;
+                    case "--solver": solver = value; break;
+                    case "--theta": theta = Double.parseDouble(value); break;
+                    case "--order": order = Integer.parseInt(value); break;
+                    case "--mesh": meshSize = Integer.parseInt(value); break;
+                    case "--workers": workers = Integer.parseInt(value); break;
+                    case "--gravity": gravity = Double.parseDouble(value); break;
+                    case "--out": out = value; break;
+                    case "--load": load = value; break;
+                    case "--save": save = value; break;
+                    case "--record": record = value; break;
+                    case "--record-every": recordEvery = Integer.parseInt(value); break;
+                    default: throw new IllegalArgumentException("Unknown option " + option);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        GravityEngine engine = new GravityEngine();
+        try {
+            engine.setGravitationalConstant(gravity);
+            engine.setBounce(bounce);
+            engine.setIntegrator(integratorName(engine, integrator));
+            engine.setForceSolver(solverName(engine, solver));
+            engine.setTheta(theta);
+            engine.setExpansionOrder(order);
+            engine.setMeshSize(meshSize);
+            engine.setWorkers(workers);
+            if (load != null) {
+                StateFile.load(Paths.get(load), engine);
+                scenario = load;
+            } else if (scenario.endsWith("." + ScenarioFile.EXTENSION)) {
+                ScenarioFile.read(Paths.get(scenario)).apply(engine);
+            } else {
+                Scenarios.load(scenario, engine, bodyCount, seed);
+            }
+
+            int initialBodies = engine.getBodies().size();
+            ForceSolver forceSolver = engine.getForceSolver();
+            String solverDescription = forceSolver.getName();
+            if (forceSolver instanceof FastMultipoleSolver) {
+                solverDescription += " (p = " + engine.getExpansionOrder() + ")";
+            } else if (forceSolver instanceof ParticleMeshSolver) {
+                solverDescription += " (" + engine.getMeshSize() + " x " + engine.getMeshSize() + " mesh)";
+            }
+            System.out.printf(Locale.ROOT, "Scenario: %s (%d bodies), integrator: %s, solver: %s, theta: %.2f, workers: %d%n",
+                              scenario, initialBodies, engine.getIntegrator().getName(), solverDescription,
+                              engine.getTheta(), engine.getWorkers());
+
+            TrajectoryRecorder recorder = record != null ? new TrajectoryRecorder(Paths.get(record), recordEvery) : null;
+            long interactions = 0;
+            long start = System.nanoTime();
+            for (int step = 0; step < steps; step++) {
+                engine.step(dt);
+                interactions += engine.getStepInteractions();
+                if (recorder != null) {
+                    recorder.stepCompleted(engine.getBodies(), engine.getSimulationTime());
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+
+            double seconds = elapsed / 1e9;
+            System.out.printf(Locale.ROOT, "Steps: %d in %.3f s (%.1f steps/s)%n",
+                              steps, seconds, steps / seconds);
+            System.out.printf(Locale.ROOT, "Interactions: %d (%.2f ns per body-interaction)%n",
+                              interactions, interactions > 0 ? (double) elapsed / interactions : 0.0);
+            System.out.printf(Locale.ROOT, "Bodies: %d -> %d, simulated time: %.3f s%n",
+                              initialBodies, engine.getBodies().size(), engine.getSimulationTime());
+
+            if (recorder != null) {
+                recorder.close();
+                System.out.printf(Locale.ROOT, "Recorded %d frames (%d dropped), %.1f MB to %s%n",
+                                  recorder.getFramesRecorded(), recorder.getFramesDropped(),
+                                  recorder.getBytesWritten() / 1e6, record);
+            }
+
+            writeState(engine.getBodies(), out);
+            System.out.println("Final state written to " + out);
+            if (save != null) {
+                StateFile.save(Paths.get(save), engine, new StateFile.View(0.0, 0.0, 1.0));
+                System.out.println("Final state saved to " + save);
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    /**
+     * Maps a command line integrator name (e.g. "rk4") to the integrator's display name.
+     */
+    private static String integratorName(GravityEngine engine, String name) {
+        String wanted = normalize(name);
+        for (Integrator candidate : engine.getIntegrators()) {
+            if (normalize(candidate.getName()).contains(wanted)) {
+                return candidate.getName();
+            }
+        }
+        throw new IllegalArgumentException("Unknown integrator: " + name);
+    }
+
+    /**
+     * Maps a command line solver name (e.g. "barnes-hut") to the solver's display name.
+     */
+    private static String solverName(GravityEngine engine, String name) {
+        String wanted = normalize(name);
+        if (wanted.equals("fmm")) wanted = "fastmultipole";
+        if (wanted.equals("pm")) wanted = "particlemesh";
+        for (ForceSolver solver : engine.getForceSolvers()) {
+            if (normalize(solver.getName()).startsWith(wanted)) {
+                return solver.getName();
+            }
+        }
+        throw new IllegalArgumentException("Unknown solver: " + name);
+    }
+
+    private static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]", "");
+    }
+
+    /**
+     * Writes one CSV row per body.
+     */
+    static void writeState(BodyStore bodies, String path) throws IOException {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(path)))) {
+            writer.println("index,name,x,y,vx,vy,mass,radius,fixed");
+            for (int i = 0; i < bodies.count; i++) {
+                Planet view = bodies.views[i];
+                String name = view != null && view.name != null ? view.name.replace(",", " ") : "";
+                writer.printf(Locale.ROOT, "%d,%s,%.17g,%.17g,%.17g,%.17g,%.17g,%.17g,%b%n",
+                              i, name, bodies.x[i], bodies.y[i], bodies.vx[i], bodies.vy[i],
+                              bodies.mass[i], bodies.radius[i], bodies.fixed[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package com.physics.simulations.gravity;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * HudOverlay - the text drawn over the simulation: counters at the top,
+ * the selected planet's info box and the controls line at the bottom.
+ *
+ * Formatting and rasterizing text every frame makes garbage and costs more
+ * than the planets at low body counts. Here each line of text is a Row that
+ * keeps its text rendered in a small image. A row holds the values it shows
+ * rounded to the precision they are displayed with, and its text is only
+ * rebuilt and redrawn when one of those changes. Values are read at most
+ * REFRESH_HZ times a second, whatever the frame rate; in between, the HUD is
+ * a handful of blits. Selecting a planet or pausing shows up at once.
+ */
+public class HudOverlay {
+
+    /** How often the displayed values are read */
+    public static final int REFRESH_HZ = 10;
+    private static final long REFRESH_NANOS = 1_000_000_000L / REFRESH_HZ;
+
+    private static final Color BOX_BACKGROUND = new Color(0, 0, 0, 200);
+    private static final int BOX_X = 10, BOX_Y = 70, BOX_WIDTH = 250, BOX_HEIGHT = 190;
+    private static final int LINE_HEIGHT = 20;
+    private static final int BORDER = 1;
+    private static final BasicStroke BORDER_STROKE = new BasicStroke(2 * BORDER);
+
+    private final Row planets = new Row(3, Color.WHITE);
+    private final Row rates = new Row(3, Color.WHITE);
+    private final Row paused = new Row(0, Color.YELLOW);
+    private final Row controls = new Row(0, Color.WHITE);
+
+    private final Row title = new Row(0, Color.WHITE);
+    private final Row name = new Row(0, Color.WHITE);
+    private final Row mass = new Row(1, Color.WHITE);
+    private final Row radius = new Row(1, Color.WHITE);
+    private final Row position = new Row(2, Color.WHITE);
+    private final Row velocity = new Row(2, Color.WHITE);
+    private final Row speed = new Row(1, Color.WHITE);
+    private final Row period = new Row(1, Color.WHITE);
+
+    private final StringBuilder text = new StringBuilder(128);
+    private Font font;
+    private long lastRefresh;
+    private Planet shownPlanet;
+    private boolean shownPaused;
+    private boolean boxVisible;
+    private BufferedImage box;
+
+    /**
+     * Draws the HUD, reading new values if they are due.
+     *
+     * @param g2d Graphics in screen coordinates
+     * @param snapshot Frame being drawn
+     * @param selected Selected planet, or null
+     * @param visibleCount Planets inside the viewport
+     * @param selectedCount Planets in the box selection
+     * @param gravity Gravitational constant
+     * @param stepRate Measured physics steps per second
+     * @param frameRate Measured frames per second
+     */
+    public void draw(Graphics2D g2d, int height, StateSnapshot snapshot, Planet selected, boolean isPaused,
+                     int visibleCount, int selectedCount, double gravity, double stepRate, double frameRate) {
+        if (g2d.getFont() != font) {
+            font = g2d.getFont();
+            invalidate();
+        }
+        long now = System.nanoTime();
+        if (now - lastRefresh >= REFRESH_NANOS || selected != shownPlanet || isPaused != shownPaused) {
+            lastRefresh = now;
+            shownPlanet = selected;
+            shownPaused = isPaused;
+            FontMetrics metrics = g2d.getFontMetrics();
+            refreshCounters(metrics, snapshot.count, visibleCount, selectedCount, gravity, stepRate, frameRate);
+            int index = selected != null ? snapshot.indexOf(selected) : -1;
+            boxVisible = index >= 0;
+            if (boxVisible) {
+                refreshSelected(metrics, snapshot, index, selected);
+            }
+        }
+
+        if (boxVisible) {
+            g2d.drawImage(box, BOX_X - BORDER, BOX_Y - BORDER, null);
+        }
+
+        planets.draw(g2d, 10, 20);
+        rates.draw(g2d, 10, 35);
+        if (isPaused) {
+            paused.draw(g2d, 10, 50);
+        }
+        controls.draw(g2d, 10, height - 10);
+    }
+
+    private void refreshCounters(FontMetrics metrics, int count, int visibleCount, int selectedCount,
+                                 double gravity, double stepRate, double frameRate) {
+        if (planets.set(0, count).set(1, visibleCount).set(2, selectedCount).isStale()) {
+            text.setLength(0);
+            text.append("Planets: ").append(count).append(" (").append(visibleCount).append(" visible");
+            if (selectedCount > 0) {
+                text.append(", ").append(selectedCount).append(" selected");
+            }
+            text.append(')');
+            planets.render(text, metrics);
+        }
+        long hz = Math.round(stepRate), fps = Math.round(frameRate);
+        if (rates.set(0, Double.doubleToLongBits(gravity)).set(1, hz).set(2, fps).isStale()) {
+            text.setLength(0);
+            text.append("G = ").append(gravity).append("   Physics: ").append(hz)
+                .append(" Hz   Render: ").append(fps).append(" FPS");
+            rates.render(text, metrics);
+        }
+        if (paused.isStale()) {
+            paused.render("PAUSED - Press SPACE to resume", metrics);
+        }
+        if (controls.isStale()) {
+            controls.render("Controls: Click to set position, then use panel on right. "
+                + "Drag = pan, Shift+Drag = select, SPACE = pause/resume", metrics);
+        }
+    }
+
+    private void refreshSelected(FontMetrics metrics, StateSnapshot snapshot, int index, Planet planet) {
+        boolean changed = box == null;
+        if (title.isStale()) {
+            title.render("=== SELECTED PLANET ===", metrics);
+            changed = true;
+        }
+        String planetName = planet.name != null ? planet.name : "Unnamed";
+        if (name.setLabel(planetName).isStale()) {
+            text.setLength(0);
+            text.append("Name: ").append(planetName);
+            name.render(text, metrics);
+            changed = true;
+        }
+
+        long massValue = fixed(snapshot.mass[index], 2);
+        if (mass.set(0, massValue).isStale()) {
+            text.setLength(0);
+            appendFixed(text.append("Mass: "), massValue, 2);
+            mass.render(text, metrics);
+            changed = true;
+        }
+        long radiusValue = fixed(snapshot.radius[index], 2);
+        if (radius.set(0, radiusValue).isStale()) {
+            text.setLength(0);
+            appendFixed(text.append("Radius: "), radiusValue, 2);
+            radius.render(text, metrics);
+            changed = true;
+        }
+        long x = fixed(snapshot.x[index], 1), y = fixed(snapshot.y[index], 1);
+        if (position.set(0, x).set(1, y).isStale()) {
+            text.setLength(0);
+            appendFixed(text.append("Position: ("), x, 1);
+            appendFixed(text.append(", "), y, 1).append(')');
+            position.render(text, metrics);
+            changed = true;
+        }
+        double vx = snapshot.vx[index], vy = snapshot.vy[index];
+        long vxValue = fixed(vx, 2), vyValue = fixed(vy, 2);
+        if (velocity.set(0, vxValue).set(1, vyValue).isStale()) {
+            text.setLength(0);
+            appendFixed(text.append("Velocity: ("), vxValue, 2);
+            appendFixed(text.append(", "), vyValue, 2).append(')');
+            velocity.render(text, metrics);
+            changed = true;
+        }
+        long speedValue = fixed(Math.sqrt(vx * vx + vy * vy), 2);
+        if (speed.set(0, speedValue).isStale()) {
+            text.setLength(0);
+            appendFixed(text.append("Speed: "), speedValue, 2);
+            speed.render(text, metrics);
+            changed = true;
+        }
+
+        // Period of rotation; 0 means not rotating
+        double spin = snapshot.spin[index];
+        long periodValue = spin > 0.0 ? fixed(2 * Math.PI / spin, 2) : 0;
+        if (period.set(0, periodValue).isStale()) {
+            text.setLength(0);
+            if (periodValue > 0) {
+                appendFixed(text.append("Period (T): "), periodValue, 2).append(" s");
+            } else {
+                text.append("Period (T): Not rotating");
+            }
+            period.render(text, metrics);
+            changed = true;
+        }
+        if (changed) {
+            composeBox();
+        }
+    }
+
+    /**
+     * Draws the info box - background, border and rows - into its image,
+     * so a frame draws the whole box with one blit.
+     */
+    private void composeBox() {
+        if (box == null) {
+            box = createImage(BOX_WIDTH + 2 * BORDER, BOX_HEIGHT + 2 * BORDER);
+        }
+        Graphics2D g = box.createGraphics();
+        g.setComposite(AlphaComposite.Clear);
+        g.fillRect(0, 0, box.getWidth(), box.getHeight());
+        g.setComposite(AlphaComposite.Src);
+        g.setColor(BOX_BACKGROUND);
+        g.fillRect(BORDER, BORDER, BOX_WIDTH, BOX_HEIGHT);
+        g.setPaintMode();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setColor(Color.YELLOW);
+        g.setStroke(BORDER_STROKE);
+        g.drawRect(BORDER, BORDER, BOX_WIDTH, BOX_HEIGHT);
+
+        int x = BORDER + 10;
+        int y = BORDER + 20;
+        title.draw(g, x, y);
+        name.draw(g, x, y += LINE_HEIGHT);
+        mass.draw(g, x, y += LINE_HEIGHT);
+        radius.draw(g, x, y += LINE_HEIGHT);
+        position.draw(g, x, y += LINE_HEIGHT);
+        velocity.draw(g, x, y += LINE_HEIGHT);
+        speed.draw(g, x, y += LINE_HEIGHT);
+        period.draw(g, x, y + LINE_HEIGHT);
+        g.dispose();
+    }
+
+    /** Forces every row to be redrawn, e.g. after a font change */
+    private void invalidate() {
+        for (Row row : new Row[] {planets, rates, paused, controls, title, name,
+                                  mass, radius, position, velocity, speed, period}) {
+            row.image = null;
+        }
+        box = null;
+    }
+
+    private static BufferedImage createImage(int width, int height) {
+        if (GraphicsEnvironment.isHeadless()) {
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        }
+        return GraphicsEnvironment.getLocalGraphicsEnvironment()
+            .getDefaultScreenDevice()
+            .getDefaultConfiguration()
+            .createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+    }
+
+    private static final long[] POWERS_OF_TEN = {1, 10, 100, 1000};
+
+    /**
+     * @return value rounded to the given number of decimals, as an integer
+     *         number of 10^-decimals units
+     */
+    static long fixed(double value, int decimals) {
+        // Math.round saturates, and NaN rounds to 0
+        return Math.round(value * POWERS_OF_TEN[decimals]);
+    }
+
+    /**
+     * Appends a value from fixed() the way %.{decimals}f would print it.
+     */
+    static StringBuilder appendFixed(StringBuilder out, long units, int decimals) {
+        long scale = POWERS_OF_TEN[decimals];
+        if (units < 0) {
+            out.append('-');
+        }
+        long magnitude = Math.abs(units);
+        out.append(magnitude / scale);
+        if (decimals > 0) {
+            out.append('.');
+            long fraction = magnitude % scale;
+            for (long digit = scale / 10; digit > 0; digit /= 10) {
+                out.append((char) ('0' + fraction / digit % 10));
+            }
+        }
+        return out;
+    }
+
+    /**
+     * One line of HUD text, rendered once into an image and redrawn only
+     * when the values it shows change.
+     */
+    private static final class Row {
+        private final Color color;
+        private final long[] shown;
+        private final long[] pending;
+        private String label;
+        private String shownLabel;
+        private BufferedImage image;
+        private int ascent;
+
+        Row(int fields, Color color) {
+            this.color = color;
+            this.shown = new long[fields];
+            this.pending = new long[fields];
+        }
+
+        Row set(int field, long value) {
+            pending[field] = value;
+            return this;
+        }
+
+        Row setLabel(String label) {
+            this.label = label;
+            return this;
+        }
+
+        /**
+         * @return Whether the pending values differ from the rendered ones
+         */
+        boolean isStale() {
+            return image == null || !Arrays.equals(shown, pending) || !Objects.equals(shownLabel, label);
+        }
+
+        void render(CharSequence line, FontMetrics metrics) {
+            String string = line.toString();
+            int width = Math.max(1, metrics.stringWidth(string));
+            int height = Math.max(1, metrics.getHeight());
+            if (image == null || image.getWidth() < width || image.getHeight() != height) {
+                image = createImage(width, height);
+            }
+            Graphics2D g = image.createGraphics();
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(0, 0, image.getWidth(), image.getHeight());
+            g.setPaintMode();
+            g.setFont(metrics.getFont());
+            g.setColor(color);
+            ascent = metrics.getAscent();
+            g.drawString(string, 0, ascent);
+            g.dispose();
+
+            System.arraycopy(pending, 0, shown, 0, pending.length);
+            shownLabel = label;
+        }
+
+        /** Draws the row with its baseline at y, like drawString */
+        void draw(Graphics2D g2d, int x, int y) {
+            if (image != null) {
+                g2d.drawImage(image, x, y - ascent, null);
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.physics.simulations.gravity;
+
+/**
+ * Integrator - advances every body in a BodyStore by one time step.
+ *
+ * Integrators ask for accelerations as often as their scheme needs, through
+ * the Accelerations callback: it fills ax/ay for the positions currently in
+ * the store. Multi-stage schemes write their stage positions into the store,
+ * evaluate, and leave the final positions behind when they return.
+ *
+ * Fixed bodies (point masses) are never moved.
+ */
+public interface Integrator {
+
+    /**
+     * Fills bodies.ax/ay with the accelerations at the positions in the store.
+     */
+    interface Accelerations {
+        void compute(BodyStore bodies);
+
+        /**
+         * Like compute(bodies), but only for targets[0..targetCount).
+         */
+        void compute(BodyStore bodies, int[] targets, int targetCount);
+    }
+
+    /**
+     * @param bodies Bodies to advance - ax/ay hold nothing useful on entry
+     * @param dt Length of the step (in simulated seconds)
+     * @param accelerations Force evaluation for the current positions
+     */
+    void step(BodyStore bodies, double dt, Accelerations accelerations);
+
+    /**
+     * @return Full force evaluations per step (adaptive schemes: the minimum)
+     */
+    int getForceEvaluations();
+
+    /**
+     * Forgets anything carried over from earlier steps. Called when bodies are
+     * added or merged, or when the forces change (G, solver).
+     */
+    default void reset() {
+    }
+
+    /**
+     * @return Display name of the integrator
+     */
+    String getName();
+}
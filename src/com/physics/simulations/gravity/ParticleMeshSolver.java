@@ -0,0 +1,505 @@
+package com.physics.simulations.gravity;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ParticleMeshSolver - gravity on a grid, for dense clouds of many bodies.
+ *
+ * The masses are spread onto a square mesh by cloud-in-cell assignment (each
+ * body shares its mass between the four nearest mesh points), the mesh is
+ * convolved with the force of a unit mass using FFTs, and each body's
+ * acceleration is read back from the same four points. The cost is one pass
+ * over the bodies plus two FFTs of the mesh, however the bodies are spread.
+ *
+ * The force falls off as 1/r² (potential 1/r) even though the bodies move in
+ * a plane, so the field is not the solution of a 2D Poisson equation with a
+ * logarithmic potential. The convolution kernel is the 1/r² force itself,
+ * sampled on the mesh. The mesh is padded to twice its size with empty cells
+ * (Hockney's method), so the FFT's wrap-around never folds far bodies onto
+ * near ones and an isolated system feels no periodic images.
+ *
+ * A mesh cannot resolve forces between bodies a few cells apart, so the
+ * kernel is smoothly softened inside SPLIT_CELLS cells. On its own the mesh
+ * therefore gives the long-range force only. With the short-range correction
+ * (P3M) the missing part of the force is added back body by body for every
+ * pair closer than the split, found through a coarse grid of buckets; the
+ * sum is close to the exact force everywhere, but dense clumps then cost
+ * up to the square of their size, as in the direct sum.
+ *
+ * The mesh covers the bounding square of all the bodies, so a few bodies
+ * far from the rest make the cells larger for everyone.
+ *
+ * The mesh, the kernel and the body buffers are allocated once and reused
+ * between steps; a force pass allocates nothing. The FFTs work on rows and
+ * on bands of columns split across the WorkerPool, and each body's force is
+ * read by a single task. Only the mass assignment runs on one thread, so the
+ * results do not depend on the worker count.
+ */
+public class ParticleMeshSolver implements ForceSolver {
+
+    public static final int MIN_MESH_SIZE = 32;
+    public static final int MAX_MESH_SIZE = 1024;
+
+    /** Distance in mesh cells within which the mesh force is softened and the short-range force takes over */
+    static final double SPLIT_CELLS = 4.0;
+
+    private final boolean shortRange;
+    private final WorkerPool workers;
+    private int meshSize;
+
+    // Padded mesh, row-major with rows along y: twice the mesh size per side
+    private int paddedSize;
+    private double[] meshRe = new double[0], meshIm = new double[0];
+
+    // FFT of the x (real part) and y (imaginary part) force of a unit mass,
+    // divided by the number of padded cells so the inverse FFT comes out scaled
+    private double[] kernelRe = new double[0], kernelIm = new double[0];
+    private int kernelSize;
+
+    private double[] twiddleCos = new double[0], twiddleSin = new double[0];
+    private int[] bitReverse = new int[0];
+
+    // Bodies bucketed for the short-range correction
+    private int bucketsPerSide;
+    private int[] bucketStart = new int[0];
+    private int[] bucketOf = new int[0];
+    private double[] bucketX = new double[0], bucketY = new double[0], bucketMass = new double[0];
+
+    // The pass in progress, read by the range tasks below
+    private BodyStore bodies;
+    private double gravitationalConstant;
+    private int[] targets;
+    private double originX, originY, cellSize;
+
+    private final WorkerPool.RangeTask forwardRows = (from, to) -> transformRows(meshRe, meshIm, from, to, false);
+    private final WorkerPool.RangeTask forwardColumns = (from, to) -> transformColumns(meshRe, meshIm, from, to, false);
+    private final WorkerPool.RangeTask inverseRows = (from, to) -> transformRows(meshRe, meshIm, from, to, true);
+    private final WorkerPool.RangeTask inverseColumns = (from, to) -> transformColumns(meshRe, meshIm, from, to, true);
+    private final WorkerPool.RangeTask applyKernel = this::applyKernel;
+    private final WorkerPool.RangeTask accelerate = this::accelerate;
+
+    /** Bodies read from the mesh plus body pairs corrected by the last call */
+    private final AtomicLong interactionCount = new AtomicLong();
+
+    /**
+     * Creates a single-threaded solver.
+     *
+     * @param meshSize Mesh points per side, a power of two
+     * @param shortRange true to add the exact force between nearby bodies (P3M)
+     */
+    public ParticleMeshSolver(int meshSize, boolean shortRange) {
+        this(meshSize, shortRange, new WorkerPool(1));
+    }
+
+    public ParticleMeshSolver(int meshSize, boolean shortRange, WorkerPool workers) {
+        setMeshSize(meshSize);
+        this.shortRange = shortRange;
+        this.workers = workers;
+    }
+
+    public int getMeshSize() {
+        return meshSize;
+    }
+
+    /**
+     * Sets the mesh points per side, a power of two from MIN_MESH_SIZE to
+     * MAX_MESH_SIZE. The mesh is allocated on the next force pass.
+     */
+    public void setMeshSize(int meshSize) {
+        if (meshSize < MIN_MESH_SIZE || meshSize > MAX_MESH_SIZE || Integer.bitCount(meshSize) != 1) {
+            throw new IllegalArgumentException("mesh size must be a power of two between " + MIN_MESH_SIZE
+                                               + " and " + MAX_MESH_SIZE + ", got " + meshSize);
+        }
+        this.meshSize = meshSize;
+    }
+
+    public boolean hasShortRange() {
+        return shortRange;
+    }
+
+    @Override
+    public void computeAccelerations(BodyStore bodies, double gravitationalConstant) {
+        evaluate(bodies, gravitationalConstant, null, bodies.count);
+    }
+
+    /**
+     * Builds the whole mesh, since every body's mass is on it, and reads
+     * only the listed bodies back.
+     */
+    @Override
+    public void computeAccelerations(BodyStore bodies, double gravitationalConstant, int[] targets, int targetCount) {
+        evaluate(bodies, gravitationalConstant, targets, targetCount);
+    }
+
+    private void evaluate(BodyStore bodies, double gravitationalConstant, int[] targets, int targetCount) {
+        interactionCount.set(0);
+        if (bodies.count == 0 || targetCount == 0) return;
+        if (kernelSize != meshSize) {
+            allocateMesh();
+            buildKernel();
+        }
+        this.bodies = bodies;
+        this.gravitationalConstant = gravitationalConstant;
+        this.targets = targets;
+
+        fitMesh(bodies);
+        assignMass(bodies);
+        if (shortRange) {
+            fillBuckets(bodies);
+        }
+
+        // Only the first meshSize rows hold mass - the padding rows transform to zero
+        workers.forEachRange(meshSize, forwardRows);
+        workers.forEachRange(paddedSize, forwardColumns);
+        workers.forEachRange(paddedSize, applyKernel);
+        // The accelerations are only needed on the unpadded part
+        workers.forEachRange(paddedSize, inverseColumns);
+        workers.forEachRange(meshSize, inverseRows);
+
+        workers.forEachRange(targetCount, accelerate);
+        this.bodies = null;
+        this.targets = null;
+    }
+
+    /**
+     * Sizes the mesh arrays, FFT tables and buckets for the current mesh size.
+     */
+    private void allocateMesh() {
+        paddedSize = 2 * meshSize;
+        int cells = paddedSize * paddedSize;
+        meshRe = new double[cells];
+        meshIm = new double[cells];
+        kernelRe = new double[cells];
+        kernelIm = new double[cells];
+
+        twiddleCos = new double[paddedSize / 2];
+        twiddleSin = new double[paddedSize / 2];
+        for (int k = 0; k < paddedSize / 2; k++) {
+            double angle = 2.0 * Math.PI * k / paddedSize;
+            twiddleCos[k] = Math.cos(angle);
+            twiddleSin[k] = -Math.sin(angle);
+        }
+        bitReverse = new int[paddedSize];
+        int bits = Integer.numberOfTrailingZeros(paddedSize);
+        for (int i = 0; i < paddedSize; i++) {
+            bitReverse[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+
+        bucketsPerSide = (int) (meshSize / SPLIT_CELLS) + 1;
+        bucketStart = shortRange ? new int[bucketsPerSide * bucketsPerSide + 1] : new int[0];
+    }
+
+    /**
+     * Samples the softened force of a unit mass at every mesh offset, one
+     * mesh cell being one unit of distance, and transforms it. The force in
+     * world units is this divided by the cell size squared. The transform is
+     * corrected for the cloud-in-cell blur, which otherwise weakens the force
+     * a few cells out by several percent.
+     */
+    private void buildKernel() {
+        Arrays.fill(kernelRe, 0.0);
+        Arrays.fill(kernelIm, 0.0);
+        double scale = 1.0 / ((double) paddedSize * paddedSize);
+        for (int j = 1 - meshSize; j < meshSize; j++) {
+            int row = (j + paddedSize) % paddedSize * paddedSize;
+            for (int i = 1 - meshSize; i < meshSize; i++) {
+                if (i == 0 && j == 0) continue;
+                double distance = Math.sqrt((double) i * i + (double) j * j);
+                // A mass at offset (i, j) from a point pulls it towards -(i, j)
+                double pull = -longRangeFraction(distance / SPLIT_CELLS) * scale / (distance * distance * distance);
+                int index = row + (i + paddedSize) % paddedSize;
+                kernelRe[index] = pull * i;
+                kernelIm[index] = pull * j;
+            }
+        }
+        // Both components are real, so one complex FFT carries the pair
+        transformRows(kernelRe, kernelIm, 0, paddedSize, false);
+        transformColumns(kernelRe, kernelIm, 0, paddedSize, false);
+        // Assignment and interpolation each blur the field by a cell-wide
+        // triangle; dividing by its transform twice sharpens it back
+        for (int j = 0; j < paddedSize; j++) {
+            double blurY = sinc(Math.PI * (j < meshSize ? j : j - paddedSize) / paddedSize);
+            for (int i = 0; i < paddedSize; i++) {
+                double blur = sinc(Math.PI * (i < meshSize ? i : i - paddedSize) / paddedSize) * blurY;
+                double sharpen = 1.0 / (blur * blur * blur * blur);
+                kernelRe[j * paddedSize + i] *= sharpen;
+                kernelIm[j * paddedSize + i] *= sharpen;
+            }
+        }
+        kernelSize = meshSize;
+    }
+
+    /**
+     * Share of the force the mesh carries at u split distances: a smooth step
+     * from 0 at u = 0 to 1 at u = 1, rising as u³ so the softened force
+     * stays finite. The short-range correction adds the rest.
+     */
+    private static double longRangeFraction(double u) {
+        if (u >= 1.0) return 1.0;
+        return u * u * u * (10.0 - 15.0 * u + 6.0 * u * u);
+    }
+
+    private static double sinc(double x) {
+        return x == 0.0 ? 1.0 : Math.sin(x) / x;
+    }
+
+    /**
+     * Places the mesh over the bounding square of the bodies, with half a
+     * cell to spare on each side so every body's four mesh points exist.
+     */
+    private void fitMesh(BodyStore bodies) {
+        double[] x = bodies.x, y = bodies.y;
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < bodies.count; i++) {
+            minX = Math.min(minX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxX = Math.max(maxX, x[i]);
+            maxY = Math.max(maxY, y[i]);
+        }
+        double extent = Math.max(maxX - minX, maxY - minY);
+        // Bodies span at most meshSize - 2 cells, from 0.5 to meshSize - 1.5
+        cellSize = extent > 0 ? extent / (meshSize - 2) : 1.0;
+        originX = minX - 0.5 * cellSize;
+        originY = minY - 0.5 * cellSize;
+    }
+
+    /**
+     * Cloud-in-cell: spreads each body's mass over its four nearest mesh
+     * points, weighted by how close it is to each.
+     */
+    private void assignMass(BodyStore bodies) {
+        Arrays.fill(meshRe, 0.0);
+        Arrays.fill(meshIm, 0.0);
+        double[] x = bodies.x, y = bodies.y, mass = bodies.mass;
+        double inverseCell = 1.0 / cellSize;
+        int size = paddedSize;
+        for (int i = 0; i < bodies.count; i++) {
+            double gx = (x[i] - originX) * inverseCell;
+            double gy = (y[i] - originY) * inverseCell;
+            int cx = (int) gx;
+            int cy = (int) gy;
+            double fx = gx - cx;
+            double fy = gy - cy;
+            int index = cy * size + cx;
+            double m = mass[i];
+            meshRe[index] += m * (1.0 - fx) * (1.0 - fy);
+            meshRe[index + 1] += m * fx * (1.0 - fy);
+            meshRe[index + size] += m * (1.0 - fx) * fy;
+            meshRe[index + size + 1] += m * fx * fy;
+        }
+    }
+
+    /**
+     * Multiplies the transformed masses by the transformed kernel, giving
+     * the transformed x force in the real part and y force in the imaginary part.
+     */
+    private void applyKernel(int fromRow, int toRow) {
+        double[] re = meshRe, im = meshIm;
+        for (int index = fromRow * paddedSize; index < toRow * paddedSize; index++) {
+            double a = re[index], b = im[index];
+            double c = kernelRe[index], d = kernelIm[index];
+            re[index] = a * c - b * d;
+            im[index] = a * d + b * c;
+        }
+    }
+
+    /**
+     * Reads the accelerations of bodies [from, to) - or of targets[from..to)
+     * - from the mesh and adds the short-range correction.
+     */
+    private void accelerate(int from, int to) {
+        double[] x = bodies.x, y = bodies.y;
+        double[] ax = bodies.ax, ay = bodies.ay;
+        double inverseCell = 1.0 / cellSize;
+        double meshScale = gravitationalConstant * inverseCell * inverseCell;
+        int size = paddedSize;
+        long pairs = 0;
+        for (int k = from; k < to; k++) {
+            int i = targets == null ? k : targets[k];
+            double gx = (x[i] - originX) * inverseCell;
+            double gy = (y[i] - originY) * inverseCell;
+            int cx = (int) gx;
+            int cy = (int) gy;
+            double fx = gx - cx;
+            double fy = gy - cy;
+            int index = cy * size + cx;
+            double w00 = (1.0 - fx) * (1.0 - fy), w10 = fx * (1.0 - fy);
+            double w01 = (1.0 - fx) * fy, w11 = fx * fy;
+            double meshX = w00 * meshRe[index] + w10 * meshRe[index + 1]
+                         + w01 * meshRe[index + size] + w11 * meshRe[index + size + 1];
+            double meshY = w00 * meshIm[index] + w10 * meshIm[index + 1]
+                         + w01 * meshIm[index + size] + w11 * meshIm[index + size + 1];
+            ax[i] = meshScale * meshX;
+            ay[i] = meshScale * meshY;
+            if (shortRange) {
+                pairs += addShortRange(i, gx, gy);
+            }
+        }
+        interactionCount.addAndGet(to - from + pairs);
+    }
+
+    /**
+     * Adds the part of the force the mesh leaves out from every body within
+     * the split distance of body i.
+     *
+     * @return Bodies looked at
+     */
+    private long addShortRange(int i, double gx, double gy) {
+        double xi = bodies.x[i], yi = bodies.y[i];
+        double split = SPLIT_CELLS * cellSize;
+        double splitSquared = split * split;
+        double inverseSplit = 1.0 / split;
+        int bx = (int) (gx / SPLIT_CELLS);
+        int by = (int) (gy / SPLIT_CELLS);
+        int lastX = Math.min(bx + 1, bucketsPerSide - 1);
+        int lastY = Math.min(by + 1, bucketsPerSide - 1);
+        double sumX = 0.0, sumY = 0.0;
+        long looked = 0;
+        for (int row = Math.max(by - 1, 0); row <= lastY; row++) {
+            int start = bucketStart[row * bucketsPerSide + Math.max(bx - 1, 0)];
+            int end = bucketStart[row * bucketsPerSide + lastX + 1];
+            for (int j = start; j < end; j++) {
+                double dx = bucketX[j] - xi;
+                double dy = bucketY[j] - yi;
+                double distSquared = dx * dx + dy * dy;
+                // Zero for the body itself, for exactly coincident bodies and beyond the split
+                if (distSquared > 0.0 && distSquared < splitSquared) {
+                    double distance = Math.sqrt(distSquared);
+                    double shortPart = 1.0 - longRangeFraction(distance * inverseSplit);
+                    double inv = shortPart * bucketMass[j] / (distSquared * distance);
+                    sumX += dx * inv;
+                    sumY += dy * inv;
+                }
+            }
+            looked += end - start;
+        }
+        bodies.ax[i] += gravitationalConstant * sumX;
+        bodies.ay[i] += gravitationalConstant * sumY;
+        return looked;
+    }
+
+    /**
+     * Sorts the bodies into buckets one split distance wide, row by row, so
+     * that the buckets of one row next to each other are one run of memory.
+     */
+    private void fillBuckets(BodyStore bodies) {
+        int n = bodies.count;
+        if (bucketOf.length < n) {
+            int capacity = Math.max(n, bucketOf.length * 2);
+            bucketOf = new int[capacity];
+            bucketX = new double[capacity];
+            bucketY = new double[capacity];
+            bucketMass = new double[capacity];
+        }
+        double[] x = bodies.x, y = bodies.y;
+        double inverseCell = 1.0 / cellSize;
+        int buckets = bucketsPerSide * bucketsPerSide;
+        Arrays.fill(bucketStart, 0);
+        for (int i = 0; i < n; i++) {
+            // Computed exactly as addShortRange does, so a body is always found in its own bucket
+            int bx = (int) ((x[i] - originX) * inverseCell / SPLIT_CELLS);
+            int by = (int) ((y[i] - originY) * inverseCell / SPLIT_CELLS);
+            int bucket = Math.min(by, bucketsPerSide - 1) * bucketsPerSide + Math.min(bx, bucketsPerSide - 1);
+            bucketOf[i] = bucket;
+            bucketStart[bucket + 1]++;
+        }
+        for (int b = 0; b < buckets; b++) {
+            bucketStart[b + 1] += bucketStart[b];
+        }
+        // Place each body at the start of its bucket, moving the starts along, then shift them back
+        for (int i = 0; i < n; i++) {
+            int slot = bucketStart[bucketOf[i]]++;
+            bucketX[slot] = x[i];
+            bucketY[slot] = y[i];
+            bucketMass[slot] = bodies.mass[i];
+        }
+        for (int b = buckets; b > 0; b--) {
+            bucketStart[b] = bucketStart[b - 1];
+        }
+        bucketStart[0] = 0;
+    }
+
+    /**
+     * In-place FFT of each row in [fromRow, toRow).
+     */
+    private void transformRows(double[] re, double[] im, int fromRow, int toRow, boolean inverse) {
+        int size = paddedSize;
+        double sign = inverse ? -1.0 : 1.0;
+        for (int row = fromRow; row < toRow; row++) {
+            int base = row * size;
+            for (int i = 0; i < size; i++) {
+                int j = bitReverse[i];
+                if (j > i) {
+                    double t = re[base + i]; re[base + i] = re[base + j]; re[base + j] = t;
+                    t = im[base + i]; im[base + i] = im[base + j]; im[base + j] = t;
+                }
+            }
+            for (int half = 1; half < size; half <<= 1) {
+                int stride = size / (2 * half);
+                for (int k = 0; k < half; k++) {
+                    double wr = twiddleCos[k * stride];
+                    double wi = sign * twiddleSin[k * stride];
+                    for (int a = base + k; a < base + size; a += 2 * half) {
+                        int b = a + half;
+                        double tr = re[b] * wr - im[b] * wi;
+                        double ti = re[b] * wi + im[b] * wr;
+                        re[b] = re[a] - tr;
+                        im[b] = im[a] - ti;
+                        re[a] += tr;
+                        im[a] += ti;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * In-place FFT down each column in [fromColumn, toColumn). Every
+     * butterfly runs across the whole band of columns, so memory is read
+     * along rows rather than a full row apart.
+     */
+    private void transformColumns(double[] re, double[] im, int fromColumn, int toColumn, boolean inverse) {
+        int size = paddedSize;
+        double sign = inverse ? -1.0 : 1.0;
+        for (int i = 0; i < size; i++) {
+            int j = bitReverse[i];
+            if (j > i) {
+                for (int c = fromColumn; c < toColumn; c++) {
+                    int p = i * size + c, q = j * size + c;
+                    double t = re[p]; re[p] = re[q]; re[q] = t;
+                    t = im[p]; im[p] = im[q]; im[q] = t;
+                }
+            }
+        }
+        for (int half = 1; half < size; half <<= 1) {
+            int stride = size / (2 * half);
+            for (int k = 0; k < half; k++) {
+                double wr = twiddleCos[k * stride];
+                double wi = sign * twiddleSin[k * stride];
+                for (int start = k; start < size; start += 2 * half) {
+                    int a = start * size, b = (start + half) * size;
+                    for (int c = fromColumn; c < toColumn; c++) {
+                        double tr = re[b + c] * wr - im[b + c] * wi;
+                        double ti = re[b + c] * wi + im[b + c] * wr;
+                        re[b + c] = re[a + c] - tr;
+                        im[b + c] = im[a + c] - ti;
+                        re[a + c] += tr;
+                        im[a + c] += ti;
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public long getInteractionCount() {
+        return interactionCount.get();
+    }
+
+    @Override
+    public String getName() {
+        return shortRange ? "P3M" : "Particle Mesh";
+    }
+}
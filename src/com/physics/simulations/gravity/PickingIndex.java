@@ -0,0 +1,291 @@
+package com.physics.simulations.gravity;
+
+import java.util.Arrays;
+
+/**
+ * PickingIndex - finds the bodies under the mouse or inside a rectangle
+ * without looking at every body.
+ *
+ * The index is a packed R-tree over the bodies' bounding boxes. Bodies are
+ * radix sorted along a Z-order curve and grouped NODE_SIZE at a time into
+ * leaves, and the leaves are grouped the same way level by level up to a
+ * single root, each node keeping the box around its children. A query only descends into
+ * nodes whose box it touches, so it costs O(log n) plus the bodies found.
+ * All arrays are reused between builds.
+ *
+ * The bodies keep moving after the index is built. Rather than rebuilding
+ * for every mouse move, a query widens its rectangle by how far the fastest
+ * body can have moved since the build, and checks the bodies it finds
+ * against their current positions. Once that distance passes the caller's
+ * limit, or bodies were added or removed, the index is rebuilt first.
+ *
+ * The distance is estimated from the speeds at build time, which a body
+ * falling inwards keeps exceeding, so the estimate assumes up to
+ * SPEED_MARGIN times the fastest of them. A body that speeds up more than
+ * that before the next rebuild can be missed by a query near its edge.
+ *
+ * Queries take the snapshot they answer for; the caller keeps it from
+ * changing meanwhile.
+ */
+public class PickingIndex {
+
+    /** Children per node */
+    static final int NODE_SIZE = 16;
+
+    private static final int MAX_LEVELS = 16;
+
+    /** How much faster than the fastest body at build time any body is assumed to get */
+    static final double SPEED_MARGIN = 2.0;
+
+    // Boxes of the bodies (sorted) followed by the nodes of each level
+    private double[] boxMinX = new double[0], boxMinY = new double[0];
+    private double[] boxMaxX = new double[0], boxMaxY = new double[0];
+    private final int[] levelStart = new int[MAX_LEVELS + 1];
+    private int levelCount;
+
+    /** Body index of each sorted entry */
+    private int[] order = new int[0];
+    private long[] codes = new long[0], sortBuffer = new long[0];
+    private final int[] digitCounts = new int[1 << 16];
+
+    /** The planet at each body index when the index was built */
+    private Planet[] builtViews = new Planet[0];
+    private int builtCount = -1;
+    private double builtTime;
+    private double maxSpeed;
+    private long buildCount;
+
+    private int[] stack = new int[0];
+
+    /** Results of the last select() call, as body indices */
+    int[] selected = new int[0];
+
+    /**
+     * Indexes the bodies of the snapshot as they are now.
+     */
+    public void build(StateSnapshot frame) {
+        int n = frame.count;
+        ensureCapacity(n);
+        builtCount = n;
+        builtTime = frame.simulationTime;
+        buildCount++;
+        levelCount = 0;
+        if (n == 0) return;
+
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        double fastest = 0.0;
+        for (int i = 0; i < n; i++) {
+            minX = Math.min(minX, frame.x[i]);
+            maxX = Math.max(maxX, frame.x[i]);
+            minY = Math.min(minY, frame.y[i]);
+            maxY = Math.max(maxY, frame.y[i]);
+            fastest = Math.max(fastest, frame.vx[i] * frame.vx[i] + frame.vy[i] * frame.vy[i]);
+        }
+        maxSpeed = Math.sqrt(fastest);
+
+        // Sort along a Z-order curve so that neighbouring entries are close in space
+        double scaleX = maxX > minX ? 65535.0 / (maxX - minX) : 0.0;
+        double scaleY = maxY > minY ? 65535.0 / (maxY - minY) : 0.0;
+        for (int i = 0; i < n; i++) {
+            long cellX = (long) ((frame.x[i] - minX) * scaleX);
+            long cellY = (long) ((frame.y[i] - minY) * scaleY);
+            codes[i] = (interleave(cellX) | interleave(cellY) << 1) << 32 | i;
+        }
+        sortByCode(n);
+
+        for (int k = 0; k < n; k++) {
+            int i = (int) codes[k];
+            order[k] = i;
+            double r = frame.radius[i];
+            boxMinX[k] = frame.x[i] - r;
+            boxMinY[k] = frame.y[i] - r;
+            boxMaxX[k] = frame.x[i] + r;
+            boxMaxY[k] = frame.y[i] + r;
+        }
+        System.arraycopy(frame.views, 0, builtViews, 0, n);
+
+        // Group each level NODE_SIZE at a time into the next, up to one root
+        levelStart[0] = 0;
+        int start = 0, end = n;
+        levelCount = 1;
+        while (end - start > 1) {
+            int node = end;
+            for (int child = start; child < end; child += NODE_SIZE, node++) {
+                int last = Math.min(child + NODE_SIZE, end);
+                double nodeMinX = boxMinX[child], nodeMinY = boxMinY[child];
+                double nodeMaxX = boxMaxX[child], nodeMaxY = boxMaxY[child];
+                for (int c = child + 1; c < last; c++) {
+                    nodeMinX = Math.min(nodeMinX, boxMinX[c]);
+                    nodeMinY = Math.min(nodeMinY, boxMinY[c]);
+                    nodeMaxX = Math.max(nodeMaxX, boxMaxX[c]);
+                    nodeMaxY = Math.max(nodeMaxY, boxMaxY[c]);
+                }
+                boxMinX[node] = nodeMinX;
+                boxMinY[node] = nodeMinY;
+                boxMaxX[node] = nodeMaxX;
+                boxMaxY[node] = nodeMaxY;
+            }
+            levelStart[levelCount++] = end;
+            start = end;
+            end = node;
+        }
+        levelStart[levelCount] = end;
+    }
+
+    /**
+     * Finds the body whose disc contains the point, preferring the one whose
+     * centre is nearest.
+     *
+     * @param maxDrift How far (world units) bodies may have moved since the
+     *                 last build before the index is rebuilt
+     * @return Body index in the frame, or -1 if there is none
+     */
+    public int pick(StateSnapshot frame, double x, double y, double maxDrift) {
+        int found = search(frame, x, y, x, y, maxDrift, true);
+        if (found == -2) {
+            build(frame);
+            found = search(frame, x, y, x, y, 0.0, true);
+        }
+        return found;
+    }
+
+    /**
+     * Finds the bodies whose centres lie inside the rectangle. They are left
+     * in selected[0 .. count - 1].
+     *
+     * @return Number of bodies found
+     */
+    public int select(StateSnapshot frame, double minX, double minY, double maxX, double maxY, double maxDrift) {
+        int count = search(frame, minX, minY, maxX, maxY, maxDrift, false);
+        if (count == -2) {
+            build(frame);
+            count = search(frame, minX, minY, maxX, maxY, 0.0, false);
+        }
+        return count;
+    }
+
+    /**
+     * Walks the tree. For a point query returns the picked body or -1, for a
+     * rectangle the number of bodies selected; -2 if the index is out of date.
+     */
+    private int search(StateSnapshot frame, double minX, double minY, double maxX, double maxY,
+                       double maxDrift, boolean point) {
+        if (frame.count != builtCount) return -2;
+        double drift = SPEED_MARGIN * maxSpeed * Math.abs(frame.simulationTime - builtTime);
+        if (drift > maxDrift) return -2;
+        if (levelCount == 0) return point ? -1 : 0;
+
+        double queryMinX = minX - drift, queryMinY = minY - drift;
+        double queryMaxX = maxX + drift, queryMaxY = maxY + drift;
+        int best = -1;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        int count = 0;
+
+        // Stack of (level, position) pairs, starting from the root
+        int top = 0;
+        stack[top++] = levelCount - 1;
+        stack[top++] = levelStart[levelCount - 1];
+        while (top > 0) {
+            int position = stack[--top];
+            int level = stack[--top];
+            if (boxMaxX[position] < queryMinX || boxMinX[position] > queryMaxX
+                    || boxMaxY[position] < queryMinY || boxMinY[position] > queryMaxY) {
+                continue;
+            }
+            if (level > 0) {
+                int first = levelStart[level - 1] + (position - levelStart[level]) * NODE_SIZE;
+                int last = Math.min(first + NODE_SIZE, levelStart[level]);
+                for (int child = first; child < last; child++) {
+                    stack[top++] = level - 1;
+                    stack[top++] = child;
+                }
+                continue;
+            }
+
+            // A body: check it where it is now
+            int i = order[position];
+            if (frame.views[i] != builtViews[i]) return -2;
+            double x = frame.x[i], y = frame.y[i];
+            if (point) {
+                double dx = x - minX, dy = y - minY;
+                double distance = dx * dx + dy * dy;
+                if (distance <= frame.radius[i] * frame.radius[i] && distance < bestDistance) {
+                    best = i;
+                    bestDistance = distance;
+                }
+            } else if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+                if (count == selected.length) {
+                    selected = Arrays.copyOf(selected, Math.max(64, count * 2));
+                }
+                selected[count++] = i;
+            }
+        }
+        return point ? best : count;
+    }
+
+    /**
+     * Sorts codes[0 .. n - 1] by their upper 32 bits (the Z-order position),
+     * 16 bits per pass.
+     */
+    private void sortByCode(int n) {
+        long[] from = codes, to = sortBuffer;
+        for (int shift = 32; shift < 64; shift += 16) {
+            Arrays.fill(digitCounts, 0);
+            for (int i = 0; i < n; i++) {
+                digitCounts[(int) (from[i] >>> shift) & 0xFFFF]++;
+            }
+            int offset = 0;
+            for (int digit = 0; digit < digitCounts.length; digit++) {
+                int count = digitCounts[digit];
+                digitCounts[digit] = offset;
+                offset += count;
+            }
+            for (int i = 0; i < n; i++) {
+                to[digitCounts[(int) (from[i] >>> shift) & 0xFFFF]++] = from[i];
+            }
+            long[] swap = from;
+            from = to;
+            to = swap;
+        }
+        // An even number of passes leaves the result back in codes
+    }
+
+    /** Spreads the low 16 bits of v out to the even bits */
+    private static long interleave(long v) {
+        v &= 0xFFFF;
+        v = (v | v << 8) & 0x00FF00FFL;
+        v = (v | v << 4) & 0x0F0F0F0FL;
+        v = (v | v << 2) & 0x33333333L;
+        v = (v | v << 1) & 0x55555555L;
+        return v;
+    }
+
+    private void ensureCapacity(int n) {
+        if (order.length < n) {
+            int capacity = Math.max(n, order.length * 2);
+            order = new int[capacity];
+            codes = new long[capacity];
+            sortBuffer = new long[capacity];
+            builtViews = new Planet[capacity];
+            // Bodies plus every level of nodes above them
+            int boxes = capacity + capacity / (NODE_SIZE - 1) + MAX_LEVELS;
+            boxMinX = new double[boxes];
+            boxMinY = new double[boxes];
+            boxMaxX = new double[boxes];
+            boxMaxY = new double[boxes];
+            stack = new int[2 * NODE_SIZE * MAX_LEVELS];
+        }
+        // Drop planets beyond the end so removed ones can be collected
+        if (n < builtCount) {
+            Arrays.fill(builtViews, n, builtCount, null);
+        }
+    }
+
+    /**
+     * @return Number of times the index has been built
+     */
+    public long getBuildCount() {
+        return buildCount;
+    }
+}
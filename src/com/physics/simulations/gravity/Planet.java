@@ -4,11 +4,8 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.BasicStroke;
 import java.awt.image.BufferedImage;
-import javax.imageio.ImageIO;
-import java.io.File;
-import java.io.IOException;
 import java.awt.geom.AffineTransform;
-import java.awt.RenderingHints;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Planet class - represents a celestial body in the gravity simulation.
@@ -20,38 +17,39 @@ import java.awt.RenderingHints;
  * - Mass (affects gravitational pull)
  * - Size/radius (for drawing)
  * - Color (visual representation)
+ * 
+ * The physical state lives in a BodyStore; a Planet is a view onto one index
+ * of it. A new planet owns a single-body store until it is added to the
+ * simulation's store.
  */
 
 
 public class Planet {
     
-    double mass;
-    double radius;
-    double x, y;
-    double vx, vy;
+    /** Store holding this planet's physical state, and its index there */
+    BodyStore store;
+    int index;
+    
     Color color;
     boolean clicked = false;
-    double angularVelocity;
+    boolean selected = false;  // Part of a box selection
     String name;
     
-    // Texture and rotation fields
-    private BufferedImage texture;
-    protected double rotationAngle = 0.0;
+    // Texture fields - texture stays null (solid color) until the loader has it ready
+    private volatile BufferedImage texture;
     private String texturePath;
+    private CompletableFuture<BufferedImage> textureLoad;
 
     // Constructor with texture
     public Planet(double mass, double radius, double x, double y, double vx, double vy,
     double angularVelocity, Color color, String texturePath, String name) {
-        this.mass = mass;
-        this.radius = radius;
-        this.x = x;
-        this.y = y;
-        this.vx = vx;
-        this.vy = vy;
+        this.store = new BodyStore(1);
+        this.index = store.append(x, y, vx, vy, mass, radius, false);
+        store.spin[index] = angularVelocity;
+        store.views[index] = this;
         this.color = color;
         this.clicked = false;
         this.texturePath = texturePath;
-        this.angularVelocity = angularVelocity;
         this.name = name;
         
         // Load texture if provided
@@ -61,57 +59,57 @@ public class Planet {
     }
     
     /**
-     * Loads and scales a texture image from file
+     * Creates a view of a body that is already in the store, e.g. one read
+     * back from a saved state.
      */
-    private void loadTexture(String path) {
-        try {
-            BufferedImage original = ImageIO.read(new File(path));
-            
-            // Pre-scale to planet size for better performance
-            int texSize = (int)(radius * 2.5);
-            texture = new BufferedImage(texSize, texSize, BufferedImage.TYPE_INT_ARGB);
-            Graphics2D g = texture.createGraphics();
-            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-            g.drawImage(original, 0, 0, texSize, texSize, null);
-            g.dispose();
-            
-            System.out.println("Loaded texture: " + path);
-        } catch (IOException e) {
-            System.err.println("Failed to load texture: " + path + " - Using solid color");
-            texture = null;
+    Planet(BodyStore store, int index, Color color, String texturePath, String name) {
+        this.store = store;
+        this.index = index;
+        store.views[index] = this;
+        this.color = color;
+        this.texturePath = texturePath;
+        this.name = name;
+        if (texturePath != null && !texturePath.isEmpty()) {
+            loadTexture(texturePath);
         }
     }
-    
+
     /**
-     * Updates the planet's position based on its velocity.
-     * Called during each simulation step.
-     * 
-     * @param deltaTime Time elapsed since last update
+     * @return Path of the planet's texture, or null for a solid color
      */
-    public void updatePosition(double deltaTime, double timeFactor) {
-        this.x += this.vx * deltaTime * timeFactor;
-        this.y += this.vy * deltaTime * timeFactor;
-        
-        // Update rotation angle
-        this.rotationAngle += angularVelocity * timeFactor;
-        this.rotationAngle %= (Math.PI * 2);  // reduce it into [ -2π, 2π )
+    String getTexturePath() {
+        return texturePath;
+    }
 
-        // make sure it's positive if you want it in [0, 2π)
-        if (this.rotationAngle < 0) {
-            this.rotationAngle += Math.PI * 2;
+    /**
+     * Gets the texture scaled to this planet's size from the shared cache.
+     * If it isn't cached yet it is loaded in the background, and the planet
+     * is drawn in its solid color until then.
+     */
+    private void loadTexture(String path) {
+        // Pre-scale to planet size for better performance
+        int texSize = (int)(getRadius() * 2.5);
+        texture = TextureCache.shared().getIfReady(path, texSize);
+        if (texture == null) {
+            textureLoad = TextureCache.shared().load(path, texSize);
+            textureLoad.thenAccept(image -> texture = image);
         }
     }
-    
+
     /**
-     * Updates the planet's velocity based on acceleration.
-     * 
-     * @param ax Horizontal acceleration component
-     * @param ay Vertical acceleration component
-     * @param deltaTime Time elapsed since last update
+     * @return true once the planet has a texture to draw
+     */
+    boolean hasTexture() {
+        return texture != null;
+    }
+
+    /**
+     * Waits until the texture (if any) has finished loading.
      */
-    public void updateVelocity(double ax, double ay, double deltaTime) {
-        vx += ax * deltaTime;
-        vy += ay * deltaTime;
+    void awaitTexture() {
+        if (textureLoad != null) {
+            texture = textureLoad.join();
+        }
     }
     
     /**
@@ -123,8 +121,8 @@ public class Planet {
      */
 
     public double distanceTo(Planet other) {
-        double dx = this.x - other.x;
-        double dy = this.y - other.y;
+        double dx = getX() - other.getX();
+        double dy = getY() - other.getY();
         return Math.sqrt(dx*dx + dy*dy);
     }
     
@@ -137,10 +135,10 @@ public class Planet {
      */
     public double[] gravitationalForceFrom(Planet other, double gravitationalConstant) {
         double distance = distanceTo(other);
-        double directionX = (other.x - this.x) / distance;
-        double directionY = (other.y - this.y) / distance;
+        double directionX = (other.getX() - getX()) / distance;
+        double directionY = (other.getY() - getY()) / distance;
 
-        double forceMagnitude = gravitationalConstant * this.mass * other.mass / (distance * distance);
+        double forceMagnitude = gravitationalConstant * getMass() * other.getMass() / (distance * distance);
 
         double forceX = directionX * forceMagnitude;
         double forceY = directionY * forceMagnitude;
@@ -157,11 +155,33 @@ public class Planet {
      * @param g2d Graphics2D object for drawing
      */
     public void draw(Graphics2D g2d) {
+        draw(g2d, getX(), getY(), getRadius(), getRotationAngle());
+    }
+    
+    /**
+     * Draws the planet at the given state rather than the live one.
+     * The renderer uses this with values from a StateSnapshot, since the
+     * store itself is being updated by the simulation thread.
+     * 
+     * @param g2d Graphics2D object for drawing
+     * @param x Center x
+     * @param y Center y
+     * @param radius Radius
+     * @param rotationAngle Texture rotation in radians
+     */
+    public void draw(Graphics2D g2d, double x, double y, double radius, double rotationAngle) {
         int drawX = (int)(x - radius);
         int drawY = (int)(y - radius);
         int size = (int)(radius * 2);
+        // Read once - the loader thread may swap the texture in at any time
+        BufferedImage texture = this.texture;
         
-        if (texture != null) {
+        BufferedImage sprite = texture != null ? SpriteAtlas.shared().frame(texture, size, rotationAngle) : null;
+        
+        if (sprite != null) {
+            // Pre-rendered, already rotated and cut to the disc - one plain blit
+            g2d.drawImage(sprite, drawX, drawY, null);
+        } else if (texture != null) {
             // Save original transform
             AffineTransform oldTransform = g2d.getTransform();
             
@@ -195,6 +215,10 @@ public class Planet {
             g2d.setStroke(new BasicStroke(3.0f));
             g2d.setColor(Color.YELLOW);
             g2d.drawOval(drawX-5, drawY-5, size+10, size+10);
+        } else if (selected) {
+            g2d.setStroke(new BasicStroke(1.5f));
+            g2d.setColor(Color.YELLOW);
+            g2d.drawOval(drawX-3, drawY-3, size+6, size+6);
         }
     }
     
@@ -206,130 +230,63 @@ public class Planet {
         this.clicked = !this.clicked;
     }
 
-    /**
-     * Checks if this planet collides with another planet.
-     * Simple collision detection: if distance < sum of radii
-     * 
-     * @param other The other planet
-     * @return true if colliding
-     */
-    public boolean collidesWith(Planet other) {
-        return distanceTo(other) < (this.radius + other.radius);
-    }
-    
-    public Planet merge(Planet other) {
-        double combinedMass = this.mass + other.mass;
-        double newVx = (this.vx * this.mass + other.vx * other.mass) / combinedMass;
-        double newVy = (this.vy * this.mass + other.vy * other.mass) / combinedMass;
-        
-        double newX = (this.x * this.mass + other.x * other.mass) / combinedMass;
-        double newY = (this.y * this.mass + other.y * other.mass) / combinedMass;
-
-        double newRadius = this.radius > other.radius ? this.radius : other.radius;
-
-        Color c1 = this.color;
-        Color c2 = other.color;
-        int r = (c1.getRed() + c2.getRed()) / 2;
-        int g = (c1.getGreen() + c2.getGreen()) / 2;
-        int b = (c1.getBlue() + c2.getBlue()) / 2;
-
-        Color newColor = new Color(r, g, b);
-
-        double angularMomentum = 0.4 * (this.radius * this.radius * this.mass + other.radius * other.radius * other.mass);
-        double newAngularVelocity = 2.5 * angularMomentum / (newRadius * newRadius * combinedMass);
-
-        String newTexturePath = null;
-        String newName = null;
-        if (this.radius > other.radius) {
-            newTexturePath = this.texturePath;
-            newName = this.name;
-        } else {
-            newTexturePath = other.texturePath;
-            newName = other.name;
+    public double getPeriodOfRotation() {
+        double angularVelocity = getAngularVelocity();
+        if (angularVelocity != 0.0) {
+            return 2 * Math.PI / angularVelocity;}
+        else {
+            return 0.0;
         }
-        
-        return new Planet(combinedMass, newRadius, newX, newY, newVx, newVy, 
-        newAngularVelocity, newColor, newTexturePath, newName);
     }
 
-    public void bouncePlanet(double coefficientOfRestitution, Planet other) {
-        double[] otherPos = other.getPosition();
-        double otherMass = other.getMass();
-        double otherX = otherPos[0];
-        double otherY = otherPos[1];
-        double[] deltaPos = {otherX - this.x, otherY - this.y};
-        double deltaPosMag = Math.sqrt((deltaPos[0] * deltaPos[0]) + (deltaPos[1] * deltaPos[1]));
-
-        double[] n = {deltaPos[0] / deltaPosMag, deltaPos[1] / deltaPosMag};
-
-        double[] v1 = { this.vx, this.vy };
-        double[] v2 = other.getVelocity();
-
-        // Project velocities onto the collision normal
-        double u1 = v1[0]*n[0] + v1[1]*n[1];
-        double u2 = v2[0]*n[0] + v2[1]*n[1];
-
-        double relVel = u1 - u2;
-        if (relVel <= 0) return; // they are separating, no bounce
-
-        double m1 = this.mass;
-        double m2 = otherMass;
-        double e = coefficientOfRestitution;
+    public double[] getVelocity() {
+        return new double[] {getVx(), getVy()};
+    }
 
-        double u1p = ( (m1 - e*m2)*u1 + (1 + e)*m2*u2 ) / (m1 + m2);
-        double u2p = ( (m2 - e*m1)*u2 + (1 + e)*m1*u1 ) / (m1 + m2);
+    public double[] getPosition() {
+        return new double[] {getX(), getY()};
+    }
 
-        double deltaU1 = u1p - u1;
-        double deltaU2 = u2p - u2;
+    public double getX() {
+        return store.x[index];
+    }
 
-        this.vx += deltaU1 * n[0];
-        this.vy += deltaU1 * n[1];
+    public double getY() {
+        return store.y[index];
+    }
 
-        other.setVelocity(
-            v2[0] + deltaU2 * n[0],
-            v2[1] + deltaU2 * n[1]
-        );
+    public double getVx() {
+        return store.vx[index];
     }
 
-    public double getPeriodOfRotation() {
-        if (angularVelocity != 0.0) {
-            return 2 * Math.PI / angularVelocity;}
-        else {
-            return 0.0;
-        }
+    public double getVy() {
+        return store.vy[index];
     }
 
-    public void bouncePointMass(double coefficientOfRestitution) {
-        this.vx *= -coefficientOfRestitution;
-        this.vy *= -coefficientOfRestitution;
+    public double getMass() {
+        return store.mass[index];
     }
 
-    public double[] getVelocity() {
-        return new double[] {vx, vy};
+    public double getRadius() {
+        return store.radius[index];
     }
 
-    public double[] getPosition() {
-        return new double[] {x, y};
+    public double getAngularVelocity() {
+        return store.spin[index];
     }
 
-    public double getMass() {
-        return this.mass;
+    public double getRotationAngle() {
+        return store.angle[index];
     }
 
     public void setVelocity(double new_vx, double new_vy){
-        this.vx = new_vx;
-        this.vy = new_vy;
+        store.vx[index] = new_vx;
+        store.vy[index] = new_vy;
     }
 
-    public boolean containsPoint(double x, double y) {
-        double dx = x - this.x;
-        double dy = y - this.y;
-        return Math.sqrt(dx*dx + dy*dy) <= this.radius;
-    }
-    
     @Override
     public String toString() {
-        return String.format("Planet with mass = %.2f (%.2f, %.2f) vel=(%.2f, %.2f)", mass, x, y, vx, vy);
+        return String.format("Planet with mass = %.2f (%.2f, %.2f) vel=(%.2f, %.2f)", getMass(), getX(), getY(), getVx(), getVy());
     }
 
 
@@ -0,0 +1,162 @@
+package com.physics.simulations.gravity;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.util.Arrays;
+
+/**
+ * PlanetRenderer - draws the planets of a snapshot, skipping what is off
+ * screen and simplifying what is small.
+ *
+ * The visible part of the world is found by running the corners of the
+ * panel through the inverse of the pan/zoom transform, and bodies outside
+ * it are not drawn at all. What remains is drawn by its size on screen:
+ * - a radius of LOD_FULL_PIXELS or more: the full planet (texture or sprite)
+ * - down to LOD_POINT_PIXELS: a flat oval in the planet's color
+ * - smaller: a single pixel, collected into one batch drawn in screen space
+ * A clicked planet is always drawn in full so its highlight stays visible;
+ * small planets in a box selection are drawn in SELECTED_COLOR instead.
+ *
+ * With a point cloud mode on, the flat ovals and single pixels - and
+ * untextured planets up to POINT_CLOUD_MAX_PIXELS - are instead rasterized
+ * by a PointCloudRenderer and drawn in one blit, optionally colored by
+ * density or mass.
+ *
+ * So the cost of a frame follows the number of visible bodies, and only
+ * the big ones among them pay for textures.
+ */
+public class PlanetRenderer {
+
+    /** Screen radius (pixels) from which planets are drawn with their texture */
+    static final double LOD_FULL_PIXELS = 4.0;
+
+    /** Screen radius (pixels) below which planets become single pixels */
+    static final double LOD_POINT_PIXELS = 1.0;
+
+    /** Screen radius (pixels) up to which untextured planets go into the point cloud */
+    static final double POINT_CLOUD_MAX_PIXELS = 8.0;
+
+    /** Color of small planets that are part of a box selection */
+    static final Color SELECTED_COLOR = Color.YELLOW;
+
+    private final PointCloudRenderer pointCloud = new PointCloudRenderer();
+    private volatile PointCloudRenderer.Mode pointCloudMode = PointCloudRenderer.Mode.COLOR;
+
+    // Pixel batch in screen coordinates, reused between frames
+    private int[] pointX = new int[0], pointY = new int[0];
+    private Color[] pointColor = new Color[0];
+    private int pointCount;
+
+    private int visibleCount;
+
+    /**
+     * Draws the snapshot's planets.
+     *
+     * @param g2d Graphics in screen coordinates; its transform is restored afterwards
+     * @param zoom Zoom level, centred on the middle of the panel
+     * @param panX Pan offset in world units (applied before the zoom)
+     * @param panY Pan offset in world units
+     * @param width Panel width in pixels
+     * @param height Panel height in pixels
+     */
+    public void draw(Graphics2D g2d, StateSnapshot snapshot, double zoom,
+                     double panX, double panY, int width, int height) {
+        int centerX = width / 2;
+        int centerY = height / 2;
+
+        // Visible world rectangle: the inverse of
+        // screen = zoom * (world + pan - center) + center
+        double minX = centerX - centerX / zoom - panX;
+        double maxX = centerX + (width - centerX) / zoom - panX;
+        double minY = centerY - centerY / zoom - panY;
+        double maxY = centerY + (height - centerY) / zoom - panY;
+
+        AffineTransform screen = g2d.getTransform();
+        g2d.translate(centerX, centerY);
+        g2d.scale(zoom, zoom);
+        g2d.translate(-centerX, -centerY);
+        g2d.translate(panX, panY);
+
+        PointCloudRenderer.Mode cloudMode = pointCloudMode;
+        boolean cloud = cloudMode != PointCloudRenderer.Mode.OFF;
+        if (cloud) {
+            pointCloud.begin(cloudMode, width, height);
+        }
+
+        pointCount = 0;
+        visibleCount = 0;
+        for (int i = 0; i < snapshot.count; i++) {
+            double x = snapshot.x[i], y = snapshot.y[i], radius = snapshot.radius[i];
+            if (x + radius < minX || x - radius > maxX || y + radius < minY || y - radius > maxY) {
+                continue;
+            }
+            visibleCount++;
+
+            Planet planet = snapshot.views[i];
+            double screenRadius = radius * zoom;
+            Color color = planet.selected ? SELECTED_COLOR : planet.color;
+            if (cloud && !planet.clicked
+                    && screenRadius < (planet.hasTexture() ? LOD_FULL_PIXELS : POINT_CLOUD_MAX_PIXELS)) {
+                pointCloud.add(zoom * (x + panX - centerX) + centerX, zoom * (y + panY - centerY) + centerY,
+                               screenRadius, color, snapshot.mass[i]);
+            } else if (screenRadius >= LOD_FULL_PIXELS || planet.clicked) {
+                planet.draw(g2d, x, y, radius, snapshot.angle[i]);
+            } else if (screenRadius >= LOD_POINT_PIXELS) {
+                g2d.setColor(color);
+                int size = (int) (radius * 2);
+                g2d.fillOval((int) (x - radius), (int) (y - radius), size, size);
+            } else {
+                addPoint((int) (zoom * (x + panX - centerX) + centerX),
+                         (int) (zoom * (y + panY - centerY) + centerY),
+                         color);
+            }
+        }
+
+        g2d.setTransform(screen);
+        if (cloud) {
+            pointCloud.draw(g2d);
+        }
+        Color current = null;
+        for (int k = 0; k < pointCount; k++) {
+            if (pointColor[k] != current) {
+                current = pointColor[k];
+                g2d.setColor(current);
+            }
+            g2d.fillRect(pointX[k], pointY[k], 1, 1);
+        }
+        // Let removed planets' colors be collected
+        Arrays.fill(pointColor, 0, pointCount, null);
+    }
+
+    private void addPoint(int x, int y, Color color) {
+        if (pointCount == pointX.length) {
+            int capacity = Math.max(256, pointX.length * 2);
+            pointX = Arrays.copyOf(pointX, capacity);
+            pointY = Arrays.copyOf(pointY, capacity);
+            pointColor = Arrays.copyOf(pointColor, capacity);
+        }
+        pointX[pointCount] = x;
+        pointY[pointCount] = y;
+        pointColor[pointCount] = color;
+        pointCount++;
+    }
+
+    /**
+     * Sets how small bodies are batched; OFF draws them one by one.
+     */
+    public void setPointCloudMode(PointCloudRenderer.Mode mode) {
+        pointCloudMode = mode;
+    }
+
+    public PointCloudRenderer.Mode getPointCloudMode() {
+        return pointCloudMode;
+    }
+
+    /**
+     * @return Number of planets inside the viewport in the last frame
+     */
+    public int getVisibleCount() {
+        return visibleCount;
+    }
+}
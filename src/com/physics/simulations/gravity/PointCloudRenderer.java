@@ -0,0 +1,207 @@
+package com.physics.simulations.gravity;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * PointCloudRenderer - rasterizes many small bodies straight into the pixels
+ * of one image and draws it with a single drawImage.
+ *
+ * With tens of thousands of bodies, a fillOval or fillRect call per body
+ * costs far more than the pixels it touches. Here each body is written into
+ * the image's int[] backing array (its DataBufferInt) as a pixel or a small
+ * hard-edged disc, and Java2D only sees one blit per frame.
+ *
+ * Modes:
+ * - COLOR: each body in its own color, later bodies on top
+ * - DENSITY: bodies add up per pixel, and the sum is mapped through a
+ *   heat palette on a log scale - dense regions glow
+ * - MASS: like DENSITY, but each body counts with its mass
+ * Pixels no body touches stay transparent, so the grid shows through.
+ */
+public class PointCloudRenderer {
+
+    /** How the cloud is colored */
+    public enum Mode {
+        OFF("Off"), COLOR("Color"), DENSITY("Density"), MASS("Mass");
+
+        private final String displayName;
+
+        Mode(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        /**
+         * @return The mode with the given display name
+         */
+        public static Mode fromDisplayName(String name) {
+            for (Mode mode : values()) {
+                if (mode.displayName.equals(name)) return mode;
+            }
+            throw new IllegalArgumentException("Unknown point cloud mode: " + name);
+        }
+    }
+
+    /** Heat palette for the density modes: dim purple, orange, yellow, white */
+    private static final int[] PALETTE = buildPalette();
+
+    private BufferedImage image;
+    private int[] pixels;
+    private float[] density = new float[0];
+    private int width, height;
+
+    // Pixels with a density, so the density modes only map and clear those
+    private int[] touched = new int[0];
+    private int touchedCount;
+
+    private Mode mode = Mode.COLOR;
+    private boolean empty = true;
+
+    // Bounding box of touched pixels, so clearing skips the rest
+    private int minX, minY, maxX, maxY;
+
+    /**
+     * Starts a new frame of the given size.
+     */
+    public void begin(Mode mode, int width, int height) {
+        this.mode = mode;
+        if (image == null || this.width != width || this.height != height) {
+            this.width = width;
+            this.height = height;
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            density = new float[width * height];
+            empty = true;
+        } else if (!empty) {
+            for (int y = minY; y <= maxY; y++) {
+                Arrays.fill(pixels, y * width + minX, y * width + maxX + 1, 0);
+            }
+            for (int k = 0; k < touchedCount; k++) {
+                density[touched[k]] = 0f;
+            }
+        }
+        touchedCount = 0;
+        empty = true;
+        minX = width;
+        minY = height;
+        maxX = -1;
+        maxY = -1;
+    }
+
+    /**
+     * Adds a body centred at (x, y) in screen pixels with the given screen radius.
+     * Bodies under a pixel wide are written as a single pixel.
+     */
+    public void add(double x, double y, double radius, Color color, double mass) {
+        int centerX = (int) Math.floor(x);
+        int centerY = (int) Math.floor(y);
+        int reach = radius < 1.0 ? 0 : (int) Math.ceil(radius);
+        int fromX = Math.max(centerX - reach, 0), toX = Math.min(centerX + reach, width - 1);
+        int fromY = Math.max(centerY - reach, 0), toY = Math.min(centerY + reach, height - 1);
+        if (fromX > toX || fromY > toY) return;
+
+        empty = false;
+        minX = Math.min(minX, fromX);
+        maxX = Math.max(maxX, toX);
+        minY = Math.min(minY, fromY);
+        maxY = Math.max(maxY, toY);
+
+        if (reach == 0) {
+            plot(centerY * width + centerX, color, mass, 1.0f);
+            return;
+        }
+        double radiusSquared = radius * radius;
+        // Spread the body's weight over its disc, so density doesn't grow with size
+        float share = (float) (1.0 / (Math.PI * radiusSquared));
+        for (int py = fromY; py <= toY; py++) {
+            double dy = py + 0.5 - y;
+            for (int px = fromX; px <= toX; px++) {
+                double dx = px + 0.5 - x;
+                if (dx * dx + dy * dy <= radiusSquared) {
+                    plot(py * width + px, color, mass, share);
+                }
+            }
+        }
+    }
+
+    private void plot(int pixel, Color color, double mass, float share) {
+        switch (mode) {
+            case DENSITY:
+                accumulate(pixel, share);
+                break;
+            case MASS:
+                accumulate(pixel, (float) (mass * share));
+                break;
+            default:
+                pixels[pixel] = color != null ? color.getRGB() : 0xFFFFFFFF;
+                break;
+        }
+    }
+
+    private void accumulate(int pixel, float weight) {
+        if (density[pixel] == 0f) {
+            if (touchedCount == touched.length) {
+                touched = Arrays.copyOf(touched, Math.max(1024, touched.length * 2));
+            }
+            touched[touchedCount++] = pixel;
+        }
+        density[pixel] += weight;
+    }
+
+    /**
+     * Colors the density modes and draws the cloud in one blit.
+     *
+     * @param g2d Graphics in screen coordinates
+     */
+    public void draw(Graphics2D g2d) {
+        if (empty) return;
+        if (mode == Mode.DENSITY || mode == Mode.MASS) {
+            mapDensity();
+        }
+        g2d.drawImage(image, 0, 0, null);
+    }
+
+    /**
+     * Maps the summed density to the palette on a log scale, relative to the
+     * densest pixel of the frame.
+     */
+    private void mapDensity() {
+        float max = 0f;
+        for (int k = 0; k < touchedCount; k++) {
+            max = Math.max(max, density[touched[k]]);
+        }
+        if (max <= 0f) return;
+        double scale = (PALETTE.length - 1) / Math.log(1.0 + max);
+        for (int k = 0; k < touchedCount; k++) {
+            int pixel = touched[k];
+            int entry = (int) (Math.log(1.0 + density[pixel]) * scale);
+            pixels[pixel] = PALETTE[Math.min(Math.max(entry, 1), PALETTE.length - 1)];
+        }
+    }
+
+    private static int[] buildPalette() {
+        int[][] stops = {
+            {110, 70, 10, 120}, {170, 110, 20, 150}, {230, 230, 90, 30}, {255, 255, 200, 40}, {255, 255, 255, 255}
+        };
+        int[] palette = new int[256];
+        for (int i = 0; i < palette.length; i++) {
+            double position = i / 255.0 * (stops.length - 1);
+            int stop = Math.min((int) position, stops.length - 2);
+            double t = position - stop;
+            int[] from = stops[stop], to = stops[stop + 1];
+            int alpha = (int) Math.round(from[0] + (to[0] - from[0]) * t);
+            int red = (int) Math.round(from[1] + (to[1] - from[1]) * t);
+            int green = (int) Math.round(from[2] + (to[2] - from[2]) * t);
+            int blue = (int) Math.round(from[3] + (to[3] - from[3]) * t);
+            palette[i] = alpha << 24 | red << 16 | green << 8 | blue;
+        }
+        return palette;
+    }
+}
@@ -5,7 +5,7 @@ import java.awt.Graphics2D;
 
 /**
  * PointMass - A stationary planet that doesn't move but exerts gravitational force.
- * Extends Planet but overrides updateVelocity and updatePosition to remain stationary.
+ * Extends Planet; its body is marked fixed, so the integrators never move it.
  */
 public class PointMass extends Planet {
     
@@ -29,30 +29,22 @@ public class PointMass extends Planet {
     public PointMass(double mass, double x, double y, double radius, Color color, String name) {
         // Call Planet constructor with zero velocity and angular velocity (stationary)
         super(mass, radius, x, y, 0.0, 0.0, 0.0, color, null, name);
+        store.fixed[index] = true;
     }
 
     /**
-     * Override updateVelocity - PointMass doesn't move, so velocity never changes
+     * Creates a view of a body that is already in the store
      */
-    @Override
-    public void updateVelocity(double ax, double ay, double deltaTime) {
-        // Do nothing - PointMass is stationary
-    }
-
-    /**
-     * Override updatePosition - PointMass doesn't move, so position never changes
-     */
-    @Override
-    public void updatePosition(double deltaTime, double timeFactor) {
-        // Do nothing - PointMass is stationary
-        // Rotation also doesn't change (angularVelocity is 0)
+    PointMass(BodyStore store, int index, Color color, String name) {
+        super(store, index, color, null, name);
+        store.fixed[index] = true;
     }
 
     /**
      * Override draw to use simpler rendering (no texture/rotation needed for stationary mass)
      */
     @Override
-    public void draw(Graphics2D g2d) {
+    public void draw(Graphics2D g2d, double x, double y, double radius, double rotationAngle) {
         g2d.setColor(color);
         int drawX = (int)(x - radius);
         int drawY = (int)(y - radius);
@@ -64,36 +56,10 @@ public class PointMass extends Planet {
             g2d.setStroke(new java.awt.BasicStroke(3.0f));
             g2d.setColor(Color.YELLOW);
             g2d.drawOval(drawX-5, drawY-5, size+10, size+10);
+        } else if (selected) {
+            g2d.setStroke(new java.awt.BasicStroke(1.5f));
+            g2d.setColor(Color.YELLOW);
+            g2d.drawOval(drawX-3, drawY-3, size+6, size+6);
         }
     }
-
-    /**
-     * Merges with another planet, creating a new PointMass with combined mass.
-     * PointMass always wins in a merge (remains stationary).
-     * 
-     * @param other The planet to merge with
-     * @return A new PointMass with combined properties
-     */
-    public PointMass merge(Planet other) {
-        double combinedMass = this.mass + other.mass;
-        
-        // Use the larger radius
-        double newRadius = this.radius > other.radius ? this.radius : other.radius;
-        
-        // Average the colors
-        Color c1 = this.color;
-        Color c2 = other.color;
-        int r = (c1.getRed() + c2.getRed()) / 2;
-        int g = (c1.getGreen() + c2.getGreen()) / 2;
-        int b = (c1.getBlue() + c2.getBlue()) / 2;
-        Color newColor = new Color(r, g, b);
-        
-        // Keep PointMass name if it has one, otherwise use other's name, or null
-        String mergedName = (this.name != null && !this.name.trim().isEmpty()) 
-            ? this.name 
-            : (other.name != null && !other.name.trim().isEmpty() ? other.name : null);
-        
-        // Position stays at PointMass location (stationary)
-        return new PointMass(combinedMass, this.x, this.y, newRadius, newColor, mergedName);
-    }
 }
@@ -0,0 +1,117 @@
+package com.physics.simulations.gravity;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.Locale;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleConsumer;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Replay controls shown under the simulation while a recording plays:
+ * play/pause, a time slider to scrub through the recording, and a way back
+ * to the live simulation.
+ */
+public class ReplayBar extends JPanel {
+
+    /** Slider positions across the whole recording */
+    private static final int SLIDER_STEPS = 10000;
+
+    /** How often the slider and time follow the playback */
+    private static final int REFRESH_MILLIS = 100;
+
+    private final JButton playButton;
+    private final JSlider timeSlider;
+    private final JLabel timeLabel;
+    private final JLabel nameLabel;
+    private final Timer refreshTimer;
+    private boolean showingTime = false;  // Mutes the seek callback while the slider follows playback
+
+    private double startTime, endTime;
+
+    /**
+     * @param onPlayPause Called when "Play"/"Pause" is clicked
+     * @param onSeek Called with the simulated time the slider was dragged to
+     * @param onExit Called when "Exit Replay" is clicked
+     * @param frameTime Simulated time of the frame on screen
+     * @param playing Whether the replay is playing rather than paused
+     */
+    public ReplayBar(Runnable onPlayPause, DoubleConsumer onSeek, Runnable onExit,
+                     DoubleSupplier frameTime, BooleanSupplier playing) {
+        setLayout(new BorderLayout(10, 0));
+        setBackground(new Color(50, 50, 50));
+        setBorder(BorderFactory.createEmptyBorder(5, 10, 5, 10));
+
+        playButton = new JButton("Pause");
+        playButton.setFocusable(false);
+        playButton.addActionListener(e -> onPlayPause.run());
+
+        timeSlider = new JSlider(0, SLIDER_STEPS, 0);
+        timeSlider.setBackground(new Color(50, 50, 50));
+        timeSlider.setFocusable(false);
+        timeSlider.addChangeListener(e -> {
+            if (!showingTime) {
+                onSeek.accept(startTime + (endTime - startTime) * timeSlider.getValue() / SLIDER_STEPS);
+            }
+        });
+
+        nameLabel = new JLabel();
+        nameLabel.setForeground(Color.WHITE);
+        timeLabel = new JLabel();
+        timeLabel.setForeground(Color.WHITE);
+
+        JButton exitButton = new JButton("Exit Replay");
+        exitButton.setFocusable(false);
+        exitButton.addActionListener(e -> onExit.run());
+
+        JPanel left = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        left.setBackground(new Color(50, 50, 50));
+        left.add(playButton);
+        left.add(nameLabel);
+        JPanel right = new JPanel(new FlowLayout(FlowLayout.RIGHT, 5, 0));
+        right.setBackground(new Color(50, 50, 50));
+        right.add(timeLabel);
+        right.add(exitButton);
+
+        add(left, BorderLayout.WEST);
+        add(timeSlider, BorderLayout.CENTER);
+        add(right, BorderLayout.EAST);
+
+        refreshTimer = new Timer(REFRESH_MILLIS, e -> showTime(frameTime.getAsDouble(), playing.getAsBoolean()));
+    }
+
+    /**
+     * Shows the controls for a recording and starts following its playback.
+     */
+    public void open(String name, double startTime, double endTime) {
+        this.startTime = startTime;
+        this.endTime = endTime;
+        nameLabel.setText(name);
+        refreshTimer.start();
+    }
+
+    /**
+     * Stops following the playback.
+     */
+    public void close() {
+        refreshTimer.stop();
+    }
+
+    /**
+     * Moves the slider and time to the frame on screen, unless the user is
+     * dragging the slider.
+     */
+    private void showTime(double time, boolean playing) {
+        playButton.setText(playing ? "Pause" : "Play");
+        timeLabel.setText(String.format(Locale.ROOT, "t = %.2f / %.2f s", time, endTime));
+        if (timeSlider.getValueIsAdjusting()) return;
+        double span = endTime - startTime;
+        int position = span > 0 ? (int) Math.round((time - startTime) / span * SLIDER_STEPS) : 0;
+        showingTime = true;
+        try {
+            timeSlider.setValue(Math.max(0, Math.min(SLIDER_STEPS, position)));
+        } finally {
+            showingTime = false;
+        }
+    }
+}
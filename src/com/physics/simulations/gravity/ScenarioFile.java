@@ -0,0 +1,524 @@
+package com.physics.simulations.gravity;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * ScenarioFile - a starting setup described in a small text file, so new
+ * experiments need no code.
+ *
+ * The file is a list of sections, each a [name] line followed by
+ * "key = value" lines. Lines starting with # or ; are comments. Sections:
+ *
+ *   [settings]    gravity, time factor, restitution, bounce (true/false),
+ *                 seed (for the generators below, default 42)
+ *   [view]        center (x, y) and zoom - by default the view is centred
+ *                 on the centre of mass and zoomed to fit
+ *   [body]        one planet: position, velocity, mass, radius, spin,
+ *                 color, texture, name
+ *   [point mass]  one point mass that never moves: position, mass, radius,
+ *                 color, name
+ *   [plummer]     a Plummer star cluster: bodies, mass, scale radius
+ *   [disk]        an exponential disk galaxy: bodies, mass, scale length,
+ *                 core mass, dispersion, rotation (counterclockwise or
+ *                 clockwise)
+ *   [ring]        a Keplerian ring or asteroid belt: bodies, central mass,
+ *                 center body (fixed, moving or none), inner radius, outer
+ *                 radius, mass, eccentricity
+ *   [collision]   two disk galaxies on a collision course: bodies, mass and
+ *                 core mass (each galaxy), scale length, separation, impact
+ *                 parameter, approach speed, retrograde, second color
+ *
+ * The four generators also take center, velocity (of the whole system),
+ * body radius, color and seed. Points and velocities are written "x, y";
+ * colors as a name (white, yellow, ...), #RRGGBB or "r, g, b". The
+ * generators are described in Generators.
+ *
+ * The whole file is checked when it is read, so a mistake is reported with
+ * its line number before the simulation is touched. Sections are applied in
+ * order after the settings, so several systems can be combined.
+ */
+public final class ScenarioFile {
+
+    /** File name extension used by the open dialog and HeadlessMain */
+    public static final String EXTENSION = "scenario";
+
+    /** Most bodies a scenario may ask for */
+    private static final long MAX_BODIES = 50_000_000L;
+
+    /** Bodies sampled to find how far the view has to zoom out */
+    private static final int FIT_SAMPLES = 4096;
+
+    private static final Map<String, Color> COLORS = new HashMap<>();
+    static {
+        COLORS.put("white", Color.WHITE);
+        COLORS.put("light gray", Color.LIGHT_GRAY);
+        COLORS.put("gray", Color.GRAY);
+        COLORS.put("dark gray", Color.DARK_GRAY);
+        COLORS.put("red", Color.RED);
+        COLORS.put("pink", Color.PINK);
+        COLORS.put("orange", Color.ORANGE);
+        COLORS.put("yellow", Color.YELLOW);
+        COLORS.put("green", Color.GREEN);
+        COLORS.put("magenta", Color.MAGENTA);
+        COLORS.put("cyan", Color.CYAN);
+        COLORS.put("blue", Color.BLUE);
+    }
+
+    /** One section's worth of bodies, added to the engine in file order */
+    private interface Step {
+        void apply(GravityEngine engine);
+    }
+
+    /** Where the view should look once the scenario is loaded */
+    public static final class View {
+        /** World point to put at the middle of the window */
+        public final double centerX, centerY;
+        /** Zoom from the file, or NaN to fit radius into the window */
+        public final double zoom;
+        /** Distance from the centre holding nearly all the bodies */
+        public final double radius;
+
+        View(double centerX, double centerY, double zoom, double radius) {
+            this.centerX = centerX;
+            this.centerY = centerY;
+            this.zoom = zoom;
+            this.radius = radius;
+        }
+
+        /**
+         * @return The zoom to use in a window of the given size
+         */
+        public double zoomFor(int width, int height) {
+            if (!Double.isNaN(zoom)) return zoom;
+            if (!(radius > 0)) return 1.0;
+            return 0.45 * Math.min(width, height) / radius;
+        }
+    }
+
+    private final List<Step> steps = new ArrayList<>();
+    private long bodyCount;
+    private Double gravity, timeFactor, restitution;
+    private Boolean bounce;
+    private double[] viewCenter;
+    private double viewZoom = Double.NaN;
+
+    private ScenarioFile() {}
+
+    /**
+     * Reads and checks a scenario file.
+     *
+     * @throws IOException if it can't be read or has a mistake - the message
+     *                     names the file and line
+     */
+    public static ScenarioFile read(Path path) throws IOException {
+        return parse(path.getFileName().toString(), Files.readAllLines(path, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return Number of bodies the scenario creates
+     */
+    public long getBodyCount() {
+        return bodyCount;
+    }
+
+    /**
+     * Replaces everything in the engine with the scenario and applies its
+     * settings. Call from the thread that steps the engine.
+     *
+     * @return Where the view should look
+     */
+    public View apply(GravityEngine engine) {
+        BodyStore bodies = engine.getBodies();
+        // The old planets are dropped along with the state they viewed
+        bodies.discardAll();
+        bodies.ensureCapacity((int) bodyCount);
+        engine.setSimulationTime(0.0);
+        if (gravity != null) engine.setGravitationalConstant(gravity);
+        if (timeFactor != null) engine.setTimeFactor(timeFactor);
+        if (restitution != null) engine.setCoefficientOfRestitution(restitution);
+        if (bounce != null) engine.setBounce(bounce);
+        for (Step step : steps) {
+            step.apply(engine);
+        }
+        engine.bodiesChanged();
+        return fitView(bodies);
+    }
+
+    /**
+     * Centres the view on the file's centre or the centre of mass, and finds
+     * the radius holding 95% of a sample of the bodies.
+     */
+    private View fitView(BodyStore bodies) {
+        int n = bodies.count;
+        double cx, cy;
+        if (viewCenter != null) {
+            cx = viewCenter[0];
+            cy = viewCenter[1];
+        } else {
+            double mass = 0, mx = 0, my = 0;
+            for (int i = 0; i < n; i++) {
+                mass += bodies.mass[i];
+                mx += bodies.mass[i] * bodies.x[i];
+                my += bodies.mass[i] * bodies.y[i];
+            }
+            cx = mass > 0 ? mx / mass : 0.0;
+            cy = mass > 0 ? my / mass : 0.0;
+        }
+        if (n == 0) return new View(cx, cy, viewZoom, 0.0);
+        int stride = Math.max(1, n / FIT_SAMPLES);
+        double[] distances = new double[(n + stride - 1) / stride];
+        for (int s = 0; s < distances.length; s++) {
+            int i = s * stride;
+            distances[s] = Math.hypot(bodies.x[i] - cx, bodies.y[i] - cy) + bodies.radius[i];
+        }
+        Arrays.sort(distances);
+        return new View(cx, cy, viewZoom, distances[(int) (0.95 * (distances.length - 1))]);
+    }
+
+    static ScenarioFile parse(String source, List<String> lines) throws IOException {
+        List<Section> sections = new ArrayList<>();
+        Section current = null;
+        for (int n = 0; n < lines.size(); n++) {
+            int lineNumber = n + 1;
+            String line = lines.get(n).strip();
+            if (line.isEmpty() || line.startsWith("#") || line.startsWith(";")) continue;
+            if (line.startsWith("[")) {
+                if (!line.endsWith("]")) throw error(source, lineNumber, "Section name needs a closing ]");
+                current = new Section(source, normalize(line.substring(1, line.length() - 1)), lineNumber);
+                sections.add(current);
+                continue;
+            }
+            int equals = line.indexOf('=');
+            if (equals < 0) throw error(source, lineNumber, "Expected key = value, found \"" + line + "\"");
+            if (current == null) throw error(source, lineNumber, "Settings must follow a [section] line");
+            current.put(normalize(line.substring(0, equals)), line.substring(equals + 1).strip(), lineNumber);
+        }
+
+        ScenarioFile scenario = new ScenarioFile();
+        // Settings first: the generators need G, and their seeds derive from the file's
+        long seed = 42L;
+        Section settings = null;
+        for (Section section : sections) {
+            if (!section.name.equals("settings")) continue;
+            if (settings != null) throw section.error("There can only be one [settings] section");
+            settings = section;
+        }
+        if (settings != null) {
+            scenario.gravity = settings.optionalNumber("gravity");
+            scenario.timeFactor = settings.optionalNumber("time factor");
+            scenario.restitution = settings.optionalNumber("restitution");
+            if (scenario.restitution != null && (scenario.restitution < 0 || scenario.restitution > 1)) {
+                throw settings.error("restitution must be between 0 and 1");
+            }
+            scenario.bounce = settings.has("bounce") ? settings.flag("bounce", false) : null;
+            seed = settings.integer("seed", seed);
+            settings.finish();
+        }
+
+        for (int s = 0; s < sections.size(); s++) {
+            Section section = sections.get(s);
+            long sectionSeed = seed + s;
+            switch (section.name) {
+                case "settings":
+                    continue;
+                case "view":
+                    scenario.readView(section);
+                    break;
+                case "body":
+                case "point mass":
+                    scenario.readBody(section);
+                    break;
+                case "plummer":
+                case "disk":
+                case "ring":
+                case "collision":
+                    scenario.readGenerator(section, sectionSeed);
+                    break;
+                default:
+                    throw section.error("Unknown section [" + section.name + "]");
+            }
+            section.finish();
+            if (scenario.bodyCount > MAX_BODIES) {
+                throw section.error("Scenario has more than " + MAX_BODIES + " bodies");
+            }
+        }
+        return scenario;
+    }
+
+    private void readView(Section section) throws IOException {
+        viewCenter = section.point("center", null);
+        viewZoom = section.positive("zoom", Double.NaN);
+    }
+
+    private void readBody(Section section) throws IOException {
+        boolean fixed = section.name.equals("point mass");
+        double[] position = section.point("position", null);
+        if (position == null) throw section.error("[" + section.name + "] needs a position");
+        double[] velocity = fixed ? new double[2] : section.point("velocity", new double[2]);
+        double mass = section.positive("mass", Double.NaN);
+        if (Double.isNaN(mass)) throw section.error("[" + section.name + "] needs a mass");
+        double radius = section.positive("radius", 10.0);
+        double spin = fixed ? 0.0 : section.number("spin", 0.0);
+        Color color = section.color("color", Color.WHITE);
+        String texture = fixed ? null : section.text("texture", null);
+        String name = section.text("name", null);
+        bodyCount++;
+        steps.add(engine -> {
+            BodyStore bodies = engine.getBodies();
+            int i = bodies.append(position[0], position[1], velocity[0], velocity[1], mass, radius, fixed);
+            if (fixed) {
+                new PointMass(bodies, i, color, name);
+            } else {
+                bodies.spin[i] = spin;
+                new Planet(bodies, i, color, texture, name);
+            }
+        });
+    }
+
+    private void readGenerator(Section section, long defaultSeed) throws IOException {
+        int count = section.count("bodies");
+        double[] center = section.point("center", new double[2]);
+        double[] velocity = section.point("velocity", new double[2]);
+        double bodyRadius = section.positive("body radius", 1.0);
+        Color color = section.color("color", Color.WHITE);
+        long seed = section.integer("seed", defaultSeed);
+        double x = center[0], y = center[1], vx = velocity[0], vy = velocity[1];
+        Step step;
+        switch (section.name) {
+            case "plummer": {
+                double mass = section.required("mass");
+                double scaleRadius = section.required("scale radius");
+                bodyCount += count;
+                step = engine -> Generators.plummer(engine, new Random(seed), count, mass, scaleRadius,
+                                                    bodyRadius, color, x, y, vx, vy);
+                break;
+            }
+            case "disk": {
+                double mass = section.required("mass");
+                double scaleLength = section.required("scale length");
+                double coreMass = section.nonNegative("core mass", 0.0);
+                double dispersion = section.nonNegative("dispersion", 0.05);
+                boolean clockwise = section.choice("rotation", "counterclockwise",
+                                                   "counterclockwise", "clockwise").equals("clockwise");
+                bodyCount += count + (coreMass > 0 ? 1 : 0);
+                step = engine -> Generators.exponentialDisk(engine, new Random(seed), count, mass, scaleLength,
+                                                            coreMass, dispersion, clockwise, bodyRadius, color,
+                                                            "Core", x, y, vx, vy);
+                break;
+            }
+            case "ring": {
+                double centralMass = section.required("central mass");
+                String centerBody = section.choice("center body", "fixed", "fixed", "moving", "none");
+                Boolean fixedCenter = centerBody.equals("none") ? null : centerBody.equals("fixed");
+                double inner = section.required("inner radius");
+                double outer = section.required("outer radius");
+                if (outer < inner) throw section.error("outer radius must not be less than inner radius");
+                double mass = section.nonNegative("mass", 0.0);
+                double eccentricity = section.nonNegative("eccentricity", 0.02);
+                bodyCount += count + (fixedCenter != null ? 1 : 0);
+                step = engine -> Generators.ring(engine, new Random(seed), count, centralMass, fixedCenter,
+                                                 inner, outer, mass, eccentricity, bodyRadius, color,
+                                                 x, y, vx, vy);
+                break;
+            }
+            default: {
+                double mass = section.required("mass");
+                double scaleLength = section.required("scale length");
+                double coreMass = section.nonNegative("core mass", 0.0);
+                double separation = section.required("separation");
+                double impact = section.number("impact parameter", 0.0);
+                double approach = section.number("approach speed", 0.0);
+                boolean retrograde = section.flag("retrograde", false);
+                Color second = section.color("second color", color);
+                bodyCount += count + (coreMass > 0 ? 2 : 0);
+                step = engine -> Generators.galaxyCollision(engine, new Random(seed), count, mass, scaleLength,
+                                                            coreMass, separation, impact, approach, retrograde,
+                                                            bodyRadius, color, second, x, y, vx, vy);
+                break;
+            }
+        }
+        steps.add(step);
+    }
+
+    /** Lower case, with runs of spaces, '-' and '_' as one space */
+    private static String normalize(String key) {
+        return key.strip().toLowerCase(Locale.ROOT).replaceAll("[\\s_-]+", " ");
+    }
+
+    private static IOException error(String source, int line, String message) {
+        return new IOException(source + ":" + line + ": " + message);
+    }
+
+    /**
+     * The keys of one section, with the lines they came from. Each getter
+     * marks its key as used, so finish() can report keys nobody asked for -
+     * usually typos.
+     */
+    private static final class Section {
+        final String source;
+        final String name;
+        final int line;
+        final Map<String, String> values = new LinkedHashMap<>();
+        final Map<String, Integer> lines = new HashMap<>();
+
+        Section(String source, String name, int line) {
+            this.source = source;
+            this.name = name;
+            this.line = line;
+        }
+
+        void put(String key, String value, int lineNumber) throws IOException {
+            if (values.containsKey(key)) {
+                throw ScenarioFile.error(source, lineNumber, "\"" + key + "\" is already set on line " + lines.get(key));
+            }
+            values.put(key, value);
+            lines.put(key, lineNumber);
+        }
+
+        boolean has(String key) {
+            return values.containsKey(key);
+        }
+
+        /** Removes and returns a key's value, or null */
+        private String take(String key) {
+            return values.remove(key);
+        }
+
+        IOException error(String message) {
+            return ScenarioFile.error(source, line, message);
+        }
+
+        IOException error(String key, String message) {
+            return ScenarioFile.error(source, lines.getOrDefault(key, line), message);
+        }
+
+        void finish() throws IOException {
+            if (!values.isEmpty()) {
+                String key = values.keySet().iterator().next();
+                throw error(key, "Unknown key \"" + key + "\" in [" + name + "]");
+            }
+        }
+
+        String text(String key, String fallback) {
+            String value = take(key);
+            return value == null || value.isEmpty() ? fallback : value;
+        }
+
+        double number(String key, double fallback) throws IOException {
+            String value = take(key);
+            if (value == null) return fallback;
+            return parseNumber(key, value);
+        }
+
+        Double optionalNumber(String key) throws IOException {
+            return has(key) ? number(key, 0.0) : null;
+        }
+
+        double required(String key) throws IOException {
+            if (!has(key)) throw error("[" + name + "] needs " + key);
+            return positive(key, 0.0);
+        }
+
+        double positive(String key, double fallback) throws IOException {
+            double value = number(key, fallback);
+            // NaN can only be the fallback, meaning "not given"
+            if (!(value > 0) && !Double.isNaN(value)) throw error(key, key + " must be greater than 0");
+            return value;
+        }
+
+        double nonNegative(String key, double fallback) throws IOException {
+            double value = number(key, fallback);
+            if (!(value >= 0)) throw error(key, key + " must not be negative");
+            return value;
+        }
+
+        long integer(String key, long fallback) throws IOException {
+            String value = take(key);
+            if (value == null) return fallback;
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                throw error(key, key + " must be a whole number, not \"" + value + "\"");
+            }
+        }
+
+        int count(String key) throws IOException {
+            if (!has(key)) throw error("[" + name + "] needs " + key);
+            long value = integer(key, 0);
+            if (value < 0 || value > MAX_BODIES) {
+                throw error(key, key + " must be between 0 and " + MAX_BODIES);
+            }
+            return (int) value;
+        }
+
+        boolean flag(String key, boolean fallback) throws IOException {
+            String value = take(key);
+            if (value == null) return fallback;
+            switch (value.toLowerCase(Locale.ROOT)) {
+                case "true": case "yes": case "on": return true;
+                case "false": case "no": case "off": return false;
+                default: throw error(key, key + " must be true or false, not \"" + value + "\"");
+            }
+        }
+
+        String choice(String key, String fallback, String... options) throws IOException {
+            String value = take(key);
+            if (value == null) return fallback;
+            String normalized = normalize(value);
+            for (String option : options) {
+                if (option.equals(normalized)) return option;
+            }
+            throw error(key, key + " must be one of " + String.join(", ", options) + ", not \"" + value + "\"");
+        }
+
+        double[] point(String key, double[] fallback) throws IOException {
+            String value = take(key);
+            if (value == null) return fallback;
+            String[] parts = value.split(",");
+            if (parts.length != 2) throw error(key, key + " must be two numbers, x, y");
+            return new double[] {parseNumber(key, parts[0]), parseNumber(key, parts[1])};
+        }
+
+        Color color(String key, Color fallback) throws IOException {
+            String value = take(key);
+            if (value == null) return fallback;
+            Color named = COLORS.get(normalize(value));
+            if (named != null) return named;
+            try {
+                if (value.startsWith("#") && value.length() == 7) {
+                    return new Color(Integer.parseInt(value.substring(1), 16));
+                }
+                String[] parts = value.split(",");
+                if (parts.length == 3) {
+                    return new Color(Integer.parseInt(parts[0].strip()), Integer.parseInt(parts[1].strip()),
+                                     Integer.parseInt(parts[2].strip()));
+                }
+            } catch (IllegalArgumentException e) {
+                // Reported below
+            }
+            throw error(key, key + " must be a color name, #RRGGBB or r, g, b - not \"" + value + "\"");
+        }
+
+        private double parseNumber(String key, String value) throws IOException {
+            try {
+                double number = Double.parseDouble(value.strip());
+                if (Double.isFinite(number)) return number;
+            } catch (NumberFormatException e) {
+                // Reported below
+            }
+            throw error(key, key + " must be a number, not \"" + value.strip() + "\"");
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.physics.simulations.gravity;
+
+import java.awt.Color;
+import java.util.Random;
+
+/**
+ * Scenarios - starting setups for the gravity simulation.
+ *
+ * Each method adds its bodies to an engine, so the same setup can be used by
+ * the window and by HeadlessMain. Setups can also be read from text files -
+ * see ScenarioFile.
+ */
+public class Scenarios {
+
+    /** Names accepted by load() */
+    public static final String[] NAMES = {"default", "disc", "plummer", "galaxy", "belt", "collision"};
+
+    private Scenarios() {}
+
+    /**
+     * Adds the named scenario to the engine.
+     *
+     * @param count Number of bodies (ignored by fixed scenarios)
+     * @param seed Random seed (ignored by fixed scenarios)
+     */
+    public static void load(String name, GravityEngine engine, int count, long seed) {
+        switch (name) {
+            case "default":
+                defaultSystem(engine);
+                break;
+            case "disc":
+                randomDisc(engine, count, seed);
+                break;
+            case "plummer":
+                Generators.plummer(engine, new Random(seed), count, count, 200.0 + 2.0 * Math.sqrt(count),
+                                   1.0, Color.WHITE, 0.0, 0.0, 0.0, 0.0);
+                break;
+            case "galaxy":
+                Generators.exponentialDisk(engine, new Random(seed), count - 1, count, 150.0 + 3.0 * Math.sqrt(count),
+                                           10.0 * count, 0.05, false, 1.0, Color.WHITE, "Core",
+                                           0.0, 0.0, 0.0, 0.0);
+                break;
+            case "belt":
+                Generators.ring(engine, new Random(seed), count - 1, 100.0 * Math.max(count, 1), true,
+                                800.0, 1000.0 + 10.0 * Math.sqrt(count), count, 0.02, 1.0, Color.LIGHT_GRAY,
+                                0.0, 0.0, 0.0, 0.0);
+                break;
+            case "collision": {
+                double scaleLength = 150.0 + 2.0 * Math.sqrt(count);
+                Generators.galaxyCollision(engine, new Random(seed), count - 2, count / 2.0, scaleLength,
+                                           5.0 * count, 16.0 * scaleLength, 4.0 * scaleLength, 0.0, false,
+                                           1.0, Color.WHITE, Color.CYAN, 0.0, 0.0, 0.0, 0.0);
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown scenario: " + name);
+        }
+    }
+
+    /**
+     * The scene the window opens with: a sun, an orbiting earth and a point mass.
+     */
+    public static void defaultSystem(GravityEngine engine) {
+        Planet sun = new Planet(
+            1000.0,
+            20.0,
+            500.0, 400.0,
+            0.0, 0.0, 0.02,
+            Color.YELLOW,
+            "resources/textures/Sun.jpg",
+            "Sun"
+        );
+
+        Planet planet1 = new Planet(
+            50.0,
+            10.0,
+            700.0, 400.0,
+            0.0, -80.0, 0.06,
+            Color.BLUE,
+            "resources/textures/Earth.jpg",
+            "Earth"
+        );
+
+        engine.add(sun);
+        engine.add(planet1);
+        engine.add(new PointMass(500, 500, 500));
+    }
+
+    /**
+     * A reproducible disc of small planets on circular orbits around a central
+     * point mass. The central mass outweighs the disc, so the orbits stay
+     * close to circular for a long time. The bodies are written straight
+     * into the engine's store (see Generators).
+     */
+    public static void randomDisc(GravityEngine engine, int count, long seed) {
+        Random random = new Random(seed);
+        double centralMass = 100.0 * Math.max(count, 1);
+        double discRadius = 1000.0 + 10.0 * Math.sqrt(count);
+        double gm = engine.getGravitationalConstant() * centralMass;
+
+        BodyStore bodies = engine.getBodies();
+        bodies.ensureCapacity(bodies.count + Math.max(count, 1));
+        int center = bodies.append(0.0, 0.0, 0.0, 0.0, centralMass, 20.0, true);
+        new PointMass(bodies, center, Color.YELLOW, "Center");
+        for (int i = 1; i < count; i++) {
+            double r = discRadius * Math.sqrt(0.05 + 0.95 * random.nextDouble());
+            double angle = 2.0 * Math.PI * random.nextDouble();
+            double speed = Math.sqrt(gm / r);
+            double cos = Math.cos(angle);
+            double sin = Math.sin(angle);
+            double mass = 0.1 + 0.9 * random.nextDouble();
+            int index = bodies.append(r * cos, r * sin, -speed * sin, speed * cos, mass, 1.0, false);
+            new Planet(bodies, index, Color.WHITE, null, "Body #" + i);
+        }
+        engine.bodiesChanged();
+    }
+}
@@ -0,0 +1,38 @@
+package com.physics.simulations.gravity;
+
+/**
+ * SemiImplicitEuler - velocity first, then position with the new velocity.
+ *
+ * First order and one force evaluation per step. It is symplectic, so energy
+ * errors stay bounded, but orbits drift in phase unless the step is small.
+ */
+public class SemiImplicitEuler implements Integrator {
+
+    @Override
+    public void step(BodyStore bodies, double dt, Accelerations accelerations) {
+        accelerations.compute(bodies);
+
+        int n = bodies.count;
+        double[] x = bodies.x, y = bodies.y;
+        double[] vx = bodies.vx, vy = bodies.vy;
+        double[] ax = bodies.ax, ay = bodies.ay;
+        boolean[] fixed = bodies.fixed;
+        for (int i = 0; i < n; i++) {
+            if (fixed[i]) continue;
+            vx[i] += ax[i] * dt;
+            vy[i] += ay[i] * dt;
+            x[i] += vx[i] * dt;
+            y[i] += vy[i] * dt;
+        }
+    }
+
+    @Override
+    public int getForceEvaluations() {
+        return 1;
+    }
+
+    @Override
+    public String getName() {
+        return "Semi-implicit Euler";
+    }
+}
@@ -0,0 +1,73 @@
+package com.physics.simulations.gravity;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SnapshotExchange - hands state snapshots from the simulation thread to the
+ * renderer without locking.
+ *
+ * The writer fills its back buffer and swaps it into the shared slot; the
+ * reader swaps its front buffer out of the shared slot whenever something
+ * newer has been published. A third buffer sits in the shared slot, so
+ * neither side ever waits for the other and a buffer is never written while
+ * the reader holds it.
+ *
+ * The reader also keeps the snapshot before the latest one (a fourth
+ * buffer), so it can interpolate between the last two physics states.
+ *
+ * publish() must only be called from one thread (the simulation thread) and
+ * latest() from one other thread - the gravity-render thread with active
+ * rendering (the default), or the Swing EDT when falling back to Swing
+ * repaints.
+ */
+public class SnapshotExchange {
+
+    /** Set in the state when the shared buffer holds a snapshot the reader has not seen */
+    private static final int FRESH = 4;
+    private static final int INDEX_MASK = 3;
+
+    private final StateSnapshot[] buffers = {
+        new StateSnapshot(), new StateSnapshot(), new StateSnapshot(), new StateSnapshot()
+    };
+
+    /** Index of the shared buffer, plus the FRESH flag */
+    private final AtomicInteger shared = new AtomicInteger(1);
+
+    private int writerIndex = 0;
+    private int readerIndex = 2;
+    private int previousIndex = 3;
+    private long nextSequence = 1;
+
+    /**
+     * Copies the bodies into the back buffer and makes it the latest snapshot.
+     * Simulation thread only.
+     */
+    public void publish(BodyStore bodies, double simulationTime) {
+        buffers[writerIndex].copyFrom(bodies, nextSequence++, simulationTime);
+        buffers[writerIndex].publishedNanos = System.nanoTime();
+        writerIndex = shared.getAndSet(writerIndex | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * Returns the newest published snapshot. It stays valid and unchanged
+     * until the next call. Reader thread only.
+     */
+    public StateSnapshot latest() {
+        if ((shared.get() & FRESH) != 0) {
+            // The oldest buffer goes back to the writer; the latest becomes the previous one
+            int taken = shared.getAndSet(previousIndex) & INDEX_MASK;
+            previousIndex = readerIndex;
+            readerIndex = taken;
+        }
+        return buffers[readerIndex];
+    }
+
+    /**
+     * Returns the snapshot published before the one last returned by
+     * latest() (empty before the second publish). Valid until the next call
+     * to latest(). Reader thread only.
+     */
+    public StateSnapshot previous() {
+        return buffers[previousIndex];
+    }
+}
@@ -0,0 +1,203 @@
+package com.physics.simulations.gravity;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * SolverAccuracy - compares an approximate ForceSolver against the direct sum.
+ *
+ * Run it on its own for an accuracy-vs-speed report: the Barnes-Hut error
+ * for a few opening angles, the fast multipole error for every expansion
+ * order and the particle mesh error for a few mesh sizes, each with the time
+ * of one force pass:
+ *
+ *   java -cp out com.physics.simulations.gravity.SolverAccuracy [bodies]
+ *
+ * The exit code is non-zero if theta = 0 does not reproduce the direct sum
+ * for either solver, if Barnes-Hut at theta = 0.5 has an RMS error above
+ * 0.5%, if the fast multipole method at theta = 0.5 has one above 2e-4 at
+ * p = 4 or 1e-6 at p = 8, or if P3M on a 128 × 128 mesh has one above 0.5%.
+ * The particle mesh alone is reported but not checked: it leaves out the
+ * force between bodies a few cells apart, which in a cloud this sparse is
+ * most of it.
+ */
+public class SolverAccuracy {
+
+    /**
+     * Error of one solver relative to another.
+     */
+    public static class Result {
+        public final double maxRelativeError;
+        public final double rmsRelativeError;
+
+        public Result(double maxRelativeError, double rmsRelativeError) {
+            this.maxRelativeError = maxRelativeError;
+            this.rmsRelativeError = rmsRelativeError;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("max error = %.3e, rms error = %.3e", maxRelativeError, rmsRelativeError);
+        }
+    }
+
+    /**
+     * Runs both solvers on the same bodies and measures how far the candidate's
+     * accelerations are from the reference. Errors are divided by the RMS
+     * reference acceleration rather than each body's own, since in a uniform
+     * cloud many bodies feel an almost perfectly cancelled net force.
+     * Point masses are skipped since their acceleration is never used.
+     */
+    public static Result compare(ForceSolver reference, ForceSolver candidate,
+                                 BodyStore bodies, double gravitationalConstant) {
+        int n = bodies.size();
+        reference.computeAccelerations(bodies, gravitationalConstant);
+        double[] refAx = Arrays.copyOf(bodies.ax, n);
+        double[] refAy = Arrays.copyOf(bodies.ay, n);
+        candidate.computeAccelerations(bodies, gravitationalConstant);
+        double[] candAx = bodies.ax;
+        double[] candAy = bodies.ay;
+
+        double maxErrorSquared = 0.0;
+        double sumErrorSquared = 0.0;
+        double sumReferenceSquared = 0.0;
+        int counted = 0;
+        for (int i = 0; i < n; i++) {
+            if (bodies.fixed[i]) continue;
+            double dx = candAx[i] - refAx[i];
+            double dy = candAy[i] - refAy[i];
+            double errorSquared = dx * dx + dy * dy;
+            maxErrorSquared = Math.max(maxErrorSquared, errorSquared);
+            sumErrorSquared += errorSquared;
+            sumReferenceSquared += refAx[i] * refAx[i] + refAy[i] * refAy[i];
+            counted++;
+        }
+        if (counted == 0 || sumReferenceSquared == 0.0) {
+            return new Result(0.0, 0.0);
+        }
+        double rmsReference = Math.sqrt(sumReferenceSquared / counted);
+        return new Result(Math.sqrt(maxErrorSquared) / rmsReference,
+                          Math.sqrt(sumErrorSquared / sumReferenceSquared));
+    }
+
+    /**
+     * Creates a reproducible disc of random bodies with a few fixed masses.
+     */
+    public static BodyStore randomBodies(int count, long seed) {
+        Random random = new Random(seed);
+        BodyStore bodies = new BodyStore(count);
+        for (int i = 0; i < count; i++) {
+            double r = 1000.0 * Math.sqrt(random.nextDouble());
+            double angle = 2.0 * Math.PI * random.nextDouble();
+            double mass = 1.0 + 99.0 * random.nextDouble();
+            double x = r * Math.cos(angle);
+            double y = r * Math.sin(angle);
+            if (i % 100 == 0) {
+                bodies.append(x, y, 0.0, 0.0, mass * 10.0, 10.0, true);
+            } else {
+                bodies.append(x, y, 0.0, 0.0, mass, 2.0, false);
+            }
+        }
+        return bodies;
+    }
+
+    /**
+     * @return Milliseconds of the fastest of a few force passes, after warming
+     *         the solver up for a moment so the JIT has compiled it
+     */
+    public static double millisPerPass(ForceSolver solver, BodyStore bodies, double gravitationalConstant) {
+        long warmUpEnd = System.nanoTime() + 300_000_000L;
+        do {
+            solver.computeAccelerations(bodies, gravitationalConstant);
+        } while (System.nanoTime() < warmUpEnd);
+        long best = Long.MAX_VALUE;
+        for (int pass = 0; pass < 3; pass++) {
+            long start = System.nanoTime();
+            solver.computeAccelerations(bodies, gravitationalConstant);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / 1e6;
+    }
+
+    public static void main(String[] args) {
+        int count;
+        try {
+            count = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        } catch (NumberFormatException e) {
+            count = 0;
+        }
+        if (count <= 0 || args.length > 1) {
+            System.err.println("Usage: SolverAccuracy [bodies], with bodies a whole number above 0 (default: 2000)");
+            System.exit(2);
+            return;
+        }
+        if (!check(count, true)) {
+            System.err.println("Solver accuracy check FAILED");
+            System.exit(1);
+        }
+        System.out.println("Solver accuracy check passed");
+    }
+
+    /**
+     * Prints the accuracy report for a random disc of count bodies and checks
+     * every solver against its limit (see the class comment). The Maven build
+     * runs this on a small disc without timings.
+     *
+     * @param timed true to also time one force pass of every solver
+     * @return true if every solver is within its limit
+     */
+    public static boolean check(int count, boolean timed) {
+        BodyStore bodies = randomBodies(count, 42L);
+        ForceSolver direct = new DirectSumSolver();
+        boolean ok = true;
+
+        if (timed) {
+            // Compile the solvers' code before anything is timed, so the first rows are not slowed down by the JIT
+            for (ForceSolver solver : new ForceSolver[] {new BarnesHutSolver(0.5), new FastMultipoleSolver(0.5, 3),
+                                                         new FastMultipoleSolver(0.5, 8), new ParticleMeshSolver(128, true)}) {
+                for (int pass = 0; pass < 3; pass++) {
+                    millisPerPass(solver, bodies, 6000.0);
+                }
+            }
+            System.out.printf("%d bodies, direct sum: %.2f ms per pass%n", count, millisPerPass(direct, bodies, 6000.0));
+        } else {
+            System.out.printf("%d bodies%n", count);
+        }
+
+        System.out.println("Barnes-Hut:");
+        for (double theta : new double[] {0.0, 0.3, 0.5, 0.8, 1.0}) {
+            ForceSolver barnesHut = new BarnesHutSolver(theta);
+            Result result = compare(direct, barnesHut, bodies, 6000.0);
+            System.out.printf("  theta = %.1f: %s%s%n", theta, result, time(barnesHut, bodies, timed));
+            if (theta == 0.0 && result.maxRelativeError > 1e-9) ok = false;
+            if (theta == 0.5 && result.rmsRelativeError > 5e-3) ok = false;
+        }
+
+        System.out.println("Fast multipole, theta = 0.5:");
+        Result exact = compare(direct, new FastMultipoleSolver(0.0, GravityEngine.DEFAULT_EXPANSION_ORDER), bodies, 6000.0);
+        System.out.printf("  theta = 0.0: %s%n", exact);
+        if (exact.maxRelativeError > 1e-9) ok = false;
+        for (int order = FastMultipoleSolver.MIN_ORDER; order <= FastMultipoleSolver.MAX_ORDER; order++) {
+            ForceSolver multipole = new FastMultipoleSolver(0.5, order);
+            Result result = compare(direct, multipole, bodies, 6000.0);
+            System.out.printf("  p = %2d: %s%s%n", order, result, time(multipole, bodies, timed));
+            if (order == 4 && result.rmsRelativeError > 2e-4) ok = false;
+            if (order == 8 && result.rmsRelativeError > 1e-6) ok = false;
+        }
+
+        System.out.println("Particle mesh:");
+        for (int meshSize : new int[] {64, 128, 256, 512}) {
+            for (boolean shortRange : new boolean[] {false, true}) {
+                ForceSolver mesh = new ParticleMeshSolver(meshSize, shortRange);
+                Result result = compare(direct, mesh, bodies, 6000.0);
+                System.out.printf("  %-13s %3d: %s%s%n", mesh.getName(), meshSize, result, time(mesh, bodies, timed));
+                if (shortRange && meshSize == 128 && result.rmsRelativeError > 5e-3) ok = false;
+            }
+        }
+        return ok;
+    }
+
+    private static String time(ForceSolver solver, BodyStore bodies, boolean timed) {
+        return timed ? String.format(", %.2f ms", millisPerPass(solver, bodies, 6000.0)) : "";
+    }
+}
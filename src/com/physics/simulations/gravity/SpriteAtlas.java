@@ -0,0 +1,182 @@
+package com.physics.simulations.gravity;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * SpriteAtlas - pre-rendered rotation frames for textured planets.
+ *
+ * Drawing a rotating textured planet the exact way takes a disc-shaped clip
+ * plus a rotated bilinear blit, one of the slowest paths in Java2D. The atlas
+ * instead keeps, for each scaled texture and disc size, K frames of the
+ * texture already rotated by a multiple of 360/K degrees and cut to an
+ * antialiased disc. Drawing a planet then is a single unclipped blit of the
+ * frame nearest to its rotation angle.
+ *
+ * A frame is rendered the first time its angle is needed, so a planet that
+ * has turned once has all K of them. Frames are compatible images, which
+ * Java2D keeps in video memory where it can. Frame sets are shared by every
+ * planet with the same texture and size, and evicted least recently used
+ * first over the memory budget.
+ *
+ * K = 0 turns the atlas off, and planets are drawn the exact way.
+ */
+public class SpriteAtlas {
+
+    /** Rotation counts offered in the control panel; 0 is off */
+    public static final int[] ROTATION_CHOICES = {0, 16, 64, 256};
+    public static final int DEFAULT_ROTATIONS = 64;
+
+    static final long DEFAULT_BUDGET_BYTES = 32L * 1024 * 1024;
+
+    private static final SpriteAtlas SHARED = new SpriteAtlas(DEFAULT_BUDGET_BYTES);
+
+    private final long budgetBytes;
+    private volatile int rotations = DEFAULT_ROTATIONS;
+
+    /** Frame sets in access order for LRU eviction */
+    private final LinkedHashMap<Key, BufferedImage[]> frames = new LinkedHashMap<>(16, 0.75f, true);
+    private long frameBytes;
+
+    public SpriteAtlas(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * @return The atlas shared by all planets
+     */
+    public static SpriteAtlas shared() {
+        return SHARED;
+    }
+
+    /**
+     * Sets the number of rotation frames per texture (K). 0 turns the atlas off.
+     */
+    public synchronized void setRotations(int rotations) {
+        if (rotations < 0) {
+            throw new IllegalArgumentException("Rotations must not be negative: " + rotations);
+        }
+        if (rotations == this.rotations) return;
+        this.rotations = rotations;
+        frames.clear();
+        frameBytes = 0;
+    }
+
+    public int getRotations() {
+        return rotations;
+    }
+
+    /**
+     * Returns the texture cut to a disc of size x size pixels, rotated by the
+     * multiple of 360/K degrees nearest to rotationAngle.
+     *
+     * @return The frame (do not draw into it), or null if the atlas is off
+     */
+    public synchronized BufferedImage frame(BufferedImage texture, int size, double rotationAngle) {
+        int k = rotations;
+        if (k == 0 || size <= 0) return null;
+
+        Key key = new Key(texture, size);
+        BufferedImage[] set = frames.get(key);
+        if (set == null) {
+            set = new BufferedImage[k];
+            frames.put(key, set);
+        }
+
+        int frame = (int) Math.floorMod(Math.round(rotationAngle / (2 * Math.PI) * k), (long) k);
+        BufferedImage image = set[frame];
+        if (image == null) {
+            image = render(texture, size, 2 * Math.PI * frame / k);
+            set[frame] = image;
+            frameBytes += 4L * size * size;
+            evict(key);
+        }
+        return image;
+    }
+
+    /**
+     * Draws the texture rotated by angle into a disc, with an antialiased edge.
+     */
+    private static BufferedImage render(BufferedImage texture, int size, double angle) {
+        BufferedImage image = createImage(size);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setColor(Color.WHITE);
+        g.fillOval(0, 0, size, size);
+
+        // Keep only the texture pixels that land on the disc
+        g.setComposite(AlphaComposite.SrcIn);
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.translate(size / 2.0, size / 2.0);
+        g.rotate(angle);
+        int texSize = texture.getWidth();
+        g.drawImage(texture, -texSize / 2, -texSize / 2, texSize, texSize, null);
+        g.dispose();
+        return image;
+    }
+
+    private static BufferedImage createImage(int size) {
+        if (GraphicsEnvironment.isHeadless()) {
+            return new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        }
+        return GraphicsEnvironment.getLocalGraphicsEnvironment()
+            .getDefaultScreenDevice()
+            .getDefaultConfiguration()
+            .createCompatibleImage(size, size, Transparency.TRANSLUCENT);
+    }
+
+    /**
+     * Drops least recently used frame sets until the atlas fits the budget
+     * again. The set in use is always kept.
+     */
+    private void evict(Key keep) {
+        Iterator<Map.Entry<Key, BufferedImage[]>> entries = frames.entrySet().iterator();
+        while (frameBytes > budgetBytes && entries.hasNext()) {
+            Map.Entry<Key, BufferedImage[]> entry = entries.next();
+            if (entry.getKey().equals(keep)) continue;
+            for (BufferedImage image : entry.getValue()) {
+                if (image != null) frameBytes -= 4L * image.getWidth() * image.getHeight();
+            }
+            entries.remove();
+        }
+    }
+
+    /**
+     * @return Bytes held by rendered frames
+     */
+    public synchronized long getFrameBytes() {
+        return frameBytes;
+    }
+
+    /** A scaled texture (by identity - the TextureCache shares them) and disc size */
+    private static final class Key {
+        final BufferedImage texture;
+        final int size;
+
+        Key(BufferedImage texture, int size) {
+            this.texture = texture;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) return false;
+            Key key = (Key) other;
+            return key.texture == texture && key.size == size;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(texture), size);
+        }
+    }
+}
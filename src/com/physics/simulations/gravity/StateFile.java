@@ -0,0 +1,318 @@
+package com.physics.simulations.gravity;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * StateFile - saves and loads the whole simulation in a compact binary file.
+ *
+ * Layout (little-endian, version 2):
+ *
+ *   header   96 bytes: magic "AETHSTAT", version, body count, G, time
+ *            factor, restitution, simulated time, pan x/y, zoom, flags
+ *            (bounce), texture count, payload length, CRC32C of the header
+ *            (with this field as zero) and the payload
+ *   columns  x, y, vx, vy, mass, radius, spin, angle as double[count],
+ *            then color (ARGB) and texture index as int[count], then a
+ *            flags byte per body (fixed)
+ *   strings  the texture paths, then one name per body, each as an int
+ *            length (-1 for null) and UTF-8 bytes
+ *
+ * The body data is stored column by column like the BodyStore, so saving and
+ * loading are bulk copies between its arrays and a memory-mapped file - a
+ * few million bodies take well under a second. Files are written to a
+ * temporary file and moved into place, so a failed save never leaves a
+ * half-written state behind, and loading checks the magic, version, length
+ * and checksum before touching the simulation.
+ *
+ * A file is mapped in one piece, which limits it to 2 GB (some 25 million
+ * bodies).
+ */
+public final class StateFile {
+
+    /** File name extension used by the save and load dialogs */
+    public static final String EXTENSION = "aeth";
+
+    private static final byte[] MAGIC = "AETHSTAT".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 2;
+    static final int HEADER_BYTES = 96;
+
+    private static final int DOUBLE_COLUMNS = 8;
+    private static final int FLAG_BOUNCE = 1;
+    private static final int FLAG_FIXED = 1;
+
+    // Header field offsets
+    private static final int VERSION_OFFSET = 8;
+    private static final int COUNT_OFFSET = 12;
+    private static final int CRC_OFFSET = 88;
+
+    private StateFile() {}
+
+    /** The view (pan and zoom) saved along with the simulation */
+    public static final class View {
+        public final double panX, panY, zoom;
+
+        public View(double panX, double panY, double zoom) {
+            this.panX = panX;
+            this.panY = panY;
+            this.zoom = zoom;
+        }
+    }
+
+    /**
+     * Writes the engine's bodies and settings, and the view, to path.
+     * Call from the thread that steps the engine.
+     */
+    public static void save(Path path, GravityEngine engine, View view) throws IOException {
+        BodyStore bodies = engine.getBodies();
+        int n = bodies.count;
+
+        // Texture paths are shared by many bodies - store each once
+        List<String> textures = new ArrayList<>();
+        Map<String, Integer> textureIndex = new HashMap<>();
+        int[] bodyTexture = new int[n];
+        byte[][] names = new byte[n][];
+        long stringBytes = 0;
+        for (int i = 0; i < n; i++) {
+            Planet planet = bodies.views[i];
+            String texture = planet != null ? planet.getTexturePath() : null;
+            if (texture == null) {
+                bodyTexture[i] = -1;
+            } else {
+                Integer known = textureIndex.get(texture);
+                if (known == null) {
+                    known = textures.size();
+                    textureIndex.put(texture, known);
+                    textures.add(texture);
+                    stringBytes += 4 + texture.getBytes(StandardCharsets.UTF_8).length;
+                }
+                bodyTexture[i] = known;
+            }
+            String name = planet != null ? planet.name : null;
+            names[i] = name != null ? name.getBytes(StandardCharsets.UTF_8) : null;
+            stringBytes += 4 + (names[i] != null ? names[i].length : 0);
+        }
+
+        long payload = (long) n * (DOUBLE_COLUMNS * 8 + 4 + 4 + 1) + stringBytes;
+        long size = HEADER_BYTES + payload;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("State of " + n + " bodies is too large for one file (" + size + " bytes)");
+        }
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+                buffer.put(MAGIC);
+                buffer.putInt(VERSION);
+                buffer.putInt(n);
+                buffer.putDouble(engine.getGravitationalConstant());
+                buffer.putDouble(engine.getTimeFactor());
+                buffer.putDouble(engine.getCoefficientOfRestitution());
+                buffer.putDouble(engine.getSimulationTime());
+                buffer.putDouble(view.panX);
+                buffer.putDouble(view.panY);
+                buffer.putDouble(view.zoom);
+                buffer.putInt(engine.isBounce() ? FLAG_BOUNCE : 0);
+                buffer.putInt(textures.size());
+                buffer.putLong(payload);
+                buffer.position(HEADER_BYTES);
+
+                for (double[] column : new double[][] {bodies.x, bodies.y, bodies.vx, bodies.vy,
+                                                       bodies.mass, bodies.radius, bodies.spin, bodies.angle}) {
+                    buffer.asDoubleBuffer().put(column, 0, n);
+                    buffer.position(buffer.position() + 8 * n);
+                }
+                int[] colors = new int[n];
+                for (int i = 0; i < n; i++) {
+                    Planet planet = bodies.views[i];
+                    colors[i] = planet != null && planet.color != null ? planet.color.getRGB() : 0xFFFFFFFF;
+                }
+                buffer.asIntBuffer().put(colors, 0, n);
+                buffer.position(buffer.position() + 4 * n);
+                buffer.asIntBuffer().put(bodyTexture, 0, n);
+                buffer.position(buffer.position() + 4 * n);
+                for (int i = 0; i < n; i++) {
+                    buffer.put(bodies.fixed[i] ? (byte) FLAG_FIXED : 0);
+                }
+
+                for (String texture : textures) {
+                    putString(buffer, texture.getBytes(StandardCharsets.UTF_8));
+                }
+                for (int i = 0; i < n; i++) {
+                    putString(buffer, names[i]);
+                }
+
+                buffer.putInt(CRC_OFFSET, checksum(buffer, payload));
+                buffer.force();
+            }
+            try {
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Replaces the engine's bodies and settings with those saved in path.
+     * Call from the thread that steps the engine. If the file is not a valid
+     * state, an IOException is thrown and the engine is left as it was.
+     *
+     * @return The saved view
+     */
+    public static View load(Path path, GravityEngine engine) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException(path + " is not a saved simulation state");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            byte[] magic = new byte[MAGIC.length];
+            buffer.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException(path + " is not a saved simulation state");
+            }
+            int version = buffer.getInt(VERSION_OFFSET);
+            if (version != VERSION) {
+                throw new IOException(path + " has state format version " + version
+                    + ", this version reads " + VERSION);
+            }
+            int n = buffer.getInt(COUNT_OFFSET);
+            buffer.position(COUNT_OFFSET + 4);
+            double gravity = buffer.getDouble();
+            double timeFactor = buffer.getDouble();
+            double restitution = buffer.getDouble();
+            double simulationTime = buffer.getDouble();
+            View view = new View(buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+            int flags = buffer.getInt();
+            int textureCount = buffer.getInt();
+            long payload = buffer.getLong();
+            if (n < 0 || textureCount < 0 || payload != size - HEADER_BYTES
+                    || payload < (long) n * (DOUBLE_COLUMNS * 8 + 4 + 4 + 1)) {
+                throw new IOException(path + " is truncated or damaged");
+            }
+            if (checksum(buffer, payload) != buffer.getInt(CRC_OFFSET)) {
+                throw new IOException(path + " is damaged (checksum mismatch)");
+            }
+
+            // Read everything before changing the engine, so a bad file leaves it alone
+            int columns = HEADER_BYTES;
+            int intColumns = columns + DOUBLE_COLUMNS * 8 * n;
+            int flagColumn = intColumns + 2 * 4 * n;
+            // Copy the strings out in one go and decode them from there
+            byte[] strings = new byte[(int) size - (flagColumn + n)];
+            buffer.get(flagColumn + n, strings);
+            ByteBuffer stringBuffer = ByteBuffer.wrap(strings).order(ByteOrder.LITTLE_ENDIAN);
+            String[] textures = new String[textureCount];
+            String[] names = new String[n];
+            try {
+                for (int t = 0; t < textureCount; t++) {
+                    textures[t] = getString(stringBuffer);
+                }
+                for (int i = 0; i < n; i++) {
+                    names[i] = getString(stringBuffer);
+                }
+            } catch (BufferUnderflowException e) {
+                throw new IOException(path + " is truncated or damaged", e);
+            }
+
+            // The old planets are dropped along with the state they viewed
+            BodyStore bodies = engine.getBodies();
+            bodies.discardAll();
+            bodies.ensureCapacity(n);
+            buffer.position(columns);
+            for (double[] column : new double[][] {bodies.x, bodies.y, bodies.vx, bodies.vy,
+                                                   bodies.mass, bodies.radius, bodies.spin, bodies.angle}) {
+                buffer.asDoubleBuffer().get(column, 0, n);
+                buffer.position(buffer.position() + 8 * n);
+            }
+            Arrays.fill(bodies.ax, 0, n, 0.0);
+            Arrays.fill(bodies.ay, 0, n, 0.0);
+            bodies.count = n;
+
+            // Bodies of one color share a Color object
+            Map<Integer, Color> colors = new HashMap<>();
+            for (int i = 0; i < n; i++) {
+                int argb = buffer.getInt(intColumns + 4 * i);
+                int texture = buffer.getInt(intColumns + 4 * n + 4 * i);
+                boolean fixed = (buffer.get(flagColumn + i) & FLAG_FIXED) != 0;
+                Color color = colors.computeIfAbsent(argb, rgb -> new Color(rgb, true));
+                bodies.fixed[i] = fixed;
+                if (fixed) {
+                    new PointMass(bodies, i, color, names[i]);
+                } else {
+                    String texturePath = texture >= 0 && texture < textureCount ? textures[texture] : null;
+                    new Planet(bodies, i, color, texturePath, names[i]);
+                }
+            }
+
+            engine.setGravitationalConstant(gravity);
+            engine.setTimeFactor(timeFactor);
+            engine.setCoefficientOfRestitution(restitution);
+            engine.setBounce((flags & FLAG_BOUNCE) != 0);
+            engine.setSimulationTime(simulationTime);
+            engine.bodiesChanged();
+            return view;
+        }
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] utf8) {
+        if (utf8 == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(utf8.length);
+            buffer.put(utf8);
+        }
+    }
+
+    /** Reads a string written by putString from a heap buffer */
+    private static String getString(ByteBuffer buffer) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0) return null;
+        if (length > buffer.remaining()) {
+            throw new IOException("String runs past the end of the file");
+        }
+        String string = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return string;
+    }
+
+    /**
+     * @return CRC32C of the whole file - the header with its checksum field
+     *         taken as zero, then the payload
+     */
+    private static int checksum(ByteBuffer buffer, long payload) {
+        CRC32C crc = new CRC32C();
+        byte[] header = new byte[HEADER_BYTES];
+        buffer.get(0, header);
+        Arrays.fill(header, CRC_OFFSET, CRC_OFFSET + 4, (byte) 0);
+        crc.update(header);
+        crc.update(buffer.duplicate().position(HEADER_BYTES).limit(HEADER_BYTES + (int) payload));
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,130 @@
+package com.physics.simulations.gravity;
+
+import java.util.Arrays;
+
+/**
+ * StateSnapshot - a copy of the bodies as they were after a simulation step.
+ *
+ * The simulation thread fills a snapshot and hands it over through a
+ * SnapshotExchange. From then on only the renderer reads it, and the
+ * simulation thread does not write to it again until the renderer has given
+ * it back, so painting needs no locks. The arrays are reused between steps.
+ */
+public class StateSnapshot {
+
+    /** Number of bodies in the snapshot */
+    int count;
+
+    /** Increases by one with every published snapshot */
+    long sequence;
+
+    /** Simulated seconds since the simulation started */
+    double simulationTime;
+
+    /** System.nanoTime() when the snapshot was published */
+    long publishedNanos;
+
+    double[] x = new double[0], y = new double[0];
+    double[] vx = new double[0], vy = new double[0];
+    double[] mass = new double[0];
+    double[] radius = new double[0];
+    double[] spin = new double[0];
+    double[] angle = new double[0];
+    Planet[] views = new Planet[0];
+
+    /**
+     * Copies the current state of the store into this snapshot.
+     */
+    void copyFrom(BodyStore bodies, long sequence, double simulationTime) {
+        int n = bodies.count;
+        ensureCapacity(n);
+        System.arraycopy(bodies.x, 0, x, 0, n);
+        System.arraycopy(bodies.y, 0, y, 0, n);
+        System.arraycopy(bodies.vx, 0, vx, 0, n);
+        System.arraycopy(bodies.vy, 0, vy, 0, n);
+        System.arraycopy(bodies.mass, 0, mass, 0, n);
+        System.arraycopy(bodies.radius, 0, radius, 0, n);
+        System.arraycopy(bodies.spin, 0, spin, 0, n);
+        System.arraycopy(bodies.angle, 0, angle, 0, n);
+        System.arraycopy(bodies.views, 0, views, 0, n);
+        // Drop view references beyond the end so removed planets can be collected
+        if (n < count) {
+            Arrays.fill(views, n, count, null);
+        }
+        this.count = n;
+        this.sequence = sequence;
+        this.simulationTime = simulationTime;
+    }
+
+    /**
+     * Fills this snapshot with the state a fraction alpha of the way from
+     * previous to current (0 = previous, 1 = current).
+     *
+     * Bodies are matched by index; a body whose planet is not at the same
+     * index in both (it was just added, or a merge shifted the indices) is
+     * taken from current as is. Rotation angles take the short way round.
+     */
+    void interpolate(StateSnapshot previous, StateSnapshot current, double alpha) {
+        int n = current.count;
+        ensureCapacity(n);
+        for (int i = 0; i < n; i++) {
+            Planet view = current.views[i];
+            if (alpha < 1.0 && i < previous.count && previous.views[i] == view) {
+                x[i] = previous.x[i] + (current.x[i] - previous.x[i]) * alpha;
+                y[i] = previous.y[i] + (current.y[i] - previous.y[i]) * alpha;
+                double turn = current.angle[i] - previous.angle[i];
+                if (turn > Math.PI) turn -= 2 * Math.PI;
+                if (turn < -Math.PI) turn += 2 * Math.PI;
+                double rotationAngle = previous.angle[i] + turn * alpha;
+                angle[i] = rotationAngle < 0 ? rotationAngle + 2 * Math.PI
+                         : rotationAngle >= 2 * Math.PI ? rotationAngle - 2 * Math.PI : rotationAngle;
+            } else {
+                x[i] = current.x[i];
+                y[i] = current.y[i];
+                angle[i] = current.angle[i];
+            }
+        }
+        System.arraycopy(current.vx, 0, vx, 0, n);
+        System.arraycopy(current.vy, 0, vy, 0, n);
+        System.arraycopy(current.mass, 0, mass, 0, n);
+        System.arraycopy(current.radius, 0, radius, 0, n);
+        System.arraycopy(current.spin, 0, spin, 0, n);
+        System.arraycopy(current.views, 0, views, 0, n);
+        if (n < count) {
+            Arrays.fill(views, n, count, null);
+        }
+        this.count = n;
+        this.sequence = current.sequence;
+        this.simulationTime = previous.simulationTime + (current.simulationTime - previous.simulationTime) * alpha;
+        this.publishedNanos = current.publishedNanos;
+    }
+
+    private void ensureCapacity(int n) {
+        if (x.length < n) {
+            int capacity = Math.max(n, x.length * 2);
+            x = new double[capacity];
+            y = new double[capacity];
+            vx = new double[capacity];
+            vy = new double[capacity];
+            mass = new double[capacity];
+            radius = new double[capacity];
+            spin = new double[capacity];
+            angle = new double[capacity];
+            views = new Planet[capacity];
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return Index of the given planet in this snapshot, or -1 if it is not in it
+     */
+    public int indexOf(Planet planet) {
+        for (int i = 0; i < count; i++) {
+            if (views[i] == planet) return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,206 @@
+package com.physics.simulations.gravity;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+
+/**
+ * TextureCache - process-wide cache of planet textures.
+ *
+ * Each texture file is decoded once and the source image is kept. Planets ask
+ * for the texture scaled to their size; scaled copies are cached by path and
+ * size and shared by every planet that needs the same one, so spawning a
+ * planet with an already-used texture costs no disk I/O and no decoding.
+ *
+ * Scaled copies are evicted least recently used first once they take more
+ * than the memory budget. A planet keeps the image it was given, so eviction
+ * only means the next planet of that size scales it again from the source.
+ * Files that fail to load are remembered and not tried again.
+ *
+ * Decoding a texture takes tens of milliseconds, so load() and preload() do
+ * the decoding and scaling on background loader threads, and getIfReady()
+ * never waits. Decoding happens outside the cache lock, so different files
+ * decode in parallel, and each file is still decoded only once.
+ */
+public class TextureCache {
+
+    /** Budget for scaled textures - around a hundred large planets' worth */
+    static final long DEFAULT_BUDGET_BYTES = 64L * 1024 * 1024;
+
+    /** The textures offered in the control panel */
+    public static final String[] BUILT_IN = {
+        "resources/textures/Earth.jpg", "resources/textures/Mars.jpg", "resources/textures/Jupiter.jpg",
+        "resources/textures/Moon.jpg", "resources/textures/Sun.jpg", "resources/textures/Venus.jpg"
+    };
+
+    private static final TextureCache SHARED = new TextureCache(DEFAULT_BUDGET_BYTES);
+
+    private final long budgetBytes;
+
+    /** Decoded source images; a future holding null means the file failed to load */
+    private final Map<String, CompletableFuture<BufferedImage>> sources = new ConcurrentHashMap<>();
+
+    private final ExecutorService loader;
+
+    /** Scaled textures by "path@size", in access order for LRU eviction */
+    private final LinkedHashMap<String, BufferedImage> scaled = new LinkedHashMap<>(16, 0.75f, true);
+    private long scaledBytes;
+
+    private long hits;
+    private long misses;
+
+    public TextureCache(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+        int threads = Math.max(1, Math.min(BUILT_IN.length, Runtime.getRuntime().availableProcessors()));
+        AtomicInteger created = new AtomicInteger();
+        this.loader = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "texture-loader-" + created.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * @return The cache shared by all planets
+     */
+    public static TextureCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the scaled texture only if it is already cached.
+     *
+     * @return The shared scaled image, or null if it isn't cached (yet)
+     */
+    public synchronized BufferedImage getIfReady(String path, int size) {
+        BufferedImage image = scaled.get(key(path, size));
+        if (image != null) hits++;
+        return image;
+    }
+
+    /**
+     * Starts loading the texture at path scaled to size x size pixels on a
+     * loader thread.
+     *
+     * @return Completes with the shared scaled image, or null if the file can't be read
+     */
+    public CompletableFuture<BufferedImage> load(String path, int size) {
+        int side = Math.max(size, 1);
+        String key = key(path, side);
+        synchronized (this) {
+            BufferedImage image = scaled.get(key);
+            if (image != null) {
+                hits++;
+                return CompletableFuture.completedFuture(image);
+            }
+            misses++;
+        }
+        return source(path).thenApplyAsync(source -> source == null ? null : store(key, scale(source, side)), loader);
+    }
+
+    /**
+     * Starts decoding the given files in parallel, so later planets only
+     * have to scale them.
+     *
+     * @return Completes when every file has been decoded (or has failed)
+     */
+    public CompletableFuture<Void> preload(String... paths) {
+        CompletableFuture<?>[] loads = new CompletableFuture<?>[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            loads[i] = source(paths[i]);
+        }
+        return CompletableFuture.allOf(loads);
+    }
+
+    private static String key(String path, int size) {
+        return path + "@" + Math.max(size, 1);
+    }
+
+    /**
+     * Decodes the file on a loader thread the first time it is asked for.
+     */
+    private CompletableFuture<BufferedImage> source(String path) {
+        return sources.computeIfAbsent(path, p -> CompletableFuture.supplyAsync(() -> decode(p), loader));
+    }
+
+    private static BufferedImage decode(String path) {
+        BufferedImage source;
+        try {
+            source = ImageIO.read(new File(path));
+        } catch (IOException e) {
+            source = null;
+        }
+        if (source == null) {
+            System.err.println("Failed to load texture: " + path + " - Using solid color");
+            return null;
+        }
+        System.out.println("Loaded texture: " + path);
+        return source;
+    }
+
+    /**
+     * Adds a freshly scaled texture, unless another thread got there first.
+     */
+    private synchronized BufferedImage store(String key, BufferedImage image) {
+        BufferedImage existing = scaled.get(key);
+        if (existing != null) return existing;
+        scaled.put(key, image);
+        scaledBytes += bytes(image);
+        evict(key);
+        return image;
+    }
+
+    private static BufferedImage scale(BufferedImage source, int size) {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(source, 0, 0, size, size, null);
+        g.dispose();
+        return image;
+    }
+
+    /**
+     * Drops least recently used scaled textures until the cache fits the
+     * budget again. The one just added is always kept.
+     */
+    private void evict(String keep) {
+        Iterator<Map.Entry<String, BufferedImage>> entries = scaled.entrySet().iterator();
+        while (scaledBytes > budgetBytes && entries.hasNext()) {
+            Map.Entry<String, BufferedImage> entry = entries.next();
+            if (entry.getKey().equals(keep)) continue;
+            scaledBytes -= bytes(entry.getValue());
+            entries.remove();
+        }
+    }
+
+    private static long bytes(BufferedImage image) {
+        return 4L * image.getWidth() * image.getHeight();
+    }
+
+    /**
+     * @return Bytes held by scaled textures
+     */
+    public synchronized long getScaledBytes() {
+        return scaledBytes;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+}
@@ -0,0 +1,223 @@
+package com.physics.simulations.gravity;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * TrajectoryFormat - layout of recorded trajectory files, shared by
+ * TrajectoryRecorder and TrajectoryReader.
+ *
+ * All numbers are little-endian.
+ *
+ *   header   32 bytes: magic "AETHTRAJ", version, flags (none yet), position
+ *            quantum (world units per step), angle steps per turn, frames
+ *            per chunk at most
+ *   chunks   one after the other, each a CHUNK_HEADER_BYTES header (magic,
+ *            raw and compressed length, CRC32C of the compressed bytes, first
+ *            frame, frame count, body count, first and last simulated time)
+ *            followed by the Deflate-compressed payload
+ *   index    written when recording stops: chunk count, then per chunk its
+ *            file offset, first frame, frame count and start time
+ *   trailer  offset of the index and TRAILER_MAGIC, the last 12 bytes
+ *
+ * A recording that was cut off (the program died) has no index; its chunks
+ * can still be found by walking the chunk headers from the start.
+ *
+ * A chunk holds up to MAX_CHUNK_FRAMES consecutive frames. Its payload:
+ *
+ *   frame count, body count (every body that appears in the chunk), then
+ *   each frame's simulated time
+ *   the bodies, one column per field, in order of appearance: id (delta to
+ *   the previous id), color, flags, texture path, name, and the mass and
+ *   radius they first appear with - everything needed to draw them
+ *   the byte lengths of the four columns that follow
+ *   events, frame by frame: 0, or 1 followed by the frame's roster (how
+ *   many bodies, then each one's position in the body table as a delta to
+ *   the previous); then how many bodies changed mass or radius (merges),
+ *   each as a delta of its position in the frame, new mass and new radius
+ *   x, then y, then angle of every body of every frame, frame by frame in
+ *   roster order
+ *
+ * The first frame of a chunk always has a roster; later frames only when
+ * bodies were added, merged or removed, so collisions don't break a chunk up.
+ *
+ * Positions and angles are quantized to whole steps and stored as the
+ * difference to a prediction: nothing for a body's first frame in the chunk,
+ * its previous value for the second, and a straight-line extrapolation of
+ * its previous two after that. Bodies on smooth paths then leave residuals
+ * of a few steps, which zig-zag varints store in a byte or two and Deflate
+ * squeezes further. Every chunk starts from absolute values, so any chunk can
+ * be decoded on its own - they double as keyframes for seeking.
+ */
+final class TrajectoryFormat {
+
+    static final byte[] MAGIC = "AETHTRAJ".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 32;
+
+    static final int CHUNK_MAGIC = 0x4B4E4843;    // "CHNK"
+    static final int CHUNK_HEADER_BYTES = 48;
+    static final int INDEX_MAGIC = 0x58444E49;    // "INDX"
+    static final int INDEX_ENTRY_BYTES = 28;
+    static final int TRAILER_MAGIC = 0x4C525254;  // "TRRL"
+    static final int TRAILER_BYTES = 12;
+
+    /** Frames per chunk at most - also the keyframe spacing, which bounds the work of a seek */
+    static final int MAX_CHUNK_FRAMES = 64;
+
+    /** Recorded position precision: 1/16 of a world unit */
+    static final double POSITION_QUANTUM = 1.0 / 16.0;
+
+    /** Recorded angle precision */
+    static final int ANGLE_STEPS = 4096;
+
+    static final int FLAG_FIXED = 1;
+
+    private TrajectoryFormat() {}
+
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * A growable little-endian byte buffer for building chunk payloads.
+     */
+    static final class Column {
+        byte[] bytes;
+        int length;
+
+        Column(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        void clear() {
+            length = 0;
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(length + extra, bytes.length * 2));
+            }
+        }
+
+        void putVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+        }
+
+        void putSigned(long value) {
+            putVarLong(zigZag(value));
+        }
+
+        void putByte(int value) {
+            ensure(1);
+            bytes[length++] = (byte) value;
+        }
+
+        void putInt(int value) {
+            ensure(4);
+            bytes[length++] = (byte) value;
+            bytes[length++] = (byte) (value >> 8);
+            bytes[length++] = (byte) (value >> 16);
+            bytes[length++] = (byte) (value >> 24);
+        }
+
+        void putDouble(double value) {
+            long bits = Double.doubleToRawLongBits(value);
+            putInt((int) bits);
+            putInt((int) (bits >>> 32));
+        }
+
+        /** A string as a varint length plus one (0 for null) and UTF-8 bytes */
+        void putString(String value) {
+            if (value == null) {
+                putVarLong(0);
+                return;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            putVarLong(utf8.length + 1L);
+            ensure(utf8.length);
+            System.arraycopy(utf8, 0, bytes, length, utf8.length);
+            length += utf8.length;
+        }
+
+        void putColumn(Column other) {
+            ensure(other.length);
+            System.arraycopy(other.bytes, 0, bytes, length, other.length);
+            length += other.length;
+        }
+    }
+
+    /**
+     * Reads what a Column wrote, from a byte array.
+     */
+    static final class Input {
+        final byte[] bytes;
+        int position;
+        final int end;
+
+        Input(byte[] bytes, int position, int end) {
+            this.bytes = bytes;
+            this.position = position;
+            this.end = end;
+        }
+
+        long getVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position >= end) throw new IOException("Trajectory chunk ends in the middle of a value");
+                byte b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) return value;
+            }
+            throw new IOException("Malformed number in trajectory chunk");
+        }
+
+        long getSigned() throws IOException {
+            return unZigZag(getVarLong());
+        }
+
+        /** A varint that must fit in an int from 0 to max */
+        int getCount(int max) throws IOException {
+            long value = getVarLong();
+            if (value < 0 || value > max) throw new IOException("Bad count in trajectory chunk: " + value);
+            return (int) value;
+        }
+
+        int getByte() throws IOException {
+            if (position >= end) throw new IOException("Trajectory chunk ends in the middle of a value");
+            return bytes[position++];
+        }
+
+        int getInt() throws IOException {
+            if (position + 4 > end) throw new IOException("Trajectory chunk ends in the middle of a value");
+            int value = (bytes[position] & 0xFF) | (bytes[position + 1] & 0xFF) << 8
+                      | (bytes[position + 2] & 0xFF) << 16 | (bytes[position + 3] & 0xFF) << 24;
+            position += 4;
+            return value;
+        }
+
+        double getDouble() throws IOException {
+            long low = getInt() & 0xFFFFFFFFL;
+            long high = getInt() & 0xFFFFFFFFL;
+            return Double.longBitsToDouble(high << 32 | low);
+        }
+
+        String getString() throws IOException {
+            int length = getCount(end - position + 1);
+            if (length == 0) return null;
+            String value = new String(bytes, position, length - 1, StandardCharsets.UTF_8);
+            position += length - 1;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,668 @@
+package com.physics.simulations.gravity;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * TrajectoryReader - plays back a trajectory file written by
+ * TrajectoryRecorder, with random seeks.
+ *
+ * Opening reads only the header and the chunk index at the end of the file
+ * (or, for a recording that was cut off, walks the chunk headers). Every
+ * chunk starts with absolute positions, so seeking to a time finds its chunk
+ * in the index by binary search and decodes from the start of that chunk -
+ * at most MAX_CHUNK_FRAMES frames, however long the recording. Moving
+ * forward within a chunk, as playback does, decodes one frame at a time.
+ *
+ * Chunks are memory-mapped one at a time, checksummed and inflated. While
+ * one chunk plays, the next is mapped, paged in and inflated on a
+ * background thread, so playback does not wait for the disk at chunk
+ * boundaries. The file must not be overwritten while it is open.
+ *
+ * The decoded frame is kept in a BodyStore of its own, with a Planet view
+ * per recorded body, so it can be published and drawn like the live
+ * simulation. Velocities are not recorded; they are estimated from
+ * neighbouring frames. Not thread-safe - use it from one thread.
+ */
+public class TrajectoryReader implements AutoCloseable {
+
+    private final FileChannel channel;
+    private final double positionQuantum;
+    private final int angleSteps;
+
+    // Chunk index
+    private long[] chunkOffsets = new long[64], chunkEnds = new long[64], chunkFirstFrames = new long[64];
+    private int[] chunkFrameCounts = new int[64];
+    private double[] chunkStartTimes = new double[64];
+    private int chunkCount;
+    private long frameCount;
+    private double startTime, endTime;
+
+    /** Loads chunks ahead of playback */
+    private final ExecutorService prefetcher;
+    private final Map<Integer, CompletableFuture<Chunk>> loading = new HashMap<>();
+
+    // Decoding position: the chunk and the last decoded frame in it
+    private Chunk chunk;
+    private int frame = -1;
+    private TrajectoryFormat.Input events, xs, ys, angles;
+    private int[] roster = new int[0];
+    private int rosterCount;
+
+    // Per body of the chunk: its last two quantized values, and how many of them there are
+    private long[] x1 = new long[0], x2 = new long[0];
+    private long[] y1 = new long[0], y2 = new long[0];
+    private long[] angle1 = new long[0], angle2 = new long[0];
+    private int[] history = new int[0];
+    private double[] mass = new double[0], radius = new double[0];
+    private double[] vx = new double[0], vy = new double[0];
+    private Planet[] slotPlanets = new Planet[0];
+
+    /** The decoded frame */
+    private final BodyStore bodies = new BodyStore();
+    private final Map<Integer, Planet> planets = new HashMap<>();
+    private final Map<Integer, Color> colors = new HashMap<>();
+    private double frameTime;
+
+    /**
+     * Opens a recording and shows its first frame.
+     */
+    public TrajectoryReader(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            ByteBuffer header = read(0, TrajectoryFormat.HEADER_BYTES);
+            byte[] magic = new byte[TrajectoryFormat.MAGIC.length];
+            header.get(magic);
+            if (!Arrays.equals(magic, TrajectoryFormat.MAGIC)) {
+                throw new IOException("Not a trajectory recording");
+            }
+            int version = header.getInt();
+            if (version != TrajectoryFormat.VERSION) {
+                throw new IOException("Unsupported trajectory version " + version);
+            }
+            header.getInt();
+            positionQuantum = header.getDouble();
+            angleSteps = header.getInt();
+            if (!(positionQuantum > 0) || angleSteps <= 0 || Integer.bitCount(angleSteps) != 1) {
+                throw new IOException("Damaged trajectory header");
+            }
+
+            if (!readIndex(size)) {
+                scanChunks(size);
+            }
+            if (chunkCount == 0) {
+                throw new IOException("The recording has no frames");
+            }
+            startTime = chunkStartTimes[0];
+            ByteBuffer last = read(chunkOffsets[chunkCount - 1], TrajectoryFormat.CHUNK_HEADER_BYTES);
+            endTime = last.getDouble(40);
+            frameCount = chunkFirstFrames[chunkCount - 1] + chunkFrameCounts[chunkCount - 1];
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+
+        prefetcher = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "trajectory-prefetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            seek(startTime);
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the chunk index from the end of the file.
+     *
+     * @return false if there is no (valid) index
+     */
+    private boolean readIndex(long size) throws IOException {
+        if (size < TrajectoryFormat.HEADER_BYTES + 8 + TrajectoryFormat.TRAILER_BYTES) return false;
+        ByteBuffer trailer = read(size - TrajectoryFormat.TRAILER_BYTES, TrajectoryFormat.TRAILER_BYTES);
+        long indexOffset = trailer.getLong();
+        if (trailer.getInt() != TrajectoryFormat.TRAILER_MAGIC
+                || indexOffset < TrajectoryFormat.HEADER_BYTES || indexOffset + 8 > size) {
+            return false;
+        }
+        ByteBuffer head = read(indexOffset, 8);
+        int count = head.getInt() == TrajectoryFormat.INDEX_MAGIC ? head.getInt() : -1;
+        if (count < 0 || indexOffset + 8 + (long) count * TrajectoryFormat.INDEX_ENTRY_BYTES
+                                        + TrajectoryFormat.TRAILER_BYTES != size) {
+            return false;
+        }
+        ByteBuffer entries = read(indexOffset + 8, count * TrajectoryFormat.INDEX_ENTRY_BYTES);
+        for (int k = 0; k < count; k++) {
+            long offset = entries.getLong();
+            long firstFrame = entries.getLong();
+            int frames = entries.getInt();
+            double start = entries.getDouble();
+            addChunk(offset, firstFrame, frames, start);
+        }
+        for (int k = 0; k < count; k++) {
+            chunkEnds[k] = k + 1 < count ? chunkOffsets[k + 1] : indexOffset;
+            if (chunkEnds[k] <= chunkOffsets[k]) throw new IOException("Damaged trajectory index");
+        }
+        return true;
+    }
+
+    /**
+     * Finds the chunks of a recording without an index by walking their
+     * headers. A chunk cut off at the end is left out.
+     */
+    private void scanChunks(long size) throws IOException {
+        long offset = TrajectoryFormat.HEADER_BYTES;
+        while (offset + TrajectoryFormat.CHUNK_HEADER_BYTES <= size) {
+            ByteBuffer header = read(offset, TrajectoryFormat.CHUNK_HEADER_BYTES);
+            if (header.getInt(0) != TrajectoryFormat.CHUNK_MAGIC) break;
+            long end = offset + TrajectoryFormat.CHUNK_HEADER_BYTES + (header.getInt(8) & 0xFFFFFFFFL);
+            if (end > size) break;
+            addChunk(offset, header.getLong(16), header.getInt(24), header.getDouble(32));
+            chunkEnds[chunkCount - 1] = end;
+            offset = end;
+        }
+    }
+
+    private void addChunk(long offset, long firstFrame, int frames, double start) throws IOException {
+        if (frames <= 0 || frames > TrajectoryFormat.MAX_CHUNK_FRAMES
+                || (chunkCount > 0 && (firstFrame != chunkFirstFrames[chunkCount - 1] + chunkFrameCounts[chunkCount - 1]
+                                       || offset <= chunkOffsets[chunkCount - 1]))) {
+            throw new IOException("Damaged trajectory index");
+        }
+        if (chunkCount == chunkOffsets.length) {
+            int capacity = chunkCount * 2;
+            chunkOffsets = Arrays.copyOf(chunkOffsets, capacity);
+            chunkEnds = Arrays.copyOf(chunkEnds, capacity);
+            chunkFirstFrames = Arrays.copyOf(chunkFirstFrames, capacity);
+            chunkFrameCounts = Arrays.copyOf(chunkFrameCounts, capacity);
+            chunkStartTimes = Arrays.copyOf(chunkStartTimes, capacity);
+        }
+        chunkOffsets[chunkCount] = offset;
+        chunkFirstFrames[chunkCount] = firstFrame;
+        chunkFrameCounts[chunkCount] = frames;
+        chunkStartTimes[chunkCount] = start;
+        chunkCount++;
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Trajectory file ends early");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    // ============================================
+    // SEEKING
+    // ============================================
+
+    /**
+     * Shows the last frame recorded at or before the given simulated time
+     * (the first frame for earlier times, the last for later ones).
+     *
+     * @return Simulated time of the frame shown
+     */
+    public double seek(double time) throws IOException {
+        // Last chunk starting at or before the time
+        int low = 0, high = chunkCount - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (chunkStartTimes[middle] <= time) low = middle;
+            else high = middle - 1;
+        }
+        Chunk target = chunk != null && chunk.index == low ? chunk : load(low);
+
+        int last = 0;
+        for (int lowFrame = 0, highFrame = target.frameCount - 1; lowFrame <= highFrame; ) {
+            int middle = (lowFrame + highFrame) >>> 1;
+            if (target.times[middle] <= time) {
+                last = middle;
+                lowFrame = middle + 1;
+            } else {
+                highFrame = middle - 1;
+            }
+        }
+        showFrame(target, last);
+        return frameTime;
+    }
+
+    /**
+     * Shows the frame with the given number, counted from the start of the recording.
+     */
+    public void seekFrame(long number) throws IOException {
+        long wanted = Math.max(0, Math.min(number, frameCount - 1));
+        int low = 0, high = chunkCount - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (chunkFirstFrames[middle] <= wanted) low = middle;
+            else high = middle - 1;
+        }
+        Chunk target = chunk != null && chunk.index == low ? chunk : load(low);
+        showFrame(target, (int) (wanted - chunkFirstFrames[low]));
+    }
+
+    /**
+     * Decodes up to the given frame of the chunk - onwards from the current
+     * frame if it is earlier in the same chunk, otherwise from the chunk's start.
+     */
+    private void showFrame(Chunk target, int wanted) throws IOException {
+        if (target != chunk || wanted < frame) {
+            startChunk(target);
+        }
+        while (frame < wanted) {
+            decodeFrame();
+        }
+        writeBodies();
+    }
+
+    /**
+     * @return The chunk, from the prefetcher if it was loaded ahead. Asks
+     *         for the chunk after it to be loaded meanwhile.
+     */
+    private Chunk load(int index) throws IOException {
+        CompletableFuture<Chunk> future = loading.remove(index);
+        if (future == null) {
+            future = CompletableFuture.completedFuture(loadChunk(index));
+        }
+        loading.values().forEach(pending -> pending.cancel(false));
+        loading.clear();
+        if (index + 1 < chunkCount) {
+            int next = index + 1;
+            loading.put(next, CompletableFuture.supplyAsync(() -> {
+                try {
+                    return loadChunk(next);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, prefetcher));
+        }
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) throw ((UncheckedIOException) e.getCause()).getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * Maps, checks and inflates one chunk, and reads its body table.
+     * Runs on the prefetch thread or the caller's.
+     */
+    private Chunk loadChunk(int index) throws IOException {
+        long offset = chunkOffsets[index];
+        long length = chunkEnds[index] - offset;
+        if (length > Integer.MAX_VALUE) throw new IOException("Trajectory chunk too large");
+        MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        region.load();
+        region.order(ByteOrder.LITTLE_ENDIAN);
+
+        int rawLength = region.getInt(4);
+        int compressedLength = region.getInt(8);
+        int checksum = region.getInt(12);
+        int frames = region.getInt(24);
+        int slots = region.getInt(28);
+        if (region.getInt(0) != TrajectoryFormat.CHUNK_MAGIC || rawLength < 0
+                || compressedLength != length - TrajectoryFormat.CHUNK_HEADER_BYTES
+                || frames != chunkFrameCounts[index] || slots < 0) {
+            throw new IOException("Damaged trajectory chunk " + index);
+        }
+        ByteBuffer compressed = region.slice(TrajectoryFormat.CHUNK_HEADER_BYTES, compressedLength);
+        CRC32C crc = new CRC32C();
+        crc.update(compressed.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("Trajectory chunk " + index + " is damaged (checksum mismatch)");
+        }
+
+        byte[] payload = new byte[rawLength];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(compressed);
+            int inflated = 0;
+            while (inflated < rawLength && !inflater.finished()) {
+                int read = inflater.inflate(payload, inflated, rawLength - inflated);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                inflated += read;
+            }
+            if (inflated != rawLength) {
+                throw new IOException("Trajectory chunk " + index + " is damaged (short payload)");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Trajectory chunk " + index + " is damaged", e);
+        } finally {
+            inflater.end();
+        }
+        return new Chunk(index, payload, frames, slots);
+    }
+
+    // ============================================
+    // DECODING
+    // ============================================
+
+    private void startChunk(Chunk target) {
+        chunk = target;
+        frame = -1;
+        rosterCount = 0;
+        events = new TrajectoryFormat.Input(target.payload, target.eventsStart, target.xsStart);
+        xs = new TrajectoryFormat.Input(target.payload, target.xsStart, target.ysStart);
+        ys = new TrajectoryFormat.Input(target.payload, target.ysStart, target.anglesStart);
+        angles = new TrajectoryFormat.Input(target.payload, target.anglesStart, target.payload.length);
+        int n = target.slotCount;
+        if (history.length < n) {
+            int capacity = Math.max(n, history.length * 2);
+            x1 = new long[capacity];
+            x2 = new long[capacity];
+            y1 = new long[capacity];
+            y2 = new long[capacity];
+            angle1 = new long[capacity];
+            angle2 = new long[capacity];
+            history = new int[capacity];
+            mass = new double[capacity];
+            radius = new double[capacity];
+            vx = new double[capacity];
+            vy = new double[capacity];
+            slotPlanets = new Planet[capacity];
+        }
+        Arrays.fill(history, 0, n, 0);
+        Arrays.fill(slotPlanets, null);
+        System.arraycopy(target.firstMass, 0, mass, 0, n);
+        System.arraycopy(target.firstRadius, 0, radius, 0, n);
+    }
+
+    /** Decodes the frame after the current one */
+    private void decodeFrame() throws IOException {
+        frame++;
+        int slots = chunk.slotCount;
+        if (events.getVarLong() != 0) {
+            int n = events.getCount(slots);
+            if (roster.length < n) {
+                roster = new int[Math.max(n, roster.length * 2)];
+            }
+            int slot = -1;
+            for (int i = 0; i < n; i++) {
+                slot += (int) events.getSigned();
+                if (slot < 0 || slot >= slots) throw new IOException("Damaged trajectory roster");
+                roster[i] = slot;
+            }
+            rosterCount = n;
+        } else if (frame == 0) {
+            throw new IOException("Trajectory chunk starts without a roster");
+        }
+        int changed = events.getCount(rosterCount);
+        for (int k = 0, position = 0; k < changed; k++) {
+            position += events.getCount(rosterCount);
+            if (position >= rosterCount) throw new IOException("Damaged trajectory events");
+            int slot = roster[position];
+            mass[slot] = events.getDouble();
+            radius[slot] = events.getDouble();
+        }
+
+        double interval = frame > 0 ? chunk.times[frame] - chunk.times[frame - 1] : 0.0;
+        double speedScale = interval > 0 ? positionQuantum / interval : 0.0;
+        long angleMask = angleSteps - 1;
+        for (int i = 0; i < rosterCount; i++) {
+            int slot = roster[i];
+            long predictedX, predictedY, predictedAngle;
+            if (history[slot] == 0) {
+                predictedX = predictedY = predictedAngle = 0;
+            } else if (history[slot] == 1) {
+                predictedX = x1[slot];
+                predictedY = y1[slot];
+                predictedAngle = angle1[slot];
+            } else {
+                predictedX = 2 * x1[slot] - x2[slot];
+                predictedY = 2 * y1[slot] - y2[slot];
+                predictedAngle = 2 * angle1[slot] - angle2[slot];
+            }
+            long x = predictedX + xs.getSigned();
+            long y = predictedY + ys.getSigned();
+            long angle = (predictedAngle + angles.getSigned()) & angleMask;
+            if (history[slot] > 0) {
+                vx[slot] = (x - x1[slot]) * speedScale;
+                vy[slot] = (y - y1[slot]) * speedScale;
+            } else {
+                vx[slot] = vy[slot] = 0.0;
+            }
+            x2[slot] = x1[slot];
+            x1[slot] = x;
+            y2[slot] = y1[slot];
+            y1[slot] = y;
+            angle2[slot] = angle1[slot];
+            angle1[slot] = angle;
+            if (history[slot] < 2) history[slot]++;
+        }
+        if (frame == 0) {
+            estimateFirstVelocities();
+        }
+    }
+
+    /**
+     * The first frame of a chunk has nothing before it to take velocities
+     * from, so they come from the second frame instead - read ahead without
+     * moving the decoding position.
+     */
+    private void estimateFirstVelocities() throws IOException {
+        if (chunk.frameCount < 2) return;
+        double interval = chunk.times[1] - chunk.times[0];
+        if (!(interval > 0)) return;
+        double speedScale = positionQuantum / interval;
+        TrajectoryFormat.Input nextEvents = new TrajectoryFormat.Input(chunk.payload, events.position, events.end);
+        TrajectoryFormat.Input nextXs = new TrajectoryFormat.Input(chunk.payload, xs.position, xs.end);
+        TrajectoryFormat.Input nextYs = new TrajectoryFormat.Input(chunk.payload, ys.position, ys.end);
+
+        int[] nextRoster = roster;
+        int n = rosterCount;
+        if (nextEvents.getVarLong() != 0) {
+            n = nextEvents.getCount(chunk.slotCount);
+            nextRoster = new int[n];
+            int slot = -1;
+            for (int i = 0; i < n; i++) {
+                slot += (int) nextEvents.getSigned();
+                nextRoster[i] = slot;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            int slot = nextRoster[i];
+            long dx = nextXs.getSigned(), dy = nextYs.getSigned();
+            // Bodies already in the first frame are predicted from it, so the residual is the movement
+            if (slot >= 0 && slot < chunk.slotCount && history[slot] == 1) {
+                vx[slot] = dx * speedScale;
+                vy[slot] = dy * speedScale;
+            }
+        }
+    }
+
+    /** Copies the decoded frame into the body store */
+    private void writeBodies() {
+        int n = rosterCount;
+        int previousCount = bodies.count;
+        bodies.ensureCapacity(n);
+        double angleScale = 2 * Math.PI / angleSteps;
+        for (int i = 0; i < n; i++) {
+            int slot = roster[i];
+            Planet planet = planetFor(slot, i);
+            planet.index = i;
+            bodies.views[i] = planet;
+            bodies.x[i] = x1[slot] * positionQuantum;
+            bodies.y[i] = y1[slot] * positionQuantum;
+            bodies.vx[i] = vx[slot];
+            bodies.vy[i] = vy[slot];
+            bodies.mass[i] = mass[slot];
+            bodies.radius[i] = radius[slot];
+            bodies.angle[i] = angle1[slot] * angleScale;
+            bodies.spin[i] = 0.0;
+            bodies.fixed[i] = planet instanceof PointMass;
+        }
+        if (previousCount > n) {
+            Arrays.fill(bodies.views, n, previousCount, null);
+        }
+        bodies.count = n;
+        frameTime = chunk.times[frame];
+    }
+
+    /** The view of a recorded body, created the first time it is shown */
+    private Planet planetFor(int slot, int index) {
+        Planet planet = slotPlanets[slot];
+        if (planet != null) return planet;
+        int id = chunk.ids[slot];
+        planet = planets.get(id);
+        if (planet == null) {
+            Color color = colors.computeIfAbsent(chunk.colors[slot], argb -> new Color(argb, true));
+            if ((chunk.flags[slot] & TrajectoryFormat.FLAG_FIXED) != 0) {
+                planet = new PointMass(bodies, index, color, chunk.names[slot]);
+            } else {
+                planet = new Planet(bodies, index, color, chunk.textures[slot], chunk.names[slot]);
+            }
+            planets.put(id, planet);
+        }
+        slotPlanets[slot] = planet;
+        return planet;
+    }
+
+    // ============================================
+    // STATE
+    // ============================================
+
+    /**
+     * @return The bodies of the frame shown. Changes with every seek.
+     */
+    public BodyStore getBodies() {
+        return bodies;
+    }
+
+    /** @return Simulated time of the frame shown */
+    public double getFrameTime() {
+        return frameTime;
+    }
+
+    /** @return Number of the frame shown, counted from the start of the recording */
+    public long getFrameNumber() {
+        return chunkFirstFrames[chunk.index] + frame;
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    public double getStartTime() {
+        return startTime;
+    }
+
+    public double getEndTime() {
+        return endTime;
+    }
+
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        // The mappings must not outlive the file - let a chunk being prefetched finish first
+        prefetcher.shutdownNow();
+        try {
+            prefetcher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    /**
+     * One inflated chunk: frame times and body table, and where its columns
+     * start in the payload. Not changed after loading.
+     */
+    private static final class Chunk {
+        final int index;
+        final byte[] payload;
+        final int frameCount, slotCount;
+        final double[] times;
+        final int[] ids, colors;
+        final byte[] flags;
+        final String[] textures, names;
+        final double[] firstMass, firstRadius;
+        final int eventsStart, xsStart, ysStart, anglesStart;
+
+        Chunk(int index, byte[] payload, int frames, int slots) throws IOException {
+            this.index = index;
+            this.payload = payload;
+            TrajectoryFormat.Input in = new TrajectoryFormat.Input(payload, 0, payload.length);
+            frameCount = in.getCount(TrajectoryFormat.MAX_CHUNK_FRAMES);
+            slotCount = in.getCount(payload.length);
+            if (frameCount != frames || slotCount != slots) {
+                throw new IOException("Damaged trajectory chunk " + index);
+            }
+            times = new double[frameCount];
+            for (int f = 0; f < frameCount; f++) {
+                times[f] = in.getDouble();
+            }
+            ids = new int[slotCount];
+            for (int s = 0, id = 0; s < slotCount; s++) {
+                id += (int) in.getSigned();
+                ids[s] = id;
+            }
+            colors = new int[slotCount];
+            for (int s = 0; s < slotCount; s++) {
+                colors[s] = in.getInt();
+            }
+            flags = new byte[slotCount];
+            for (int s = 0; s < slotCount; s++) {
+                flags[s] = (byte) in.getByte();
+            }
+            // Most bodies share a handful of textures - keep one copy of each
+            Map<String, String> distinct = new HashMap<>();
+            textures = new String[slotCount];
+            for (int s = 0; s < slotCount; s++) {
+                String texture = in.getString();
+                textures[s] = texture != null ? distinct.computeIfAbsent(texture, t -> t) : null;
+            }
+            names = new String[slotCount];
+            for (int s = 0; s < slotCount; s++) {
+                names[s] = in.getString();
+            }
+            firstMass = new double[slotCount];
+            for (int s = 0; s < slotCount; s++) {
+                firstMass[s] = in.getDouble();
+            }
+            firstRadius = new double[slotCount];
+            for (int s = 0; s < slotCount; s++) {
+                firstRadius[s] = in.getDouble();
+            }
+            int eventsLength = in.getCount(payload.length);
+            int xsLength = in.getCount(payload.length);
+            int ysLength = in.getCount(payload.length);
+            int anglesLength = in.getCount(payload.length);
+            eventsStart = in.position;
+            xsStart = eventsStart + eventsLength;
+            ysStart = xsStart + xsLength;
+            anglesStart = ysStart + ysLength;
+            if ((long) anglesStart + anglesLength != payload.length) {
+                throw new IOException("Damaged trajectory chunk " + index);
+            }
+        }
+    }
+}
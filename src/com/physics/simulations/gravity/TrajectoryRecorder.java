@@ -0,0 +1,510 @@
+package com.physics.simulations.gravity;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32C;
+import java.util.zip.Deflater;
+
+/**
+ * TrajectoryRecorder - records the bodies' positions every few steps into a
+ * trajectory file (see TrajectoryFormat) while the simulation runs.
+ *
+ * The simulation thread only copies the bodies into a free frame of a small
+ * ring and hands it on; a background thread encodes, compresses and writes
+ * the frames. If the writer falls behind (a slow disk) and the ring is full,
+ * frames are dropped and counted rather than making the step wait - the
+ * recording gets a gap, the simulation never stalls on I/O.
+ *
+ * Encoding costs roughly one byte per coordinate for bodies on smooth
+ * orbits; an hour of 10,000 bodies recorded 30 times a second comes to about
+ * 1-2 GB.
+ */
+public class TrajectoryRecorder implements AutoCloseable {
+
+    /** File name extension used by the record dialog */
+    public static final String EXTENSION = "atrj";
+
+    /** Frames in the ring between the simulation and the writer */
+    static final int RING_FRAMES = 32;
+
+    private static final StateSnapshot END = new StateSnapshot();
+
+    private final FileChannel channel;
+    private final int stepInterval;
+    private final BlockingQueue<StateSnapshot> free = new ArrayBlockingQueue<>(RING_FRAMES);
+    private final BlockingQueue<StateSnapshot> full = new ArrayBlockingQueue<>(RING_FRAMES + 1);
+    private final Thread writer;
+
+    // Simulation thread
+    private int stepsUntilFrame;
+    private volatile long framesRecorded, framesDropped;
+    private boolean closed;
+
+    // Writer thread
+    private volatile long bytesWritten;
+    private volatile IOException failure;
+    private final Map<Planet, Integer> ids = new IdentityHashMap<>();
+    private int nextId;
+    private final Chunk chunk = new Chunk();
+    private long frameNumber;
+    private long[] indexOffsets = new long[64], indexFirstFrames = new long[64];
+    private int[] indexFrameCounts = new int[64];
+    private double[] indexStartTimes = new double[64];
+    private int indexCount;
+
+    /**
+     * Creates (or replaces) the file and starts the writer thread.
+     *
+     * @param stepInterval Record every stepInterval-th step (1 = every step)
+     */
+    public TrajectoryRecorder(Path path, int stepInterval) throws IOException {
+        if (stepInterval < 1) {
+            throw new IllegalArgumentException("Step interval must be at least 1");
+        }
+        this.stepInterval = stepInterval;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                   StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(TrajectoryFormat.HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.put(TrajectoryFormat.MAGIC);
+            header.putInt(TrajectoryFormat.VERSION);
+            header.putInt(0);
+            header.putDouble(TrajectoryFormat.POSITION_QUANTUM);
+            header.putInt(TrajectoryFormat.ANGLE_STEPS);
+            header.putInt(TrajectoryFormat.MAX_CHUNK_FRAMES);
+            header.flip();
+            writeFully(header);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        for (int i = 0; i < RING_FRAMES; i++) {
+            free.add(new StateSnapshot());
+        }
+        writer = new Thread(this::runWriter, "trajectory-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Called by the simulation thread after every step; records every
+     * stepInterval-th. Never blocks.
+     *
+     * @return false if a frame was due but had to be dropped
+     */
+    public boolean stepCompleted(BodyStore bodies, double simulationTime) {
+        if (closed) return true;
+        if (stepsUntilFrame > 0) {
+            stepsUntilFrame--;
+            return true;
+        }
+        stepsUntilFrame = stepInterval - 1;
+        StateSnapshot frame = failure == null ? free.poll() : null;
+        if (frame == null) {
+            framesDropped++;
+            return false;
+        }
+        frame.copyFrom(bodies, framesRecorded, simulationTime);
+        full.add(frame);
+        framesRecorded++;
+        return true;
+    }
+
+    /**
+     * Writes the frames still in the ring and the chunk index, and closes the
+     * file. Call from the thread that called stepCompleted, or after it has
+     * stopped calling it.
+     *
+     * @throws IOException if writing failed at any point of the recording
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        full.add(END);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            channel.close();
+        }
+        if (failure != null) throw failure;
+    }
+
+    /** @return Frames handed to the writer so far */
+    public long getFramesRecorded() {
+        return framesRecorded;
+    }
+
+    /** @return Frames that were due while the ring was full */
+    public long getFramesDropped() {
+        return framesDropped;
+    }
+
+    /** @return Bytes written to the file so far */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    // ============================================
+    // WRITER THREAD
+    // ============================================
+
+    private void runWriter() {
+        try {
+            while (true) {
+                StateSnapshot frame = full.take();
+                if (frame == END) break;
+                try {
+                    if (failure == null) {
+                        append(frame);
+                    }
+                } finally {
+                    free.add(frame);
+                }
+            }
+            if (failure == null) {
+                flushChunk();
+                writeIndex();
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (RuntimeException e) {
+            failure = new IOException("Trajectory writer failed", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // The deflater holds native memory until it is ended
+            chunk.deflater.end();
+        }
+    }
+
+    private void append(StateSnapshot frame) throws IOException {
+        if (chunk.frameCount == TrajectoryFormat.MAX_CHUNK_FRAMES) {
+            flushChunk();
+        }
+        if (chunk.frameCount == 0) {
+            chunk.start(frame);
+        }
+        chunk.add(frame);
+    }
+
+    /** Compresses and writes the current chunk, if it has frames */
+    private void flushChunk() throws IOException {
+        if (chunk.frameCount == 0) return;
+        int compressedLength = chunk.compress();
+        CRC32C crc = new CRC32C();
+        crc.update(chunk.compressed, 0, compressedLength);
+
+        long offset = bytesWritten;
+        chunk.header.clear();
+        chunk.header.putInt(TrajectoryFormat.CHUNK_MAGIC);
+        chunk.header.putInt(chunk.payload.length);
+        chunk.header.putInt(compressedLength);
+        chunk.header.putInt((int) crc.getValue());
+        chunk.header.putLong(frameNumber);
+        chunk.header.putInt(chunk.frameCount);
+        chunk.header.putInt(chunk.slotCount);
+        chunk.header.putDouble(chunk.startTime);
+        chunk.header.putDouble(chunk.endTime);
+        chunk.header.flip();
+        writeFully(chunk.header);
+        writeFully(ByteBuffer.wrap(chunk.compressed, 0, compressedLength));
+
+        if (indexCount == indexOffsets.length) {
+            int capacity = indexCount * 2;
+            indexOffsets = Arrays.copyOf(indexOffsets, capacity);
+            indexFirstFrames = Arrays.copyOf(indexFirstFrames, capacity);
+            indexFrameCounts = Arrays.copyOf(indexFrameCounts, capacity);
+            indexStartTimes = Arrays.copyOf(indexStartTimes, capacity);
+        }
+        indexOffsets[indexCount] = offset;
+        indexFirstFrames[indexCount] = frameNumber;
+        indexFrameCounts[indexCount] = chunk.frameCount;
+        indexStartTimes[indexCount] = chunk.startTime;
+        indexCount++;
+
+        frameNumber += chunk.frameCount;
+        chunk.frameCount = 0;
+    }
+
+    private void writeIndex() throws IOException {
+        long indexOffset = bytesWritten;
+        ByteBuffer index = ByteBuffer.allocate(8 + indexCount * TrajectoryFormat.INDEX_ENTRY_BYTES
+                                               + TrajectoryFormat.TRAILER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        index.putInt(TrajectoryFormat.INDEX_MAGIC);
+        index.putInt(indexCount);
+        for (int k = 0; k < indexCount; k++) {
+            index.putLong(indexOffsets[k]);
+            index.putLong(indexFirstFrames[k]);
+            index.putInt(indexFrameCounts[k]);
+            index.putDouble(indexStartTimes[k]);
+        }
+        index.putLong(indexOffset);
+        index.putInt(TrajectoryFormat.TRAILER_MAGIC);
+        index.flip();
+        writeFully(index);
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            bytesWritten += channel.write(buffer);
+        }
+    }
+
+    private int idOf(Planet planet) {
+        Integer id = ids.get(planet);
+        if (id == null) {
+            id = nextId++;
+            ids.put(planet, id);
+        }
+        return id;
+    }
+    /**
+     * The chunk being built: the bodies seen in it so far (its slots), the
+     * last two quantized positions of each for prediction, and the growing
+     * columns.
+     */
+    private final class Chunk {
+        int frameCount;
+        double startTime, endTime;
+
+        // Slots: every body that appears in the chunk, in order of appearance
+        final Map<Planet, Integer> slotOf = new IdentityHashMap<>();
+        Planet[] slotViews = new Planet[0];
+        double[] firstMass = new double[0], firstRadius = new double[0];
+        double[] mass = new double[0], radius = new double[0];
+        int[] history = new int[0];
+        long[] x1 = new long[0], x2 = new long[0];
+        long[] y1 = new long[0], y2 = new long[0];
+        long[] angle1 = new long[0], angle2 = new long[0];
+        int slotCount;
+
+        // Slot of each body in the previous frame
+        Planet[] previousViews = new Planet[0];
+        int[] roster = new int[0];
+        int rosterCount;
+
+        final TrajectoryFormat.Column times = new TrajectoryFormat.Column(8 * TrajectoryFormat.MAX_CHUNK_FRAMES);
+        final TrajectoryFormat.Column events = new TrajectoryFormat.Column(1 << 12);
+        final TrajectoryFormat.Column xs = new TrajectoryFormat.Column(1 << 16);
+        final TrajectoryFormat.Column ys = new TrajectoryFormat.Column(1 << 16);
+        final TrajectoryFormat.Column angles = new TrajectoryFormat.Column(1 << 16);
+        final TrajectoryFormat.Column payload = new TrajectoryFormat.Column(1 << 16);
+
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        byte[] compressed = new byte[1 << 16];
+        final ByteBuffer header = ByteBuffer.allocate(TrajectoryFormat.CHUNK_HEADER_BYTES)
+                                            .order(ByteOrder.LITTLE_ENDIAN);
+
+        void start(StateSnapshot frame) {
+            Arrays.fill(slotViews, 0, slotCount, null);
+            slotOf.clear();
+            slotCount = 0;
+            rosterCount = 0;
+            frameCount = 0;
+            startTime = frame.simulationTime;
+            times.clear();
+            events.clear();
+            xs.clear();
+            ys.clear();
+            angles.clear();
+
+            // Forget the ids of bodies that merged away or were cleared, so they can be collected
+            int n = frame.count;
+            if (ids.size() > 2 * n + 1024) {
+                Map<Planet, Integer> alive = new IdentityHashMap<>();
+                for (int i = 0; i < n; i++) {
+                    Integer id = ids.get(frame.views[i]);
+                    if (id != null) alive.put(frame.views[i], id);
+                }
+                ids.clear();
+                ids.putAll(alive);
+            }
+        }
+
+        void add(StateSnapshot frame) {
+            int n = frame.count;
+            if (roster.length < n) {
+                roster = Arrays.copyOf(roster, Math.max(n, roster.length * 2));
+                previousViews = Arrays.copyOf(previousViews, roster.length);
+            }
+
+            // The roster: written out only when the bodies differ from the previous frame's
+            boolean sameBodies = frameCount > 0 && n == rosterCount;
+            for (int i = 0; sameBodies && i < n; i++) {
+                sameBodies = frame.views[i] == previousViews[i];
+            }
+            if (sameBodies) {
+                events.putVarLong(0);
+            } else {
+                events.putVarLong(1);
+                events.putVarLong(n);
+                int previousSlot = -1;
+                for (int i = 0; i < n; i++) {
+                    int slot = slotFor(frame, i);
+                    roster[i] = slot;
+                    events.putSigned(slot - previousSlot);
+                    previousSlot = slot;
+                }
+                System.arraycopy(frame.views, 0, previousViews, 0, n);
+                Arrays.fill(previousViews, n, Math.max(n, rosterCount), null);
+                rosterCount = n;
+            }
+
+            // Bodies that grew by a merge
+            int changed = 0;
+            for (int i = 0; i < n; i++) {
+                int slot = roster[i];
+                if (frame.mass[i] != mass[slot] || frame.radius[i] != radius[slot]) changed++;
+            }
+            events.putVarLong(changed);
+            int previousPosition = 0;
+            for (int i = 0; changed > 0 && i < n; i++) {
+                int slot = roster[i];
+                if (frame.mass[i] != mass[slot] || frame.radius[i] != radius[slot]) {
+                    events.putVarLong(i - previousPosition);
+                    events.putDouble(frame.mass[i]);
+                    events.putDouble(frame.radius[i]);
+                    mass[slot] = frame.mass[i];
+                    radius[slot] = frame.radius[i];
+                    previousPosition = i;
+                    changed--;
+                }
+            }
+
+            double toSteps = 1.0 / TrajectoryFormat.POSITION_QUANTUM;
+            double toAngleSteps = TrajectoryFormat.ANGLE_STEPS / (2 * Math.PI);
+            int angleMask = TrajectoryFormat.ANGLE_STEPS - 1;
+            int halfTurn = TrajectoryFormat.ANGLE_STEPS / 2;
+            for (int i = 0; i < n; i++) {
+                int slot = roster[i];
+                long x = Math.round(frame.x[i] * toSteps);
+                long y = Math.round(frame.y[i] * toSteps);
+                long angle = Math.round(frame.angle[i] * toAngleSteps) & angleMask;
+                long predictedX, predictedY, predictedAngle;
+                if (history[slot] == 0) {
+                    predictedX = predictedY = predictedAngle = 0;
+                } else if (history[slot] == 1) {
+                    predictedX = x1[slot];
+                    predictedY = y1[slot];
+                    predictedAngle = angle1[slot];
+                } else {
+                    predictedX = 2 * x1[slot] - x2[slot];
+                    predictedY = 2 * y1[slot] - y2[slot];
+                    predictedAngle = 2 * angle1[slot] - angle2[slot];
+                }
+                xs.putSigned(x - predictedX);
+                ys.putSigned(y - predictedY);
+                // Angles wrap, so their residual is taken the short way round
+                angles.putSigned(((angle - predictedAngle + halfTurn) & angleMask) - halfTurn);
+                x2[slot] = x1[slot];
+                x1[slot] = x;
+                y2[slot] = y1[slot];
+                y1[slot] = y;
+                angle2[slot] = angle1[slot];
+                angle1[slot] = angle;
+                if (history[slot] < 2) history[slot]++;
+            }
+            times.putDouble(frame.simulationTime);
+            endTime = frame.simulationTime;
+            frameCount++;
+        }
+
+        /** The slot of body i of the frame, adding one if it is new to the chunk */
+        private int slotFor(StateSnapshot frame, int i) {
+            Planet view = frame.views[i];
+            Integer known = slotOf.get(view);
+            if (known != null) return known;
+            int slot = slotCount++;
+            if (slot == slotViews.length) {
+                int capacity = Math.max(1024, slot * 2);
+                slotViews = Arrays.copyOf(slotViews, capacity);
+                firstMass = Arrays.copyOf(firstMass, capacity);
+                firstRadius = Arrays.copyOf(firstRadius, capacity);
+                mass = Arrays.copyOf(mass, capacity);
+                radius = Arrays.copyOf(radius, capacity);
+                history = Arrays.copyOf(history, capacity);
+                x1 = Arrays.copyOf(x1, capacity);
+                x2 = Arrays.copyOf(x2, capacity);
+                y1 = Arrays.copyOf(y1, capacity);
+                y2 = Arrays.copyOf(y2, capacity);
+                angle1 = Arrays.copyOf(angle1, capacity);
+                angle2 = Arrays.copyOf(angle2, capacity);
+            }
+            slotOf.put(view, slot);
+            slotViews[slot] = view;
+            firstMass[slot] = mass[slot] = frame.mass[i];
+            firstRadius[slot] = radius[slot] = frame.radius[i];
+            history[slot] = 0;
+            return slot;
+        }
+
+        /**
+         * Lays out the payload and compresses it into compressed.
+         *
+         * @return Compressed length
+         */
+        int compress() {
+            int n = slotCount;
+            payload.clear();
+            payload.putVarLong(frameCount);
+            payload.putVarLong(n);
+            payload.putColumn(times);
+            int previousId = 0;
+            for (int s = 0; s < n; s++) {
+                int id = idOf(slotViews[s]);
+                payload.putSigned(id - previousId);
+                previousId = id;
+            }
+            for (int s = 0; s < n; s++) {
+                payload.putInt(slotViews[s].color != null ? slotViews[s].color.getRGB() : 0xFFFFFFFF);
+            }
+            for (int s = 0; s < n; s++) {
+                payload.putByte(slotViews[s] instanceof PointMass ? TrajectoryFormat.FLAG_FIXED : 0);
+            }
+            for (int s = 0; s < n; s++) {
+                payload.putString(slotViews[s].getTexturePath());
+            }
+            for (int s = 0; s < n; s++) {
+                payload.putString(slotViews[s].name);
+            }
+            for (int s = 0; s < n; s++) {
+                payload.putDouble(firstMass[s]);
+            }
+            for (int s = 0; s < n; s++) {
+                payload.putDouble(firstRadius[s]);
+            }
+            payload.putVarLong(events.length);
+            payload.putVarLong(xs.length);
+            payload.putVarLong(ys.length);
+            payload.putVarLong(angles.length);
+            payload.putColumn(events);
+            payload.putColumn(xs);
+            payload.putColumn(ys);
+            payload.putColumn(angles);
+
+            deflater.reset();
+            deflater.setInput(payload.bytes, 0, payload.length);
+            deflater.finish();
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                length += deflater.deflate(compressed, length, compressed.length - length);
+            }
+            return length;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.physics.simulations.gravity;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * WorkerPool - spreads per-body work across a ForkJoinPool.
+ *
+ * The body range is cut into fixed-size chunks that do not depend on the
+ * number of workers. Each chunk owns the bodies in it: a task sums the forces
+ * on its own bodies in local accumulators and writes only their slots, so
+ * there are no shared writes, and every body is summed in the same order no
+ * matter how many threads run. Results are bitwise identical for any worker
+ * count, including 1.
+ */
+public class WorkerPool {
+
+    /** Bodies per task - small enough to keep every core busy on a few thousand bodies */
+    static final int CHUNK_SIZE = 64;
+
+    /**
+     * Work over a range of body indices [from, to).
+     */
+    public interface RangeTask {
+        void run(int from, int to);
+    }
+
+    private int workers;
+    private ForkJoinPool pool;
+
+    public WorkerPool(int workers) {
+        setWorkers(workers);
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Changes the number of worker threads. 1 runs everything on the calling thread.
+     */
+    public synchronized void setWorkers(int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("workers must be >= 1, got " + workers);
+        }
+        if (workers == this.workers) return;
+        shutdown();
+        this.workers = workers;
+        if (workers > 1) {
+            pool = new ForkJoinPool(workers);
+        }
+    }
+
+    /**
+     * Runs task over [0, count) and returns when every chunk is done.
+     */
+    public void forEachRange(int count, RangeTask task) {
+        ForkJoinPool current;
+        synchronized (this) {
+            current = pool;
+        }
+        if (current == null || count <= CHUNK_SIZE) {
+            task.run(0, count);
+            return;
+        }
+        int chunks = (count + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        current.invoke(new ChunkAction(task, count, 0, chunks));
+    }
+
+    /**
+     * Stops the worker threads. The pool runs serially until setWorkers is called again.
+     */
+    public synchronized void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+        workers = 1;
+    }
+
+    /**
+     * Splits a range of chunks in half until a single chunk is left.
+     */
+    private static class ChunkAction extends RecursiveAction {
+        private final RangeTask task;
+        private final int count;
+        private final int firstChunk;
+        private final int endChunk;
+
+        ChunkAction(RangeTask task, int count, int firstChunk, int endChunk) {
+            this.task = task;
+            this.count = count;
+            this.firstChunk = firstChunk;
+            this.endChunk = endChunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (endChunk - firstChunk == 1) {
+                int from = firstChunk * CHUNK_SIZE;
+                task.run(from, Math.min(count, from + CHUNK_SIZE));
+                return;
+            }
+            int middle = (firstChunk + endChunk) >>> 1;
+            invokeAll(new ChunkAction(task, count, firstChunk, middle),
+                      new ChunkAction(task, count, middle, endChunk));
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.physics.simulations.gravity;
+
+/**
+ * YoshidaIntegrator - Yoshida's fourth-order symplectic scheme.
+ *
+ * Three leapfrog steps of lengths w1, w0, w1 (w0 is negative) chained so the
+ * second-order errors cancel. Three force evaluations per step; worth it when
+ * accuracy matters more than speed, e.g. long-lived tight orbits.
+ */
+public class YoshidaIntegrator implements Integrator {
+
+    private static final double CBRT2 = Math.cbrt(2.0);
+    private static final double W1 = 1.0 / (2.0 - CBRT2);
+    private static final double W0 = -CBRT2 / (2.0 - CBRT2);
+
+    /** Drift and kick weights of the combined steps */
+    private static final double[] DRIFT = {W1 / 2, (W0 + W1) / 2, (W0 + W1) / 2, W1 / 2};
+    private static final double[] KICK = {W1, W0, W1};
+
+    @Override
+    public void step(BodyStore bodies, double dt, Accelerations accelerations) {
+        for (int stage = 0; stage < KICK.length; stage++) {
+            LeapfrogIntegrator.drift(bodies, DRIFT[stage] * dt);
+            accelerations.compute(bodies);
+            LeapfrogIntegrator.kick(bodies, KICK[stage] * dt);
+        }
+        LeapfrogIntegrator.drift(bodies, DRIFT[KICK.length] * dt);
+    }
+
+    @Override
+    public int getForceEvaluations() {
+        return KICK.length;
+    }
+
+    @Override
+    public String getName() {
+        return "Yoshida 4";
+    }
+}
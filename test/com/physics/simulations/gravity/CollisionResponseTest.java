@@ -0,0 +1,88 @@
+package com.physics.simulations.gravity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Merges chains of touching bodies - where the ends only touch through the
+ * middle one - in every input order, and checks that the one body left is
+ * the same each time.
+ */
+class CollisionResponseTest {
+
+    private static final double TOLERANCE = 1e-12;
+
+    /** The six orders of three bodies */
+    private static final int[][] ORDERS = {
+        {0, 1, 2}, {0, 2, 1}, {1, 0, 2}, {1, 2, 0}, {2, 0, 1}, {2, 1, 0}
+    };
+
+    @Test
+    void chainOfPlanetsMergesIntoOneWhateverTheOrder() {
+        for (int[] order : ORDERS) {
+            Planet[] chain = {
+                new Planet(3.0, 3.0, 0.0, 0.0, 1.0, -2.0, 0.5, Color.RED, null, "big"),
+                new Planet(1.5, 2.5, 5.0, 0.5, -4.0, 1.0, 0.0, Color.GREEN, null, "middle"),
+                new Planet(0.5, 2.0, 9.0, 1.0, 2.0, 3.0, -1.0, Color.BLUE, null, "small")
+            };
+            BodyStore bodies = storeOf(chain, order);
+            assertTrue(merge(bodies));
+
+            assertEquals(1, bodies.count, "bodies left for order " + describe(order));
+            String where = "order " + describe(order);
+            assertEquals("big", bodies.views[0].name, where);
+            assertEquals(5.0, bodies.mass[0], TOLERANCE, where);
+            assertEquals(3.0, bodies.radius[0], TOLERANCE, where);
+            // Momentum is conserved, and the body sits at the centre of mass
+            assertEquals(3.0 * 1.0 + 1.5 * -4.0 + 0.5 * 2.0, 5.0 * bodies.vx[0], TOLERANCE, where);
+            assertEquals(3.0 * -2.0 + 1.5 * 1.0 + 0.5 * 3.0, 5.0 * bodies.vy[0], TOLERANCE, where);
+            assertEquals((1.5 * 5.0 + 0.5 * 9.0) / 5.0, bodies.x[0], TOLERANCE, where);
+            assertEquals((1.5 * 0.5 + 0.5 * 1.0) / 5.0, bodies.y[0], TOLERANCE, where);
+        }
+    }
+
+    @Test
+    void chainThroughAPointMassKeepsItInPlace() {
+        for (int[] order : ORDERS) {
+            Planet[] chain = {
+                new Planet(1.0, 2.0, -4.0, 0.0, 3.0, 0.0, 0.0, Color.RED, null, "left"),
+                new PointMass(100.0, 0.0, 0.0, 2.5, Color.WHITE, "sun"),
+                new Planet(2.0, 4.0, 6.0, 0.0, -1.0, 2.0, 0.0, Color.BLUE, null, "right")
+            };
+            BodyStore bodies = storeOf(chain, order);
+            assertTrue(merge(bodies));
+
+            String where = "order " + describe(order);
+            assertEquals(1, bodies.count, where);
+            assertTrue(bodies.fixed[0], where);
+            assertEquals("sun", bodies.views[0].name, where);
+            assertEquals(103.0, bodies.mass[0], TOLERANCE, where);
+            assertEquals(0.0, bodies.x[0], where);
+            assertEquals(0.0, bodies.y[0], where);
+            assertEquals(0.0, bodies.vx[0], where);
+            assertEquals(0.0, bodies.vy[0], where);
+        }
+    }
+
+    private static BodyStore storeOf(Planet[] planets, int[] order) {
+        BodyStore bodies = new BodyStore();
+        for (int i : order) {
+            bodies.add(planets[i]);
+        }
+        return bodies;
+    }
+
+    private static boolean merge(BodyStore bodies) {
+        CollisionDetector detector = new CollisionDetector();
+        detector.detect(bodies);
+        return new CollisionResponse().resolve(bodies, detector, false, 1.0);
+    }
+
+    private static String describe(int[] order) {
+        return order[0] + "-" + order[1] + "-" + order[2];
+    }
+}
@@ -0,0 +1,17 @@
+package com.physics.simulations.gravity;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs the SolverAccuracy checks in the build, on a disc small enough to take
+ * a second or two, so a solver that drifts past its limit fails mvn verify.
+ */
+class SolverAccuracyTest {
+
+    @Test
+    void everySolverIsWithinItsLimit() {
+        assertTrue(SolverAccuracy.check(500, false), "a solver is outside its accuracy limit - see the report above");
+    }
+}
@@ -0,0 +1,169 @@
+package com.physics.simulations.gravity;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Saves a small simulation with StateFile and reads it back into a fresh
+ * engine, and checks that damaged files are turned away without touching it.
+ */
+class StateFileTest {
+
+    private static final int BODIES = 200;
+
+    @TempDir
+    Path directory;
+
+    private GravityEngine saved, loaded;
+
+    @BeforeEach
+    void createEngines() {
+        saved = new GravityEngine();
+        loaded = new GravityEngine();
+        Random random = new Random(7);
+        for (int i = 0; i < BODIES; i++) {
+            Color color = new Color(random.nextInt(), true);
+            if (i % 10 == 0) {
+                saved.add(new PointMass(1e4 + i, random.nextGaussian() * 500, random.nextGaussian() * 500,
+                                        5 + i % 3, color, "sun " + i));
+            } else {
+                String texture = i % 3 == 0 ? "textures/missing-" + (i % 2) + ".png" : null;
+                String name = i % 4 == 0 ? null : "body " + i + " é";
+                saved.add(new Planet(1 + random.nextDouble(), 2 + random.nextDouble(),
+                                     random.nextGaussian() * 500, random.nextGaussian() * 500,
+                                     random.nextGaussian(), random.nextGaussian(),
+                                     random.nextGaussian(), color, texture, name));
+            }
+        }
+        BodyStore bodies = saved.getBodies();
+        for (int i = 0; i < bodies.count; i++) {
+            bodies.angle[i] = random.nextDouble() * 2 * Math.PI;
+        }
+        saved.setGravitationalConstant(1234.5);
+        saved.setTimeFactor(2.5);
+        saved.setCoefficientOfRestitution(0.75);
+        saved.setBounce(true);
+        saved.setSimulationTime(42.25);
+    }
+
+    @AfterEach
+    void shutdownEngines() {
+        saved.shutdown();
+        loaded.shutdown();
+    }
+
+    @Test
+    void savedStateLoadsBackUnchanged() throws IOException {
+        Path file = directory.resolve("state." + StateFile.EXTENSION);
+        StateFile.save(file, saved, new StateFile.View(-12.5, 80.0, 0.375));
+        StateFile.View view = StateFile.load(file, loaded);
+
+        assertEquals(-12.5, view.panX);
+        assertEquals(80.0, view.panY);
+        assertEquals(0.375, view.zoom);
+        assertEquals(1234.5, loaded.getGravitationalConstant());
+        assertEquals(2.5, loaded.getTimeFactor());
+        assertEquals(0.75, loaded.getCoefficientOfRestitution());
+        assertTrue(loaded.isBounce());
+        assertEquals(42.25, loaded.getSimulationTime());
+
+        BodyStore expected = saved.getBodies(), actual = loaded.getBodies();
+        int n = expected.count;
+        assertEquals(n, actual.count);
+        assertColumn(expected.x, actual.x, n);
+        assertColumn(expected.y, actual.y, n);
+        assertColumn(expected.vx, actual.vx, n);
+        assertColumn(expected.vy, actual.vy, n);
+        assertColumn(expected.mass, actual.mass, n);
+        assertColumn(expected.radius, actual.radius, n);
+        assertColumn(expected.spin, actual.spin, n);
+        assertColumn(expected.angle, actual.angle, n);
+        assertArrayEquals(Arrays.copyOf(expected.fixed, n), Arrays.copyOf(actual.fixed, n));
+        for (int i = 0; i < n; i++) {
+            Planet before = expected.views[i], after = actual.views[i];
+            assertSame(actual, after.store);
+            assertEquals(i, after.index);
+            assertEquals(before.getClass(), after.getClass());
+            assertEquals(before.color.getRGB(), after.color.getRGB());
+            assertEquals(before.getTexturePath(), after.getTexturePath());
+            assertEquals(before.name, after.name);
+        }
+    }
+
+    @Test
+    void savedStateWithoutBounceLoadsItOff() throws IOException {
+        Path file = directory.resolve("state." + StateFile.EXTENSION);
+        saved.setBounce(false);
+        loaded.setBounce(true);
+        StateFile.save(file, saved, new StateFile.View(0, 0, 1));
+        StateFile.load(file, loaded);
+        assertFalse(loaded.isBounce());
+    }
+
+    @Test
+    void emptyStateLoads() throws IOException {
+        Path file = directory.resolve("empty." + StateFile.EXTENSION);
+        saved.clear();
+        StateFile.save(file, saved, new StateFile.View(0, 0, 1));
+        StateFile.load(file, loaded);
+        assertEquals(0, loaded.getBodies().count);
+    }
+
+    @Test
+    void damagedHeaderIsRejected() throws IOException {
+        // Byte 16 is the first byte of G, which only the checksum covers
+        assertRejected(16);
+    }
+
+    @Test
+    void damagedPayloadIsRejected() throws IOException {
+        assertRejected(StateFile.HEADER_BYTES + 8 * BODIES + 3);
+    }
+
+    @Test
+    void truncatedFileIsRejected() throws IOException {
+        Path file = directory.resolve("state." + StateFile.EXTENSION);
+        StateFile.save(file, saved, new StateFile.View(0, 0, 1));
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+        assertThrows(IOException.class, () -> StateFile.load(file, loaded));
+    }
+
+    /** Flips one byte of a saved file and checks that loading it leaves the engine alone */
+    private void assertRejected(int offset) throws IOException {
+        Path file = directory.resolve("state." + StateFile.EXTENSION);
+        StateFile.save(file, saved, new StateFile.View(0, 0, 1));
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[offset] ^= 0x40;
+        Files.write(file, bytes);
+
+        Planet sentinel = new Planet(3, 1, 5, 6, 0, 0, 0, Color.RED, null, "sentinel");
+        loaded.add(sentinel);
+        loaded.setGravitationalConstant(1.0);
+        IOException failure = assertThrows(IOException.class, () -> StateFile.load(file, loaded));
+        assertTrue(failure.getMessage().contains("checksum"), failure.getMessage());
+        assertEquals(1, loaded.getBodies().count);
+        assertSame(sentinel, loaded.getBodies().views[0]);
+        assertEquals(1.0, loaded.getGravitationalConstant());
+    }
+
+    private static void assertColumn(double[] expected, double[] actual, int n) {
+        assertArrayEquals(Arrays.copyOf(expected, n), Arrays.copyOf(actual, n));
+    }
+}
@@ -0,0 +1,256 @@
+package com.physics.simulations.gravity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Records a few hundred steps of a small simulation in which bodies keep
+ * merging, and checks that the reader gives back every frame - by number
+ * and by time, forwards and backwards across chunks - to within the
+ * recording's quantization, and that it copes with damaged and unfinished
+ * files.
+ */
+class TrajectoryReaderTest {
+
+    private static final int STEPS = 300;
+    private static final double POSITION_TOLERANCE = TrajectoryFormat.POSITION_QUANTUM / 2 + 1e-9;
+    private static final double ANGLE_TOLERANCE = Math.PI / TrajectoryFormat.ANGLE_STEPS + 1e-9;
+
+    @TempDir
+    Path directory;
+
+    private Path file;
+    private final List<StateSnapshot> frames = new ArrayList<>();
+    private final List<String[]> names = new ArrayList<>();
+
+    @BeforeEach
+    void record() throws IOException, InterruptedException {
+        GravityEngine engine = new GravityEngine();
+        Random random = new Random(11);
+        engine.add(new PointMass(2e4, 0, 0, 12, Color.YELLOW, "sun"));
+        for (int i = 0; i < 80; i++) {
+            double angle = random.nextDouble() * 2 * Math.PI;
+            double distance = 60 + random.nextDouble() * 240;
+            double speed = Math.sqrt(engine.getGravitationalConstant() * 2e4 / distance)
+                           * (0.8 + 0.4 * random.nextDouble());
+            engine.add(new Planet(1 + random.nextDouble(), 3 + random.nextDouble() * 3,
+                                  distance * Math.cos(angle), distance * Math.sin(angle),
+                                  -speed * Math.sin(angle), speed * Math.cos(angle),
+                                  random.nextGaussian(), new Color(random.nextInt()), null, "body " + i));
+        }
+
+        file = directory.resolve("run." + TrajectoryRecorder.EXTENSION);
+        try (TrajectoryRecorder recorder = new TrajectoryRecorder(file, 1)) {
+            for (int step = 0; step < STEPS; step++) {
+                engine.step(GravityEngine.DELTA_TIME);
+                BodyStore bodies = engine.getBodies();
+                // Wait for the writer rather than drop a frame, so every step is in the file
+                while (!recorder.stepCompleted(bodies, engine.getSimulationTime())) {
+                    Thread.sleep(1);
+                }
+                StateSnapshot frame = new StateSnapshot();
+                frame.copyFrom(bodies, step, engine.getSimulationTime());
+                frames.add(frame);
+                String[] frameNames = new String[bodies.count];
+                for (int i = 0; i < bodies.count; i++) {
+                    frameNames[i] = bodies.views[i].name;
+                }
+                names.add(frameNames);
+            }
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    @AfterEach
+    void forgetFrames() {
+        frames.clear();
+        names.clear();
+    }
+
+    @Test
+    void recordingHasMergesInsideChunks() {
+        boolean mergedInsideChunk = false;
+        for (int f = 1; f < STEPS; f++) {
+            if (frames.get(f).count < frames.get(f - 1).count && f % TrajectoryFormat.MAX_CHUNK_FRAMES != 0) {
+                mergedInsideChunk = true;
+            }
+        }
+        assertTrue(mergedInsideChunk, "no body merged in the middle of a chunk - the test needs a denser disc");
+    }
+
+    @Test
+    void everyFrameReadsBackInOrder() throws IOException {
+        try (TrajectoryReader reader = new TrajectoryReader(file)) {
+            assertEquals(STEPS, reader.getFrameCount());
+            assertEquals((STEPS + TrajectoryFormat.MAX_CHUNK_FRAMES - 1) / TrajectoryFormat.MAX_CHUNK_FRAMES,
+                         reader.getChunkCount());
+            assertEquals(frames.get(0).simulationTime, reader.getStartTime());
+            assertEquals(frames.get(STEPS - 1).simulationTime, reader.getEndTime());
+            for (int f = 0; f < STEPS; f++) {
+                reader.seekFrame(f);
+                assertFrame(reader, f);
+            }
+        }
+    }
+
+    @Test
+    void seeksJumpAcrossChunksBothWays() throws IOException {
+        int[] order = new int[STEPS];
+        for (int f = 0; f < STEPS; f++) {
+            order[f] = f;
+        }
+        Random random = new Random(3);
+        for (int f = STEPS - 1; f > 0; f--) {
+            int other = random.nextInt(f + 1);
+            int swap = order[f];
+            order[f] = order[other];
+            order[other] = swap;
+        }
+        try (TrajectoryReader reader = new TrajectoryReader(file)) {
+            for (int f : order) {
+                reader.seekFrame(f);
+                assertFrame(reader, f);
+            }
+            for (int f : order) {
+                double time = frames.get(f).simulationTime;
+                assertEquals(time, reader.seek(time));
+                assertFrame(reader, f);
+            }
+        }
+    }
+
+    @Test
+    void seekBetweenFramesShowsTheEarlierOne() throws IOException {
+        try (TrajectoryReader reader = new TrajectoryReader(file)) {
+            for (int f = 0; f + 1 < STEPS; f += 7) {
+                double between = (frames.get(f).simulationTime + frames.get(f + 1).simulationTime) / 2;
+                reader.seek(between);
+                assertFrame(reader, f);
+            }
+            reader.seek(-1.0);
+            assertFrame(reader, 0);
+            reader.seek(1e9);
+            assertFrame(reader, STEPS - 1);
+            reader.seekFrame(-5);
+            assertFrame(reader, 0);
+            reader.seekFrame(STEPS + 5);
+            assertFrame(reader, STEPS - 1);
+        }
+    }
+
+    @Test
+    void recordingWithoutIndexIsScanned() throws IOException {
+        long indexOffset = indexOffset();
+        truncate(indexOffset);
+        try (TrajectoryReader reader = new TrajectoryReader(file)) {
+            assertEquals(STEPS, reader.getFrameCount());
+            for (int f = STEPS - 1; f >= 0; f -= 5) {
+                reader.seekFrame(f);
+                assertFrame(reader, f);
+            }
+        }
+    }
+
+    @Test
+    void chunkCutOffAtTheEndIsLeftOut() throws IOException {
+        truncate(indexOffset() - 1);
+        int complete = STEPS / TrajectoryFormat.MAX_CHUNK_FRAMES * TrajectoryFormat.MAX_CHUNK_FRAMES;
+        try (TrajectoryReader reader = new TrajectoryReader(file)) {
+            assertEquals(complete, reader.getFrameCount());
+            reader.seekFrame(complete - 1);
+            assertFrame(reader, complete - 1);
+        }
+    }
+
+    @Test
+    void damagedHeaderIsRejected() throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[TrajectoryFormat.MAGIC.length] ^= 1;
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> new TrajectoryReader(file).close());
+
+        bytes[TrajectoryFormat.MAGIC.length] ^= 1;
+        bytes[0] ^= 1;
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> new TrajectoryReader(file).close());
+    }
+
+    @Test
+    void damagedChunkIsRejected() throws IOException {
+        // A byte in the middle of the third chunk's compressed data
+        long offset = TrajectoryFormat.HEADER_BYTES;
+        for (int k = 0; k < 2; k++) {
+            offset += TrajectoryFormat.CHUNK_HEADER_BYTES + chunkHeader(offset).getInt(8);
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        int damaged = (int) offset + TrajectoryFormat.CHUNK_HEADER_BYTES + chunkHeader(offset).getInt(8) / 2;
+        bytes[damaged] ^= 0x10;
+        Files.write(file, bytes);
+
+        long firstOfChunk = 2L * TrajectoryFormat.MAX_CHUNK_FRAMES;
+        try (TrajectoryReader reader = new TrajectoryReader(file)) {
+            reader.seekFrame(firstOfChunk - 1);
+            assertFrame(reader, (int) firstOfChunk - 1);
+            IOException failure = assertThrows(IOException.class, () -> reader.seekFrame(firstOfChunk));
+            assertTrue(failure.getMessage().contains("checksum"), failure.getMessage());
+            // The chunks around it still read
+            reader.seekFrame(firstOfChunk + TrajectoryFormat.MAX_CHUNK_FRAMES);
+            assertFrame(reader, (int) firstOfChunk + TrajectoryFormat.MAX_CHUNK_FRAMES);
+        }
+    }
+
+    /** Checks the reader's frame against the state recorded for frame f */
+    private void assertFrame(TrajectoryReader reader, int f) {
+        StateSnapshot expected = frames.get(f);
+        BodyStore actual = reader.getBodies();
+        assertEquals(f, reader.getFrameNumber());
+        assertEquals(expected.simulationTime, reader.getFrameTime());
+        assertEquals(expected.count, actual.count, "bodies in frame " + f);
+        for (int i = 0; i < expected.count; i++) {
+            String where = "body " + i + " of frame " + f;
+            assertEquals(names.get(f)[i], actual.views[i].name, where);
+            assertEquals(expected.x[i], actual.x[i], POSITION_TOLERANCE, where);
+            assertEquals(expected.y[i], actual.y[i], POSITION_TOLERANCE, where);
+            assertEquals(expected.mass[i], actual.mass[i], where);
+            assertEquals(expected.radius[i], actual.radius[i], where);
+            double angleError = Math.abs(Math.IEEEremainder(expected.angle[i] - actual.angle[i], 2 * Math.PI));
+            assertTrue(angleError <= ANGLE_TOLERANCE, where + ": angle off by " + angleError);
+        }
+    }
+
+    /** @return Where the chunk index starts, from the trailer */
+    private long indexOffset() throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        return ByteBuffer.wrap(bytes, bytes.length - TrajectoryFormat.TRAILER_BYTES, TrajectoryFormat.TRAILER_BYTES)
+                         .order(ByteOrder.LITTLE_ENDIAN).getLong();
+    }
+
+    private ByteBuffer chunkHeader(long offset) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        return ByteBuffer.wrap(Arrays.copyOfRange(bytes, (int) offset, (int) offset + TrajectoryFormat.CHUNK_HEADER_BYTES))
+                         .order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private void truncate(long length) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, (int) length));
+    }
+}